@@ -0,0 +1,863 @@
+package com.adacore.adaintellij.analysis.lexical;
+
+import java.util.*;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.tree.IElementType;
+import org.jetbrains.annotations.*;
+
+import com.adacore.adaintellij.misc.cache.*;
+
+import static com.adacore.adaintellij.analysis.lexical.AdaTokenTypes.*;
+
+/**
+ * Block-nesting index of Ada source code.
+ *
+ * A block index records the keyword tokens delimiting Ada blocks,
+ * namely `begin`/`end`, `declare`/`begin`, `if`/`end if`,
+ * `loop`/`end loop`, `case`/`end case`, `record`/`end record`,
+ * `select`/`end select` and `do`/`end`, and pairs every opening token
+ * with its closing token. Lookups of block tokens and of the blocks
+ * enclosing given offsets are performed with binary searches.
+ *
+ * Block tokens are always contained in a single line, and Ada tokens
+ * never span multiple lines, so that an index can be updated
+ * incrementally after an edit by only lexing the lines affected by
+ * the edit again and shifting the offsets of the following tokens.
+ * Pairing is then performed again over the block tokens only, which
+ * does not require scanning the text.
+ *
+ * Since the index is built from the token stream alone, the following
+ * heuristics are used:
+ * - `if` and `case` tokens inside parentheses are expressions and
+ *   are therefore ignored
+ * - `record` tokens following `null` are ignored
+ * - a plain `end` only closes a `begin` or `do` block, and never
+ *   one enclosing a `declare` block, so that the `end` tokens of
+ *   package, task and protected declarations do not close unrelated
+ *   blocks
+ * - a closing token with no matching opening token in the enclosing
+ *   blocks is left unpaired, and opening tokens between a closing
+ *   token and its matching opening token are left unpaired, which
+ *   keeps the index usable while code is being edited
+ *
+ * Indexes are immutable. Per-document indexes are available through
+ * `forDocument`, and are updated lazily when queried after their
+ * document was modified, the edited region being found by comparing
+ * the indexed text with the current text of the document.
+ */
+public final class AdaBlockIndex {
+
+	/**
+	 * The kinds of tokens recorded in an index.
+	 */
+	private enum TokenKind {
+
+		LEFT_PARENTHESIS, RIGHT_PARENTHESIS,
+
+		BEGIN, DECLARE,
+
+		IF, LOOP, CASE, RECORD, SELECT, DO,
+
+		END, END_IF, END_LOOP, END_CASE, END_RECORD, END_SELECT, END_RETURN;
+
+		/**
+		 * Returns the opening token kind closed by this closing token
+		 * kind, or null if this kind is not a specific closing kind.
+		 *
+		 * @return The opening kind closed by this kind.
+		 */
+		@Nullable
+		TokenKind getOpeningKind() {
+
+			switch (this) {
+
+				case END_IF:     return IF;
+				case END_LOOP:   return LOOP;
+				case END_CASE:   return CASE;
+				case END_RECORD: return RECORD;
+				case END_SELECT: return SELECT;
+				case END_RETURN: return DO;
+
+				default:         return null;
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * Mapping of keyword token types following `end` to the kinds of
+	 * the resulting closing tokens.
+	 */
+	private static final Map<IElementType, TokenKind> END_SUFFIX_KINDS = new HashMap<>();
+
+	static {
+		END_SUFFIX_KINDS.put(IF_KEYWORD    , TokenKind.END_IF);
+		END_SUFFIX_KINDS.put(LOOP_KEYWORD  , TokenKind.END_LOOP);
+		END_SUFFIX_KINDS.put(CASE_KEYWORD  , TokenKind.END_CASE);
+		END_SUFFIX_KINDS.put(RECORD_KEYWORD, TokenKind.END_RECORD);
+		END_SUFFIX_KINDS.put(SELECT_KEYWORD, TokenKind.END_SELECT);
+		END_SUFFIX_KINDS.put(RETURN_KEYWORD, TokenKind.END_RETURN);
+	}
+
+	/**
+	 * Mapping of keyword token types to the kinds of the resulting
+	 * tokens when not following `end`.
+	 */
+	private static final Map<IElementType, TokenKind> KEYWORD_KINDS = new HashMap<>();
+
+	static {
+		KEYWORD_KINDS.put(LEFT_PARENTHESIS , TokenKind.LEFT_PARENTHESIS);
+		KEYWORD_KINDS.put(RIGHT_PARENTHESIS, TokenKind.RIGHT_PARENTHESIS);
+		KEYWORD_KINDS.put(BEGIN_KEYWORD    , TokenKind.BEGIN);
+		KEYWORD_KINDS.put(DECLARE_KEYWORD  , TokenKind.DECLARE);
+		KEYWORD_KINDS.put(IF_KEYWORD       , TokenKind.IF);
+		KEYWORD_KINDS.put(LOOP_KEYWORD     , TokenKind.LOOP);
+		KEYWORD_KINDS.put(CASE_KEYWORD     , TokenKind.CASE);
+		KEYWORD_KINDS.put(RECORD_KEYWORD   , TokenKind.RECORD);
+		KEYWORD_KINDS.put(SELECT_KEYWORD   , TokenKind.SELECT);
+		KEYWORD_KINDS.put(DO_KEYWORD       , TokenKind.DO);
+	}
+
+	/**
+	 * Cache key for per-document indexes.
+	 */
+	private static final CacheKey<DocumentIndex> DOCUMENT_INDEX_CACHE_KEY = CacheKey.getNewKey();
+
+	/**
+	 * The index of a document, along with the text of the document
+	 * it indexes and the modification stamp of the document at the
+	 * time the index was built.
+	 */
+	private static final class DocumentIndex {
+
+		/**
+		 * The index of the document.
+		 */
+		final AdaBlockIndex index;
+
+		/**
+		 * The indexed text.
+		 */
+		final CharSequence text;
+
+		/**
+		 * The modification stamp of the document.
+		 */
+		final long modificationStamp;
+
+		/**
+		 * Constructs a new DocumentIndex given an index, the indexed
+		 * text and a modification stamp.
+		 *
+		 * @param index The index of the document.
+		 * @param text The indexed text.
+		 * @param modificationStamp The modification stamp of the document.
+		 */
+		DocumentIndex(@NotNull AdaBlockIndex index, @NotNull CharSequence text, long modificationStamp) {
+			this.index             = index;
+			this.text              = text;
+			this.modificationStamp = modificationStamp;
+		}
+
+	}
+
+	/**
+	 * The recorded tokens, sorted by start offset. The token at index
+	 * `i` is of kind `kinds[i]` and spans `[startOffsets[i], endOffsets[i])`.
+	 */
+	private final int[]       startOffsets;
+	private final int[]       endOffsets;
+	private final TokenKind[] kinds;
+
+	/**
+	 * For every recorded token, the index of the paired token, or -1
+	 * if the token is unpaired. A `declare` token is paired with the
+	 * `begin` token closing it, which is itself paired with the `end`
+	 * token closing the block it opens.
+	 */
+	private final int[] partners;
+
+	/**
+	 * For every recorded token, the index of the opening token of
+	 * the innermost block enclosing that token, or -1 if the token is
+	 * at the top level. The parent of a `begin` token closing a
+	 * `declare` block is that `declare` token.
+	 */
+	private final int[] parents;
+
+	/**
+	 * Constructs a new AdaBlockIndex given recorded tokens, and pairs
+	 * them.
+	 *
+	 * @param startOffsets The start offsets of the tokens.
+	 * @param endOffsets The end offsets of the tokens.
+	 * @param kinds The kinds of the tokens.
+	 */
+	private AdaBlockIndex(@NotNull int[] startOffsets, @NotNull int[] endOffsets, @NotNull TokenKind[] kinds) {
+
+		this.startOffsets = startOffsets;
+		this.endOffsets   = endOffsets;
+		this.kinds        = kinds;
+		this.partners     = new int[kinds.length];
+		this.parents      = new int[kinds.length];
+
+		pairTokens();
+
+	}
+
+	/**
+	 * Returns the index of the given document. If the document was
+	 * modified since its index was last built, then the index is
+	 * updated incrementally from the previously indexed text, so that
+	 * several edits made between two queries result in one update.
+	 * Must be called from within a read action.
+	 *
+	 * @param document The document for which to get an index.
+	 * @return The index of the given document.
+	 */
+	@NotNull
+	public static AdaBlockIndex forDocument(@NotNull Document document) {
+
+		long          modificationStamp = document.getModificationStamp();
+		DocumentIndex documentIndex     = Cacher.getCachedData(document, DOCUMENT_INDEX_CACHE_KEY).data;
+
+		// If the index is up to date, then return it
+
+		if (documentIndex != null && documentIndex.modificationStamp == modificationStamp) {
+			return documentIndex.index;
+		}
+
+		// Otherwise, build the index from scratch if the document
+		// was never indexed, or update it otherwise
+
+		CharSequence  text  = document.getImmutableCharSequence();
+		AdaBlockIndex index = documentIndex == null ?
+			build(text) : documentIndex.index.update(documentIndex.text, text);
+
+		Cacher.cacheData(document, DOCUMENT_INDEX_CACHE_KEY,
+			new DocumentIndex(index, text, modificationStamp));
+
+		return index;
+
+	}
+
+	/**
+	 * Builds and returns an index of the given text.
+	 *
+	 * @param text The text to index.
+	 * @return The index of the given text.
+	 */
+	@Contract("_ -> new")
+	@NotNull
+	public static AdaBlockIndex build(@NotNull CharSequence text) {
+
+		List<int[]>     offsets = new ArrayList<>();
+		List<TokenKind> kinds   = new ArrayList<>();
+
+		lexRegion(text, 0, text.length(), offsets, kinds);
+
+		int[]       startOffsets = new int[kinds.size()];
+		int[]       endOffsets   = new int[kinds.size()];
+		TokenKind[] kindArray    = kinds.toArray(new TokenKind[0]);
+
+		for (int i = 0 ; i < kindArray.length ; i++) {
+			startOffsets[i] = offsets.get(i)[0];
+			endOffsets[i]   = offsets.get(i)[1];
+		}
+
+		return new AdaBlockIndex(startOffsets, endOffsets, kindArray);
+
+	}
+
+	/**
+	 * Returns a new index of the given text, which results from the
+	 * given edit to the text indexed by this index. Only the lines
+	 * affected by the edit are lexed again.
+	 *
+	 * @param newText The text after the edit.
+	 * @param offset The offset at which the edit occurred.
+	 * @param oldLength The length of the replaced text.
+	 * @param newLength The length of the inserted text.
+	 * @return The updated index.
+	 */
+	@Contract("_, _, _, _ -> new")
+	@NotNull
+	public AdaBlockIndex update(@NotNull CharSequence newText, int offset, int oldLength, int newLength) {
+
+		int delta = newLength - oldLength;
+
+		// Compute the region of the new text to lex again,
+		// extended to the boundaries of the affected lines
+
+		int regionStart = Math.min(offset, newText.length());
+
+		while (regionStart > 0 && newText.charAt(regionStart - 1) != '\n') { regionStart--; }
+
+		int newRegionEnd = Math.min(offset + newLength, newText.length());
+
+		while (newRegionEnd < newText.length() && newText.charAt(newRegionEnd) != '\n') { newRegionEnd++; }
+
+		int oldRegionEnd = newRegionEnd - delta;
+
+		// Lex the region again
+
+		List<int[]>     regionOffsets = new ArrayList<>();
+		List<TokenKind> regionKinds   = new ArrayList<>();
+
+		lexRegion(newText, regionStart, newRegionEnd, regionOffsets, regionKinds);
+
+		// Keep the tokens before the region, followed by the
+		// tokens of the region, followed by the tokens after
+		// the region shifted by the length difference
+
+		int before = lowerBound(startOffsets, regionStart);
+		int after  = lowerBound(startOffsets, oldRegionEnd);
+		int size   = before + regionKinds.size() + kinds.length - after;
+
+		int[]       newStartOffsets = new int[size];
+		int[]       newEndOffsets   = new int[size];
+		TokenKind[] newKinds        = new TokenKind[size];
+
+		System.arraycopy(startOffsets, 0, newStartOffsets, 0, before);
+		System.arraycopy(endOffsets  , 0, newEndOffsets  , 0, before);
+		System.arraycopy(kinds       , 0, newKinds       , 0, before);
+
+		int index = before;
+
+		for (int i = 0 ; i < regionKinds.size() ; i++, index++) {
+			newStartOffsets[index] = regionOffsets.get(i)[0];
+			newEndOffsets[index]   = regionOffsets.get(i)[1];
+			newKinds[index]        = regionKinds.get(i);
+		}
+
+		for (int i = after ; i < kinds.length ; i++, index++) {
+			newStartOffsets[index] = startOffsets[i] + delta;
+			newEndOffsets[index]   = endOffsets[i] + delta;
+			newKinds[index]        = kinds[i];
+		}
+
+		return new AdaBlockIndex(newStartOffsets, newEndOffsets, newKinds);
+
+	}
+
+	/**
+	 * Returns a new index of the given new text, given the old text
+	 * indexed by this index. The edit turning the old text into the
+	 * new text is found by skipping the common prefix and suffix of
+	 * both texts.
+	 * @see AdaBlockIndex#update(CharSequence, int, int, int)
+	 *
+	 * @param oldText The text indexed by this index.
+	 * @param newText The text to index.
+	 * @return The updated index.
+	 */
+	@Contract("_, _ -> new")
+	@NotNull
+	public AdaBlockIndex update(@NotNull CharSequence oldText, @NotNull CharSequence newText) {
+
+		int oldLength = oldText.length();
+		int newLength = newText.length();
+		int maxLength = Math.min(oldLength, newLength);
+
+		int prefixLength = 0;
+
+		while (prefixLength < maxLength && oldText.charAt(prefixLength) == newText.charAt(prefixLength)) {
+			prefixLength++;
+		}
+
+		int suffixLength = 0;
+
+		while (
+			suffixLength < maxLength - prefixLength &&
+			oldText.charAt(oldLength - suffixLength - 1) == newText.charAt(newLength - suffixLength - 1)
+		) { suffixLength++; }
+
+		return update(newText, prefixLength,
+			oldLength - prefixLength - suffixLength, newLength - prefixLength - suffixLength);
+
+	}
+
+	/**
+	 * Lexes the given region of the given text and records the block
+	 * tokens and parentheses found in that region.
+	 *
+	 * @param text The text to lex.
+	 * @param startOffset The start offset of the region, which must be
+	 *                    at the start of a line.
+	 * @param endOffset The end offset of the region.
+	 * @param offsets The list to which to add start/end offset pairs.
+	 * @param kinds The list to which to add token kinds.
+	 */
+	private static void lexRegion(
+		@NotNull CharSequence    text,
+		int                      startOffset,
+		int                      endOffset,
+		@NotNull List<int[]>     offsets,
+		@NotNull List<TokenKind> kinds
+	) {
+
+		AdaLexer lexer = new AdaLexer();
+
+		lexer.start(text, startOffset, endOffset, 0);
+
+		IElementType previousTokenType = null;
+
+		while (lexer.getTokenType() != null) {
+
+			IElementType tokenType   = lexer.getTokenType();
+			int          tokenStart  = lexer.getTokenStart();
+			int          tokenEnd    = lexer.getTokenEnd();
+
+			lexer.advance();
+
+			// Skip whitespaces and comments
+
+			if (
+				WHITESPACE_TOKEN_SET.contains(tokenType) ||
+				COMMENT_TOKEN_SET.contains(tokenType)
+			) { continue; }
+
+			// If the token is `end`, then check whether it is
+			// followed on the same line by a keyword specifying
+			// the kind of block it closes
+
+			if (tokenType == END_KEYWORD) {
+
+				while (WHITESPACE_TOKEN_SET.contains(lexer.getTokenType())) { lexer.advance(); }
+
+				IElementType nextTokenType = lexer.getTokenType();
+				TokenKind    endKind       = nextTokenType == null ?
+					null : END_SUFFIX_KINDS.get(nextTokenType);
+
+				if (endKind != null && !containsLineBreak(text, tokenEnd, lexer.getTokenStart())) {
+
+					offsets.add(new int[] { tokenStart, lexer.getTokenEnd() });
+					kinds.add(endKind);
+
+					previousTokenType = nextTokenType;
+
+					lexer.advance();
+
+				} else {
+
+					offsets.add(new int[] { tokenStart, tokenEnd });
+					kinds.add(TokenKind.END);
+
+					previousTokenType = tokenType;
+
+				}
+
+				continue;
+
+			}
+
+			// Otherwise, record the token if it is relevant,
+			// ignoring `record` in `null record`
+
+			TokenKind kind = KEYWORD_KINDS.get(tokenType);
+
+			if (kind != null && !(kind == TokenKind.RECORD && previousTokenType == NULL_KEYWORD)) {
+				offsets.add(new int[] { tokenStart, tokenEnd });
+				kinds.add(kind);
+			}
+
+			previousTokenType = tokenType;
+
+		}
+
+	}
+
+	/**
+	 * Returns whether or not the given range of the given text
+	 * contains a line break.
+	 *
+	 * @param text The text to check.
+	 * @param startOffset The start offset of the range.
+	 * @param endOffset The end offset of the range.
+	 * @return Whether or not the range contains a line break.
+	 */
+	private static boolean containsLineBreak(@NotNull CharSequence text, int startOffset, int endOffset) {
+
+		for (int i = startOffset ; i < endOffset ; i++) {
+			if (text.charAt(i) == '\n') { return true; }
+		}
+
+		return false;
+
+	}
+
+	/**
+	 * Pairs the tokens of this index and computes their parents.
+	 */
+	private void pairTokens() {
+
+		int[] stack     = new int[kinds.length];
+		int   stackSize = 0;
+
+		int parenthesisDepth = 0;
+
+		for (int i = 0 ; i < kinds.length ; i++) {
+
+			TokenKind kind = kinds[i];
+			int       top  = stackSize == 0 ? -1 : stack[stackSize - 1];
+
+			partners[i] = -1;
+			parents[i]  = top;
+
+			switch (kind) {
+
+				// Keep track of parentheses to ignore expressions
+
+				case LEFT_PARENTHESIS:
+
+					parenthesisDepth++;
+
+					break;
+
+				case RIGHT_PARENTHESIS:
+
+					if (parenthesisDepth > 0) { parenthesisDepth--; }
+
+					break;
+
+				// `if` and `case` inside parentheses are expressions
+
+				case IF:
+				case CASE:
+
+					if (parenthesisDepth == 0) { stack[stackSize++] = i; }
+
+					break;
+
+				// `begin` closes an enclosing `declare` block, and
+				// opens a new block whose parent is the `declare`
+				// token, so that walking up blocks from a `begin`
+				// block goes through the whole `declare` block
+
+				case BEGIN:
+
+					parenthesisDepth = 0;
+
+					if (top != -1 && kinds[top] == TokenKind.DECLARE) {
+						partners[top] = i;
+						stackSize--;
+					}
+
+					stack[stackSize++] = i;
+
+					break;
+
+				case DECLARE:
+				case LOOP:
+				case RECORD:
+				case SELECT:
+				case DO:
+
+					parenthesisDepth = 0;
+
+					stack[stackSize++] = i;
+
+					break;
+
+				// A plain `end` only closes `begin` and `do` blocks,
+				// possibly leaving statement blocks open inside them,
+				// but never closes a block enclosing a `declare`
+				// block, as it then closes a declaration
+
+				case END:
+
+					parenthesisDepth = 0;
+
+					for (int j = stackSize - 1 ; j >= 0 ; j--) {
+
+						int opening = stack[j];
+
+						if (kinds[opening] == TokenKind.DECLARE) { break; }
+
+						if (kinds[opening] != TokenKind.BEGIN && kinds[opening] != TokenKind.DO) {
+							continue;
+						}
+
+						partners[opening] = i;
+						partners[i]       = opening;
+						parents[i]        = parents[opening];
+						stackSize         = j;
+
+						break;
+
+					}
+
+					break;
+
+				// Other `end` tokens close the innermost block of
+				// the corresponding kind, and the blocks left open
+				// inside it
+
+				default:
+
+					parenthesisDepth = 0;
+
+					TokenKind openingKind = kind.getOpeningKind();
+
+					for (int j = stackSize - 1 ; j >= 0 ; j--) {
+
+						int opening = stack[j];
+
+						if (kinds[opening] != openingKind) { continue; }
+
+						partners[opening] = i;
+						partners[i]       = opening;
+						parents[i]        = parents[opening];
+						stackSize         = j;
+
+						break;
+
+					}
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * Returns the number of recorded tokens in this index, including
+	 * parentheses and unpaired tokens.
+	 *
+	 * @return The number of recorded tokens.
+	 */
+	public int size() { return kinds.length; }
+
+	/**
+	 * Returns the index of the paired block token containing the
+	 * given offset, or ending at the given offset (i.e. with the caret
+	 * right after it), or -1 if there is no such token.
+	 *
+	 * @param offset The offset at which to find a block token.
+	 * @return The index of the block token at the offset, or -1.
+	 */
+	public int findBlockTokenAt(int offset) {
+
+		int token = upperBound(startOffsets, offset) - 1;
+
+		return token >= 0 && partners[token] != -1 && offset <= endOffsets[token] ?
+			token : -1;
+
+	}
+
+	/**
+	 * Returns the text range of the given token.
+	 *
+	 * @param token The index of the token.
+	 * @return The text range of the token.
+	 */
+	@NotNull
+	public TextRange getTokenRange(int token) {
+		return new TextRange(startOffsets[token], endOffsets[token]);
+	}
+
+	/**
+	 * Returns the index of the token paired with the given token, or
+	 * -1 if the given token is unpaired.
+	 *
+	 * @param token The index of the token.
+	 * @return The index of the paired token, or -1.
+	 */
+	public int getPartner(int token) { return partners[token]; }
+
+	/**
+	 * Returns the indexes of all tokens of the block construct the
+	 * given token belongs to, in order. For a `declare` block, these
+	 * are the `declare`, `begin` and `end` tokens, and for any other
+	 * block, the opening and closing tokens.
+	 *
+	 * @param token The index of a block token.
+	 * @return The indexes of the tokens of the construct, or only the
+	 *         given token if it is unpaired.
+	 */
+	@NotNull
+	public int[] getConstructTokens(int token) {
+
+		if (partners[token] == -1) { return new int[] { token }; }
+
+		// Find the first token of the construct
+
+		int first  = Math.min(token, partners[token]);
+		int parent = parents[first];
+
+		if (
+			kinds[first] == TokenKind.BEGIN      &&
+			parent != -1                         &&
+			kinds[parent] == TokenKind.DECLARE   &&
+			partners[parent] == first
+		) { first = parent; }
+
+		// Follow partners from the first token
+
+		if (kinds[first] == TokenKind.DECLARE) {
+
+			int begin = partners[first];
+			int end   = partners[begin];
+
+			return end == -1 ?
+				new int[] { first, begin } : new int[] { first, begin, end };
+
+		}
+
+		return new int[] { first, partners[first] };
+
+	}
+
+	/**
+	 * Returns the text ranges of all closed block constructs in this
+	 * index, from the start of their first token to the end of their
+	 * last token, sorted by start offset. A `declare` block is only
+	 * included if it is closed by an `end` token.
+	 *
+	 * @return The ranges of the block constructs.
+	 */
+	@NotNull
+	public List<TextRange> getBlockRanges() {
+
+		List<TextRange> ranges = new ArrayList<>();
+
+		for (int i = 0 ; i < kinds.length ; i++) {
+
+			// Only consider opening tokens, and skip `begin`
+			// tokens closing `declare` blocks as their block
+			// is part of the `declare` block
+
+			if (partners[i] <= i) { continue; }
+
+			int[] constructTokens = getConstructTokens(i);
+
+			if (constructTokens[0] != i) { continue; }
+
+			int last = constructTokens[constructTokens.length - 1];
+
+			if (kinds[last] == TokenKind.BEGIN) { continue; }
+
+			ranges.add(new TextRange(startOffsets[i], endOffsets[last]));
+
+		}
+
+		return ranges;
+
+	}
+
+	/**
+	 * Returns the text range of the innermost block enclosing the
+	 * given offset, from the start of its opening token to the end
+	 * of its closing token, or null if the offset is not in any block.
+	 *
+	 * @param offset The offset for which to find the enclosing block.
+	 * @return The range of the enclosing block, or null.
+	 */
+	@Nullable
+	public TextRange findEnclosingBlockRange(int offset) {
+
+		int opening = findEnclosingBlock(offset);
+
+		if (opening == -1) { return null; }
+
+		int[] constructTokens = getConstructTokens(opening);
+
+		return new TextRange(
+			startOffsets[constructTokens[0]],
+			endOffsets[constructTokens[constructTokens.length - 1]]
+		);
+
+	}
+
+	/**
+	 * Returns the index of the opening token of the innermost block
+	 * enclosing the given offset, or -1 if the offset is not in any
+	 * block. A block encloses an offset if the offset is within the
+	 * range spanning from the start of its opening token to the end
+	 * of its closing token, excluded.
+	 *
+	 * @param offset The offset for which to find the enclosing block.
+	 * @return The index of the enclosing block's opening token, or -1.
+	 */
+	public int findEnclosingBlock(int offset) {
+
+		// Start from the last token starting at or before the
+		// offset and walk up the enclosing blocks
+
+		int token = upperBound(startOffsets, offset) - 1;
+
+		while (token != -1) {
+
+			int partner = partners[token];
+
+			if (partner != -1) {
+
+				boolean opening = partner > token;
+
+				// Closing tokens enclose the offset if the
+				// offset is inside them
+
+				if (!opening && offset < endOffsets[token]) { return partner; }
+
+				// Opening tokens enclose the offset if their
+				// block ends after the offset
+
+				int closing = kinds[token] == TokenKind.DECLARE ? partners[partner] : partner;
+
+				if (opening && (closing == -1 || offset < endOffsets[closing])) {
+					return token;
+				}
+
+			}
+
+			token = parents[token];
+
+		}
+
+		return -1;
+
+	}
+
+	/**
+	 * Returns the index of the first element of the given sorted array
+	 * that is greater than or equal to the given value.
+	 *
+	 * @param array The sorted array to search.
+	 * @param value The value to search for.
+	 * @return The index of the first element not less than the value.
+	 */
+	private static int lowerBound(@NotNull int[] array, int value) {
+
+		int low  = 0;
+		int high = array.length;
+
+		while (low < high) {
+
+			int middle = (low + high) >>> 1;
+
+			if (array[middle] < value) { low = middle + 1; }
+			else                       { high = middle; }
+
+		}
+
+		return low;
+
+	}
+
+	/**
+	 * Returns the index of the first element of the given sorted array
+	 * that is strictly greater than the given value.
+	 *
+	 * @param array The sorted array to search.
+	 * @param value The value to search for.
+	 * @return The index of the first element greater than the value.
+	 */
+	private static int upperBound(@NotNull int[] array, int value) {
+		return lowerBound(array, value == Integer.MAX_VALUE ? value : value + 1);
+	}
+
+}
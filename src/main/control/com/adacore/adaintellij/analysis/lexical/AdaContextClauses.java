@@ -0,0 +1,102 @@
+package com.adacore.adaintellij.analysis.lexical;
+
+import java.util.Iterator;
+
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.tree.*;
+import org.jetbrains.annotations.*;
+
+import static com.adacore.adaintellij.analysis.lexical.AdaTokenTypes.*;
+
+/**
+ * Lexical analysis of the context clauses (i.e. `with` and `use`
+ * clauses) at the beginning of Ada compilation units.
+ */
+public final class AdaContextClauses {
+
+	/**
+	 * Token set representing keywords that can start a context clause.
+	 */
+	private static final TokenSet CLAUSE_START_TOKEN_SET = TokenSet.create(
+		LIMITED_KEYWORD, PRIVATE_KEYWORD, WITH_KEYWORD, USE_KEYWORD);
+
+	/**
+	 * Token set representing tokens that can appear inside a context
+	 * clause, before its terminating semicolon.
+	 */
+	private static final TokenSet CLAUSE_BODY_TOKEN_SET = TokenSet.orSet(
+		CLAUSE_START_TOKEN_SET,
+		IDENTIFIER_TOKEN_SET,
+		TokenSet.create(FULL_STOP, COMMA, TYPE_KEYWORD, ALL_KEYWORD)
+	);
+
+	/**
+	 * Private default constructor to prevent instantiation.
+	 */
+	private AdaContextClauses() {}
+
+	/**
+	 * Returns the range spanning from the start of the first context
+	 * clause of the given text to the end of the last consecutive
+	 * context clause, or null if the text does not start with context
+	 * clauses. Only the tokens up to the end of the context clauses
+	 * are lexed.
+	 *
+	 * @param text The text to analyse.
+	 * @return The range of the context clauses, or null.
+	 */
+	@Nullable
+	public static TextRange findContextClausesRange(@NotNull CharSequence text) {
+
+		Iterator<AdaLexer.Token> tokens = AdaLexer.textTokens(text);
+
+		int rangeStart  = -1;
+		int rangeEnd    = -1;
+		int clauseStart = -1;
+
+		while (tokens.hasNext()) {
+
+			AdaLexer.Token token     = tokens.next();
+			IElementType   tokenType = token.TOKEN_TYPE;
+
+			// Skip whitespaces and comments
+
+			if (
+				WHITESPACE_TOKEN_SET.contains(tokenType) ||
+				COMMENT_TOKEN_SET.contains(tokenType)
+			) { continue; }
+
+			// Outside a clause, a new clause may start
+
+			if (clauseStart == -1) {
+
+				if (!CLAUSE_START_TOKEN_SET.contains(tokenType)) { break; }
+
+				clauseStart = token.START_OFFSET;
+
+			}
+
+			// Inside a clause, a semicolon ends the clause
+
+			else if (tokenType == SEMICOLON) {
+
+				if (rangeStart == -1) { rangeStart = clauseStart; }
+
+				rangeEnd    = token.END_OFFSET;
+				clauseStart = -1;
+
+			}
+
+			// Any other token that cannot appear in a clause
+			// means that this was not a clause after all (e.g.
+			// `private package`)
+
+			else if (!CLAUSE_BODY_TOKEN_SET.contains(tokenType)) { break; }
+
+		}
+
+		return rangeStart == -1 ? null : new TextRange(rangeStart, rangeEnd);
+
+	}
+
+}
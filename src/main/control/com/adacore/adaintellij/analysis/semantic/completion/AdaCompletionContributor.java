@@ -6,8 +6,8 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import com.intellij.codeInsight.completion.*;
-import com.intellij.codeInsight.lookup.LookupElement;
-import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.codeInsight.lookup.*;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.TextRange;
@@ -15,6 +15,7 @@ import com.intellij.psi.PsiFile;
 import org.jetbrains.annotations.NotNull;
 
 import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionList;
 
 import com.adacore.adaintellij.lsp.AdaLSPDriver;
 import com.adacore.adaintellij.lsp.AdaLSPServer;
@@ -28,12 +29,78 @@ import static com.adacore.adaintellij.lsp.LSPUtils.offsetToPosition;
  */
 public final class AdaCompletionContributor extends CompletionContributor {
 
+	/**
+	 * Renderer of lookup elements representing ALS completion items.
+	 *
+	 * Renders the most complete version of the item available without
+	 * blocking, and resolves the item when it is actually shown in the
+	 * lookup, which is repainted once the item is resolved, so that the
+	 * details of items that are never shown are never requested.
+	 */
+	private static final LookupElementRenderer<LookupElement> ITEM_RENDERER =
+		new LookupElementRenderer<LookupElement>() {
+
+			/**
+			 * @see com.intellij.codeInsight.lookup.LookupElementRenderer#renderElement(LookupElement, LookupElementPresentation)
+			 */
+			@Override
+			public void renderElement(LookupElement element, LookupElementPresentation presentation) {
+
+				AdaCompletionItem adaItem = (AdaCompletionItem)element.getObject();
+				CompletionItem    item    = adaItem.getItem();
+
+				presentation.setItemText(element.getLookupString());
+				presentation.setItemTextBold(true);
+
+				Boolean deprecated = item.getDeprecated();
+
+				presentation.setStrikeout(deprecated != null && deprecated);
+				presentation.setTypeText(item.getDetail());
+
+				// If the item is actually shown and it was not resolved
+				// yet, then resolve it and repaint the active lookup
+
+				if (!presentation.isReal() || adaItem.isResolved()) { return; }
+
+				Project project = adaItem.getProject();
+
+				adaItem.resolveAsync().thenRun(() -> {
+
+					// The item may not have been resolved if the
+					// server is not available, in which case it is
+					// resolved again the next time it is rendered
+
+					if (!adaItem.isResolved()) { return; }
+
+					ApplicationManager.getApplication().invokeLater(() -> {
+
+						LookupEx lookup = LookupManager.getInstance(project).getActiveLookup();
+
+						if (lookup != null) { lookup.getComponent().repaint(); }
+
+					}, project.getDisposed());
+
+				});
+
+			}
+
+		};
+
+	/**
+	 * Cache of the last completion result, reused when completion is
+	 * invoked again while the completed prefix is being extended.
+	 */
+	private final CompletionResultCache<LookupElement> resultCache = new CompletionResultCache<>();
+
 	/**
 	 * @see CompletionContributor#fillCompletionVariants(CompletionParameters, CompletionResultSet)
 	 *
 	 * Makes a `textDocument/completion` request to the ALS to get a
 	 * list of completion items for the current caret position, and
 	 * adds them to the given completion results.
+	 * If the last completion result can be reused for the current
+	 * prefix, then its elements are added instead, to be filtered
+	 * locally by the result's prefix matcher.
 	 */
 	@Override
 	public void fillCompletionVariants(
@@ -49,57 +116,90 @@ public final class AdaCompletionContributor extends CompletionContributor {
 
 		Project project = parameters.getOriginalFile().getProject();
 
-		// Make the request and wait for the result
+		// Compute the start offset of the completed identifier
+
+		String prefix      = result.getPrefixMatcher().getPrefix();
+		int    offset      = parameters.getOffset();
+		int    startOffset = offset - prefix.length();
+
+		long         version = document.getModificationStamp();
+		CharSequence text    = document.getImmutableCharSequence();
+
+		// If the last completion result can be reused, then add
+		// its elements to the given `CompletionResult`
+
+		List<LookupElement> cachedElements =
+			resultCache.get(documentUri, startOffset, version, text, prefix);
+
+		if (cachedElements != null) {
+			result.addAllElements(cachedElements);
+			return;
+		}
+
+		// Otherwise, make the request and wait for the result
 
 		AdaLSPServer lspServer = AdaLSPDriver.getServer(project);
 
 		if (lspServer == null) { return; }
 
-		List<CompletionItem> completionItems =
-			lspServer.completion(documentUri, offsetToPosition(document, parameters.getOffset()));
+		CompletionList completionList =
+			lspServer.completion(documentUri, offsetToPosition(document, offset));
 
 		// Map completion items to instances of `LookupElement`
-		// and add them all to the given `CompletionResult`
-
-		result.addAllElements(
-			completionItems
-				.stream()
-				.map(completionItem -> {
-
-					LookupElementBuilder element =
-						LookupElementBuilder.create(completionItem.getLabel())
-							.withCaseSensitivity(false)
-							.withInsertHandler(new InsertHandler<LookupElement>() {
-								@Override
-								public void handleInsert(@NotNull InsertionContext context, @NotNull LookupElement item) {
-
-									// Ensure the insertion uses the exact text provided from the ALS, including letter casing.
-									context.getDocument().replaceString(
-										context.getStartOffset(),
-										context.getTailOffset(),
-										item.getLookupString()
-									);
-								}
-							})
-							.bold();
-
-					Boolean deprecated = completionItem.getDeprecated();
-
-					if (deprecated != null && deprecated) {
-						element = element.strikeout();
-					}
-
-					String detail = completionItem.getDetail();
-
-					if (detail != null) {
-						element = element.withTypeText(detail, null, false);
-					}
-
-					return element;
-
-				})
-				.collect(Collectors.toList())
-		);
+
+		List<LookupElement> elements = completionList.getItems()
+			.stream()
+			.map(completionItem -> createLookupElement(project, completionItem))
+			.collect(Collectors.toList());
+
+		// Cache the result, and if the server marked it as incomplete,
+		// make sure that completion is restarted as the prefix changes
+		// instead of the result being filtered locally
+
+		boolean complete = !completionList.isIncomplete();
+
+		resultCache.put(documentUri, startOffset, version,
+			text, prefix, complete, elements);
+
+		if (!complete) { result.restartCompletionOnAnyPrefixChange(); }
+
+		// Add the elements to the given `CompletionResult`
+
+		result.addAllElements(elements);
+
+	}
+
+	/**
+	 * Returns a lookup element representing the given completion item.
+	 * The details of the item are rendered as they are available, the
+	 * item being resolved lazily once it is actually shown.
+	 *
+	 * @param project The project in which the item was returned.
+	 * @param completionItem The completion item.
+	 * @return The lookup element.
+	 */
+	@NotNull
+	private static LookupElement createLookupElement(
+		@NotNull Project        project,
+		@NotNull CompletionItem completionItem
+	) {
+
+		return LookupElementBuilder.create(
+				new AdaCompletionItem(project, completionItem), completionItem.getLabel())
+			.withCaseSensitivity(false)
+			.withInsertHandler(new InsertHandler<LookupElement>() {
+				@Override
+				public void handleInsert(@NotNull InsertionContext context, @NotNull LookupElement item) {
+
+					// Ensure the insertion uses the exact text provided from the ALS, including letter casing.
+					context.getDocument().replaceString(
+						context.getStartOffset(),
+						context.getTailOffset(),
+						item.getLookupString()
+					);
+				}
+			})
+			.withRenderer(ITEM_RENDERER);
 
 	}
 
@@ -0,0 +1,128 @@
+package com.adacore.adaintellij.analysis.semantic.completion;
+
+import com.intellij.lang.documentation.AbstractDocumentationProvider;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.FakePsiElement;
+import org.jetbrains.annotations.*;
+
+import org.eclipse.lsp4j.*;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+
+/**
+ * Documentation provider for Ada completion items, powered by the
+ * Ada Language Server (ALS).
+ *
+ * The documentation of a completion item is fetched by resolving the
+ * item when its documentation is requested, typically because it is
+ * selected in the lookup while quick documentation is shown.
+ */
+public final class AdaCompletionDocumentationProvider extends AbstractDocumentationProvider {
+
+	/**
+	 * Element standing for a completion item in the documentation
+	 * framework.
+	 */
+	private static final class CompletionItemElement extends FakePsiElement {
+
+		/**
+		 * The element in the context of which completion was invoked.
+		 */
+		private final PsiElement context;
+
+		/**
+		 * The completion item.
+		 */
+		private final AdaCompletionItem item;
+
+		/**
+		 * Constructs a new CompletionItemElement given a context
+		 * element and a completion item.
+		 *
+		 * @param context The context element.
+		 * @param item The completion item.
+		 */
+		CompletionItemElement(@NotNull PsiElement context, @NotNull AdaCompletionItem item) {
+			this.context = context;
+			this.item    = item;
+		}
+
+		/**
+		 * @see com.intellij.psi.impl.FakePsiElement#getParent()
+		 */
+		@Override
+		public PsiElement getParent() { return context; }
+
+		/**
+		 * @see com.intellij.psi.impl.PsiElementBase#getProject()
+		 */
+		@NotNull
+		@Override
+		public Project getProject() { return item.getProject(); }
+
+		/**
+		 * @see com.intellij.psi.impl.FakePsiElement#getName()
+		 */
+		@NotNull
+		@Override
+		public String getName() { return item.getLabel(); }
+
+	}
+
+	/**
+	 * @see com.intellij.lang.documentation.DocumentationProvider#getDocumentationElementForLookupItem(PsiManager, Object, PsiElement)
+	 */
+	@Nullable
+	@Override
+	public PsiElement getDocumentationElementForLookupItem(
+		PsiManager psiManager,
+		Object     object,
+		PsiElement element
+	) {
+		return object instanceof AdaCompletionItem && element != null ?
+			new CompletionItemElement(element, (AdaCompletionItem)object) : null;
+	}
+
+	/**
+	 * @see com.intellij.lang.documentation.DocumentationProvider#generateDoc(PsiElement, PsiElement)
+	 *
+	 * Resolves the completion item represented by the given element,
+	 * if it was not resolved already, and returns its detail and
+	 * documentation.
+	 */
+	@Nullable
+	@Override
+	public String generateDoc(PsiElement element, @Nullable PsiElement originalElement) {
+
+		if (!(element instanceof CompletionItemElement)) { return null; }
+
+		CompletionItem item = ((CompletionItemElement)element).item.resolve();
+
+		// Get the detail and documentation of the item
+
+		Either<String, MarkupContent> documentation = item.getDocumentation();
+
+		String detail            = item.getDetail();
+		String documentationText = documentation == null ? null :
+			documentation.isLeft() ? documentation.getLeft() : documentation.getRight().getValue();
+
+		if (detail == null && documentationText == null) { return null; }
+
+		// Build the documentation, displaying the text as-is
+
+		StringBuilder builder = new StringBuilder();
+
+		if (detail != null) {
+			builder.append("<pre>").append(StringUtil.escapeXmlEntities(detail)).append("</pre>");
+		}
+
+		if (documentationText != null) {
+			builder.append("<pre>").append(StringUtil.escapeXmlEntities(documentationText)).append("</pre>");
+		}
+
+		return builder.toString();
+
+	}
+
+}
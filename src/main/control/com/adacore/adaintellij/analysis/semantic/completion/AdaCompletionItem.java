@@ -0,0 +1,198 @@
+package com.adacore.adaintellij.analysis.semantic.completion;
+
+import java.util.concurrent.*;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.*;
+
+import org.eclipse.lsp4j.CompletionItem;
+
+import com.adacore.adaintellij.lsp.AdaLSPDriver;
+import com.adacore.adaintellij.lsp.AdaLSPServer;
+
+/**
+ * Completion item returned by the ALS, used as the object of the
+ * corresponding lookup element.
+ *
+ * Completion items may be returned without their details and
+ * documentation, which are then fetched lazily by resolving the
+ * item, only once the item is shown or its documentation is
+ * requested. A successful resolution of the item is made at most
+ * once, its result being kept with the item, while a failed one is
+ * dropped, so that the item is resolved again the next time it is
+ * needed.
+ */
+final class AdaCompletionItem {
+
+	/**
+	 * The interval duration, in milliseconds, between checks for
+	 * cancellation while waiting for the resolution of an item.
+	 */
+	private static final int CHECK_CANCELED_INTERVAL = 100;
+
+	/**
+	 * The project in which the item was returned.
+	 */
+	private final Project project;
+
+	/**
+	 * The completion item as returned in the completion list.
+	 */
+	private final CompletionItem item;
+
+	/**
+	 * The future result of the resolution of the item, or null
+	 * if the item was not resolved yet or if its last resolution
+	 * failed. The future result is itself null if the item could
+	 * not be resolved.
+	 */
+	@Nullable
+	private volatile CompletableFuture<CompletionItem> resolution = null;
+
+	/**
+	 * Constructs a new AdaCompletionItem given a project and
+	 * a completion item.
+	 *
+	 * @param project The project in which the item was returned.
+	 * @param item The completion item.
+	 */
+	AdaCompletionItem(@NotNull Project project, @NotNull CompletionItem item) {
+		this.project = project;
+		this.item    = item;
+	}
+
+	/**
+	 * Returns the project in which the item was returned.
+	 *
+	 * @return The project.
+	 */
+	@NotNull
+	Project getProject() { return project; }
+
+	/**
+	 * Returns the label of the item.
+	 *
+	 * @return The label of the item.
+	 */
+	@NotNull
+	String getLabel() { return item.getLabel(); }
+
+	/**
+	 * Returns the resolved item if it was resolved already, or the
+	 * item as returned in the completion list otherwise. Never blocks.
+	 *
+	 * @return The most complete version of the item available.
+	 */
+	@NotNull
+	CompletionItem getItem() {
+
+		CompletionItem resolvedItem = getResolvedItem(resolution);
+
+		return resolvedItem == null ? item : resolvedItem;
+
+	}
+
+	/**
+	 * Returns whether or not the item was successfully resolved.
+	 *
+	 * @return Whether or not the item was resolved.
+	 */
+	boolean isResolved() { return getResolvedItem(resolution) != null; }
+
+	/**
+	 * Returns the resolved item of the given resolution if it is
+	 * done and successful, or null otherwise.
+	 *
+	 * @param resolution The resolution of the item, or null.
+	 * @return The resolved item, or null.
+	 */
+	@Nullable
+	private static CompletionItem getResolvedItem(@Nullable CompletableFuture<CompletionItem> resolution) {
+		return resolution != null && resolution.isDone() &&
+			!resolution.isCompletedExceptionally() ? resolution.join() : null;
+	}
+
+	/**
+	 * Returns the future resolved item, making a `completionItem/resolve`
+	 * request to the ALS if the item was not resolved yet and is not
+	 * being resolved. The future result is null, or the future completes
+	 * exceptionally, if the item could not be resolved, in which case
+	 * the resolution is not kept, so that it is retried by the next call.
+	 *
+	 * @return The future resolved item.
+	 */
+	@NotNull
+	synchronized CompletableFuture<CompletionItem> resolveAsync() {
+
+		if (resolution != null) { return resolution; }
+
+		AdaLSPServer lspServer = AdaLSPDriver.getServer(project);
+
+		// If the server is not available, then do not keep the result,
+		// so that the item is resolved once it becomes available
+
+		if (lspServer == null) { return CompletableFuture.completedFuture(null); }
+
+		CompletableFuture<CompletionItem> newResolution = lspServer.resolveCompletionItemAsync(item);
+
+		resolution = newResolution;
+
+		// Drop the resolution if it fails
+
+		newResolution.whenComplete((resolvedItem, throwable) -> {
+			if (resolvedItem == null) { dropResolution(newResolution); }
+		});
+
+		return newResolution;
+
+	}
+
+	/**
+	 * Drops the given failed resolution if it is still the current
+	 * resolution of the item.
+	 *
+	 * @param failedResolution The failed resolution.
+	 */
+	private synchronized void dropResolution(@NotNull CompletableFuture<CompletionItem> failedResolution) {
+		if (resolution == failedResolution) { resolution = null; }
+	}
+
+	/**
+	 * Blocking version of `resolveAsync`.
+	 * If the operation within the IntelliJ platform that resulted in
+	 * the resolution is canceled in the meantime, then the wait is
+	 * interrupted, but not the resolution.
+	 * @see AdaCompletionItem#resolveAsync()
+	 *
+	 * @return The resolved item, or the item as returned in the
+	 *         completion list if it could not be resolved.
+	 */
+	@NotNull
+	CompletionItem resolve() {
+
+		CompletableFuture<CompletionItem> future = resolveAsync();
+
+		while (true) {
+
+			try {
+
+				CompletionItem resolvedItem = future.get(CHECK_CANCELED_INTERVAL, TimeUnit.MILLISECONDS);
+
+				return resolvedItem == null ? item : resolvedItem;
+
+			} catch (TimeoutException exception) {
+
+				ProgressManager.checkCanceled();
+
+			} catch (InterruptedException | ExecutionException exception) {
+
+				return item;
+
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,204 @@
+package com.adacore.adaintellij.analysis.semantic.completion;
+
+import java.util.List;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Thread-safe cache of the last completion result, identified by the
+ * document and the start offset of the completed identifier.
+ *
+ * A cached result is reused as-is when completion is invoked again
+ * for the same version of the document and the same prefix. When
+ * the server marked the result as complete, it is also reused while
+ * the prefix is being extended, i.e. when the only changes made to the
+ * document since the result was cached are characters typed at the
+ * end of the prefix, in which case the result is filtered locally by
+ * the prefix matcher instead of being requested again. This is checked
+ * by comparing the current text of the document with the text at the
+ * time of the request, which must only differ by an insertion at the
+ * end of the prefix.
+ *
+ * @param <T> The type of cached completion elements.
+ */
+final class CompletionResultCache<T> {
+
+	/**
+	 * The cached completion result.
+	 */
+	private static final class Entry<T> {
+
+		/**
+		 * The URI of the document.
+		 */
+		final String documentUri;
+
+		/**
+		 * The start offset of the completed identifier.
+		 */
+		final int startOffset;
+
+		/**
+		 * The version of the document, i.e. its modification stamp,
+		 * and its text at the time of the request.
+		 */
+		final long         version;
+		final CharSequence text;
+
+		/**
+		 * The completed prefix at the time of the request.
+		 */
+		final String prefix;
+
+		/**
+		 * Whether or not the server marked the result as complete.
+		 */
+		final boolean complete;
+
+		/**
+		 * The completion elements.
+		 */
+		final List<T> elements;
+
+		/**
+		 * Constructs a new Entry.
+		 */
+		Entry(
+			@NotNull String       documentUri,
+			         int          startOffset,
+			         long         version,
+			@NotNull CharSequence text,
+			@NotNull String       prefix,
+			         boolean      complete,
+			@NotNull List<T>      elements
+		) {
+			this.documentUri = documentUri;
+			this.startOffset = startOffset;
+			this.version     = version;
+			this.text        = text;
+			this.prefix      = prefix;
+			this.complete    = complete;
+			this.elements    = elements;
+		}
+
+	}
+
+	/**
+	 * The cached result, if any.
+	 */
+	@Nullable
+	private Entry<T> entry = null;
+
+	/**
+	 * Returns the cached completion elements if they can be reused for
+	 * a completion in the given document at the given start offset with
+	 * the given prefix.
+	 *
+	 * @param documentUri The URI of the document.
+	 * @param startOffset The start offset of the completed identifier.
+	 * @param version The current version of the document.
+	 * @param text The current text of the document.
+	 * @param prefix The current completed prefix.
+	 * @return The cached elements, or null if they cannot be reused.
+	 */
+	@Nullable
+	synchronized List<T> get(
+		@NotNull String       documentUri,
+		         int          startOffset,
+		         long         version,
+		@NotNull CharSequence text,
+		@NotNull String       prefix
+	) {
+
+		if (
+			entry == null ||
+			!entry.documentUri.equals(documentUri) ||
+			entry.startOffset != startOffset
+		) { return null; }
+
+		// If the document did not change, then the result
+		// can be reused as long as the prefix is the same
+
+		if (entry.version == version) {
+			return entry.prefix.equals(prefix) ? entry.elements : null;
+		}
+
+		// Otherwise, the result can only be reused if it is complete
+		// and the prefix was extended, i.e. the only change made to
+		// the document is an insertion at the end of the prefix
+
+		if (!entry.complete) { return null; }
+
+		int insertionOffset = entry.startOffset + entry.prefix.length();
+		int insertedLength  = prefix.length() - entry.prefix.length();
+
+		boolean prefixExtended =
+			insertedLength >= 0 &&
+			text.length() - entry.text.length() == insertedLength &&
+			insertionOffset <= entry.text.length() &&
+			regionsEqual(text, 0, entry.text, 0, insertionOffset) &&
+			regionsEqual(text, insertionOffset + insertedLength,
+				entry.text, insertionOffset, entry.text.length() - insertionOffset);
+
+		return prefixExtended ? entry.elements : null;
+
+	}
+
+	/**
+	 * Returns whether or not the given regions of the given texts are
+	 * equal. The regions are compared from their ends, where changes
+	 * made while typing are usually found.
+	 *
+	 * @param text The first text.
+	 * @param offset The start offset of the region of the first text.
+	 * @param otherText The second text.
+	 * @param otherOffset The start offset of the region of the second text.
+	 * @param length The length of the regions.
+	 * @return Whether or not the regions are equal.
+	 */
+	private static boolean regionsEqual(
+		@NotNull CharSequence text,
+		         int          offset,
+		@NotNull CharSequence otherText,
+		         int          otherOffset,
+		         int          length
+	) {
+
+		for (int i = length - 1 ; i >= 0 ; i--) {
+			if (text.charAt(offset + i) != otherText.charAt(otherOffset + i)) { return false; }
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * Caches the given completion result, replacing the cached one.
+	 *
+	 * @param documentUri The URI of the document.
+	 * @param startOffset The start offset of the completed identifier.
+	 * @param version The version of the document at the time of the request.
+	 * @param text The immutable text of the document at the time of the request.
+	 * @param prefix The completed prefix at the time of the request.
+	 * @param complete Whether or not the server marked the result as complete.
+	 * @param elements The completion elements.
+	 */
+	synchronized void put(
+		@NotNull String       documentUri,
+		         int          startOffset,
+		         long         version,
+		@NotNull CharSequence text,
+		@NotNull String       prefix,
+		         boolean      complete,
+		@NotNull List<T>      elements
+	) {
+		entry = new Entry<>(documentUri, startOffset, version,
+			text, prefix, complete, elements);
+	}
+
+	/**
+	 * Removes the cached result, if any.
+	 */
+	synchronized void clear() { entry = null; }
+
+}
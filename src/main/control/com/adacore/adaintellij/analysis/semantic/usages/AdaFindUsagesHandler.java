@@ -1,21 +1,29 @@
 package com.adacore.adaintellij.analysis.semantic.usages;
 
 import java.util.*;
-import java.util.stream.*;
+import java.util.stream.Collectors;
 
 import com.intellij.find.findUsages.*;
-import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
+import com.intellij.psi.impl.source.PsiFileImpl;
 import com.intellij.psi.search.SearchScope;
+import com.intellij.psi.tree.TokenSet;
 import com.intellij.usageView.UsageInfo;
 import com.intellij.util.Processor;
 import org.jetbrains.annotations.NotNull;
 
-import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.*;
+import org.eclipse.lsp4j.Range;
 
+import com.adacore.adaintellij.analysis.lexical.*;
+import com.adacore.adaintellij.analysis.syntactic.*;
 import com.adacore.adaintellij.lsp.*;
 
 import static com.adacore.adaintellij.Utils.*;
@@ -27,6 +35,13 @@ import static com.adacore.adaintellij.lsp.LSPUtils.*;
  */
 public final class AdaFindUsagesHandler extends FindUsagesHandler {
 
+	/**
+	 * Types of the tokens that may be referenced by name, i.e.
+	 * identifiers and operator symbols.
+	 */
+	private static final TokenSet NAME_TOKEN_SET = TokenSet.orSet(
+		AdaTokenTypes.IDENTIFIER_TOKEN_SET, AdaTokenTypes.STRING_LITERAL_TOKEN_SET);
+
 	/**
 	 * The project in which this handler is used.
 	 */
@@ -47,21 +62,74 @@ public final class AdaFindUsagesHandler extends FindUsagesHandler {
 	 * processor. This method is used by the IDE when the standard
 	 * find-usages action is called.
 	 *
+	 * Usages are passed to the processor file by file as soon as the
+	 * usages of each file are created, instead of once all of them are
+	 * created, so that usages show up progressively in large searches.
+	 * Read access is only held while the locations of a file are mapped
+	 * to references and while its usages are processed, but not while
+	 * waiting for those references to be resolved, and the search stops
+	 * as soon as it is canceled or the processor asks to stop.
+	 * @see AdaFindUsagesHandler#toTextUsages(String, List)
+	 *
 	 * @param element The element for which to find usages.
 	 * @param processor The processor of found usages.
 	 * @param options The find-usages options.
-	 * @return The boolean value true.
+	 * @return Whether or not all usages were processed.
 	 */
 	@Override
 	public boolean processElementUsages(
-		@NotNull PsiElement           element,
+		@NotNull PsiElement                   element,
 		@NotNull Processor<? super UsageInfo> processor,
-		@NotNull FindUsagesOptions    options
+		@NotNull FindUsagesOptions            options
 	) {
 
-		ApplicationManager.getApplication().runReadAction(() ->
-			findReferences(element, false).forEach(reference ->
-				processor.process(new UsageInfo(reference.getElement()))));
+		// Get the locations of references, grouped by file in the
+		// order in which files were returned by the server
+
+		Map<String, List<Location>> fileLocations = new LinkedHashMap<>();
+
+		findReferenceLocations(element, false).forEach(location ->
+			fileLocations.computeIfAbsent(location.getUri(), uri -> new ArrayList<>()).add(location));
+
+		// Process the usages of each file in turn
+
+		for (List<Location> locations : fileLocations.values()) {
+
+			ProgressManager.checkCanceled();
+
+			String fileUri = locations.get(0).getUri();
+
+			// If the file is already parsed, then map the locations
+			// to references and resolve them, which allows to determine
+			// whether usages are read or write accesses
+
+			List<PsiReference> references = ReadAction.compute(() ->
+				isParsed(fileUri) ? toReferences(locations) : null);
+
+			if (references != null) { resolveReferences(references); }
+
+			// Create the usages of the file and process them
+
+			boolean proceed = ReadAction.compute(() -> {
+
+				List<UsageInfo> usages = references == null ? toTextUsages(fileUri, locations) :
+					references
+						.stream()
+						.filter(reference -> reference.getElement().isValid())
+						.map(reference -> new UsageInfo(reference.getElement()))
+						.collect(Collectors.toList());
+
+				for (UsageInfo usage : usages) {
+					if (!processor.process(usage)) { return false; }
+				}
+
+				return true;
+
+			});
+
+			if (!proceed) { return false; }
+
+		}
 
 		return true;
 
@@ -70,7 +138,8 @@ public final class AdaFindUsagesHandler extends FindUsagesHandler {
 	/**
 	 * Finds references of the given target element in the given search
 	 * scope, specifically for highlighting those references in the open
-	 * document editor, and returns them in a collection.
+	 * document editor, and returns them in a collection. Read access is
+	 * not held while waiting for the server.
 	 *
 	 * @param target The target to which to find references.
 	 * @param searchScope The scope in which to find references.
@@ -82,67 +151,239 @@ public final class AdaFindUsagesHandler extends FindUsagesHandler {
 		@NotNull PsiElement  target,
 		@NotNull SearchScope searchScope
 	) {
-		return findReferences(target, true)
-			.filter(reference -> searchScope.contains(
+
+		// Get the locations of references and map them to
+		// references, then resolve those references
+
+		List<Location> locations = findReferenceLocations(target, true);
+
+		List<PsiReference> references = ReadAction.compute(() -> toReferences(locations));
+
+		resolveReferences(references);
+
+		// Keep the references that are still valid and
+		// are in the search scope
+
+		return ReadAction.compute(() -> references
+			.stream()
+			.filter(reference -> reference.getElement().isValid() && searchScope.contains(
 				reference.getElement().getContainingFile().getVirtualFile()))
-			.collect(Collectors.toSet());
+			.collect(Collectors.toSet()));
+
 	}
 
 	/**
-	 * General purpose method that finds references to the given target
-	 * element.
 	 * Makes a `textDocument/references` request to the ALS to get the
-	 * list of references to the given element, and returns them as a
-	 * stream.
+	 * locations of references to the given target element, and returns
+	 * them. Read access is not held while waiting for the server.
 	 *
 	 * @param target The target to which to find references.
 	 * @param includeDefinition Whether or not to include the target
 	 *                          element itself with the returned
 	 *                          references.
+	 * @return The locations of references to the target element.
 	 */
 	@NotNull
-	private Stream<PsiReference> findReferences(
+	private List<Location> findReferenceLocations(
 		@NotNull PsiElement target,
 		         boolean    includeDefinition
 	) {
 
-		PsiFile  file        = target.getContainingFile();
-		Document document    = getPsiFileDocument(file);
-		String   documentUri = file.getVirtualFile().getUrl();
+		// Get the document URI and position of the target
 
-		if (document == null) { return Stream.empty(); }
+		TextDocumentPositionParams params = ReadAction.compute(() -> {
+
+			PsiFile  file     = target.getContainingFile();
+			Document document = getPsiFileDocument(file);
+
+			return document == null ? null : new TextDocumentPositionParams(
+				new TextDocumentIdentifier(file.getVirtualFile().getUrl()),
+				offsetToPosition(document, target.getTextOffset()));
+
+		});
+
+		if (params == null) { return Collections.emptyList(); }
 
 		// Make the request and wait for the result
 
 		AdaLSPServer lspServer = AdaLSPDriver.getServer(project);
 
-		if (lspServer == null) { return Stream.empty(); }
+		if (lspServer == null) { return Collections.emptyList(); }
+
+		return lspServer.references(
+			params.getTextDocument().getUri(), params.getPosition(), includeDefinition);
+
+	}
+
+	/**
+	 * Returns whether or not the file with the given URI exists and
+	 * is already parsed.
+	 * Must be called with read access.
+	 *
+	 * @param fileUri The URI of the file.
+	 * @return Whether or not the file is parsed.
+	 */
+	private boolean isParsed(@NotNull String fileUri) {
+
+		VirtualFile file    = findFileByUrlString(fileUri);
+		PsiFile     psiFile = file == null ? null : PsiManager.getInstance(project).findFile(file);
+
+		return psiFile != null &&
+			(!(psiFile instanceof PsiFileImpl) || ((PsiFileImpl)psiFile).isContentsLoaded());
+
+	}
+
+	/**
+	 * Returns usages corresponding to the given reference locations in
+	 * the file with the given URI, created from the ranges of those
+	 * locations in the text of the file, so that the file is neither
+	 * parsed nor loaded in a document, its PSI elements being only
+	 * created once the platform needs them, typically when the user
+	 * navigates to a usage. Ranges are checked to cover a single
+	 * identifier or operator symbol by lexing them, which discards
+	 * stale locations.
+	 * Must be called with read access.
+	 *
+	 * @param fileUri The URI of the file.
+	 * @param locations The locations of references in the file.
+	 * @return The corresponding usages.
+	 */
+	@NotNull
+	private List<UsageInfo> toTextUsages(@NotNull String fileUri, @NotNull List<Location> locations) {
+
+		VirtualFile file    = findFileByUrlString(fileUri);
+		PsiFile     psiFile = file == null ? null : PsiManager.getInstance(project).findFile(file);
+
+		if (psiFile == null) { return Collections.emptyList(); }
+
+		// Get the text of the file, from its document if it is
+		// loaded as it may contain unsaved changes
+
+		Document     document = FileDocumentManager.getInstance().getCachedDocument(file);
+		CharSequence text     = document != null ?
+			document.getImmutableCharSequence() : LoadTextUtil.loadText(file);
+
+		TextPositions positions = new TextPositions(text);
+
+		// Create a usage for every location covering a name
+
+		List<UsageInfo> usages = new ArrayList<>(locations.size());
+
+		for (Location location : locations) {
+
+			Range range = location.getRange();
 
-		List<Location> referenceLocations = lspServer.references(
-			documentUri, offsetToPosition(document, target.getTextOffset()), includeDefinition);
+			int startOffset = positions.positionToOffset(
+				range.getStart().getLine(), range.getStart().getCharacter());
+			int endOffset   = positions.positionToOffset(
+				range.getEnd().getLine(), range.getEnd().getCharacter());
+
+			if (startOffset < 0 || endOffset <= startOffset) { continue; }
+
+			AdaLexer.Token token = AdaLexer.firstToken(text.subSequence(startOffset, endOffset));
+
+			if (
+				token == null ||
+				token.END_OFFSET != endOffset - startOffset ||
+				!NAME_TOKEN_SET.contains(token.TOKEN_TYPE)
+			) { continue; }
+
+			usages.add(new UsageInfo(psiFile, startOffset, endOffset));
+
+		}
+
+		return usages;
+
+	}
+
+	/**
+	 * Maps the given reference locations to PSI references.
+	 * Locations are grouped by file so that the references of each
+	 * Ada file are looked up at once in its offset index.
+	 * Must be called with read access.
+	 *
+	 * @param locations The locations of references.
+	 * @return The references at the given locations.
+	 */
+	@NotNull
+	private List<PsiReference> toReferences(@NotNull List<Location> locations) {
 
-		// Map the returned locations to PSI references and
-		// return them as a stream
+		// Group the locations by file
 
-		return referenceLocations
+		Map<String, List<Location>> fileLocations = locations
 			.stream()
-			.map(location -> {
+			.collect(Collectors.groupingBy(Location::getUri, LinkedHashMap::new, Collectors.toList()));
+
+		List<PsiReference> references = new ArrayList<>(locations.size());
+
+		// For each file...
+
+		fileLocations.forEach((uri, uriLocations) -> {
+
+			VirtualFile locationFile = findFileByUrlString(uri);
+
+			if (locationFile == null) { return; }
+
+			Document locationDocument = getVirtualFileDocument(locationFile);
+			PsiFile  locationPsiFile  = getVirtualFilePsiFile(project, locationFile);
+
+			if (locationDocument == null || locationPsiFile == null) { return; }
+
+			int[] offsets = new int[uriLocations.size()];
+
+			for (int i = 0 ; i < offsets.length ; i++) {
+				offsets[i] = positionToOffset(locationDocument, uriLocations.get(i).getRange().getStart());
+			}
+
+			// Use the offset index of Ada files to find all
+			// references at once instead of descending the
+			// tree for every location
 
-				VirtualFile locationFile = findFileByUrlString(location.getUri());
+			if (locationPsiFile instanceof AdaPsiFile) {
 
-				if (locationFile == null) { return null; }
+				AdaPsiElement[] elements =
+					((AdaPsiFile)locationPsiFile).getElementIndex().findElementsAt(offsets);
 
-				Document locationDocument = getVirtualFileDocument(locationFile);
-				PsiFile  locationPsiFile  = getVirtualFilePsiFile(project, locationFile);
+				for (AdaPsiElement element : elements) {
+					if (element instanceof AdaPsiReference) {
+						references.add((AdaPsiReference)element);
+					}
+				}
 
-				if (locationDocument == null || locationPsiFile == null) { return null; }
+			} else {
 
-				return locationPsiFile.findReferenceAt(
-					positionToOffset(locationDocument, location.getRange().getStart()));
+				for (int offset : offsets) {
 
-			})
-			.filter(Objects::nonNull);
+					PsiReference reference = locationPsiFile.findReferenceAt(offset);
 
+					if (reference != null) { references.add(reference); }
+
+				}
+
+			}
+
+		});
+
+		return references;
+
+	}
+
+	/**
+	 * Resolves all of the given references at once, as consumers of
+	 * usages (e.g. the read/write access detector) resolve them one
+	 * by one.
+	 * Must be called without read access, so that it is not held
+	 * while waiting for the server.
+	 * @see AdaReferenceBatchResolver#resolveAll(Collection)
+	 *
+	 * @param references The references to resolve.
+	 */
+	private static void resolveReferences(@NotNull List<PsiReference> references) {
+		AdaReferenceBatchResolver.resolveAll(references
+			.stream()
+			.filter(reference -> reference instanceof AdaPsiReference)
+			.map(reference -> (AdaPsiReference)reference)
+			.collect(Collectors.toList()));
 	}
 
 }
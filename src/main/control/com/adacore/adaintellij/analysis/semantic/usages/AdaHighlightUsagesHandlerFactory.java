@@ -0,0 +1,134 @@
+package com.adacore.adaintellij.analysis.semantic.usages;
+
+import java.util.*;
+
+import com.intellij.codeInsight.highlighting.*;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.Consumer;
+import org.jetbrains.annotations.*;
+
+import org.eclipse.lsp4j.*;
+import org.eclipse.lsp4j.Range;
+
+import com.adacore.adaintellij.analysis.syntactic.*;
+import com.adacore.adaintellij.lsp.*;
+
+import static com.adacore.adaintellij.Utils.*;
+import static com.adacore.adaintellij.lsp.LSPUtils.*;
+
+/**
+ * Highlight-usages handler factory for Ada identifiers, powered by the
+ * Ada Language Server (ALS).
+ *
+ * When the caret is on an identifier, its usages in the same file are
+ * highlighted using a `textDocument/documentHighlight` request, which
+ * only involves the file being edited, instead of finding references
+ * to the identifier across the whole project.
+ */
+public final class AdaHighlightUsagesHandlerFactory extends HighlightUsagesHandlerFactoryBase {
+
+	/**
+	 * @see com.intellij.codeInsight.highlighting.HighlightUsagesHandlerFactoryBase#createHighlightUsagesHandler(Editor, PsiFile, PsiElement)
+	 */
+	@Nullable
+	@Override
+	public HighlightUsagesHandlerBase createHighlightUsagesHandler(
+		@NotNull Editor     editor,
+		@NotNull PsiFile    file,
+		@NotNull PsiElement target
+	) {
+
+		if (!(file instanceof AdaPsiFile)) { return null; }
+
+		// Get the identifier at the caret, if any
+
+		AdaPsiReference reference = PsiTreeUtil.getParentOfType(target, AdaPsiReference.class, false);
+
+		if (reference == null) { return null; }
+
+		VirtualFile virtualFile = getPsiFileVirtualFile(file);
+
+		if (virtualFile == null) { return null; }
+
+		String   documentUri = virtualFile.getUrl();
+		Document document    = editor.getDocument();
+
+		// Use the start of the identifier as request position, so
+		// that the result is shared by all caret positions within
+		// the identifier
+
+		Position position = offsetToPosition(document, reference.getTextRange().getStartOffset());
+
+		// Return a handler highlighting the usages of the
+		// identifier returned by the ALS
+
+		return new HighlightUsagesHandlerBase<PsiElement>(editor, file) {
+
+			/**
+			 * @see com.intellij.codeInsight.highlighting.HighlightUsagesHandlerBase#getTargets()
+			 */
+			@Override
+			public List<PsiElement> getTargets() {
+				return Collections.singletonList(reference);
+			}
+
+			/**
+			 * @see com.intellij.codeInsight.highlighting.HighlightUsagesHandlerBase#selectTargets(List, Consumer)
+			 */
+			@Override
+			protected void selectTargets(List<PsiElement> targets, Consumer<List<PsiElement>> selectionConsumer) {
+				selectionConsumer.consume(targets);
+			}
+
+			/**
+			 * @see com.intellij.codeInsight.highlighting.HighlightUsagesHandlerBase#computeUsages(List)
+			 */
+			@Override
+			public void computeUsages(List<PsiElement> targets) {
+
+				AdaLSPServer lspServer = AdaLSPDriver.getServer(file.getProject());
+
+				if (lspServer == null) { return; }
+
+				// Make the request and wait for the result
+
+				List<DocumentHighlight> highlights = lspServer.documentHighlight(documentUri, position);
+
+				// Add the highlighted ranges to the read or write
+				// usages depending on their kind
+
+				int documentLength = document.getTextLength();
+
+				for (DocumentHighlight highlight : highlights) {
+
+					Range range = highlight.getRange();
+
+					if (range == null || range.getEnd().getLine() >= document.getLineCount()) { continue; }
+
+					int startOffset = Math.min(positionToOffset(document, range.getStart()), documentLength);
+					int endOffset   = Math.min(positionToOffset(document, range.getEnd()), documentLength);
+
+					if (endOffset < startOffset) { continue; }
+
+					TextRange textRange = new TextRange(startOffset, endOffset);
+
+					if (highlight.getKind() == DocumentHighlightKind.Write) {
+						myWriteUsages.add(textRange);
+					} else {
+						myReadUsages.add(textRange);
+					}
+
+				}
+
+			}
+
+		};
+
+	}
+
+}
@@ -1,18 +1,89 @@
 package com.adacore.adaintellij.analysis.semantic.usages;
 
-import com.intellij.psi.PsiElement;
+import java.util.*;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.*;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.*;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.search.SearchScope;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.refactoring.listeners.RefactoringElementListener;
 import com.intellij.refactoring.rename.RenamePsiElementProcessor;
 import com.intellij.usageView.UsageInfo;
 import org.jetbrains.annotations.*;
 
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.WorkspaceEdit;
+
 import com.adacore.adaintellij.analysis.syntactic.*;
+import com.adacore.adaintellij.lsp.*;
+
+import static com.adacore.adaintellij.Utils.*;
+import static com.adacore.adaintellij.lsp.LSPUtils.offsetToPosition;
 
 /**
  * Processor of renaming operations over Ada PSI elements.
+ *
+ * When the ALS supports it, renaming is performed by the server by
+ * means of a `textDocument/rename` request, made while preparing the
+ * renaming, the resulting workspace edit then being applied in place
+ * of renaming individual usages. This avoids both the client-side
+ * reference search and the reparse of a file after the renaming of
+ * every single usage in it, as the edits of each file are applied
+ * together and each file is committed once.
+ * Otherwise, usages found client-side are renamed one by one.
  */
 public class AdaRenamePsiElementProcessor extends RenamePsiElementProcessor {
 
+	/**
+	 * A workspace edit returned by the ALS for the renaming of an
+	 * element, waiting to be applied.
+	 */
+	private static final class PendingRename {
+
+		/**
+		 * The new name of the element.
+		 */
+		final String newName;
+
+		/**
+		 * The workspace edit performing the renaming.
+		 */
+		final WorkspaceEdit workspaceEdit;
+
+		/**
+		 * The PSI modification count at the time of the request.
+		 */
+		final long modificationCount;
+
+		/**
+		 * Constructs a new PendingRename given a new name, a workspace
+		 * edit and a PSI modification count.
+		 *
+		 * @param newName The new name of the element.
+		 * @param workspaceEdit The workspace edit performing the renaming.
+		 * @param modificationCount The PSI modification count.
+		 */
+		PendingRename(@NotNull String newName, @NotNull WorkspaceEdit workspaceEdit, long modificationCount) {
+			this.newName           = newName;
+			this.workspaceEdit     = workspaceEdit;
+			this.modificationCount = modificationCount;
+		}
+
+	}
+
+	/**
+	 * Key used to attach the pending server-side renaming of an element
+	 * to that element, between the preparation of the renaming and the
+	 * actual renaming.
+	 */
+	private static final Key<PendingRename> PENDING_RENAME_KEY =
+		Key.create("com.adacore.adaintellij.analysis.semantic.usages.PendingRename");
+
 	/**
 	 * Returns whether or not the given element can be renamed.
 	 *
@@ -31,11 +102,174 @@ public class AdaRenamePsiElementProcessor extends RenamePsiElementProcessor {
 		return canRenameElement(element);
 	}
 
+	/**
+	 * @see com.intellij.refactoring.rename.RenamePsiElementProcessor#prepareRenaming(PsiElement, String, Map)
+	 *
+	 * If the ALS supports renaming, then the renaming of the given
+	 * element is requested from the ALS, and the resulting workspace
+	 * edit is kept with the element until it is actually renamed.
+	 * When called from the EDT, the request is made under a modal
+	 * progress, so that the UI is not frozen while waiting for the ALS
+	 * and the user can cancel the request, in which case the element
+	 * is renamed client-side.
+	 */
+	@Override
+	public void prepareRenaming(
+		@NotNull PsiElement              element,
+		@NotNull String                  newName,
+		@NotNull Map<PsiElement, String> allRenames
+	) {
+
+		element.putUserData(PENDING_RENAME_KEY, null);
+
+		Project      project   = element.getProject();
+		AdaLSPServer lspServer = AdaLSPDriver.getServer(project);
+
+		if (lspServer == null || !lspServer.supportsRename()) { return; }
+
+		// Get the document and position of the element
+
+		PsiFile     psiFile  = element.getContainingFile();
+		VirtualFile file     = psiFile == null ? null : getPsiFileVirtualFile(psiFile);
+		Document    document = psiFile == null ? null : getPsiFileDocument(psiFile);
+
+		if (file == null || document == null) { return; }
+
+		long modificationCount = PsiModificationTracker.SERVICE.getInstance(project).getModificationCount();
+
+		String   documentUri = file.getUrl();
+		Position position    = offsetToPosition(document, element.getTextRange().getStartOffset());
+
+		// Make the request, canceling it if the progress is canceled
+
+		Ref<WorkspaceEdit> editRef = Ref.create();
+		Runnable           request = () -> editRef.set(lspServer.rename(documentUri, position, newName));
+
+		if (ApplicationManager.getApplication().isDispatchThread()) {
+			if (!ProgressManager.getInstance().runProcessWithProgressSynchronously(
+				request, "Renaming " + element.getText(), true, project)) { return; }
+		} else {
+			request.run();
+		}
+
+		// Keep the result with the element
+
+		WorkspaceEdit workspaceEdit = editRef.get();
+
+		if (workspaceEdit == null) { return; }
+
+		element.putUserData(PENDING_RENAME_KEY,
+			new PendingRename(newName, workspaceEdit, modificationCount));
+
+	}
+
+	/**
+	 * @see com.intellij.refactoring.rename.RenamePsiElementProcessor#findReferences(PsiElement, SearchScope, boolean)
+	 *
+	 * References are not searched client-side if the renaming of the
+	 * given element is performed by the ALS.
+	 */
+	@NotNull
+	@Override
+	public Collection<PsiReference> findReferences(
+		@NotNull PsiElement  element,
+		@NotNull SearchScope searchScope,
+		         boolean     searchInCommentsAndStrings
+	) {
+		return element.getUserData(PENDING_RENAME_KEY) != null ? Collections.emptyList() :
+			super.findReferences(element, searchScope, searchInCommentsAndStrings);
+	}
+
 	/**
 	 * Performs the actual process of renaming the given element
 	 * to the given name, as well as the given usages of that
 	 * element, and notifies the given refactoring listener.
 	 *
+	 * If the renaming was performed by the ALS while it was being
+	 * prepared, and the project was not modified since, then the
+	 * resulting workspace edit is applied and the given usages are
+	 * ignored. Otherwise, the element and its usages are renamed
+	 * client-side.
+	 *
+	 * @param element The element to rename.
+	 * @param newName The new element name.
+	 * @param usages The element's usages to rename.
+	 * @param listener Refactoring listener to be notified.
+	 */
+	@Override
+	public void renameElement(
+		@NotNull  PsiElement                 element,
+		@NotNull  String                     newName,
+		@NotNull  UsageInfo[]                usages,
+		@Nullable RefactoringElementListener listener
+	) {
+
+		PendingRename pendingRename = element.getUserData(PENDING_RENAME_KEY);
+
+		element.putUserData(PENDING_RENAME_KEY, null);
+
+		if (
+			pendingRename != null &&
+			pendingRename.newName.equals(newName) &&
+			pendingRename.modificationCount ==
+				PsiModificationTracker.SERVICE.getInstance(element.getProject()).getModificationCount() &&
+			applyServerRename(element, pendingRename.workspaceEdit, listener)
+		) { return; }
+
+		renameElementLocally(element, newName, usages, listener);
+
+	}
+
+	/**
+	 * Applies the given workspace edit returned by the ALS for the
+	 * renaming of the given element, and notifies the given refactoring
+	 * listener with the renamed element.
+	 *
+	 * @param element The element to rename.
+	 * @param workspaceEdit The workspace edit performing the renaming.
+	 * @param listener Refactoring listener to be notified.
+	 * @return Whether or not the workspace edit was applied.
+	 */
+	private static boolean applyServerRename(
+		@NotNull  PsiElement                 element,
+		@NotNull  WorkspaceEdit              workspaceEdit,
+		@Nullable RefactoringElementListener listener
+	) {
+
+		PsiFile  psiFile  = element.getContainingFile();
+		Document document = psiFile == null ? null : getPsiFileDocument(psiFile);
+
+		if (document == null) { return false; }
+
+		// Track the element's range across the edit, so that the
+		// renamed element can be found once the edit is applied
+
+		RangeMarker elementMarker = document.createRangeMarker(element.getTextRange());
+
+		try {
+
+			if (!WorkspaceEditApplier.apply(element.getProject(), workspaceEdit)) { return false; }
+
+			if (listener == null || !elementMarker.isValid() || !psiFile.isValid()) { return true; }
+
+			PsiElement    renamedElement = psiFile.findElementAt(elementMarker.getStartOffset());
+			AdaPsiElement adaPsiElement  = renamedElement == null ? null :
+				AdaPsiElement.getFrom(renamedElement);
+
+			if (adaPsiElement != null) { listener.elementRenamed(adaPsiElement); }
+
+			return true;
+
+		} finally {
+			elementMarker.dispose();
+		}
+
+	}
+
+	/**
+	 * Renames the given element and the given usages of that element
+	 * client-side, and notifies the given refactoring listener.
+	 *
 	 * This method seems to be called with an empty array of usages
 	 * when the rename action is called from one of the usages,
 	 * instead of the declaration itself, so in that case we manually
@@ -49,8 +283,7 @@ public class AdaRenamePsiElementProcessor extends RenamePsiElementProcessor {
 	 * @param usages The element's usages to rename.
 	 * @param listener Refactoring listener to be notified.
 	 */
-	@Override
-	public void renameElement(
+	private void renameElementLocally(
 		@NotNull  PsiElement                 element,
 		@NotNull  String                     newName,
 		@NotNull  UsageInfo[]                usages,
@@ -0,0 +1,86 @@
+package com.adacore.adaintellij.analysis.semantic.usages;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Positions in a raw text, used to translate LSP positions, i.e.
+ * zero-based line and character numbers, to offsets in files of
+ * which no document is loaded.
+ *
+ * Lines are separated by line feeds, as is the case of texts loaded
+ * by the IntelliJ platform, which normalizes line separators.
+ */
+final class TextPositions {
+
+	/**
+	 * The text.
+	 */
+	private final CharSequence text;
+
+	/**
+	 * The offsets at which the lines of the text start.
+	 */
+	private final int[] lineStartOffsets;
+
+	/**
+	 * Constructs a new TextPositions given a text, scanning the text
+	 * once for line starts.
+	 *
+	 * @param text The text.
+	 */
+	TextPositions(@NotNull CharSequence text) {
+
+		int[] offsets   = new int[16];
+		int   lineCount = 1;
+
+		for (int offset = 0 ; offset < text.length() ; offset++) {
+
+			if (text.charAt(offset) != '\n') { continue; }
+
+			if (lineCount == offsets.length) { offsets = Arrays.copyOf(offsets, lineCount * 2); }
+
+			offsets[lineCount++] = offset + 1;
+
+		}
+
+		this.text             = text;
+		this.lineStartOffsets = Arrays.copyOf(offsets, lineCount);
+
+	}
+
+	/**
+	 * Returns the number of lines of the text.
+	 *
+	 * @return The number of lines.
+	 */
+	int getLineCount() { return lineStartOffsets.length; }
+
+	/**
+	 * Returns the offset corresponding to the given position in the
+	 * text, or -1 if the position is out of the text's bounds, i.e.
+	 * if the line does not exist or if the character is beyond the
+	 * end of the line.
+	 *
+	 * @param line The zero-based line of the position.
+	 * @param character The zero-based character of the position in its line.
+	 * @return The corresponding offset, or -1.
+	 */
+	int positionToOffset(int line, int character) {
+
+		if (line < 0 || line >= lineStartOffsets.length || character < 0) { return -1; }
+
+		// The end of a line is the offset of its line feed, or the
+		// end of the text for the last line
+
+		int lineEndOffset = line + 1 < lineStartOffsets.length ?
+			lineStartOffsets[line + 1] - 1 : text.length();
+
+		int offset = lineStartOffsets[line] + character;
+
+		return offset <= lineEndOffset ? offset : -1;
+
+	}
+
+}
@@ -0,0 +1,436 @@
+package com.adacore.adaintellij.analysis.syntactic;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.ProjectComponent;
+import com.intellij.openapi.editor.*;
+import com.intellij.openapi.editor.event.*;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.Alarm;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.*;
+
+import org.eclipse.lsp4j.TextDocumentPositionParams;
+
+import com.adacore.adaintellij.file.AdaFileType;
+import com.adacore.adaintellij.lsp.*;
+
+/**
+ * Prefetcher of the definitions of references visible in editors.
+ *
+ * Once an editor showing an Ada file stays idle for a short while,
+ * i.e. once it is neither scrolled nor edited, the references in its
+ * visible area are resolved in the background by means of background
+ * `textDocument/definition` requests, which warms the LSP server's
+ * definition cache so that navigating from those references does not
+ * require a round-trip to the ALS at the moment the user acts.
+ *
+ * Prefetching is bounded both in the number of references resolved
+ * per visible area and in the number of requests in flight, and is
+ * canceled as soon as the editor is scrolled or a document is edited.
+ */
+public final class AdaDefinitionPrefetcher implements ProjectComponent {
+
+	/**
+	 * The duration, in milliseconds, for which an editor must stay
+	 * idle before references in its visible area are prefetched.
+	 */
+	static final int IDLE_DELAY = 500;
+
+	/**
+	 * The maximum number of references prefetched per visible area.
+	 */
+	static final int MAX_PREFETCHED_REFERENCES = 64;
+
+	/**
+	 * The maximum number of prefetch requests in flight at once.
+	 */
+	static final int MAX_CONCURRENT_REQUESTS = 2;
+
+	/**
+	 * A prefetch of the references of a visible area.
+	 */
+	private static final class Prefetch {
+
+		/**
+		 * The LSP server to which requests are made.
+		 */
+		final AdaLSPServer lspServer;
+
+		/**
+		 * The parameters of the requests that were not made yet.
+		 */
+		final Queue<TextDocumentPositionParams> pendingParams;
+
+		/**
+		 * The requests in flight.
+		 */
+		final Set<CompletableFuture<?>> inFlightRequests = new HashSet<>();
+
+		/**
+		 * Whether or not the prefetch was canceled.
+		 * All accesses to the fields of this prefetch are
+		 * synchronized on the prefetch.
+		 */
+		boolean canceled = false;
+
+		/**
+		 * Constructs a new Prefetch given an LSP server and the
+		 * parameters of the requests to make.
+		 *
+		 * @param lspServer The LSP server.
+		 * @param params The parameters of the requests.
+		 */
+		Prefetch(@NotNull AdaLSPServer lspServer, @NotNull List<TextDocumentPositionParams> params) {
+			this.lspServer     = lspServer;
+			this.pendingParams = new ArrayDeque<>(params);
+		}
+
+		/**
+		 * Makes pending requests as long as the maximum number of
+		 * requests in flight is not reached.
+		 */
+		void makeNextRequests() {
+
+			while (true) {
+
+				TextDocumentPositionParams params;
+
+				synchronized (this) {
+
+					if (canceled || inFlightRequests.size() >= MAX_CONCURRENT_REQUESTS) { return; }
+
+					params = pendingParams.poll();
+
+					if (params == null) { return; }
+
+				}
+
+				CompletableFuture<?> future = lspServer.prefetchDefinitionAsync(
+					params.getTextDocument().getUri(), params.getPosition());
+
+				synchronized (this) {
+
+					if (future.isDone()) { continue; }
+
+					inFlightRequests.add(future);
+
+				}
+
+				future.whenComplete((location, throwable) -> {
+
+					synchronized (this) { inFlightRequests.remove(future); }
+
+					makeNextRequests();
+
+				});
+
+			}
+
+		}
+
+		/**
+		 * Cancels the prefetch, including its requests in flight.
+		 */
+		void cancel() {
+
+			List<CompletableFuture<?>> requests;
+
+			synchronized (this) {
+
+				canceled = true;
+
+				pendingParams.clear();
+
+				requests = new ArrayList<>(inFlightRequests);
+
+			}
+
+			requests.forEach(request -> request.cancel(true));
+
+		}
+
+	}
+
+	/**
+	 * The project to which this prefetcher belongs.
+	 */
+	private final Project project;
+
+	/**
+	 * Alarm scheduling prefetches once editors are idle.
+	 */
+	private final Alarm idleAlarm;
+
+	/**
+	 * The current prefetch, if any.
+	 */
+	@Nullable
+	private Prefetch currentPrefetch = null;
+
+	/**
+	 * The generation of prefetches, incremented whenever prefetching
+	 * is rescheduled or stopped, so that prefetches scheduled before
+	 * do not start. Guarded by this prefetcher.
+	 */
+	private long generation = 0;
+
+	/**
+	 * Constructs a new AdaDefinitionPrefetcher given a project.
+	 *
+	 * @param project The project to attach to the constructed prefetcher.
+	 */
+	public AdaDefinitionPrefetcher(Project project) {
+		this.project   = project;
+		this.idleAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, project);
+	}
+
+	/**
+	 * @see com.intellij.openapi.components.NamedComponent#getComponentName()
+	 */
+	@Override
+	@NotNull
+	public String getComponentName() {
+		return "com.adacore.adaintellij.analysis.syntactic.AdaDefinitionPrefetcher";
+	}
+
+	/**
+	 * @see com.intellij.openapi.components.ProjectComponent#projectOpened()
+	 */
+	@Override
+	public void projectOpened() {
+
+		EditorEventMulticaster multicaster = EditorFactory.getInstance().getEventMulticaster();
+
+		// Reschedule prefetching whenever an editor is scrolled
+
+		multicaster.addVisibleAreaListener(event -> {
+
+			Editor editor = event.getEditor();
+
+			if (project.equals(editor.getProject())) { schedulePrefetch(editor); }
+
+		}, project);
+
+		// Cancel prefetching whenever a document is edited,
+		// and reschedule it for the editors showing it
+
+		multicaster.addDocumentListener(new DocumentListener() {
+
+			/**
+			 * @see com.intellij.openapi.editor.event.DocumentListener#documentChanged(DocumentEvent)
+			 */
+			@Override
+			public void documentChanged(@NotNull DocumentEvent event) {
+
+				Editor[] editors = EditorFactory.getInstance().getEditors(event.getDocument(), project);
+
+				if (editors.length == 0) { return; }
+
+				schedulePrefetch(editors[0]);
+
+			}
+
+		}, project);
+
+	}
+
+	/**
+	 * @see com.intellij.openapi.components.ProjectComponent#projectClosed()
+	 */
+	@Override
+	public void projectClosed() {
+
+		synchronized (this) { generation++; }
+
+		idleAlarm.cancelAllRequests();
+
+		cancelPrefetch();
+
+	}
+
+	/**
+	 * Cancels the current prefetch, if any, and schedules a prefetch
+	 * of the references visible in the given editor once it is idle.
+	 * Must be called from the event dispatch thread.
+	 *
+	 * @param editor The editor in which to prefetch references.
+	 */
+	private void schedulePrefetch(@NotNull Editor editor) {
+
+		long scheduledGeneration;
+
+		synchronized (this) { scheduledGeneration = ++generation; }
+
+		cancelPrefetch();
+
+		idleAlarm.cancelAllRequests();
+
+		// Do not prefetch references in non-Ada files
+
+		Document    document = editor.getDocument();
+		VirtualFile file     = FileDocumentManager.getInstance().getFile(document);
+
+		if (file == null || !AdaFileType.isAdaFile(file)) { return; }
+
+		// The document is captured rather than its PSI file, as
+		// the PSI file is replaced when the document is committed
+
+		idleAlarm.addRequest(() -> {
+
+			if (editor.isDisposed()) { return; }
+
+			TextRange visibleRange = getVisibleRange(editor);
+
+			AppExecutorUtil.getAppExecutorService().execute(() ->
+				prefetch(document, visibleRange, scheduledGeneration));
+
+		}, IDLE_DELAY);
+
+	}
+
+	/**
+	 * Cancels the current prefetch, if any.
+	 */
+	private void cancelPrefetch() {
+
+		Prefetch prefetch;
+
+		synchronized (this) {
+			prefetch        = currentPrefetch;
+			currentPrefetch = null;
+		}
+
+		if (prefetch != null) { prefetch.cancel(); }
+
+	}
+
+	/**
+	 * Prefetches the definitions of the unresolved references in the
+	 * given range of the current PSI file of the given document.
+	 *
+	 * @param document The document in which to prefetch references.
+	 * @param range The range of the document to prefetch.
+	 * @param scheduledGeneration The generation of prefetches at the
+	 *                            time this prefetch was scheduled.
+	 */
+	private void prefetch(@NotNull Document document, @NotNull TextRange range, long scheduledGeneration) {
+
+		AdaLSPServer lspServer = AdaLSPDriver.getServer(project);
+
+		if (lspServer == null) { return; }
+
+		// Get the request parameters of the references to prefetch
+
+		List<TextDocumentPositionParams> params = ReadAction.compute(() -> {
+
+			PsiDocumentManager documentManager = PsiDocumentManager.getInstance(project);
+
+			// If the document was changed since the file was last
+			// parsed, then prefetching is rescheduled anyway
+
+			PsiFile psiFile = documentManager.isCommitted(document) ?
+				documentManager.getPsiFile(document) : null;
+
+			if (psiFile == null || !psiFile.isValid()) {
+				return Collections.<TextDocumentPositionParams>emptyList();
+			}
+
+			return collectDefinitionParams(psiFile, range);
+
+		});
+
+		if (params.isEmpty()) { return; }
+
+		// Start the prefetch, unless prefetching was rescheduled
+		// in the meantime
+
+		Prefetch prefetch = new Prefetch(lspServer, params);
+
+		synchronized (this) {
+
+			if (currentPrefetch != null || generation != scheduledGeneration) { return; }
+
+			currentPrefetch = prefetch;
+
+		}
+
+		prefetch.makeNextRequests();
+
+	}
+
+	/**
+	 * Returns the definition request parameters of the unresolved
+	 * references in the given range of the given file, up to the
+	 * maximum number of references prefetched per visible area.
+	 * Must be called with read access.
+	 *
+	 * @param psiFile The file in which to collect references.
+	 * @param range The range in which to collect references.
+	 * @return The definition request parameters.
+	 */
+	@NotNull
+	private static List<TextDocumentPositionParams> collectDefinitionParams(
+		@NotNull PsiFile   psiFile,
+		@NotNull TextRange range
+	) {
+
+		List<TextDocumentPositionParams> params = new ArrayList<>();
+
+		int offset = range.getStartOffset();
+
+		while (offset < range.getEndOffset() && params.size() < MAX_PREFETCHED_REFERENCES) {
+
+			PsiElement leaf = psiFile.findElementAt(offset);
+
+			if (leaf == null) { break; }
+
+			offset = Math.max(leaf.getTextRange().getEndOffset(), offset + 1);
+
+			AdaPsiReference reference = PsiTreeUtil.getParentOfType(leaf, AdaPsiReference.class, false);
+
+			if (reference == null || reference.isResolved()) { continue; }
+
+			TextDocumentPositionParams referenceParams = reference.getDefinitionParams();
+
+			if (referenceParams != null) { params.add(referenceParams); }
+
+		}
+
+		return params;
+
+	}
+
+	/**
+	 * Returns the range of the document of the given editor that is
+	 * visible in that editor.
+	 * Must be called from the event dispatch thread.
+	 *
+	 * @param editor The editor.
+	 * @return The visible range.
+	 */
+	@NotNull
+	private static TextRange getVisibleRange(@NotNull Editor editor) {
+
+		Rectangle visibleArea = editor.getScrollingModel().getVisibleArea();
+
+		int startOffset = editor.logicalPositionToOffset(
+			editor.xyToLogicalPosition(visibleArea.getLocation()));
+		int endOffset   = editor.logicalPositionToOffset(
+			editor.xyToLogicalPosition(new Point(
+				visibleArea.x + visibleArea.width, visibleArea.y + visibleArea.height)));
+
+		return new TextRange(startOffset, Math.max(startOffset, endOffset));
+
+	}
+
+}
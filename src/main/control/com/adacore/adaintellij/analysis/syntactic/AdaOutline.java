@@ -0,0 +1,541 @@
+package com.adacore.adaintellij.analysis.syntactic;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+import org.jetbrains.annotations.*;
+
+import org.eclipse.lsp4j.*;
+
+import com.adacore.adaintellij.lsp.LSPUtils;
+
+import static com.adacore.adaintellij.analysis.syntactic.AdaPsiElement.AdaElementType;
+
+/**
+ * Hierarchical outline of an Ada file, built from the hierarchical
+ * document symbols returned by the ALS for a specific version of that
+ * file's document.
+ *
+ * Outlines are immutable. When a new outline is built for a newer
+ * version of a document, nodes of the previous outline whose subtrees
+ * did not change are reused as-is in the new outline, so that nodes
+ * have a stable identity across versions and only changed subtrees
+ * are allocated again.
+ *
+ * Nodes of the previous outline are matched by path, i.e. by the
+ * element types and names of the node and its ancestors, and nodes
+ * only hold offsets relative to themselves: the offsets of the
+ * children of a node are relative to the identifier offset of that
+ * node, and the offsets of top-level nodes are held by the outline.
+ * This way, an edit only prevents the reuse of the nodes enclosing
+ * it and of the parents of the nodes following it, instead of all
+ * the nodes following it in the document.
+ *
+ * @see AdaPsiStructureManager#getOutline(AdaPsiFile)
+ */
+public final class AdaOutline {
+
+	/**
+	 * An empty outline, used for files for which no symbols are
+	 * available (yet).
+	 */
+	public static final AdaOutline EMPTY = new AdaOutline(-1, new Node[0], new int[0], 0);
+
+	/**
+	 * Separator of the components of node paths, which cannot
+	 * appear in Ada names.
+	 */
+	private static final char PATH_SEPARATOR = '\n';
+
+	/**
+	 * A node in an Ada outline, representing a declaration and the
+	 * declarations nested inside it.
+	 */
+	public static final class Node {
+
+		/**
+		 * The name of the declared entity.
+		 */
+		private final String name;
+
+		/**
+		 * The Ada element type of the declared entity.
+		 */
+		private final AdaElementType elementType;
+
+		/**
+		 * The length of the declaration, from the identifier of the
+		 * declared entity to the end of the declaration.
+		 */
+		private final int length;
+
+		/**
+		 * The nodes of the declarations nested in this declaration,
+		 * sorted by identifier offset, and the offsets of their
+		 * identifiers relative to the identifier of this declaration.
+		 */
+		private final Node[] children;
+		private final int[]  childOffsets;
+
+		/**
+		 * Constructs a new Node given a name, an element type, a length
+		 * and children.
+		 *
+		 * @param name The name of the declared entity.
+		 * @param elementType The Ada element type of the declared entity.
+		 * @param length The length of the declaration from its identifier.
+		 * @param children The nested declaration nodes.
+		 * @param childOffsets The relative offsets of the nested declarations.
+		 */
+		private Node(
+			@NotNull String         name,
+			@NotNull AdaElementType elementType,
+			int                     length,
+			@NotNull Node[]         children,
+			@NotNull int[]          childOffsets
+		) {
+			this.name         = name;
+			this.elementType  = elementType;
+			this.length       = length;
+			this.children     = children;
+			this.childOffsets = childOffsets;
+		}
+
+		/**
+		 * Returns the name of the declared entity.
+		 *
+		 * @return The name of the entity.
+		 */
+		@NotNull
+		public String getName() { return name; }
+
+		/**
+		 * Returns the Ada element type of the declared entity.
+		 *
+		 * @return The element type of the entity.
+		 */
+		@NotNull
+		public AdaElementType getElementType() { return elementType; }
+
+		/**
+		 * Returns the length of the declaration, from the identifier
+		 * of the declared entity to the end of the declaration.
+		 *
+		 * @return The declaration length.
+		 */
+		public int getLength() { return length; }
+
+		/**
+		 * Returns the nodes of the declarations nested in this one.
+		 * The returned array must not be modified.
+		 *
+		 * @return The children of this node.
+		 */
+		@NotNull
+		public Node[] getChildren() { return children; }
+
+		/**
+		 * Returns the offsets of the identifiers of the declarations
+		 * nested in this one, relative to the identifier of this
+		 * declaration, in the order of `getChildren`.
+		 * The returned array must not be modified.
+		 *
+		 * @return The relative offsets of the children of this node.
+		 */
+		@NotNull
+		public int[] getChildOffsets() { return childOffsets; }
+
+		/**
+		 * Returns whether or not this node can replace a newly built
+		 * node with the given properties, i.e. whether the subtree
+		 * rooted at this node is identical to the new one.
+		 *
+		 * @param name The name of the new node.
+		 * @param elementType The element type of the new node.
+		 * @param length The length of the new node.
+		 * @param children The children of the new node.
+		 * @param childOffsets The relative offsets of the children of the new node.
+		 * @return Whether or not this node can be reused.
+		 */
+		private boolean isReusableFor(
+			@NotNull String         name,
+			@NotNull AdaElementType elementType,
+			int                     length,
+			@NotNull Node[]         children,
+			@NotNull int[]          childOffsets
+		) {
+
+			if (
+				this.length          != length          ||
+				this.elementType     != elementType     ||
+				this.children.length != children.length ||
+				!this.name.equals(name)                 ||
+				!Arrays.equals(this.childOffsets, childOffsets)
+			) { return false; }
+
+			// Children were built first and reused if possible,
+			// so unchanged children are the very same objects
+
+			for (int i = 0 ; i < children.length ; i++) {
+				if (this.children[i] != children[i]) { return false; }
+			}
+
+			return true;
+
+		}
+
+	}
+
+	/**
+	 * A document symbol kept in an outline, along with its element
+	 * type and absolute offsets, used while building nodes.
+	 */
+	private static final class Entry {
+
+		/**
+		 * The document symbol.
+		 */
+		final DocumentSymbol symbol;
+
+		/**
+		 * The Ada element type of the symbol.
+		 */
+		final AdaElementType elementType;
+
+		/**
+		 * The offset of the identifier of the symbol,
+		 * and the end offset of its declaration.
+		 */
+		final int identifierOffset;
+		final int endOffset;
+
+		/**
+		 * Constructs a new Entry given a symbol, an element type
+		 * and offsets.
+		 *
+		 * @param symbol The document symbol.
+		 * @param elementType The Ada element type of the symbol.
+		 * @param identifierOffset The offset of the identifier of the symbol.
+		 * @param endOffset The end offset of the declaration of the symbol.
+		 */
+		Entry(
+			@NotNull DocumentSymbol symbol,
+			@NotNull AdaElementType elementType,
+			int                     identifierOffset,
+			int                     endOffset
+		) {
+			this.symbol           = symbol;
+			this.elementType      = elementType;
+			this.identifierOffset = identifierOffset;
+			this.endOffset        = endOffset;
+		}
+
+	}
+
+	/**
+	 * The document version for which this outline was built.
+	 */
+	private final long version;
+
+	/**
+	 * The top-level nodes of this outline, and the offsets
+	 * of their identifiers in the document.
+	 */
+	private final Node[] roots;
+	private final int[]  rootOffsets;
+
+	/**
+	 * The total number of nodes in this outline.
+	 */
+	private final int size;
+
+	/**
+	 * Constructs a new AdaOutline given a version, top-level nodes
+	 * with their offsets and a number of nodes.
+	 *
+	 * @param version The document version of the outline.
+	 * @param roots The top-level nodes of the outline.
+	 * @param rootOffsets The offsets of the top-level nodes.
+	 * @param size The total number of nodes in the outline.
+	 */
+	private AdaOutline(long version, @NotNull Node[] roots, @NotNull int[] rootOffsets, int size) {
+		this.version     = version;
+		this.roots       = roots;
+		this.rootOffsets = rootOffsets;
+		this.size        = size;
+	}
+
+	/**
+	 * Builds and returns a new outline from the given hierarchical
+	 * document symbols, reusing unchanged subtrees of the given
+	 * previous outline. Symbols whose kinds have no corresponding Ada
+	 * element type are left out, and their nested symbols are moved
+	 * up to the closest enclosing kept symbol.
+	 *
+	 * @param version The document version for which symbols were computed.
+	 * @param symbols The document symbols.
+	 * @param offsetOf A function translating positions to document offsets.
+	 * @param previous The previous outline of the same document.
+	 * @return The new outline.
+	 */
+	@NotNull
+	public static AdaOutline build(
+		long                             version,
+		@NotNull List<DocumentSymbol>    symbols,
+		@NotNull ToIntFunction<Position> offsetOf,
+		@NotNull AdaOutline              previous
+	) {
+
+		// Index the nodes of the previous outline by
+		// path for constant-time lookups
+
+		Map<String, Node> previousNodes = new HashMap<>(previous.size * 2);
+
+		indexNodes(previous.roots, "", previousNodes);
+
+		// Build the new nodes bottom-up
+
+		int[] size = new int[] { 0 };
+
+		List<Entry> entries = collectEntries(symbols, offsetOf);
+
+		Node[] roots = buildNodes(entries, "", offsetOf, previousNodes, size);
+
+		return new AdaOutline(version, roots, relativeOffsets(entries, 0), size[0]);
+
+	}
+
+	/**
+	 * Recursively indexes the given nodes and their descendants by
+	 * path.
+	 *
+	 * @param nodes The nodes to index, sorted by identifier offset.
+	 * @param parentPath The path of the parent of the nodes.
+	 * @param index The index to which to add the nodes.
+	 */
+	private static void indexNodes(
+		@NotNull Node[]            nodes,
+		@NotNull String            parentPath,
+		@NotNull Map<String, Node> index
+	) {
+
+		Map<String, Integer> occurrences = new HashMap<>();
+
+		for (Node node : nodes) {
+
+			String path = getPath(parentPath, node.elementType, node.name, occurrences);
+
+			index.put(path, node);
+
+			indexNodes(node.children, path, index);
+
+		}
+
+	}
+
+	/**
+	 * Returns the path of a node given the path of its parent, its
+	 * element type and its name. Homonyms of the same type under the
+	 * same parent, e.g. overloaded subprograms, are told apart by their
+	 * order of occurrence, which is counted in the given map.
+	 *
+	 * @param parentPath The path of the parent of the node.
+	 * @param elementType The element type of the node.
+	 * @param name The name of the node.
+	 * @param occurrences The occurrence counts of the paths of the
+	 *                    previous siblings of the node.
+	 * @return The path of the node.
+	 */
+	@NotNull
+	private static String getPath(
+		@NotNull String               parentPath,
+		@NotNull AdaElementType       elementType,
+		@NotNull String               name,
+		@NotNull Map<String, Integer> occurrences
+	) {
+
+		String path = parentPath + PATH_SEPARATOR + elementType + ' ' + name;
+
+		int occurrence = occurrences.merge(path, 1, Integer::sum);
+
+		return path + ' ' + occurrence;
+
+	}
+
+	/**
+	 * Recursively collects the symbols to keep among the given symbols,
+	 * moving up the nested symbols of symbols that are left out, and
+	 * returns them sorted by identifier offset.
+	 *
+	 * @param symbols The symbols from which to collect entries.
+	 * @param offsetOf A function translating positions to document offsets.
+	 * @return The collected entries, sorted by identifier offset.
+	 */
+	@NotNull
+	private static List<Entry> collectEntries(
+		@Nullable List<DocumentSymbol>   symbols,
+		@NotNull ToIntFunction<Position> offsetOf
+	) {
+
+		if (symbols == null || symbols.isEmpty()) { return Collections.emptyList(); }
+
+		List<Entry> entries = new ArrayList<>(symbols.size());
+
+		collectEntries(symbols, offsetOf, entries);
+
+		entries.sort(Comparator.comparingInt(entry -> entry.identifierOffset));
+
+		return entries;
+
+	}
+
+	/**
+	 * Recursively adds the symbols to keep among the given symbols
+	 * to the given list of entries.
+	 *
+	 * @param symbols The symbols from which to collect entries.
+	 * @param offsetOf A function translating positions to document offsets.
+	 * @param entries The list to which to add entries.
+	 */
+	private static void collectEntries(
+		@NotNull List<DocumentSymbol>    symbols,
+		@NotNull ToIntFunction<Position> offsetOf,
+		@NotNull List<Entry>             entries
+	) {
+
+		for (DocumentSymbol symbol : symbols) {
+
+			AdaElementType elementType = LSPUtils.symbolKindToAdaElementType(symbol);
+
+			// If the symbol has no corresponding element type,
+			// then move its children up instead
+
+			if (elementType == null || symbol.getName() == null) {
+				if (symbol.getChildren() != null) { collectEntries(symbol.getChildren(), offsetOf, entries); }
+				continue;
+			}
+
+			Range selectionRange = symbol.getSelectionRange();
+			Range range          = symbol.getRange();
+
+			int identifierOffset = offsetOf.applyAsInt(
+				(selectionRange == null ? range : selectionRange).getStart());
+			int endOffset        = range == null ?
+				identifierOffset : offsetOf.applyAsInt(range.getEnd());
+
+			entries.add(new Entry(symbol, elementType, identifierOffset, endOffset));
+
+		}
+
+	}
+
+	/**
+	 * Returns the identifier offsets of the given entries relative
+	 * to the given base offset.
+	 *
+	 * @param entries The entries.
+	 * @param baseOffset The offset relative to which to compute offsets.
+	 * @return The relative offsets of the entries.
+	 */
+	@NotNull
+	private static int[] relativeOffsets(@NotNull List<Entry> entries, int baseOffset) {
+
+		int[] offsets = new int[entries.size()];
+
+		for (int i = 0 ; i < offsets.length ; i++) {
+			offsets[i] = entries.get(i).identifierOffset - baseOffset;
+		}
+
+		return offsets;
+
+	}
+
+	/**
+	 * Recursively builds nodes from the given entries.
+	 *
+	 * @param entries The entries from which to build nodes,
+	 *                sorted by identifier offset.
+	 * @param parentPath The path of the parent of the built nodes.
+	 * @param offsetOf A function translating positions to document offsets.
+	 * @param previousNodes The nodes of the previous outline by path.
+	 * @param size A single-element counter of built nodes.
+	 * @return The built nodes, in the order of the entries.
+	 */
+	@NotNull
+	private static Node[] buildNodes(
+		@NotNull List<Entry>             entries,
+		@NotNull String                  parentPath,
+		@NotNull ToIntFunction<Position> offsetOf,
+		@NotNull Map<String, Node>       previousNodes,
+		@NotNull int[]                   size
+	) {
+
+		Node[]               nodes       = new Node[entries.size()];
+		Map<String, Integer> occurrences = new HashMap<>();
+
+		for (int i = 0 ; i < nodes.length ; i++) {
+
+			Entry  entry = entries.get(i);
+			String name  = entry.symbol.getName();
+			String path  = getPath(parentPath, entry.elementType, name, occurrences);
+
+			// Build the children of the symbol first
+
+			List<Entry> childEntries = collectEntries(entry.symbol.getChildren(), offsetOf);
+
+			Node[] children     = buildNodes(childEntries, path, offsetOf, previousNodes, size);
+			int[]  childOffsets = relativeOffsets(childEntries, entry.identifierOffset);
+			int    length       = entry.endOffset - entry.identifierOffset;
+
+			// Reuse the previous node if its subtree is unchanged
+
+			Node previousNode = previousNodes.get(path);
+
+			nodes[i] =
+				previousNode != null &&
+				previousNode.isReusableFor(name, entry.elementType, length, children, childOffsets) ?
+					previousNode :
+					new Node(name, entry.elementType, length, children, childOffsets);
+
+			size[0]++;
+
+		}
+
+		return nodes;
+
+	}
+
+	/**
+	 * Returns the document version for which this outline was built.
+	 *
+	 * @return The version of this outline.
+	 */
+	public long getVersion() { return version; }
+
+	/**
+	 * Returns the top-level nodes of this outline.
+	 * The returned array must not be modified.
+	 *
+	 * @return The top-level nodes.
+	 */
+	@NotNull
+	public Node[] getRoots() { return roots; }
+
+	/**
+	 * Returns the offsets of the identifiers of the top-level nodes
+	 * of this outline in the document, in the order of `getRoots`.
+	 * The returned array must not be modified.
+	 *
+	 * @return The offsets of the top-level nodes.
+	 */
+	@NotNull
+	public int[] getRootOffsets() { return rootOffsets; }
+
+	/**
+	 * Returns the total number of nodes in this outline.
+	 *
+	 * @return The number of nodes.
+	 */
+	public int size() { return size; }
+
+}
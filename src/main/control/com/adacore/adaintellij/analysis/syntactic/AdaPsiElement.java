@@ -53,7 +53,35 @@ public class AdaPsiElement extends LeafPsiElement implements NavigatablePsiEleme
 
 		PROCEDURE_IDENTIFIER, FUNCTION_IDENTIFIER,
 
-		OTHER
+		OTHER;
+
+		/**
+		 * Returns the icon representing elements of this type, or
+		 * null if elements of this type have no specific icon.
+		 *
+		 * @return The icon representing this element type.
+		 */
+		@Nullable
+		public Icon getIcon() {
+
+			switch (this) {
+
+				case PACKAGE_SPEC_IDENTIFIER: return Icons.ADA_SPEC_SOURCE_FILE;
+				case PACKAGE_BODY_IDENTIFIER: return Icons.ADA_BODY_SOURCE_FILE;
+
+				case TYPE_IDENTIFIER:         return Icons.ADA_TYPE;
+				case CONSTANT_IDENTIFIER:     return Icons.ADA_CONSTANT;
+				case VARIABLE_IDENTIFIER:     return Icons.ADA_VARIABLE;
+
+				case PROCEDURE_IDENTIFIER:    return Icons.ADA_PROCEDURE;
+				case FUNCTION_IDENTIFIER:     return Icons.ADA_FUNCTION;
+
+				case OTHER:
+				default:                      return null;
+
+			}
+
+		}
 
 	}
 
@@ -62,11 +90,6 @@ public class AdaPsiElement extends LeafPsiElement implements NavigatablePsiEleme
 	 */
 	private ASTNode node;
 
-	/**
-	 * The type of this Ada element. Set to `OTHER` by default.
-	 */
-	private AdaElementType adaElementType = AdaElementType.OTHER;
-
 	/**
 	 * Constructs a new AdaPsiElement given a tree node.
 	 *
@@ -194,26 +217,7 @@ public class AdaPsiElement extends LeafPsiElement implements NavigatablePsiEleme
 	 */
 	@Nullable
 	@Override
-	public Icon getIcon(int flags) {
-
-		switch (adaElementType) {
-
-			case PACKAGE_SPEC_IDENTIFIER: return Icons.ADA_SPEC_SOURCE_FILE;
-			case PACKAGE_BODY_IDENTIFIER: return Icons.ADA_BODY_SOURCE_FILE;
-
-			case TYPE_IDENTIFIER:         return Icons.ADA_TYPE;
-			case CONSTANT_IDENTIFIER:     return Icons.ADA_CONSTANT;
-			case VARIABLE_IDENTIFIER:     return Icons.ADA_VARIABLE;
-
-			case PROCEDURE_IDENTIFIER:    return Icons.ADA_PROCEDURE;
-			case FUNCTION_IDENTIFIER:     return Icons.ADA_FUNCTION;
-
-			case OTHER:
-			default:                      return null;
-
-		}
-
-	}
+	public Icon getIcon(int flags) { return getAdaElementType().getIcon(); }
 
 	/**
 	 * Returns the icon representing this `AdaPsiElement`.
@@ -224,21 +228,22 @@ public class AdaPsiElement extends LeafPsiElement implements NavigatablePsiEleme
 	public Icon getIcon() { return getIcon(ICON_FLAG_VISIBILITY); }
 
 	/**
-	 * Sets the type of this Ada element to the given element type.
-	 *
-	 * @param elementType The element type to set.
-	 */
-	void setAdaElementType(@NotNull AdaElementType elementType) {
-		adaElementType = elementType;
-	}
-
-	/**
-	 * Returns the Ada element type of this element.
+	 * Returns the Ada element type of this element, as set by the
+	 * last patch applied to the containing file. Defaults to `OTHER`.
+	 * @see AdaPsiStructureManager
 	 *
 	 * @return The Ada element type of this element.
 	 */
 	@NotNull
-	public AdaElementType getAdaElementType() { return adaElementType; }
+	public AdaElementType getAdaElementType() {
+
+		PsiFile containingFile = getContainingFile();
+
+		return containingFile instanceof AdaPsiFile ?
+			((AdaPsiFile)containingFile).getAdaElementType(getStartOffset()) :
+			AdaElementType.OTHER;
+
+	}
 
 	/**
 	 * Returns the `AdaPsiElement` corresponding to the given element,
@@ -279,6 +284,30 @@ public class AdaPsiElement extends LeafPsiElement implements NavigatablePsiEleme
 
 	}
 
+	/**
+	 * Returns the `AdaPsiElement` at the given offset in the given file,
+	 * or null if no such element exists. For Ada PSI files, the lookup
+	 * goes through the file's offset index instead of descending the
+	 * tree.
+	 * @see AdaPsiFile#findAdaElementAt(int)
+	 *
+	 * @param file The file in which to find the element.
+	 * @param offset The offset at which to find the element.
+	 * @return The Ada PSI element at the given offset or null.
+	 */
+	@Nullable
+	public static AdaPsiElement getAt(@NotNull PsiFile file, int offset) {
+
+		if (file instanceof AdaPsiFile) {
+			return ((AdaPsiFile)file).findAdaElementAt(offset);
+		}
+
+		PsiElement element = file.findElementAt(offset);
+
+		return element == null ? null : getFrom(element);
+
+	}
+
 	/**
 	 * Compares two PSI elements and returns true if they represent the
 	 * same element in the same file. Due to the flat nature of the ASTs
@@ -0,0 +1,192 @@
+package com.adacore.adaintellij.analysis.syntactic;
+
+import java.util.*;
+
+import com.intellij.lang.ASTNode;
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.*;
+
+/**
+ * Offset index of the Ada PSI elements of an Ada PSI file.
+ *
+ * Due to the flat structure of the trees built by the Ada parser
+ * (see `AdaParser`), every Ada PSI element of a file is a direct
+ * child of that file, and those elements never overlap. An index
+ * of an Ada file therefore simply consists of a sorted array of
+ * the start offsets of the file's Ada PSI elements, mapped to the
+ * elements themselves, which allows finding the element at a given
+ * offset with a binary search instead of a tree descent.
+ *
+ * An index is stamped with the modification stamp of the file for
+ * which it was built, and is considered out of date as soon as that
+ * file is modified.
+ *
+ * @see AdaPsiFile#getElementIndex()
+ */
+public final class AdaPsiElementIndex {
+
+	/**
+	 * The modification stamp of the file at the time this index
+	 * was built.
+	 */
+	private final long modificationStamp;
+
+	/**
+	 * The sorted start/end offsets of the indexed elements, and
+	 * the elements themselves. The element at index `i` starts at
+	 * offset `startOffsets[i]` and ends at offset `endOffsets[i]`.
+	 */
+	private final int[]           startOffsets;
+	private final int[]           endOffsets;
+	private final AdaPsiElement[] elements;
+
+	/**
+	 * Constructs a new AdaPsiElementIndex given a modification stamp,
+	 * element offsets and elements.
+	 *
+	 * @param modificationStamp The modification stamp of the indexed file.
+	 * @param startOffsets The sorted start offsets of the elements.
+	 * @param endOffsets The end offsets of the elements.
+	 * @param elements The indexed elements.
+	 */
+	private AdaPsiElementIndex(
+		long            modificationStamp,
+		int[]           startOffsets,
+		int[]           endOffsets,
+		AdaPsiElement[] elements
+	) {
+		this.modificationStamp = modificationStamp;
+		this.startOffsets      = startOffsets;
+		this.endOffsets        = endOffsets;
+		this.elements          = elements;
+	}
+
+	/**
+	 * Builds and returns an index of the Ada PSI elements of the given
+	 * file by iterating once over the top-level nodes of its tree.
+	 *
+	 * @param psiFile The file for which to build an index.
+	 * @return The built index.
+	 */
+	@Contract("_ -> new")
+	@NotNull
+	static AdaPsiElementIndex build(@NotNull AdaPsiFile psiFile) {
+
+		long modificationStamp = psiFile.getModificationStamp();
+
+		List<AdaPsiElement> elements     = new ArrayList<>();
+		List<Integer>       startOffsets = new ArrayList<>();
+		List<Integer>       endOffsets   = new ArrayList<>();
+
+		// Iterate over the top-level nodes of the file and
+		// keep track of offsets along the way, as computing
+		// the start offset of every node separately would
+		// defeat the purpose of this index
+
+		int offset = 0;
+
+		for (
+			ASTNode node = psiFile.getNode().getFirstChildNode();
+			node != null;
+			node = node.getTreeNext()
+		) {
+
+			int length = node.getTextLength();
+
+			PsiElement    psiElement    = node.getPsi();
+			AdaPsiElement adaPsiElement = psiElement == null ?
+				null : AdaPsiElement.getFrom(psiElement);
+
+			// Only index Ada PSI elements, which excludes
+			// whitespaces and comments
+
+			if (adaPsiElement != null) {
+				elements.add(adaPsiElement);
+				startOffsets.add(offset);
+				endOffsets.add(offset + length);
+			}
+
+			offset += length;
+
+		}
+
+		return new AdaPsiElementIndex(
+			modificationStamp,
+			startOffsets.stream().mapToInt(Integer::intValue).toArray(),
+			endOffsets.stream().mapToInt(Integer::intValue).toArray(),
+			elements.toArray(new AdaPsiElement[0])
+		);
+
+	}
+
+	/**
+	 * Returns the modification stamp of the file at the time this
+	 * index was built.
+	 *
+	 * @return The modification stamp of this index.
+	 */
+	public long getModificationStamp() { return modificationStamp; }
+
+	/**
+	 * Returns the number of elements in this index.
+	 *
+	 * @return The number of indexed elements.
+	 */
+	public int size() { return elements.length; }
+
+	/**
+	 * Returns the Ada PSI element containing the given offset, or
+	 * null if no such element exists (e.g. the offset is inside a
+	 * whitespace or a comment, or is out of bounds).
+	 *
+	 * @param offset The offset at which to find an element.
+	 * @return The element at the given offset, or null.
+	 */
+	@Nullable
+	public AdaPsiElement findElementAt(int offset) {
+
+		// Find the last element starting at or before the offset
+
+		int index = Arrays.binarySearch(startOffsets, offset);
+
+		if (index < 0) { index = -index - 2; }
+
+		// Check that the element actually contains the offset
+
+		return index < 0 || offset >= endOffsets[index] ?
+			null : elements[index];
+
+	}
+
+	/**
+	 * Returns the Ada PSI elements containing the given offsets, in
+	 * the same order as the given offsets. Elements that could not
+	 * be found are represented by null values.
+	 *
+	 * @param offsets The offsets at which to find elements.
+	 * @return The elements at the given offsets.
+	 */
+	@NotNull
+	public AdaPsiElement[] findElementsAt(@NotNull int[] offsets) {
+
+		AdaPsiElement[] result = new AdaPsiElement[offsets.length];
+
+		for (int i = 0 ; i < offsets.length ; i++) {
+			result[i] = findElementAt(offsets[i]);
+		}
+
+		return result;
+
+	}
+
+	/**
+	 * Returns the elements in this index, sorted by start offset.
+	 *
+	 * @return The indexed elements.
+	 */
+	@NotNull
+	public List<AdaPsiElement> getElements() {
+		return Collections.unmodifiableList(Arrays.asList(elements));
+	}
+
+}
@@ -1,16 +1,20 @@
 package com.adacore.adaintellij.analysis.syntactic;
 
+import java.util.*;
+
 import com.intellij.extapi.psi.PsiFileBase;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
 import com.intellij.util.FileContentUtilCore;
-import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.*;
 
 import com.adacore.adaintellij.analysis.lexical.AdaTokenTypes;
-import com.adacore.adaintellij.misc.cache.Markable;
+import com.adacore.adaintellij.misc.cache.*;
 import com.adacore.adaintellij.AdaLanguage;
 
+import static com.adacore.adaintellij.analysis.syntactic.AdaPsiElement.AdaElementType;
+
 /**
  * Representation of an Ada file, acting as the root node in the AST
  * structure used by the IntelliJ platform.
@@ -21,11 +25,27 @@ import com.adacore.adaintellij.AdaLanguage;
  */
 public final class AdaPsiFile extends PsiFileBase implements Markable {
 
+	/**
+	 * Cache key for the offset index of Ada PSI files.
+	 */
+	private static final CacheKey<AdaPsiElementIndex>
+		ELEMENT_INDEX_CACHE_KEY = CacheKey.getNewKey();
+
 	/**
 	 * The file view provider corresponding to this Ada file.
 	 */
 	private FileViewProvider viewProvider;
 
+	/**
+	 * Immutable mapping of start offsets of Ada PSI elements in this
+	 * file to their Ada element types. Elements whose start offsets
+	 * are not in this mapping are of type `OTHER`.
+	 * The mapping is always replaced as a whole so that readers see
+	 * either all or none of the element types of a given patch.
+	 * @see AdaPsiStructureManager
+	 */
+	private volatile Map<Integer, AdaElementType> adaElementTypes = Collections.emptyMap();
+
 	/**
 	 * Constructs a new AdaPsiFile given a file view provider.
 	 *
@@ -72,4 +92,72 @@ public final class AdaPsiFile extends PsiFileBase implements Markable {
 			AdaTokenTypes.ALL_VALID_TOKENS, PsiElement.ARRAY_FACTORY);
 	}
 
+	/**
+	 * Returns the offset index of the Ada PSI elements of this file.
+	 * The index is built on first use and cached until this file is
+	 * modified, at which point it is rebuilt on the next call.
+	 *
+	 * @return The up-to-date element index of this file.
+	 */
+	@NotNull
+	public AdaPsiElementIndex getElementIndex() {
+
+		// Check if an index is cached and if it is still
+		// up to date, then return it
+
+		CacheResult<AdaPsiElementIndex> cacheResult =
+			getCachedData(ELEMENT_INDEX_CACHE_KEY);
+
+		AdaPsiElementIndex index = cacheResult.data;
+
+		if (index != null && index.getModificationStamp() == getModificationStamp()) {
+			return index;
+		}
+
+		// Otherwise, build a new index and cache it
+
+		index = AdaPsiElementIndex.build(this);
+
+		cacheData(ELEMENT_INDEX_CACHE_KEY, index);
+
+		return index;
+
+	}
+
+	/**
+	 * Returns the Ada PSI element at the given offset in this file,
+	 * or null if no such element exists.
+	 * @see AdaPsiElementIndex#findElementAt(int)
+	 *
+	 * @param offset The offset at which to find an element.
+	 * @return The element at the given offset, or null.
+	 */
+	@Nullable
+	public AdaPsiElement findAdaElementAt(int offset) {
+		return getElementIndex().findElementAt(offset);
+	}
+
+	/**
+	 * Atomically replaces the Ada element types of the elements of
+	 * this file with the given ones.
+	 *
+	 * @param elementTypes A mapping of element start offsets to
+	 *                     element types.
+	 */
+	void setAdaElementTypes(@NotNull Map<Integer, AdaElementType> elementTypes) {
+		adaElementTypes = Collections.unmodifiableMap(new HashMap<>(elementTypes));
+	}
+
+	/**
+	 * Returns the Ada element type of the element starting at the
+	 * given offset in this file.
+	 *
+	 * @param startOffset The start offset of the element.
+	 * @return The Ada element type of the element.
+	 */
+	@NotNull
+	AdaElementType getAdaElementType(int startOffset) {
+		return adaElementTypes.getOrDefault(startOffset, AdaElementType.OTHER);
+	}
+
 }
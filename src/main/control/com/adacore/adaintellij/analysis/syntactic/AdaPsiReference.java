@@ -8,7 +8,7 @@ import com.intellij.psi.*;
 import com.intellij.util.IncorrectOperationException;
 import org.jetbrains.annotations.*;
 
-import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.*;
 
 import com.adacore.adaintellij.misc.cache.*;
 import com.adacore.adaintellij.lsp.*;
@@ -159,6 +159,44 @@ public final class AdaPsiReference extends AdaPsiElement
 
 		if (cacheResult.hit) { return cacheResult.data; }
 
+		// Get the parameters of the definition request
+
+		TextDocumentPositionParams params = getDefinitionParams();
+
+		if (params == null) { return null; }
+
+		// Make the request and wait for the result
+
+		AdaLSPServer lspServer = AdaLSPDriver.getServer(getProject());
+
+		if (lspServer == null) { return null; }
+
+		Location definitionLocation = lspServer.definition(
+			params.getTextDocument().getUri(), params.getPosition());
+
+		return resolveToDefinition(definitionLocation);
+
+	}
+
+	/**
+	 * Returns whether or not the element to which this reference
+	 * resolves is already known, in which case `resolveAdaReference`
+	 * does not make any request.
+	 *
+	 * @return Whether or not this reference is already resolved.
+	 */
+	boolean isResolved() { return getCachedData(RESOLVED_ELEMENT_CACHE_KEY).hit; }
+
+	/**
+	 * Returns the document URI and position to use in a
+	 * `textDocument/definition` request to resolve this reference,
+	 * or null if this reference cannot be resolved by the ALS.
+	 *
+	 * @return The definition request parameters, or null.
+	 */
+	@Nullable
+	TextDocumentPositionParams getDefinitionParams() {
+
 		// Get the document of the containing file
 
 		PsiFile  containingFile = getContainingFile();
@@ -173,14 +211,25 @@ public final class AdaPsiReference extends AdaPsiElement
 
 		if (documentUri.startsWith("mock://")) { return null; }
 
-		// Make the request and wait for the result
-
-		AdaLSPServer lspServer = AdaLSPDriver.getServer(getProject());
+		return new TextDocumentPositionParams(
+			new TextDocumentIdentifier(documentUri),
+			LSPUtils.offsetToPosition(document, getStartOffset())
+		);
 
-		if (lspServer == null) { return null; }
+	}
 
-		Location definitionLocation = lspServer.definition(
-			documentUri, LSPUtils.offsetToPosition(document, getStartOffset()));
+	/**
+	 * Resolves this reference to the element at the given definition
+	 * location, caches that element and returns it.
+	 *
+	 * @param definitionLocation The location returned by a
+	 *                           `textDocument/definition` request
+	 *                           for this reference.
+	 * @return The element to which this reference resolves, or null
+	 *         if no such element is found.
+	 */
+	@Nullable
+	AdaPsiElement resolveToDefinition(@Nullable Location definitionLocation) {
 
 		// If no valid result was returned, cash the result
 		// (no resolved element) and return null
@@ -204,16 +253,14 @@ public final class AdaPsiReference extends AdaPsiElement
 
 		// Find the element at the given position in the file
 
-		PsiElement definition = definitionPsiFile.findElementAt(
+		AdaPsiElement adaDefinition = AdaPsiElement.getAt(
+			definitionPsiFile,
 			LSPUtils.positionToOffset(
 				definitionDocument,
 				definitionLocation.getRange().getStart()
 			)
 		);
 
-		AdaPsiElement adaDefinition = definition == null ?
-			null : AdaPsiElement.getFrom(definition);
-
 		// If the element was found, then cash it
 
 		if (adaDefinition != null) {
@@ -1,16 +1,21 @@
 package com.adacore.adaintellij.analysis.syntactic;
 
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
 
+import com.intellij.openapi.application.*;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiElement;
-import org.jetbrains.annotations.NotNull;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.*;
 
 import org.eclipse.lsp4j.DocumentSymbol;
+import org.eclipse.lsp4j.Position;
 
 import com.adacore.adaintellij.lsp.*;
-import com.adacore.adaintellij.misc.cache.Marker;
+import com.adacore.adaintellij.misc.cache.*;
 import com.adacore.adaintellij.Utils;
 
 import static com.adacore.adaintellij.analysis.syntactic.AdaPsiElement.AdaElementType;
@@ -30,11 +35,23 @@ import static com.adacore.adaintellij.analysis.syntactic.AdaPsiElement.AdaElemen
  * certain file must therefore first call the corresponding patcher
  * from this class before reading that information from that file.
  *
+ * Patches are computed asynchronously on a background thread and
+ * never block the caller. Every patch is keyed on the version (i.e.
+ * modification stamp) of the file's document at the time the patch
+ * was requested, and is only applied if the document still has that
+ * version once the ALS responds. Until then, PSI files keep exposing
+ * the last successfully applied patch.
+ *
  * @see AdaParser
  * @see AdaPsiElement.AdaElementType
  */
 public class AdaPsiStructureManager {
 
+	/**
+	 * Class-wide logger for the AdaPsiStructureManager class.
+	 */
+	private static final Logger LOGGER = Logger.getInstance(AdaPsiStructureManager.class);
+
 	/**
 	 * Patch markers used to mark PSI files that already underwent
 	 * their corresponding patches. This is useful to avoid
@@ -46,103 +63,349 @@ public class AdaPsiStructureManager {
 	 */
 	private static final Marker SYMBOLS_PATCH_MARKER = Marker.getNewMarker();
 
+	/**
+	 * Cache key for in-flight `textDocument/documentSymbol` requests,
+	 * cached on the document for which they were made.
+	 */
+	private static final CacheKey<SymbolsRequest>
+		SYMBOLS_REQUEST_CACHE_KEY = CacheKey.getNewKey();
+
+	/**
+	 * Cache key for the last outline built for a document, cached on
+	 * that document.
+	 */
+	private static final CacheKey<AdaOutline>
+		OUTLINE_CACHE_KEY = CacheKey.getNewKey();
+
+	/**
+	 * An in-flight `textDocument/documentSymbol` request made for a
+	 * specific version of a document.
+	 */
+	private static final class SymbolsRequest {
+
+		/**
+		 * The document version for which the request was made.
+		 */
+		final long version;
+
+		/**
+		 * The future result of the request.
+		 */
+		final CompletableFuture<List<DocumentSymbol>> future;
+
+		/**
+		 * Whether or not the request was taken by the callback waiting
+		 * for the ALS to be ready. Guarded by the document's lock.
+		 */
+		boolean started = false;
+
+		/**
+		 * Constructs a new SymbolsRequest given a document version
+		 * and a future result.
+		 *
+		 * @param version The version of the requested document.
+		 * @param future The future result of the request.
+		 */
+		SymbolsRequest(long version, @NotNull CompletableFuture<List<DocumentSymbol>> future) {
+			this.version = version;
+			this.future  = future;
+		}
+
+	}
+
 	/**
 	 * Applies all possible patches to the given PSI file.
 	 *
 	 * @param psiFile The PSI file to patch.
+	 * @return A future completed with the given file once all
+	 *         patches are applied or discarded.
 	 */
-	public static void patchPsiFile(@NotNull AdaPsiFile psiFile) {
-		patchPsiFileElementTypes(psiFile);
+	@NotNull
+	public static CompletableFuture<AdaPsiFile> patchPsiFile(@NotNull AdaPsiFile psiFile) {
+		return patchPsiFileElementTypes(psiFile);
 	}
 
 	/**
-	 * Makes a `textDocument/documentSymbol` request to the ALS and
-	 * patches the given PSI file with Ada element types based on
-	 * the returned symbol information for that file.
+	 * Asynchronously makes a `textDocument/documentSymbol` request to
+	 * the ALS and patches the given PSI file with Ada element types
+	 * based on the returned symbol information for that file.
+	 *
+	 * The returned future is completed once the patch is either
+	 * applied or discarded because the file was modified in the
+	 * meantime. In both cases, the element types exposed by the file
+	 * are always a consistent snapshot: either those of the last
+	 * applied patch, or those of the new one.
 	 *
 	 * @param psiFile The PSI file to patch.
+	 * @return A future completed with the given file once the patch
+	 *         is applied or discarded.
 	 */
-	public static void patchPsiFileElementTypes(@NotNull AdaPsiFile psiFile) {
+	@NotNull
+	public static CompletableFuture<AdaPsiFile> patchPsiFileElementTypes(@NotNull AdaPsiFile psiFile) {
+
+		// If the file is already marked, then return immediately
+
+		if (psiFile.isMarked(SYMBOLS_PATCH_MARKER)) {
+			return CompletableFuture.completedFuture(psiFile);
+		}
+
+		Document    document    = Utils.getPsiFileDocument(psiFile);
+		VirtualFile virtualFile = Utils.getPsiFileVirtualFile(psiFile);
+
+		if (document == null || virtualFile == null) {
+			return CompletableFuture.completedFuture(psiFile);
+		}
+
+		// Get the symbols of the current version of the document
+		// and apply them once they are available
+
+		return documentSymbols(psiFile, document, virtualFile.getUrl())
+			.thenApply(symbolsRequest -> {
 
-		patchPsiFileIfMarked(
-			psiFile,
-			SYMBOLS_PATCH_MARKER,
-			() -> {
+				ReadAction.run(() -> applyElementTypes(psiFile, document, symbolsRequest));
 
-				Document    document    = Utils.getPsiFileDocument(psiFile);
-				VirtualFile virtualFile = Utils.getPsiFileVirtualFile(psiFile);
+				return psiFile;
 
-				if (document == null || virtualFile == null) { return; }
+			})
+			.exceptionally(throwable -> {
 
-				String documentUri = virtualFile.getUrl();
+				if (throwable instanceof CancellationException ||
+					throwable.getCause() instanceof CancellationException) { return psiFile; }
 
-				// Make the request and wait for the result
+				LOGGER.warn("Failed to patch Ada element types of " + virtualFile.getUrl(), throwable);
+
+				return psiFile;
+
+			});
+
+	}
+
+	/**
+	 * Returns the last outline built for the given PSI file, which
+	 * may correspond to an older version of the file if a patch is
+	 * still pending. Returns an empty outline if no outline was built
+	 * for the file yet.
+	 * @see AdaPsiStructureManager#patchPsiFileElementTypes(AdaPsiFile)
+	 *
+	 * @param psiFile The PSI file for which to get the outline.
+	 * @return The last outline of the given file.
+	 */
+	@NotNull
+	public static AdaOutline getOutline(@NotNull AdaPsiFile psiFile) {
+
+		Document document = Utils.getPsiFileDocument(psiFile);
+
+		if (document == null) { return AdaOutline.EMPTY; }
+
+		AdaOutline outline = Cacher.getCachedData(document, OUTLINE_CACHE_KEY).data;
+
+		return outline == null ? AdaOutline.EMPTY : outline;
+
+	}
+
+	/**
+	 * Returns a future result of a `textDocument/documentSymbol`
+	 * request for the current version of the given document. If a
+	 * request was already made for the same version, then its future
+	 * result is returned instead of making a new request.
+	 *
+	 * At most one callback waiting for the ALS is pending per document:
+	 * new requests made while one is pending are left to that callback,
+	 * which makes the latest request of the document once it runs.
+	 *
+	 * @param psiFile The PSI file corresponding to the given document.
+	 * @param document The document for which to get symbols.
+	 * @param documentUri The URI of the given document.
+	 * @return The future request.
+	 */
+	@NotNull
+	private static CompletableFuture<SymbolsRequest> documentSymbols(
+		@NotNull AdaPsiFile psiFile,
+		@NotNull Document   document,
+		@NotNull String     documentUri
+	) {
 
-				AdaLSPServer lspServer = AdaLSPDriver.getServer(psiFile.getProject());
+		SymbolsRequest request;
 
-				if (lspServer == null) { return; }
+		synchronized (document) {
 
-				List<DocumentSymbol> symbols = lspServer.documentSymbol(documentUri);
+			long version = document.getModificationStamp();
 
-				// For each symbol in the result...
+			// If a request was already made for this version,
+			// and did not fail, then reuse it
 
-				symbols.forEach(symbol -> {
+			request = Cacher.getCachedData(document, SYMBOLS_REQUEST_CACHE_KEY).data;
 
-					// Find the PSI element at the given position
+			if (
+				request == null ||
+				request.version != version ||
+				request.future.isCompletedExceptionally()
+			) {
 
-					PsiElement element = psiFile.findElementAt(
-						LSPUtils.positionToOffset(document, symbol.getSelectionRange().getStart()));
+				// Otherwise, cancel the request made for a previous
+				// version, if it is still pending, as its result
+				// would be discarded anyway
 
-					if (element == null) { return; }
+				SymbolsRequest previousRequest = request;
 
-					// Get the corresponding `AdaPsiElement`
+				if (previousRequest != null) { previousRequest.future.cancel(true); }
 
-					AdaPsiElement adaPsiElement = AdaPsiElement.getFrom(element);
+				request = new SymbolsRequest(version, new CompletableFuture<>());
 
-					if (adaPsiElement == null) { return; }
+				Cacher.cacheData(document, SYMBOLS_REQUEST_CACHE_KEY, request);
 
-					// Map the symbol kind to the corresponding Ada
-					// element type and set the type of the element
+				// Then, unless a callback is already waiting for the
+				// ALS, make the latest request of the document from a
+				// background thread once the ALS is ready
 
-					AdaElementType elementType =
-						LSPUtils.symbolKindToAdaElementType(symbol);
+				if (previousRequest == null || previousRequest.started) {
 
-					if (elementType == null) { return; }
+					AdaLSPDriver.whenReady(psiFile.getProject()).thenAcceptAsync(lspServer -> {
 
-					adaPsiElement.setAdaElementType(elementType);
+						CompletableFuture<List<DocumentSymbol>> future;
 
-				});
+						synchronized (document) {
+
+							SymbolsRequest latestRequest = Cacher.getCachedData(document, SYMBOLS_REQUEST_CACHE_KEY).data;
+
+							if (latestRequest == null) { return; }
+
+							latestRequest.started = true;
+
+							future = latestRequest.future;
+
+						}
+
+						if (lspServer == null || future.isDone()) {
+							future.complete(Collections.emptyList());
+							return;
+						}
+
+						CompletableFuture<List<DocumentSymbol>> requestFuture =
+							lspServer.documentSymbolAsync(documentUri);
+
+						// Propagate the result of the request, and cancel
+						// the request if the future is canceled
+
+						requestFuture.whenComplete((symbols, throwable) -> {
+							if (throwable == null) { future.complete(symbols); }
+							else { future.completeExceptionally(throwable); }
+						});
+
+						future.whenComplete((symbols, throwable) -> {
+							if (future.isCancelled()) { requestFuture.cancel(true); }
+						});
+
+					}, AppExecutorUtil.getAppExecutorService());
+
+				}
 
 			}
-		);
+
+		}
+
+		final SymbolsRequest symbolsRequest = request;
+
+		return symbolsRequest.future.thenApply(symbols -> symbolsRequest);
 
 	}
 
 	/**
-	 * Applies the given patch only if the given PSI file is marked
-	 * with the given marker, then marks the file with that marker.
+	 * Computes Ada element types from the symbols of the given request
+	 * and atomically applies them to the given PSI file, but only if
+	 * the document of that file still has the version for which the
+	 * request was made and the file is up to date with the document.
+	 * Must be called from within a read action.
 	 *
-	 * @param psiFile The PSI file to check for the marker.
-	 * @param marker The marker to check in the given PSI file.
-	 * @param patch The patch to apply if the file is marked.
+	 * @param psiFile The PSI file to patch.
+	 * @param document The document of the given PSI file.
+	 * @param request The request whose symbols to apply.
 	 */
-	private static void patchPsiFileIfMarked(
-		@NotNull AdaPsiFile psiFile,
-		@NotNull Marker     marker,
-		@NotNull Runnable   patch
+	private static void applyElementTypes(
+		@NotNull AdaPsiFile     psiFile,
+		@NotNull Document       document,
+		@NotNull SymbolsRequest request
 	) {
 
-		// If the file is marked with the marker, then abort
+		// Check that the file is still valid and corresponds
+		// to the version of the document for which symbols
+		// were requested, otherwise discard the symbols
+
+		if (
+			!psiFile.isValid() ||
+			document.getModificationStamp() != request.version ||
+			!PsiDocumentManager.getInstance(psiFile.getProject()).isCommitted(document)
+		) { return; }
+
+		List<DocumentSymbol> symbols = request.future.getNow(Collections.emptyList());
+
+		// For each symbol in the result, including nested
+		// symbols of hierarchical results, map the symbol
+		// kind to the corresponding Ada element type
+
+		List<AdaElementType> symbolTypes     = new ArrayList<>();
+		List<Position>       symbolPositions = new ArrayList<>();
+
+		Deque<DocumentSymbol> pendingSymbols = new ArrayDeque<>(symbols);
+
+		while (!pendingSymbols.isEmpty()) {
+
+			DocumentSymbol symbol = pendingSymbols.pop();
+
+			if (symbol.getChildren() != null) {
+				pendingSymbols.addAll(symbol.getChildren());
+			}
+
+			AdaElementType elementType =
+				LSPUtils.symbolKindToAdaElementType(symbol);
+
+			if (elementType == null) { continue; }
+
+			symbolTypes.add(elementType);
+			symbolPositions.add(symbol.getSelectionRange().getStart());
+
+		}
+
+		// Find the Ada PSI elements at the positions of all
+		// symbols at once using the offset index of the file
+
+		int[] offsets = new int[symbolPositions.size()];
+
+		for (int i = 0 ; i < offsets.length ; i++) {
+			offsets[i] = LSPUtils.positionToOffset(document, symbolPositions.get(i));
+		}
+
+		AdaPsiElement[] adaPsiElements = psiFile.getElementIndex().findElementsAt(offsets);
+
+		// Record the type of each found element
+
+		Map<Integer, AdaElementType> elementTypes = new HashMap<>();
+
+		for (int i = 0 ; i < adaPsiElements.length ; i++) {
+
+			AdaPsiElement adaPsiElement = adaPsiElements[i];
+
+			if (adaPsiElement == null) { continue; }
+
+			elementTypes.put(adaPsiElement.getStartOffset(), symbolTypes.get(i));
+
+		}
+
+		// Build the outline of the document, reusing the
+		// unchanged parts of the previous one
 
-		if (psiFile.isMarked(marker)) { return; }
+		AdaOutline outline = AdaOutline.build(request.version, symbols,
+			position -> LSPUtils.positionToOffset(document, position),
+			getOutline(psiFile));
 
-		// Apply the patch
+		// Apply all element types at once, publish the
+		// outline and mark the file
 
-		patch.run();
+		psiFile.setAdaElementTypes(elementTypes);
 
-		// Mark the file with the marker
+		Cacher.cacheData(document, OUTLINE_CACHE_KEY, outline);
 
-		psiFile.mark(marker);
+		psiFile.mark(SYMBOLS_PATCH_MARKER);
 
 	}
 
@@ -0,0 +1,275 @@
+package com.adacore.adaintellij.analysis.syntactic;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import org.jetbrains.annotations.NotNull;
+
+import org.eclipse.lsp4j.*;
+
+import com.adacore.adaintellij.lsp.*;
+
+/**
+ * Resolver of multiple Ada PSI references at once.
+ *
+ * Operations involving many references, such as finding or
+ * highlighting usages, end up resolving every reference, which
+ * would otherwise mean one blocking `textDocument/definition`
+ * round-trip per reference. Instead, this resolver makes the
+ * definition requests of all given references concurrently, with
+ * a bounded number of requests in flight, and caches the resolved
+ * elements so that subsequent resolutions of those references do
+ * not make any request.
+ *
+ * Read access is only held for short periods of time, to compute
+ * request parameters before making requests and to map their results
+ * to elements once they all completed, and never while waiting for
+ * the server, so that write actions are not blocked by a resolution.
+ */
+public final class AdaReferenceBatchResolver {
+
+	/**
+	 * The maximum number of definition requests in flight at once.
+	 */
+	static final int MAX_CONCURRENT_REQUESTS = 16;
+
+	/**
+	 * A batch of definition requests.
+	 */
+	private static final class Batch {
+
+		/**
+		 * The LSP server to which requests are made.
+		 */
+		final AdaLSPServer lspServer;
+
+		/**
+		 * The parameters of the requests, and their future results in
+		 * the same order. A result is completed exceptionally if its
+		 * request failed or was canceled.
+		 */
+		final List<TextDocumentPositionParams>  params;
+		final List<CompletableFuture<Location>> results;
+
+		/**
+		 * The future completed once all requests completed.
+		 */
+		final CompletableFuture<Void> completion;
+
+		/**
+		 * The index of the next request to make.
+		 */
+		int nextIndex = 0;
+
+		/**
+		 * The requests in flight.
+		 */
+		final Set<CompletableFuture<?>> inFlightRequests = new HashSet<>();
+
+		/**
+		 * Whether or not the batch was canceled.
+		 * All accesses to the mutable fields of this batch are
+		 * synchronized on the batch.
+		 */
+		boolean canceled = false;
+
+		/**
+		 * Constructs a new Batch given an LSP server and the
+		 * parameters of the requests to make. Canceling the
+		 * completion future of the batch cancels the batch.
+		 *
+		 * @param lspServer The LSP server.
+		 * @param params The parameters of the requests.
+		 */
+		Batch(@NotNull AdaLSPServer lspServer, @NotNull List<TextDocumentPositionParams> params) {
+
+			this.lspServer = lspServer;
+			this.params    = params;
+			this.results   = new ArrayList<>(params.size());
+
+			for (int i = 0 ; i < params.size() ; i++) { results.add(new CompletableFuture<>()); }
+
+			completion = CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]));
+
+			completion.whenComplete((result, throwable) -> {
+				if (completion.isCancelled()) { cancel(); }
+			});
+
+		}
+
+		/**
+		 * Makes pending requests as long as the maximum number of
+		 * requests in flight is not reached.
+		 */
+		void makeNextRequests() {
+
+			while (true) {
+
+				int index;
+
+				synchronized (this) {
+
+					if (canceled || inFlightRequests.size() >= MAX_CONCURRENT_REQUESTS) { return; }
+
+					if (nextIndex == params.size()) { return; }
+
+					index = nextIndex++;
+
+				}
+
+				TextDocumentPositionParams requestParams = params.get(index);
+				CompletableFuture<Location> result        = results.get(index);
+
+				CompletableFuture<Location> future = lspServer.definitionAsync(
+					requestParams.getTextDocument().getUri(), requestParams.getPosition());
+
+				// Requests answered from the cache are done right
+				// away, in which case the next request is made
+				// without waiting for a callback
+
+				if (future.isDone()) {
+					complete(result, future);
+					continue;
+				}
+
+				synchronized (this) { inFlightRequests.add(future); }
+
+				future.whenComplete((location, throwable) -> {
+
+					synchronized (this) { inFlightRequests.remove(future); }
+
+					complete(result, future);
+
+					makeNextRequests();
+
+				});
+
+			}
+
+		}
+
+		/**
+		 * Completes the given result with the outcome of the given
+		 * completed request.
+		 *
+		 * @param result The result to complete.
+		 * @param future The completed request.
+		 */
+		private static void complete(
+			@NotNull CompletableFuture<Location> result,
+			@NotNull CompletableFuture<Location> future
+		) {
+
+			try {
+				result.complete(future.join());
+			} catch (CancellationException | CompletionException exception) {
+				result.completeExceptionally(exception);
+			}
+
+		}
+
+		/**
+		 * Cancels the batch, including its requests in flight.
+		 */
+		void cancel() {
+
+			List<CompletableFuture<?>> requests;
+
+			synchronized (this) {
+				canceled = true;
+				requests = new ArrayList<>(inFlightRequests);
+			}
+
+			requests.forEach(request -> request.cancel(true));
+
+			results.forEach(result -> result.cancel(true));
+
+		}
+
+	}
+
+	/**
+	 * Private default constructor to prevent instantiation.
+	 */
+	private AdaReferenceBatchResolver() {}
+
+	/**
+	 * Resolves all given references that are not resolved yet, caching
+	 * the resolved elements in the references. Waits for all requests
+	 * to complete, or until the calling operation is canceled.
+	 * Must be called without read access, which is acquired in short
+	 * read actions to compute request parameters and then to map
+	 * request results to elements. References that are invalidated
+	 * while requests are in flight are left unresolved.
+	 *
+	 * @param references The references to resolve.
+	 * @throws ProcessCanceledException If the calling operation was
+	 *                                  canceled, in which case all
+	 *                                  pending requests are canceled.
+	 */
+	public static void resolveAll(@NotNull Collection<? extends AdaPsiReference> references) {
+
+		// Get the references to resolve and their request parameters
+
+		List<AdaPsiReference>            unresolvedReferences = new ArrayList<>();
+		List<TextDocumentPositionParams> requestParams        = new ArrayList<>();
+
+		ReadAction.run(() -> {
+
+			for (AdaPsiReference reference : references) {
+
+				if (!reference.isValid() || reference.isResolved()) { continue; }
+
+				TextDocumentPositionParams params = reference.getDefinitionParams();
+
+				if (params == null) { continue; }
+
+				unresolvedReferences.add(reference);
+				requestParams.add(params);
+
+			}
+
+		});
+
+		if (unresolvedReferences.isEmpty()) { return; }
+
+		AdaLSPServer lspServer = AdaLSPDriver.getServer(unresolvedReferences.get(0).getProject());
+
+		if (lspServer == null) { return; }
+
+		// Make requests, keeping at most the maximum number of
+		// concurrent requests in flight, and wait for all of them
+		// without holding read access
+
+		Batch batch = new Batch(lspServer, requestParams);
+
+		batch.makeNextRequests();
+
+		AdaLSPServer.await(batch.completion);
+
+		// Resolve the references of the requests that did not fail
+		// and were not canceled
+
+		ReadAction.run(() -> {
+
+			for (int i = 0 ; i < unresolvedReferences.size() ; i++) {
+
+				CompletableFuture<Location> result    = batch.results.get(i);
+				AdaPsiReference             reference = unresolvedReferences.get(i);
+
+				if (
+					!result.isDone() || result.isCompletedExceptionally() ||
+					!reference.isValid()
+				) { continue; }
+
+				reference.resolveToDefinition(result.getNow(null));
+
+			}
+
+		});
+
+	}
+
+}
@@ -5,14 +5,14 @@ import java.util.List;
 import com.intellij.lang.annotation.*;
 import com.intellij.openapi.editor.*;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import org.jetbrains.annotations.*;
 
 import org.eclipse.lsp4j.*;
-import org.eclipse.lsp4j.Range;
 
 import com.adacore.adaintellij.lsp.*;
-import com.adacore.adaintellij.misc.cache.*;
+import com.adacore.adaintellij.lsp.DiagnosticsStore.AnchoredDiagnostic;
 import com.adacore.adaintellij.Utils;
 
 import static com.adacore.adaintellij.lsp.LSPUtils.diagnosticSeverityToHighlightSeverity;
@@ -21,35 +21,29 @@ import static com.adacore.adaintellij.lsp.LSPUtils.diagnosticSeverityToHighlight
  * Annotator for Ada source code, powered by the
  * Ada Language Server (ALS).
  */
-public class AdaAnnotator extends ExternalAnnotator<List<Diagnostic>, List<Diagnostic>> {
+public class AdaAnnotator extends ExternalAnnotator<List<AnchoredDiagnostic>, List<AnchoredDiagnostic>> {
 
 
 	/**
 	 * @see com.intellij.lang.annotation.ExternalAnnotator#collectInformation(PsiFile)
 	 *
-	 * Fetches and returns the list of diagnostics from the LSP client.
+	 * Fetches and returns the list of valid anchored diagnostics from
+	 * the LSP driver's diagnostics store.
 	 */
 	@Nullable
 	@Override
-	public List<Diagnostic> collectInformation(@NotNull PsiFile file) {
+	public List<AnchoredDiagnostic> collectInformation(@NotNull PsiFile file) {
 
-		// Get the file's corresponding document
+		// Get the file's corresponding virtual file
 
-		Document document = Utils.getPsiFileDocument(file);
-
-		if (document == null) { return null; }
+		VirtualFile virtualFile = Utils.getPsiFileVirtualFile(file);
 
-		// Get the list of diagnostics from the document's cache
+		if (virtualFile == null) { return null; }
 
-		CacheResult<List<Diagnostic>> cacheResult =
-			Cacher.getCachedData(document, AdaLSPClient.DIAGNOSTICS_CACHE_KEY);
+		// Get the list of diagnostics from the store
 
-
-		if (! cacheResult.hit) {
-			return null;
-		}
-
-		return cacheResult.data;
+		return AdaLSPDriver.getDiagnosticsStore(file.getProject())
+			.getDiagnostics(virtualFile.getUrl());
 
 	}
 
@@ -58,7 +52,7 @@ public class AdaAnnotator extends ExternalAnnotator<List<Diagnostic>, List<Diagn
 	 */
 	@Nullable
 	@Override
-	public List<Diagnostic> collectInformation(
+	public List<AnchoredDiagnostic> collectInformation(
 		@NotNull PsiFile file,
 		@NotNull Editor  editor,
 		         boolean hasErrors
@@ -69,7 +63,7 @@ public class AdaAnnotator extends ExternalAnnotator<List<Diagnostic>, List<Diagn
 	 */
 	@Nullable
 	@Override
-	public List<Diagnostic> doAnnotate(List<Diagnostic> collectedInfo) {
+	public List<AnchoredDiagnostic> doAnnotate(List<AnchoredDiagnostic> collectedInfo) {
 		return collectedInfo;
 	}
 
@@ -78,9 +72,9 @@ public class AdaAnnotator extends ExternalAnnotator<List<Diagnostic>, List<Diagn
 	 */
 	@Override
 	public void apply(
-		@NotNull  PsiFile          file,
-		@Nullable List<Diagnostic> annotationResult,
-		@NotNull  AnnotationHolder holder
+		@NotNull  PsiFile                  file,
+		@Nullable List<AnchoredDiagnostic> annotationResult,
+		@NotNull  AnnotationHolder         holder
 	) {
 
 		// Check that there are diagnostics to process
@@ -98,15 +92,19 @@ public class AdaAnnotator extends ExternalAnnotator<List<Diagnostic>, List<Diagn
 
 		// For each diagnostic...
 
-		for (Diagnostic diagnostic : annotationResult) {
+		int documentLength = document.getTextLength();
+
+		for (AnchoredDiagnostic anchoredDiagnostic : annotationResult) {
+
+			Diagnostic diagnostic = anchoredDiagnostic.diagnostic;
 
-			// Compute the start and end offsets given the
-			// range of the diagnostic
+			// Get the start and end offsets of the diagnostic,
+			// which follow edits made since it was published
 
-			Range diagnosticRange = diagnostic.getRange();
+			int startOffset = Math.min(anchoredDiagnostic.getStartOffset(), documentLength);
+			int endOffset   = Math.min(anchoredDiagnostic.getEndOffset(), documentLength);
 
-			int startOffset = LSPUtils.positionToOffset(document, diagnosticRange.getStart());
-			int endOffset   = LSPUtils.positionToOffset(document, diagnosticRange.getEnd());
+			if (endOffset < startOffset) { continue; }
 
 			// Get the diagnostic severity and message
 			// If the severity is not set, consider it an error
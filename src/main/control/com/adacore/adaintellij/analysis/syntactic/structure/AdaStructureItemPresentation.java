@@ -3,30 +3,30 @@ package com.adacore.adaintellij.analysis.syntactic.structure;
 import javax.swing.*;
 
 import com.intellij.navigation.ItemPresentation;
-import com.intellij.psi.*;
 import org.jetbrains.annotations.*;
 
-import com.adacore.adaintellij.analysis.syntactic.AdaPsiElement;
-
 /**
  * The presentation of an item in the structure view of an Ada file.
  */
 public final class AdaStructureItemPresentation implements ItemPresentation {
 
 	/**
-	 * The PSI element that this item presentation represents.
+	 * The text and icon of this item presentation.
 	 */
-	private NavigatablePsiElement element;
+	private final String presentableText;
+	private final Icon   icon;
 
 	/**
 	 * Constructs a new AdaStructureItemPresentation given a
-	 * PSI element.
+	 * text and an icon.
 	 *
-	 * @param element The PSI element represented by the
-	 *                constructed item presentation.
+	 * @param presentableText The text of the constructed item
+	 *                        presentation.
+	 * @param icon The icon of the constructed item presentation.
 	 */
-	AdaStructureItemPresentation(@NotNull NavigatablePsiElement element) {
-		this.element = element;
+	AdaStructureItemPresentation(@Nullable String presentableText, @Nullable Icon icon) {
+		this.presentableText = presentableText;
+		this.icon            = icon;
 	}
 
 	/**
@@ -34,10 +34,7 @@ public final class AdaStructureItemPresentation implements ItemPresentation {
 	 */
 	@Nullable
 	@Override
-	public String getPresentableText() {
-		return element instanceof PsiFile ?
-			((PsiFile)element).getName() : element.getText();
-	}
+	public String getPresentableText() { return presentableText; }
 
 	/**
 	 * @see com.intellij.navigation.ItemPresentation#getLocationString()
@@ -51,12 +48,6 @@ public final class AdaStructureItemPresentation implements ItemPresentation {
 	 */
 	@Nullable
 	@Override
-	public Icon getIcon(boolean unused) {
-
-		AdaPsiElement adaPsiElement = AdaPsiElement.getFrom(element);
-
-		return adaPsiElement == null ? null : adaPsiElement.getIcon();
-
-	}
+	public Icon getIcon(boolean unused) { return icon; }
 
 }
@@ -1,43 +1,208 @@
 package com.adacore.adaintellij.analysis.syntactic.structure;
 
-import java.util.stream.Stream;
+import java.util.*;
 
 import com.intellij.ide.structureView.StructureViewTreeElement;
 import com.intellij.ide.util.treeView.smartTree.*;
 import com.intellij.navigation.ItemPresentation;
-import com.intellij.psi.NavigatablePsiElement;
-import org.jetbrains.annotations.NotNull;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.OpenFileDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import org.jetbrains.annotations.*;
 
 import com.adacore.adaintellij.analysis.syntactic.*;
-
-import static com.adacore.adaintellij.analysis.syntactic.AdaPsiElement.AdaElementType;
+import com.adacore.adaintellij.Utils;
 
 /**
  * Element in the structure view of an Ada file.
+ *
+ * The root element represents the file itself, and every other
+ * element represents a node of the file's outline.
+ * @see AdaOutline
+ *
+ * Children of elements are computed once and cached: nodes of an
+ * outline are immutable, and the root element only recomputes its
+ * children when the outline of the file is replaced, in which case
+ * elements of reused outline nodes are reused as well, along with
+ * their cached children.
+ *
+ * Since outline nodes only hold relative offsets, the offset of the
+ * identifier of an element is computed from the offset of its parent
+ * element. Top-level elements that are reused for a new outline are
+ * given the offsets of their nodes in that outline, which their
+ * descendants follow.
+ *
+ * Elements do not keep the PSI file of the represented file, which is
+ * replaced whenever the file is reparsed, but its virtual file, from
+ * which the current PSI file is retrieved whenever it is needed.
  */
 public final class AdaStructureViewElement implements StructureViewTreeElement, SortableTreeElement {
 
 	/**
-	 * The PSI element that this structure view element represents.
+	 * The project of the represented file.
+	 */
+	private final Project project;
+
+	/**
+	 * The virtual file in which the represented element is declared,
+	 * or null if the file has no virtual file (e.g. a mock file), in
+	 * which case the initial PSI file of the file is used instead.
+	 */
+	private final VirtualFile virtualFile;
+
+	/**
+	 * The PSI file for which the structure view was created.
+	 */
+	private final AdaPsiFile initialFile;
+
+	/**
+	 * The outline node represented by this element, or null if this
+	 * element is the root element representing the file itself.
+	 */
+	private final AdaOutline.Node node;
+
+	/**
+	 * The parent element of this element, or null if this element
+	 * is the root element.
+	 */
+	private final AdaStructureViewElement parent;
+
+	/**
+	 * The offset of the identifier of the represented node relative
+	 * to the identifier of the parent element, or in the document for
+	 * top-level elements.
+	 */
+	private volatile int relativeOffset;
+
+	/**
+	 * For the root element, the modification stamp of the document
+	 * of the file for which a new outline was last requested.
+	 */
+	private volatile long requestedStamp = -1;
+
+	/**
+	 * Callback run when the root element detects that the outline of
+	 * the file was replaced since its children were last computed.
+	 */
+	private volatile Runnable onOutlineUpdate = () -> {};
+
+	/**
+	 * The cached children of this element, and for the root element,
+	 * the outline from which they were computed.
+	 */
+	private volatile TreeElement[] children;
+	private volatile AdaOutline    childrenOutline;
+
+	/**
+	 * Constructs a new root AdaStructureViewElement given an
+	 * Ada file.
+	 *
+	 * @param file The Ada file represented by the constructed
+	 *             structure view element.
+	 */
+	AdaStructureViewElement(@NotNull AdaPsiFile file) {
+		this.project        = file.getProject();
+		this.virtualFile    = Utils.getPsiFileVirtualFile(file);
+		this.initialFile    = file;
+		this.node           = null;
+		this.parent         = null;
+		this.relativeOffset = 0;
+	}
+
+	/**
+	 * Constructs a new AdaStructureViewElement given an outline node,
+	 * a parent element and a relative offset.
+	 *
+	 * @param node The outline node represented by the constructed
+	 *             structure view element.
+	 * @param parent The parent element of the constructed element.
+	 * @param relativeOffset The offset of the node relative to
+	 *                       the parent element.
 	 */
-	private NavigatablePsiElement element;
+	private AdaStructureViewElement(
+		@NotNull AdaOutline.Node         node,
+		@NotNull AdaStructureViewElement parent,
+		int                              relativeOffset
+	) {
+		this.project        = parent.project;
+		this.virtualFile    = parent.virtualFile;
+		this.initialFile    = parent.initialFile;
+		this.node           = node;
+		this.parent         = parent;
+		this.relativeOffset = relativeOffset;
+	}
 
 	/**
-	 * Constructs a new AdaStructureViewElement given a PSI
-	 * element.
+	 * Sets the callback to run when this root element detects that
+	 * the outline of the file was replaced.
 	 *
-	 * @param element The PSI element represented by the
-	 *                constructed structure view element.
+	 * @param onOutlineUpdate The callback to set.
 	 */
-	AdaStructureViewElement(@NotNull NavigatablePsiElement element) {
-		this.element = element;
+	void setOnOutlineUpdate(@NotNull Runnable onOutlineUpdate) {
+		this.onOutlineUpdate = onOutlineUpdate;
+	}
+
+	/**
+	 * Returns the current PSI file of the represented file, or null
+	 * if the file no longer exists or is no longer an Ada file.
+	 * Must be called with read access.
+	 *
+	 * @return The current Ada PSI file, or null.
+	 */
+	@Nullable
+	private AdaPsiFile getFile() {
+
+		if (virtualFile == null) { return initialFile.isValid() ? initialFile : null; }
+
+		if (!virtualFile.isValid() || project.isDisposed()) { return null; }
+
+		PsiFile psiFile = PsiManager.getInstance(project).findFile(virtualFile);
+
+		return psiFile instanceof AdaPsiFile ? (AdaPsiFile)psiFile : null;
+
+	}
+
+	/**
+	 * Returns the name of the represented file.
+	 *
+	 * @return The name of the file.
+	 */
+	@NotNull
+	private String getFileName() {
+		return virtualFile == null ? initialFile.getName() : virtualFile.getName();
+	}
+
+	/**
+	 * Returns the offset of the identifier of the represented node
+	 * in the document, or 0 for the root element.
+	 *
+	 * @return The identifier offset of this element.
+	 */
+	private int getIdentifierOffset() {
+		return parent == null ? 0 : parent.getIdentifierOffset() + relativeOffset;
 	}
 
 	/**
 	 * @see com.intellij.ide.structureView.StructureViewTreeElement#getValue()
+	 *
+	 * Returns the Ada PSI element of the declared identifier if it
+	 * can be found, and the outline node itself otherwise.
 	 */
 	@Override
-	public Object getValue() { return element; }
+	public Object getValue() {
+
+		AdaPsiFile file = getFile();
+
+		if (node == null) { return file; }
+
+		AdaPsiElement element = file == null ?
+			null : file.findAdaElementAt(getIdentifierOffset());
+
+		return element == null ? node : element;
+
+	}
 
 	/**
 	 * Returns a string representing this element when sorting.
@@ -46,7 +211,9 @@ public final class AdaStructureViewElement implements StructureViewTreeElement,
 	 */
 	@NotNull
 	@Override
-	public String getAlphaSortKey() { return element.getText(); }
+	public String getAlphaSortKey() {
+		return node == null ? getFileName() : node.getName();
+	}
 
 	/**
 	 * @see com.intellij.ide.util.treeView.smartTree.TreeElement#getPresentation()
@@ -54,50 +221,134 @@ public final class AdaStructureViewElement implements StructureViewTreeElement,
 	@NotNull
 	@Override
 	public ItemPresentation getPresentation() {
-		return new AdaStructureItemPresentation(element);
+		return node == null ?
+			new AdaStructureItemPresentation(getFileName(), null) :
+			new AdaStructureItemPresentation(node.getName(), node.getElementType().getIcon());
 	}
 
 	/**
 	 * @see com.intellij.ide.util.treeView.smartTree.TreeElement#getChildren()
 	 *
-	 * Makes a `textDocument/documentSymbol` request to the ALS to get
-	 * the list of symbols in the given document, and returns them.
+	 * For the root element, returns elements representing the
+	 * top-level nodes of the last outline of the file, and requests
+	 * a new outline in the background, once per version of the file,
+	 * if the file was modified.
+	 * For other elements, returns elements representing the children
+	 * of the represented outline node.
 	 */
 	@NotNull
 	@Override
 	public TreeElement[] getChildren() {
 
-		// If this element is not the root element representing
-		// the file itself, then return no children
+		// If this element represents an outline node, then
+		// compute its children once
+
+		if (node != null) {
+
+			TreeElement[] nodeChildren = children;
+
+			if (nodeChildren == null) {
+				nodeChildren = children = createElements(
+					node.getChildren(), node.getChildOffsets(), Collections.emptyMap());
+			}
+
+			return nodeChildren;
 
-		if (!(element instanceof AdaPsiFile)) { return TreeElement.EMPTY_ARRAY; }
+		}
 
-		// Filter this element's children by Ada element type,
-		// map them to `AdaStructureViewElement` and return them
+		// Otherwise, get the last outline of the current
+		// PSI file of the file
 
-		return Stream.of(element.getChildren())
-			.filter(element -> {
+		AdaPsiFile file = getFile();
 
-				if (element == null) { return false; }
+		if (file == null) {
+			TreeElement[] rootChildren = children;
+			return rootChildren == null ? new TreeElement[0] : rootChildren;
+		}
 
-				AdaPsiElement adaPsiElement = AdaPsiElement.getFrom(element);
+		AdaOutline outline = AdaPsiStructureManager.getOutline(file);
 
-				if (!(adaPsiElement instanceof AdaPsiReference)) { return false; }
+		// Request a new outline in the background if none was
+		// requested for the current version of the file yet,
+		// and notify the listener once it is available
 
-				AdaElementType elementType = adaPsiElement.getAdaElementType();
+		Document document = Utils.getPsiFileDocument(file);
+		long     stamp    = document == null ? -1 : document.getModificationStamp();
 
-				return
-					elementType == AdaElementType.PACKAGE_SPEC_IDENTIFIER ||
-					elementType == AdaElementType.PACKAGE_BODY_IDENTIFIER ||
-					elementType == AdaElementType.TYPE_IDENTIFIER         ||
-					elementType == AdaElementType.CONSTANT_IDENTIFIER     ||
-					elementType == AdaElementType.VARIABLE_IDENTIFIER     ||
-					elementType == AdaElementType.PROCEDURE_IDENTIFIER    ||
-					elementType == AdaElementType.FUNCTION_IDENTIFIER;
+		if (stamp != requestedStamp) {
 
-			})
-			.map(element -> new AdaStructureViewElement((AdaPsiReference)element))
-			.toArray(TreeElement[]::new);
+			requestedStamp = stamp;
+
+			AdaPsiStructureManager.patchPsiFileElementTypes(file).thenRun(() -> {
+				if (AdaPsiStructureManager.getOutline(file) != outline) {
+					onOutlineUpdate.run();
+				}
+			});
+
+		}
+
+		// If the outline did not change since children were
+		// last computed, then return the cached children
+
+		TreeElement[] rootChildren = children;
+
+		if (rootChildren != null && childrenOutline == outline) {
+			return rootChildren;
+		}
+
+		// Otherwise, compute the children again, reusing the
+		// elements of nodes that were kept in the new outline
+
+		Map<AdaOutline.Node, AdaStructureViewElement> previousElements = new IdentityHashMap<>();
+
+		if (rootChildren != null) {
+			for (TreeElement element : rootChildren) {
+				AdaStructureViewElement structureViewElement = (AdaStructureViewElement)element;
+				previousElements.put(structureViewElement.node, structureViewElement);
+			}
+		}
+
+		rootChildren    = createElements(outline.getRoots(), outline.getRootOffsets(), previousElements);
+		children        = rootChildren;
+		childrenOutline = outline;
+
+		return rootChildren;
+
+	}
+
+	/**
+	 * Creates child elements of this element representing the given
+	 * outline nodes, reusing the given existing elements when possible
+	 * and moving them to the given offsets.
+	 *
+	 * @param nodes The nodes for which to create elements.
+	 * @param offsets The offsets of the nodes relative to this element.
+	 * @param existingElements Existing elements by represented node.
+	 * @return The created elements.
+	 */
+	@NotNull
+	private TreeElement[] createElements(
+		@NotNull AdaOutline.Node[]                             nodes,
+		@NotNull int[]                                         offsets,
+		@NotNull Map<AdaOutline.Node, AdaStructureViewElement> existingElements
+	) {
+
+		TreeElement[] elements = new TreeElement[nodes.length];
+
+		for (int i = 0 ; i < nodes.length ; i++) {
+
+			AdaStructureViewElement existingElement = existingElements.get(nodes[i]);
+
+			if (existingElement == null) {
+				elements[i] = new AdaStructureViewElement(nodes[i], this, offsets[i]);
+			} else {
+				existingElement.relativeOffset = offsets[i];
+				elements[i]                    = existingElement;
+			}
+
+		}
+
+		return elements;
 
 	}
 
@@ -105,18 +356,47 @@ public final class AdaStructureViewElement implements StructureViewTreeElement,
 	 * @see com.intellij.pom.Navigatable#navigate(boolean)
 	 */
 	@Override
-	public void navigate(boolean requestFocus) { element.navigate(requestFocus); }
+	public void navigate(boolean requestFocus) {
+
+		if (node == null) {
+
+			AdaPsiFile file = getFile();
+
+			if (file != null) { file.navigate(requestFocus); }
+
+			return;
+
+		}
+
+		if (virtualFile == null) { return; }
+
+		new OpenFileDescriptor(project, virtualFile, getIdentifierOffset())
+			.navigate(requestFocus);
+
+	}
 
 	/**
 	 * @see com.intellij.pom.Navigatable#canNavigate()
 	 */
 	@Override
-	public boolean canNavigate() { return element.canNavigate(); }
+	public boolean canNavigate() {
+
+		if (node == null) {
+
+			AdaPsiFile file = getFile();
+
+			return file != null && file.canNavigate();
+
+		}
+
+		return virtualFile != null && virtualFile.isValid();
+
+	}
 
 	/**
 	 * @see com.intellij.pom.Navigatable#canNavigateToSource()
 	 */
 	@Override
-	public boolean canNavigateToSource() { return element.canNavigateToSource(); }
+	public boolean canNavigateToSource() { return canNavigate(); }
 
 }
@@ -1,10 +1,11 @@
 package com.adacore.adaintellij.analysis.syntactic.structure;
 
 import com.intellij.ide.structureView.*;
-import com.intellij.psi.PsiFile;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.Disposer;
 import org.jetbrains.annotations.NotNull;
 
-import com.adacore.adaintellij.analysis.syntactic.AdaPsiElement;
+import com.adacore.adaintellij.analysis.syntactic.*;
 
 /**
  * Structure view model of an Ada file.
@@ -19,8 +20,34 @@ public final class AdaStructureViewModel extends StructureViewModelBase
 	 * @param psiFile The PSI file represented by the constructed
 	 *                model.
 	 */
-	AdaStructureViewModel(@NotNull PsiFile psiFile) {
-		super(psiFile, new AdaStructureViewElement(psiFile));
+	AdaStructureViewModel(@NotNull AdaPsiFile psiFile) {
+		this(psiFile, new AdaStructureViewElement(psiFile));
+	}
+
+	/**
+	 * Constructs an AdaStructureViewModel for the given PSI file
+	 * and root element, and refreshes the model whenever the root
+	 * element detects an outline update.
+	 *
+	 * @param psiFile The PSI file represented by the constructed
+	 *                model.
+	 * @param root The root element of the constructed model.
+	 */
+	private AdaStructureViewModel(@NotNull AdaPsiFile psiFile, @NotNull AdaStructureViewElement root) {
+		super(psiFile, root);
+		root.setOnOutlineUpdate(this::refresh);
+	}
+
+	/**
+	 * Asynchronously refreshes the structure views displaying this
+	 * model, e.g. after the outline of the represented file was
+	 * replaced.
+	 * Can be called from any thread.
+	 */
+	void refresh() {
+		ApplicationManager.getApplication().invokeLater(() -> {
+			if (!Disposer.isDisposed(this)) { fireModelUpdate(); }
+		});
 	}
 
 	/**
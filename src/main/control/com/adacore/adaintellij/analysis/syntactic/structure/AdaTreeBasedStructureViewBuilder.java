@@ -33,11 +33,8 @@ public final class AdaTreeBasedStructureViewBuilder extends TreeBasedStructureVi
 	@Override
 	public StructureViewModel createStructureViewModel(@Nullable Editor editor) {
 
-		// Patch the file with Ada element types
-
-		AdaPsiStructureManager.patchPsiFileElementTypes(file);
-
-		// Return a new Ada structure view model
+		// Return a new Ada structure view model, which takes
+		// care of requesting the outline of the file
 
 		return new AdaStructureViewModel(file);
 
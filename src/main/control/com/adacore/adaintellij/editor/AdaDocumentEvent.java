@@ -1,23 +1,34 @@
 package com.adacore.adaintellij.editor;
 
 import com.intellij.openapi.editor.event.DocumentEvent;
+import org.eclipse.lsp4j.Range;
 
+/**
+ * A document event along with the LSP range of the replaced text,
+ * computed from the document before the change was applied.
+ */
 public class AdaDocumentEvent {
 
     private DocumentEvent   documentEvent;
-    private String          previousContent;
+    private Range           range;
 
-    public AdaDocumentEvent(DocumentEvent doc, String previousContent)
+    public AdaDocumentEvent(DocumentEvent doc, Range range)
     {
         this.documentEvent = doc;
-        this.previousContent = previousContent;
+        this.range = range;
     }
 
     public DocumentEvent getDocumentEvent() {
         return documentEvent;
     }
 
-    public String getPreviousContent() {
-        return previousContent;
+    /**
+     * Returns the range of the replaced text, in terms of the
+     * lines and columns of the document before the change.
+     *
+     * @return The range of the replaced text.
+     */
+    public Range getRange() {
+        return range;
     }
 }
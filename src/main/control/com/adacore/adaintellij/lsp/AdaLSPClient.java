@@ -4,20 +4,17 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import javax.swing.*;
 
-import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.codeInsight.daemon.impl.DaemonCodeAnalyzerImpl;
 import com.intellij.codeInsight.daemon.impl.HighlightInfo;
-import com.intellij.codeInsight.folding.impl.CodeFoldingManagerImpl;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
-import com.intellij.openapi.editor.Editor;
-import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.editor.RangeMarker;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
 
 import org.eclipse.lsp4j.*;
 import org.eclipse.lsp4j.jsonrpc.CompletableFutures;
@@ -25,7 +22,6 @@ import org.eclipse.lsp4j.services.LanguageClient;
 
 import com.adacore.adaintellij.dialogs.ListChooserDialog;
 import com.adacore.adaintellij.file.AdaFileType;
-import com.adacore.adaintellij.misc.cache.*;
 import com.adacore.adaintellij.notifications.AdaIJNotification;
 import com.adacore.adaintellij.Utils;
 
@@ -36,12 +32,6 @@ import static com.adacore.adaintellij.lsp.LSPUtils.messageTypeToNotificationType
  */
 public final class AdaLSPClient implements LanguageClient {
 
-	/**
-	 * Cache key for document diagnostics.
-	 */
-	public static final CacheKey<List<Diagnostic>>
-		DIAGNOSTICS_CACHE_KEY = CacheKey.getNewKey();
-
 	/**
 	 * Class-wide logger for the AdaLSPClient class.
 	 */
@@ -229,7 +219,27 @@ public final class AdaLSPClient implements LanguageClient {
 			return CompletableFuture.completedFuture(null);
 		}
 
-		throw new UnsupportedOperationException("Method: workspace/applyEdit");
+		// Apply the edit on the event dispatch thread, in an undoable
+		// command named after the edit's label if any
+
+		String commandName = params.getLabel() == null ? "Apply ALS Edit" : params.getLabel();
+
+		CompletableFuture<ApplyWorkspaceEditResponse> response = new CompletableFuture<>();
+
+		ApplicationManager.getApplication().invokeLater(() -> {
+
+			boolean applied = false;
+
+			try {
+				applied = !project.isDisposed() &&
+					WorkspaceEditApplier.applyInCommand(project, params.getEdit(), commandName);
+			} finally {
+				response.complete(new ApplyWorkspaceEditResponse(applied));
+			}
+
+		});
+
+		return response;
 
 	}
 
@@ -248,40 +258,127 @@ public final class AdaLSPClient implements LanguageClient {
 		// Find the file corresponding to the given diagnostics'
 		// document and check that it is an Ada source file
 
-		final VirtualFile virtualFile = Utils.findFileByUrlString(diagnostics.getUri());
+		VirtualFile virtualFile = Utils.findFileByUrlString(diagnostics.getUri());
 
 		if (virtualFile == null || !AdaFileType.isAdaFile(virtualFile)) { return; }
 
-		// Get the corresponding document
+		List<Diagnostic> documentDiagnostics = diagnostics.getDiagnostics();
+
+		if (documentDiagnostics == null) { documentDiagnostics = Collections.emptyList(); }
 
-		Document document = ApplicationManager.getApplication().runReadAction(
-			(Computable<Document>)() -> Utils.getVirtualFileDocument(virtualFile));
+		final List<Diagnostic> publishedDiagnostics = documentDiagnostics;
 
-		if (document == null) { return; }
+		// Anchor the diagnostics to the file's document and record
+		// them in the driver's diagnostics store, replacing those
+		// previously published for the file, in a read action so that
+		// the document cannot change while the diagnostics are
+		// anchored to it
+		// The store takes care of restarting highlighting of the file
+		// once they are stored, without blocking the thread handling
+		// server messages
+		// Since changes are sent to the server with a delay, the
+		// diagnostics describe an older version of the document if
+		// changes to it are still buffered, in which case they are
+		// dropped, as the server publishes diagnostics again once the
+		// buffered changes are sent, and the previously published
+		// diagnostics, anchored to the document, are kept until then
 
-		WriteCommandAction.runWriteCommandAction(this.project,() -> {
+		ReadAction.run(() -> {
 
-			Editor editor = FileEditorManager
-				.getInstance(
-					this.project
-				).getSelectedTextEditor();
+			Document     document  = Utils.getVirtualFileDocument(virtualFile);
+			AdaLSPServer lspServer = AdaLSPDriver.getServer(project);
 
-			CodeFoldingManagerImpl
-				.getInstance(this.project)
-				.scheduleAsyncFoldingUpdate(editor);
+			if (
+				document == null ||
+				(lspServer != null && lspServer.hasUnsentChanges(virtualFile.getUrl()))
+			) { return; }
 
-			Cacher.cacheData(
-				document,
-				DIAGNOSTICS_CACHE_KEY,
-				diagnostics.getDiagnostics()
-			);
+			driver.getDiagnosticsStore().publish(virtualFile.getUrl(),
+				anchorDiagnostics(document, publishedDiagnostics));
 
-			DaemonCodeAnalyzer.getInstance(this.project).restart(
-				Utils.getVirtualFilePsiFile(
-					this.project, virtualFile
-				)
-			);
 		});
+
+	}
+
+	/**
+	 * Anchors the given diagnostics to the given document using range
+	 * markers, so that they follow subsequent edits to the document.
+	 * Diagnostics whose ranges lie outside the document are ignored.
+	 * Must be called from within a read action.
+	 *
+	 * @param document The document to which the diagnostics apply.
+	 * @param diagnostics The diagnostics to anchor.
+	 * @return The anchored diagnostics.
+	 */
+	@NotNull
+	private static List<DiagnosticsStore.AnchoredDiagnostic> anchorDiagnostics(
+		@NotNull Document         document,
+		@NotNull List<Diagnostic> diagnostics
+	) {
+
+		List<DiagnosticsStore.AnchoredDiagnostic> anchoredDiagnostics =
+			new ArrayList<>(diagnostics.size());
+
+		int lineCount      = document.getLineCount();
+		int documentLength = document.getTextLength();
+
+		for (Diagnostic diagnostic : diagnostics) {
+
+			// Compute the offsets of the diagnostic's range, skipping
+			// it if it does not lie in the document, which may happen
+			// if the diagnostic was computed for an older version of
+			// the document
+
+			Range range = diagnostic.getRange();
+
+			if (
+				range == null ||
+				range.getStart().getLine() >= lineCount ||
+				range.getEnd().getLine() >= lineCount
+			) { continue; }
+
+			int startOffset = Math.min(LSPUtils.positionToOffset(document, range.getStart()), documentLength);
+			int endOffset   = Math.min(LSPUtils.positionToOffset(document, range.getEnd()), documentLength);
+
+			if (endOffset < startOffset) { continue; }
+
+			// Anchor the diagnostic to a range marker
+
+			RangeMarker marker = document.createRangeMarker(startOffset, endOffset);
+
+			anchoredDiagnostics.add(new DiagnosticsStore.AnchoredDiagnostic(diagnostic,
+				new DiagnosticsStore.Anchor() {
+
+					/**
+					 * @see com.adacore.adaintellij.lsp.DiagnosticsStore.Anchor#isValid()
+					 */
+					@Override
+					public boolean isValid() { return marker.isValid(); }
+
+					/**
+					 * @see com.adacore.adaintellij.lsp.DiagnosticsStore.Anchor#getStartOffset()
+					 */
+					@Override
+					public int getStartOffset() { return marker.getStartOffset(); }
+
+					/**
+					 * @see com.adacore.adaintellij.lsp.DiagnosticsStore.Anchor#getEndOffset()
+					 */
+					@Override
+					public int getEndOffset() { return marker.getEndOffset(); }
+
+					/**
+					 * @see com.adacore.adaintellij.lsp.DiagnosticsStore.Anchor#dispose()
+					 */
+					@Override
+					public void dispose() { marker.dispose(); }
+
+				}));
+
+		}
+
+		return anchoredDiagnostics;
+
 	}
 
 }
@@ -2,23 +2,31 @@ package com.adacore.adaintellij.lsp;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import com.adacore.adaintellij.misc.cache.CacheKey;
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.execution.*;
 import com.intellij.notification.*;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ProjectComponent;
 import com.intellij.openapi.editor.*;
 import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.fileEditor.*;
+import com.intellij.openapi.progress.*;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
 import com.intellij.util.messages.MessageBus;
 import org.jetbrains.annotations.*;
 
 import org.eclipse.lsp4j.*;
+import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.jsonrpc.Launcher;
-import org.eclipse.lsp4j.launch.LSPLauncher;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.json.StreamMessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.messages.*;
 import org.eclipse.lsp4j.services.LanguageServer;
 
 import com.adacore.adaintellij.build.*;
@@ -57,7 +65,12 @@ public final class AdaLSPDriver implements ProjectComponent {
 	private static final String GPR_FILE_CHANGE_LISTENER_KEY =
 		"com.adacore.adaintellij.lsp.AdaLSPDriver@gprFileChangeListener";
 
-	public static final CacheKey<String> PREVIOUS_DOCUMENT_CONTENT_KEY = CacheKey.getNewKey();
+	/**
+	 * Cache key for the LSP range of the text replaced by the
+	 * document change being applied, computed before the change
+	 * and cached on the changed document.
+	 */
+	private static final CacheKey<Range> CHANGE_RANGE_CACHE_KEY = CacheKey.getNewKey();
 
 	/**
 	 * The project to which this component belongs.
@@ -82,12 +95,39 @@ public final class AdaLSPDriver implements ProjectComponent {
 	/**
 	 * The LSP driver's client.
 	 */
-	private AdaLSPClient client;
+	private volatile AdaLSPClient client;
+
+	/**
+	 * The LSP driver's server interface, set once the server
+	 * is started and its capabilities are known.
+	 */
+	private volatile AdaLSPServer server;
+
+	/**
+	 * Future server interface, completed with the server interface
+	 * once the LSP session is fully initialized, or with null if the
+	 * server could not be started, if no GPR file path was set once
+	 * it was started, or if the project was closed.
+	 * Replaced with a future completed with the server interface if
+	 * the session is initialized later on, and with a future completed
+	 * with null once the server is shut down.
+	 */
+	private volatile CompletableFuture<AdaLSPServer> serverReady = new CompletableFuture<>();
+
+	/**
+	 * Whether or not the project was closed.
+	 */
+	private volatile boolean projectClosed = false;
 
 	/**
-	 * The LSP driver's server interface.
+	 * Metrics of the LSP session.
 	 */
-	private AdaLSPServer server;
+	private final LSPMetrics metrics = new LSPMetrics();
+
+	/**
+	 * Store of the diagnostics published by the server.
+	 */
+	private final DiagnosticsStore diagnosticsStore = new DiagnosticsStore(this::diagnosticsUpdated);
 
 	/**
 	 * Whether or not the LSP session has been fully initialized.
@@ -97,7 +137,7 @@ public final class AdaLSPDriver implements ProjectComponent {
 	 * notification containing a project file path, and not after it sends the
 	 * `initialized` notification.
 	 */
-	private boolean initialized = false;
+	private volatile boolean initialized = false;
 
 	/**
 	 * Constructs a new AdaLSPDriver given a project and other project components.
@@ -131,7 +171,51 @@ public final class AdaLSPDriver implements ProjectComponent {
 	@Override
 	public void projectOpened() {
 
-		if (!adaProject.isAdaProject()) { return; }
+		if (!adaProject.isAdaProject()) {
+			serverReady.complete(null);
+			return;
+		}
+
+		// Start the server in the background, so that opening the
+		// project does not wait for the server to be found on the
+		// PATH, started and initialized
+
+		new Task.Backgroundable(project, "Starting Ada Language Server", false) {
+
+			/**
+			 * @see com.intellij.openapi.progress.Task#run(ProgressIndicator)
+			 */
+			@Override
+			public void run(@NotNull ProgressIndicator indicator) {
+
+				try {
+
+					startServer();
+
+				} finally {
+
+					// If the session could not be initialized, then
+					// let features waiting for it fall back to local
+					// results (if the server was started, then the
+					// session may still be initialized later once a
+					// GPR file path is set)
+
+					if (!initialized) { serverReady.complete(null); }
+
+				}
+
+			}
+
+		}.queue();
+
+	}
+
+	/**
+	 * Finds, starts and initializes the server, then sets its
+	 * workspace configuration if a GPR file path is already set.
+	 * Must be called from a background thread.
+	 */
+	private void startServer() {
 
 		// Get ALS path
 
@@ -179,20 +263,33 @@ public final class AdaLSPDriver implements ProjectComponent {
 
 		}
 
+		// If the project was closed in the meantime, then
+		// terminate the server process
+
+		if (projectClosed) {
+			process.destroy();
+			return;
+		}
+
 		// Connect to the server process' input/output
 
 		client = new AdaLSPClient(this, project);
 
-		Launcher<LanguageServer> serverLauncher = LSPLauncher.createClientLauncher(
-			client, process.getInputStream(), process.getOutputStream());
+		Launcher<LanguageServer> serverLauncher = new Launcher.Builder<LanguageServer>()
+			.setLocalService(client)
+			.setRemoteInterface(LanguageServer.class)
+			.setInput(metrics.countingInputStream(process.getInputStream()))
+			.setOutput(metrics.countingOutputStream(process.getOutputStream()))
+			.wrapMessages(this::wrapMessageConsumer)
+			.create();
 
-		server = new AdaLSPServer(this, serverLauncher.getRemoteProxy());
+		AdaLSPServer lspServer = new AdaLSPServer(this, serverLauncher.getRemoteProxy());
 
 		serverLauncher.startListening();
 
 		// Send the `initialize` request to initialize the server
 
-		InitializeResult result = server.initialize(getInitParams());
+		InitializeResult result = lspServer.initialize(getInitParams());
 
 		if (result == null) {
 
@@ -208,9 +305,23 @@ public final class AdaLSPDriver implements ProjectComponent {
 
 		}
 
-		server.setCapabilities(result.getCapabilities());
+		lspServer.setCapabilities(result.getCapabilities());
+
+		lspServer.initialized(new InitializedParams());
+
+		// Make the server available to features only once
+		// its capabilities are known
+
+		server = lspServer;
 
-		server.initialized(new InitializedParams());
+		// If the project was closed in the meantime, then
+		// shut down the server
+
+		if (projectClosed) {
+			lspServer.shutdown();
+			lspServer.exit();
+			return;
+		}
 
 		// Try to set up the LSP server with the project's GPR file path
 		// This may not complete in case no GPR files exist in the project
@@ -258,6 +369,13 @@ public final class AdaLSPDriver implements ProjectComponent {
 	@Override
 	public void projectClosed() {
 
+		projectClosed = true;
+
+		// Let features still waiting for the server fall back
+		// to local results
+
+		serverReady.complete(null);
+
 		if (!adaProject.isAdaProject()) { return; }
 
 		// Shut down the server
@@ -285,7 +403,10 @@ public final class AdaLSPDriver implements ProjectComponent {
 	}
 
 	/**
-	 * Returns the given project's ALS interface object.
+	 * Returns the given project's ALS interface object, or null if the
+	 * server is not started yet, in which case features should fall back
+	 * to local results or wait for the server.
+	 * @see AdaLSPDriver#whenReady(Project)
 	 *
 	 * @param project The project for which to get the server.
 	 * @return The given project's server.
@@ -295,6 +416,128 @@ public final class AdaLSPDriver implements ProjectComponent {
 		return project.getComponent(AdaLSPDriver.class).server;
 	}
 
+	/**
+	 * Returns the given project's future ALS interface object, which is
+	 * completed once the LSP session is fully initialized, or with null
+	 * if the session could not be initialized once the server was
+	 * started, if the server was shut down or if the project was closed.
+	 * The returned future is always eventually completed.
+	 *
+	 * @param project The project for which to get the server.
+	 * @return The given project's future server.
+	 */
+	@NotNull
+	public static CompletableFuture<AdaLSPServer> whenReady(@NotNull Project project) {
+		return project.getComponent(AdaLSPDriver.class).serverReady;
+	}
+
+	/**
+	 * Wraps the given message consumer of the LSP session in order to
+	 * record the notifications sent to the server and the notifications
+	 * and requests received from it. Requests sent to the server are
+	 * recorded by the server interface, which also knows their outcome.
+	 *
+	 * @param consumer The message consumer to wrap, which is either the
+	 *                 consumer writing messages to the server or the
+	 *                 consumer dispatching messages read from it.
+	 * @return The wrapping message consumer.
+	 */
+	@NotNull
+	private MessageConsumer wrapMessageConsumer(@NotNull MessageConsumer consumer) {
+
+		boolean outgoing = consumer instanceof StreamMessageConsumer;
+
+		return message -> {
+
+			if (message instanceof NotificationMessage) {
+
+				String method = ((NotificationMessage)message).getMethod();
+
+				if (outgoing) {
+					metrics.notificationSent(method);
+				} else {
+					metrics.notificationReceived(method);
+				}
+
+			} else if (message instanceof RequestMessage && !outgoing) {
+
+				metrics.requestReceived(((RequestMessage)message).getMethod());
+
+			}
+
+			consumer.consume(message);
+
+		};
+
+	}
+
+	/**
+	 * Returns the given project's LSP session metrics.
+	 *
+	 * @param project The project for which to get the metrics.
+	 * @return The given project's LSP session metrics.
+	 */
+	@NotNull
+	public static LSPMetrics getMetrics(@NotNull Project project) {
+		return project.getComponent(AdaLSPDriver.class).metrics;
+	}
+
+	/**
+	 * Returns this driver's LSP session metrics.
+	 *
+	 * @return The LSP session metrics.
+	 */
+	@NotNull
+	LSPMetrics getMetrics() { return metrics; }
+
+	/**
+	 * Returns the given project's store of diagnostics published
+	 * by the ALS.
+	 *
+	 * @param project The project for which to get the diagnostics.
+	 * @return The given project's diagnostics store.
+	 */
+	@NotNull
+	public static DiagnosticsStore getDiagnosticsStore(@NotNull Project project) {
+		return project.getComponent(AdaLSPDriver.class).diagnosticsStore;
+	}
+
+	/**
+	 * Returns this driver's store of diagnostics published by the ALS.
+	 *
+	 * @return The diagnostics store.
+	 */
+	@NotNull
+	DiagnosticsStore getDiagnosticsStore() { return diagnosticsStore; }
+
+	/**
+	 * Restarts highlighting of the given documents, whose diagnostics
+	 * were updated, so that the updated diagnostics are shown.
+	 *
+	 * @param documentUris The URIs of the updated documents.
+	 */
+	private void diagnosticsUpdated(@NotNull Set<String> documentUris) {
+
+		ApplicationManager.getApplication().invokeLater(() -> {
+
+			DaemonCodeAnalyzer codeAnalyzer = DaemonCodeAnalyzer.getInstance(project);
+
+			for (String documentUri : documentUris) {
+
+				VirtualFile file = findFileByUrlString(documentUri);
+
+				if (file == null) { continue; }
+
+				PsiFile psiFile = getVirtualFilePsiFile(project, file);
+
+				if (psiFile != null) { codeAnalyzer.restart(psiFile); }
+
+			}
+
+		}, project.getDisposed());
+
+	}
+
 	/**
 	 * Shuts down the LSP server.
 	 */
@@ -302,10 +545,13 @@ public final class AdaLSPDriver implements ProjectComponent {
 
 		if (!initialized) { return; }
 
-		// Mark the server as not initialized
+		// Mark the server as not initialized, and let features
+		// fall back to local results from now on
 
 		initialized = false;
 
+		serverReady = CompletableFuture.completedFuture(null);
+
 		// Send the shutdown request
 
 		server.shutdown();
@@ -390,10 +636,46 @@ public final class AdaLSPDriver implements ProjectComponent {
 
 		initialized = true;
 
-		// Set file listeners
+		// Set file listeners, then open the files that were opened
+		// in editors while the server was starting
 
 		setFileListeners();
 
+		ApplicationManager.getApplication().invokeLater(() -> {
+
+			for (VirtualFile file : FileEditorManager.getInstance(project).getOpenFiles()) {
+				fileOpened(file);
+			}
+
+		}, project.getDisposed());
+
+		// Let features waiting for the server make requests, and
+		// features requesting it from now on get it immediately,
+		// even if the future was already completed with null
+
+		CompletableFuture<AdaLSPServer> previousServerReady = serverReady;
+
+		serverReady = CompletableFuture.completedFuture(server);
+
+		previousServerReady.complete(server);
+
+	}
+
+	/**
+	 * Clears the diagnostics of the given file and sends a
+	 * `textDocument/didOpen` notification for it to the ALS,
+	 * if it is an Ada file.
+	 *
+	 * @param file The file opened in an editor.
+	 */
+	private void fileOpened(@NotNull VirtualFile file) {
+
+		if (!AdaFileType.isAdaFile(file)) { return; }
+
+		diagnosticsStore.clear(file.getUrl());
+
+		server.didOpen(file);
+
 	}
 
 	/**
@@ -418,17 +700,7 @@ public final class AdaLSPDriver implements ProjectComponent {
 				@NotNull VirtualFile file,
 				@NotNull Pair<FileEditor[], FileEditorProvider[]> editors
 			) {
-
-				if (!AdaFileType.isAdaFile(file)) { return; }
-
-				Document document = getVirtualFileDocument(file);
-
-				if (document != null) {
-					Cacher.cacheData(document, AdaLSPClient.DIAGNOSTICS_CACHE_KEY, null);
-				}
-
-				server.didOpen(file);
-
+				fileOpened(file);
 			}
 
 			/**
@@ -449,8 +721,8 @@ public final class AdaLSPDriver implements ProjectComponent {
 
 		messageBus.connect().subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, listener);
 
-		// Set document change listener to clear
-		// document diagnostics
+		// Set document change listener to drop outdated document
+		// diagnostics and send document changes to the ALS
 
 		EditorFactory.getInstance().getEventMulticaster().addDocumentListener(new AdaDocumentListener() {
 
@@ -459,27 +731,47 @@ public final class AdaLSPDriver implements ProjectComponent {
 			 */
 			@Override
 			public void beforeAdaDocumentChanged(@NotNull DocumentEvent event) {
-				Cacher.clearCachedData(event.getDocument(), AdaLSPClient.DIAGNOSTICS_CACHE_KEY);
 
-				Cacher.cacheData(
-					event.getDocument(),
-					PREVIOUS_DOCUMENT_CONTENT_KEY,
-					event.getDocument().getText()
-				);
+				Document    document = event.getDocument();
+				VirtualFile file     = getDocumentVirtualFile(document);
+
+				int offset = event.getOffset();
+
+				// Drop the document diagnostics that apply to the
+				// replaced text, the others following the edit
+
+				if (file != null) {
+					diagnosticsStore.documentChanging(file.getUrl(), offset, offset + event.getOldLength());
+				}
+
+				// Compute the range of the replaced text while the
+				// document's line index still reflects the old text
+
+				Cacher.cacheData(document, CHANGE_RANGE_CACHE_KEY, new Range(
+					LSPUtils.offsetToPosition(document, offset),
+					LSPUtils.offsetToPosition(document, offset + event.getOldLength())
+				));
+
 			}
 
+			/**
+			 * @see com.adacore.adaintellij.editor.AdaDocumentListener#adaDocumentChanged(DocumentEvent)
+			 *
+			 * Sends a `textDocument/didChange` notification to the ALS when a document is changed.
+			 */
 			@Override
 			public void adaDocumentChanged(@NotNull DocumentEvent event) {
-				server.didChange(
-					new AdaDocumentEvent(
-						event,
-						Cacher.getCachedData(
-							event.getDocument(),
-							PREVIOUS_DOCUMENT_CONTENT_KEY
-						).data
-				));
+
+				Range range = Cacher.getCachedData(event.getDocument(), CHANGE_RANGE_CACHE_KEY).data;
+
+				if (range == null) { return; }
+
+				server.didChange(new AdaDocumentEvent(event, range));
+
 			}
+
 		});
+
 	}
 
 	/**
@@ -2,15 +2,19 @@ package com.adacore.adaintellij.lsp;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.*;
 import java.util.stream.*;
 
 import com.adacore.adaintellij.editor.AdaDocumentEvent;
 import com.intellij.notification.*;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.progress.*;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.*;
 
 import org.eclipse.lsp4j.*;
@@ -20,6 +24,7 @@ import org.eclipse.lsp4j.services.LanguageServer;
 
 import com.adacore.adaintellij.file.AdaFileType;
 import com.adacore.adaintellij.lsp.objects.AdaSettingsObject;
+import com.adacore.adaintellij.misc.cache.*;
 import com.adacore.adaintellij.notifications.AdaIJNotification;
 
 import static com.adacore.adaintellij.Utils.*;
@@ -39,11 +44,43 @@ public final class AdaLSPServer {
 	/**
 	 * Empty result lists returned by servers.
 	 */
-	private static final List<TextEdit>       EMPTY_TEXT_EDIT_LIST       = Collections.emptyList();
-	private static final List<CompletionItem> EMPTY_COMPLETION_ITEM_LIST = Collections.emptyList();
-	private static final List<Location>       EMPTY_LOCATION_LIST        = Collections.emptyList();
-	private static final List<DocumentSymbol> EMPTY_DOCUMENT_SYMBOL_LIST = Collections.emptyList();
-	private static final List<FoldingRange>   EMPTY_FOLDING_RANGE_LIST   = Collections.emptyList();
+	private static final List<TextEdit>          EMPTY_TEXT_EDIT_LIST          = Collections.emptyList();
+	private static final List<CompletionItem>    EMPTY_COMPLETION_ITEM_LIST    = Collections.emptyList();
+	private static final List<Location>          EMPTY_LOCATION_LIST           = Collections.emptyList();
+	private static final List<DocumentSymbol>    EMPTY_DOCUMENT_SYMBOL_LIST    = Collections.emptyList();
+	private static final List<FoldingRange>      EMPTY_FOLDING_RANGE_LIST      = Collections.emptyList();
+	private static final List<DocumentHighlight> EMPTY_DOCUMENT_HIGHLIGHT_LIST = Collections.emptyList();
+
+	/**
+	 * The maximum number of cached `textDocument/definition` results.
+	 */
+	private static final int DEFINITION_CACHE_CAPACITY = 2048;
+
+	/**
+	 * The maximum number of cached `textDocument/documentHighlight` results.
+	 */
+	private static final int DOCUMENT_HIGHLIGHT_CACHE_CAPACITY = 256;
+
+	/**
+	 * Methods of requests made in the background, as opposed to
+	 * interactive requests awaited by the user.
+	 */
+	private static final Set<String> BACKGROUND_METHODS = new HashSet<>(Arrays.asList(
+		"textDocument/documentSymbol",
+		"textDocument/foldingRange"
+	));
+
+	/**
+	 * Methods of requests that may legitimately take arbitrarily long,
+	 * such as project-wide searches, and that are therefore not subject
+	 * to request timeouts. Such requests are only canceled when the
+	 * operation awaiting them is canceled, typically by the user.
+	 * They are not scheduled either, so that they do not hold one of
+	 * the scheduler's slots for their whole duration.
+	 */
+	private static final Set<String> UNTIMED_METHODS = new HashSet<>(Collections.singletonList(
+		"textDocument/references"
+	));
 
 	/**
 	 * The LSP driver to which this server belongs.
@@ -74,9 +111,108 @@ public final class AdaLSPServer {
 	private int failureCount = 0;
 
 	/**
-	 * The set of open files in the IDE.
+	 * The set of open files in the server's perspective, i.e. files
+	 * open in the IDE and files in the open document pool.
+	 */
+	private Set<String> openFiles = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Pool of documents kept open in the server's perspective after
+	 * being opened for requests, without being open in the IDE.
 	 */
-	private Set<String> openFiles = new HashSet<>();
+	private final OpenDocumentPool<Document> openDocumentPool = new OpenDocumentPool<>();
+
+	/**
+	 * Buffer of document changes to be sent to the server.
+	 */
+	private final DocumentChangeBuffer changeBuffer = new DocumentChangeBuffer(this::didChange);
+
+	/**
+	 * Multiplexer of identical in-flight document requests.
+	 */
+	private final RequestMultiplexer requestMultiplexer = new RequestMultiplexer();
+
+	/**
+	 * Scheduler of document requests, bounding the number of document
+	 * requests in flight and prioritizing interactive requests.
+	 */
+	private final RequestScheduler requestScheduler = new RequestScheduler();
+
+	/**
+	 * Cache of `textDocument/definition` results.
+	 * Entries are invalidated when either the document from which the
+	 * request was made or the document containing the result changes.
+	 */
+	private final LRUCache<PositionKey, Location> definitionCache =
+		new LRUCache<>(DEFINITION_CACHE_CAPACITY);
+
+	/**
+	 * Cache of `textDocument/documentHighlight` results.
+	 * Entries are invalidated when the document changes.
+	 */
+	private final LRUCache<PositionKey, List<DocumentHighlight>> documentHighlightCache =
+		new LRUCache<>(DOCUMENT_HIGHLIGHT_CACHE_CAPACITY);
+
+	/**
+	 * Identity of a request made at a given position in a given
+	 * version of a document, such as `textDocument/definition`.
+	 */
+	private static final class PositionKey {
+
+		/**
+		 * The URI of the document.
+		 */
+		final String documentUri;
+
+		/**
+		 * The version of the document, i.e. its modification stamp.
+		 */
+		final long version;
+
+		/**
+		 * The position in the document.
+		 */
+		final Position position;
+
+		/**
+		 * Constructs a new PositionKey given a document URI, a
+		 * document version and a position.
+		 *
+		 * @param documentUri The URI of the document.
+		 * @param version The version of the document.
+		 * @param position The position in the document.
+		 */
+		PositionKey(@NotNull String documentUri, long version, @NotNull Position position) {
+			this.documentUri = documentUri;
+			this.version     = version;
+			this.position    = position;
+		}
+
+		/**
+		 * @see java.lang.Object#equals(Object)
+		 */
+		@Override
+		public boolean equals(Object object) {
+
+			if (this == object) { return true; }
+
+			if (!(object instanceof PositionKey)) { return false; }
+
+			PositionKey key = (PositionKey)object;
+
+			return version == key.version &&
+				documentUri.equals(key.documentUri) &&
+				position.equals(key.position);
+
+		}
+
+		/**
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() { return Objects.hash(documentUri, version, position); }
+
+	}
 
 	/**
 	 * Constructs a new AdaLSPServer given its driver and the corresponding
@@ -158,113 +294,241 @@ public final class AdaLSPServer {
 	}
 
 	/**
-	 * Generic request wrapper allowing to systematically perform certain
-	 * operations on every request, such as logging and keeping track of failed
-	 * requests.
-	 * Waits for the response to the given request, and returns its result.
-	 * The given supplier should be a simple wrapper around a server request,
-	 * for example (using a Java lambda for the Supplier anonymous class):
+	 * Generic asynchronous request wrapper allowing to systematically
+	 * perform certain operations on every request, such as logging and
+	 * keeping track of failed requests.
+	 * Makes the given request and returns its future result, without
+	 * waiting for it. The given supplier should be a simple wrapper around
+	 * a server request, for example (using a Java lambda for the Supplier
+	 * anonymous class):
 	 *
 	 * () -> server.getTextDocumentService().definition(params)
 	 *
+	 * The returned future completes with null if the request fails,
+	 * and completes exceptionally with a `CancellationException` if
+	 * the request is canceled. Canceling the returned future cancels
+	 * the request, which sends a `$/cancelRequest` notification to the
+	 * server. Unless its method is one of the untimed methods, the
+	 * request is also canceled if it does not complete within the
+	 * timeout configured for its method.
+	 *
 	 * @param method The name of the request's method.
 	 * @param requestSupplier A supplier representing the request to be made.
 	 * @param <T> The type of the request's response result.
-	 * @return The result of the response to the request.
+	 * @return The future result of the response to the request.
 	 */
-	@Nullable
-	private <T> T request(
+	@NotNull
+	private <T> CompletableFuture<T> requestAsync(
 		@NotNull String method,
 		@NotNull Supplier<CompletableFuture<T>> requestSupplier
 	) {
 
-		T result = null;
-
 		// Get the request future
 
+		LSPMetrics metrics = driver.getMetrics();
+
+		metrics.requestStarted(method);
+
+		long                 startTime     = System.nanoTime();
 		CompletableFuture<T> requestFuture = requestSupplier.get();
 
-		// Get the timeout for the given method
+		// Cancel the request if it is not complete by the end
+		// of the timeout for the given method, and record the
+		// timeout as its latency
 
-		int requestTimeout = Timeouts.getMethodTimeout(method);
+		int           requestTimeout = Timeouts.getMethodTimeout(method);
+		AtomicBoolean timedOut       = new AtomicBoolean(false);
 
-		// Keep looping to get the request's result
-		// while the method timeout is not reached
+		ScheduledFuture<?> timeout = UNTIMED_METHODS.contains(method) ? null :
+			AppExecutorUtil.getAppScheduledExecutorService().schedule(
+				() -> {
 
-		while (requestTimeout > 0) {
+					timedOut.set(true);
 
-			try {
+					if (!requestFuture.cancel(true)) { return; }
 
-				// Try to make the request and get the result before
-				// the end of the next check-cancel interval
+					Timeouts.recordLatency(method, requestTimeout);
 
-				result = requestFuture.get(
-					AdaLSPDriver.CHECK_CANCELED_INTERVAL,
-					TimeUnit.MILLISECONDS
-				);
+					LOGGER.info("Request '" + method + "' to ALS timed out after " + requestTimeout + " ms");
 
-				// The request resolved before the end of the next
-				// check-cancel interval, so break immediately
+				},
+				requestTimeout,
+				TimeUnit.MILLISECONDS
+			);
 
-				break;
+		// Handle failures, letting cancellations through
 
-			} catch (TimeoutException timeoutException) {
+		return LSPUtils.handleCancellable(requestFuture, (result, throwable) -> {
 
-				// The check-cancel interval is over, so decrease the
-				// request timeout then check if the operation was
-				// canceled, and if it was then break
+			if (timeout != null) { timeout.cancel(false); }
 
-				requestTimeout -= AdaLSPDriver.CHECK_CANCELED_INTERVAL;
+			if (throwable == null) {
 
-				try {
-					ProgressManager.checkCanceled();
-				} catch (ProcessCanceledException canceledException) {
-					break;
+				// Record the latency of the request
+
+				long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+				Timeouts.recordLatency(method, latency);
+				metrics.requestSucceeded(method, latency);
+
+				return result;
+
+			}
+
+			Throwable cause = throwable instanceof CompletionException &&
+				throwable.getCause() != null ? throwable.getCause() : throwable;
+
+			if (cause instanceof CancellationException) {
+
+				if (timedOut.get()) {
+					metrics.requestTimedOut(method);
+				} else {
+					metrics.requestCanceled(method);
 				}
 
-			} catch (Exception exception) {
+				throw (CancellationException)cause;
 
-				// Log the failed request
+			}
 
-				LOGGER.error("Request '" + method + "' to ALS failed", exception);
+			metrics.requestFailed(method);
 
-				// Increment the number of failed requests
+			requestFailed(method, cause);
 
-				failureCount++;
+			return null;
 
-				// If the number of failed requests reaches the threshold defined in
-				// the driver, then notify the user and shut down the server
+		});
 
-				if (failureCount == AdaLSPDriver.FAILURE_COUNT_THRESHOLD) {
+	}
 
-					Notifications.Bus.notify(new AdaIJNotification(
-						"Connection to Ada Language Server unreliable",
-						"The ALS has been shut down due to multiple failed requests, " +
-							"which will disable smart features such as find-usages and " +
-							"code completion.\nReload the current project to try again.",
-						NotificationType.ERROR
-					));
+	/**
+	 * Generic blocking request wrapper.
+	 * Makes the given request, waits for the response and returns its
+	 * result, or null if the request failed or timed out.
+	 * See asynchronous request wrapper for information about expected
+	 * parameters.
+	 * @see AdaLSPServer#requestAsync(String, Supplier)
+	 *
+	 * @param method The name of the request's method.
+	 * @param requestSupplier A supplier representing the request to be made.
+	 * @param <T> The type of the request's response result.
+	 * @return The result of the response to the request.
+	 * @throws ProcessCanceledException If the operation within the
+	 *                                  IntelliJ platform that resulted
+	 *                                  in the request was canceled, in
+	 *                                  which case the request is canceled.
+	 */
+	@Nullable
+	private <T> T request(
+		@NotNull String method,
+		@NotNull Supplier<CompletableFuture<T>> requestSupplier
+	) {
+		return await(requestAsync(method, requestSupplier));
+	}
 
-					driver.shutDownServer();
+	/**
+	 * Waits for the given future request result and returns it.
+	 * If the operation within the IntelliJ platform that resulted in
+	 * the request is canceled in the meantime, then the request is
+	 * canceled as well.
+	 *
+	 * @param future The future request result to wait for.
+	 * @param <T> The type of the request's response result.
+	 * @return The result of the request, or null if the request
+	 *         failed or was canceled by the server or by timeout.
+	 * @throws ProcessCanceledException If the operation within the
+	 *                                  IntelliJ platform that resulted
+	 *                                  in the request was canceled.
+	 */
+	@Nullable
+	public static <T> T await(@NotNull CompletableFuture<T> future) {
+
+		// Keep waiting for the request's result, checking if
+		// the operation was canceled at regular intervals
+
+		while (true) {
+
+			try {
+
+				return future.get(AdaLSPDriver.CHECK_CANCELED_INTERVAL, TimeUnit.MILLISECONDS);
+
+			} catch (TimeoutException timeoutException) {
+
+				// The check-cancel interval is over, so check if the
+				// operation was canceled, and if it was then cancel
+				// the request
 
+				try {
+					ProgressManager.checkCanceled();
+				} catch (ProcessCanceledException canceledException) {
+					future.cancel(true);
+					throw canceledException;
 				}
 
-				// Break out of the loop
+			} catch (InterruptedException interruptedException) {
+
+				future.cancel(true);
+
+				Thread.currentThread().interrupt();
 
-				break;
+				return null;
+
+			} catch (CancellationException | ExecutionException exception) {
+
+				// Failures are already handled by the
+				// asynchronous request wrapper
+
+				return null;
 
 			}
 
 		}
 
-		// Return the result
+	}
+
+	/**
+	 * Logs and keeps track of the given failed request. If the number
+	 * of failed requests reaches the threshold defined in the driver,
+	 * then notifies the user and shuts down the server.
+	 *
+	 * @param method The name of the failed request's method.
+	 * @param throwable The cause of the failure.
+	 */
+	private void requestFailed(@NotNull String method, @NotNull Throwable throwable) {
+
+		// Log the failed request
+
+		LOGGER.error("Request '" + method + "' to ALS failed", throwable);
+
+		// Increment the number of failed requests
+
+		int failures;
+
+		synchronized (this) { failures = ++failureCount; }
+
+		// If the number of failed requests reaches the threshold defined in
+		// the driver, then notify the user and shut down the server
 
-		return result;
+		if (failures == AdaLSPDriver.FAILURE_COUNT_THRESHOLD) {
+
+			Notifications.Bus.notify(new AdaIJNotification(
+				"Connection to Ada Language Server unreliable",
+				"The ALS has been shut down due to multiple failed requests, " +
+					"which will disable smart features such as find-usages and " +
+					"code completion.\nReload the current project to try again.",
+				NotificationType.ERROR
+			));
+
+			// Shut down the server on a background thread, as this
+			// may be called from the thread handling server messages
+
+			ApplicationManager.getApplication().executeOnPooledThread(driver::shutDownServer);
+
+		}
 
 	}
 
 	/**
-	 * Wrapper around requests that are relative to a document.
+	 * Asynchronous wrapper around requests that are relative to a document.
 	 * Basically any request whose parameters specify a document URI must be made
 	 * indirectly through this method and NOT directly. This is because the
 	 * IntelliJ platform often performs certain operations, such as resolving a
@@ -273,51 +537,206 @@ public final class AdaLSPServer {
 	 * were not open in the server's perspective.
 	 * To solve this, this wrapper checks if the file referenced by the given
 	 * request is already open and, if it is not, sends a `textDocument/didOpen`
-	 * notification before performing the request and a `textDocument/didClose`
-	 * notification after.
+	 * notification before performing the request. Such files are then kept
+	 * open in a bounded pool, so that subsequent requests on them do not
+	 * require the server to analyze them again, and are only closed with a
+	 * `textDocument/didClose` notification once evicted from the pool.
+	 * @see OpenDocumentPool
+	 * Identical requests, i.e. with the same method and parameters made
+	 * on the same contents, share the result of the first one while it
+	 * is in flight. Requests are then scheduled so that a bounded number
+	 * of them are in flight, interactive requests overtaking queued
+	 * background requests.
 	 * See base request wrapper for information about expected parameters.
+	 * @see AdaLSPServer#requestAsync(String, Supplier)
+	 * @see RequestMultiplexer
+	 * @see RequestScheduler
 	 *
 	 * @param method The name of the request's method.
 	 * @param documentUri The URI of the document referenced by the given request.
+	 * @param params The parameters of the given request.
 	 * @param requestSupplier A supplier representing the request to be made.
 	 * @param <T> The type of the request's response result.
-	 * @return The result of the response to the request.
+	 * @return The future result of the response to the request.
 	 */
-	@Nullable
-	private <T> T documentRequest(
+	@NotNull
+	private <T> CompletableFuture<T> documentRequestAsync(
 		@NotNull String method,
 		@NotNull String documentUri,
+		@NotNull Object params,
 		@NotNull Supplier<CompletableFuture<T>> requestSupplier
 	) {
 
-		boolean openOnlyForRequest =
-			serverSyncPolicy.getOpenClose() &&
-			!openFiles.contains(documentUri);
+		// Send all buffered document changes, as the result of
+		// the request may depend on the content of any document
+
+		changeBuffer.flushAll();
+
+		// Share the result of an identical in-flight request,
+		// or schedule the request according to its priority
+
+		RequestScheduler.Priority priority = BACKGROUND_METHODS.contains(method) ?
+			RequestScheduler.Priority.BACKGROUND : RequestScheduler.Priority.INTERACTIVE;
 
-		// If the file is not already open, send a `textDocument/didOpen`
-		// notification to tell the server that the file is open
+		return requestMultiplexer.request(method, params, changeBuffer.getContentsVersion(),
+			() -> scheduledDocumentRequestAsync(method, documentUri, priority, requestSupplier));
 
-		if (openOnlyForRequest) {
-			didOpen(documentUri);
+	}
+
+	/**
+	 * Schedules the given document request with the given priority.
+	 * Requests of untimed methods are made right away instead, as they
+	 * would otherwise hold one of the scheduler's slots indefinitely.
+	 * @see AdaLSPServer#documentRequestAsync(String, String, Object, Supplier)
+	 * @see AdaLSPServer#UNTIMED_METHODS
+	 *
+	 * @param method The name of the request's method.
+	 * @param documentUri The URI of the document referenced by the given request.
+	 * @param priority The priority of the request.
+	 * @param requestSupplier A supplier representing the request to be made.
+	 * @param <T> The type of the request's response result.
+	 * @return The future result of the response to the request.
+	 */
+	@NotNull
+	private <T> CompletableFuture<T> scheduledDocumentRequestAsync(
+		@NotNull String                          method,
+		@NotNull String                          documentUri,
+		@NotNull RequestScheduler.Priority       priority,
+		@NotNull Supplier<CompletableFuture<T>> requestSupplier
+	) {
+
+		if (UNTIMED_METHODS.contains(method)) {
+			return openedDocumentRequestAsync(method, documentUri, requestSupplier);
 		}
 
-		// Make the request and store the result
+		return requestScheduler.schedule(priority, documentUri,
+			() -> openedDocumentRequestAsync(method, documentUri, requestSupplier));
 
-		T result = request(method, requestSupplier);
+	}
 
-		// If the file was not already open, send a `textDocument/didClose`
-		// notification to tell the server that the file is closed
+	/**
+	 * Makes the given document request, making sure the document is
+	 * open in the server's perspective for the duration of the request.
+	 * @see AdaLSPServer#documentRequestAsync(String, String, Object, Supplier)
+	 *
+	 * @param method The name of the request's method.
+	 * @param documentUri The URI of the document referenced by the given request.
+	 * @param requestSupplier A supplier representing the request to be made.
+	 * @param <T> The type of the request's response result.
+	 * @return The future result of the response to the request.
+	 */
+	@NotNull
+	private <T> CompletableFuture<T> openedDocumentRequestAsync(
+		@NotNull String method,
+		@NotNull String documentUri,
+		@NotNull Supplier<CompletableFuture<T>> requestSupplier
+	) {
 
-		if (openOnlyForRequest) {
-			didClose(documentUri);
+		if (!serverSyncPolicy.getOpenClose()) {
+			return requestAsync(method, requestSupplier);
 		}
 
-		// Return the result
+		// Make sure the file is open, in a read action so that its
+		// text cannot change while it is being opened (the read
+		// action is started before taking the pool's lock, which
+		// document changes take from within write actions)
+
+		if (!ReadAction.compute(() -> acquireDocument(documentUri))) {
+			return requestAsync(method, requestSupplier);
+		}
+
+		// Make the request, then release the file once the request
+		// is complete, which may result in it being evicted from the
+		// pool and closed
+
+		return LSPUtils.handleCancellable(requestAsync(method, requestSupplier), (result, throwable) -> {
+
+			synchronized (openDocumentPool) {
+				closePooledDocuments(openDocumentPool.release(documentUri));
+			}
+
+			if (throwable != null) { throw new CompletionException(throwable); }
 
-		return result;
+			return result;
+
+		});
 
 	}
 
+	/**
+	 * Makes sure the given document is open in the server's perspective,
+	 * and acquires it in the open document pool if it is not open in the
+	 * IDE, in which case it must be released once the request made on it
+	 * is complete. Must be called from within a read action.
+	 * @see OpenDocumentPool
+	 *
+	 * @param documentUri The URI of the document.
+	 * @return Whether or not the document was acquired in the pool.
+	 */
+	private boolean acquireDocument(@NotNull String documentUri) {
+
+		// Evicted files are closed while holding the pool's lock so
+		// that they cannot be reopened before being closed
+
+		synchronized (openDocumentPool) {
+
+			boolean pooled = openDocumentPool.contains(documentUri);
+
+			// If the file is open in the IDE, then it is kept open
+			// and does not need to be acquired
+
+			if (!pooled && openFiles.contains(documentUri)) { return false; }
+
+			// If the file is not already open, send a `textDocument/didOpen`
+			// notification to tell the server that the file is open
+
+			if (!pooled) {
+
+				didOpen(documentUri);
+
+				if (!openFiles.contains(documentUri)) { return false; }
+
+			}
+
+			// Keep the file in the pool at least until the request
+			// is complete, along with its document, so that the
+			// document is not collected and keeps reporting changes
+			// made to the file outside of the IDE
+
+			VirtualFile file     = findFileByUrlString(documentUri);
+			Document    document = file == null ? null : getVirtualFileDocument(file);
+
+			closePooledDocuments(openDocumentPool.acquire(documentUri, document,
+				document == null ? 0 : document.getTextLength()));
+
+			return true;
+
+		}
+
+	}
+
+	/**
+	 * Blocking wrapper around requests that are relative to a document.
+	 * @see AdaLSPServer#documentRequestAsync(String, String, Object, Supplier)
+	 * @see AdaLSPServer#request(String, Supplier)
+	 *
+	 * @param method The name of the request's method.
+	 * @param documentUri The URI of the document referenced by the given request.
+	 * @param params The parameters of the given request.
+	 * @param requestSupplier A supplier representing the request to be made.
+	 * @param <T> The type of the request's response result.
+	 * @return The result of the response to the request.
+	 */
+	@Nullable
+	private <T> T documentRequest(
+		@NotNull String method,
+		@NotNull String documentUri,
+		@NotNull Object params,
+		@NotNull Supplier<CompletableFuture<T>> requestSupplier
+	) {
+		return await(documentRequestAsync(method, documentUri, params, requestSupplier));
+	}
+
 	/*
 		General methods
 	*/
@@ -352,7 +771,13 @@ public final class AdaLSPServer {
 	/**
 	 * @see org.eclipse.lsp4j.services.LanguageServer#shutdown()
 	 */
-	void shutdown() { request("shutdown", () -> server.shutdown()); }
+	void shutdown() {
+
+		changeBuffer.flushAll();
+
+		request("shutdown", () -> server.shutdown());
+
+	}
 
 	/**
 	 * @see org.eclipse.lsp4j.services.LanguageServer#exit()
@@ -371,6 +796,9 @@ public final class AdaLSPServer {
 		@Nullable Map<String, String> scenarioVariables
 	) {
 
+		definitionCache.clear();
+		documentHighlightCache.clear();
+
 		AdaSettingsObject adaSettingsObject = new AdaSettingsObject();
 
 		adaSettingsObject.setProjectFile(gprFilePath);
@@ -409,17 +837,40 @@ public final class AdaLSPServer {
 		if (!serverSyncPolicy.getOpenClose() ||
 			!AdaFileType.isAdaFile(file)) { return; }
 
-		String   documentUri = file.getUrl();
-		Document document    = getVirtualFileDocument(file);
+		String documentUri = file.getUrl();
+
+		// If the file is in the open document pool, then it is
+		// already open in the server's perspective and kept in
+		// sync, so remove it from the pool so that it is no
+		// longer closed on eviction
+
+		if (openDocumentPool.remove(documentUri)) { return; }
+
+		// If the file is already open, e.g. because it was opened
+		// in an editor while the server was starting, then return
+
+		if (openFiles.contains(documentUri)) { return; }
+
+		// Send the document's text and discard its buffered changes
+		// in a read action, so that no change can be made to the
+		// document in between
+
+		ReadAction.run(() -> {
+
+			Document document = getVirtualFileDocument(file);
+
+			if (document == null) { return; }
+
+			TextDocumentItem textDocumentItem = new TextDocumentItem(
+				documentUri, LSPUtils.ADA_LSP_LANGUAGE_ID, 1, document.getText());
 
-		if (document == null) { return; }
+			server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(textDocumentItem));
 
-		TextDocumentItem textDocumentItem = new TextDocumentItem(
-			documentUri, LSPUtils.ADA_LSP_LANGUAGE_ID, 1, document.getText());
+			changeBuffer.documentOpened(documentUri, textDocumentItem.getVersion());
 
-		server.getTextDocumentService().didOpen(new DidOpenTextDocumentParams(textDocumentItem));
+			openFiles.add(documentUri);
 
-		openFiles.add(documentUri);
+		});
 
 	}
 
@@ -451,42 +902,66 @@ public final class AdaLSPServer {
 		if (changedFile == null || !AdaFileType.isAdaFile(changedFile)) { return; }
 
 		// If the server's sync change policy is "Incremental",
-		// then map the given document events to LSP change events
+		// then buffer the LSP change event corresponding to the
+		// given document event
 
-		TextDocumentContentChangeEvent changeEvent = null;
+		String documentUri = changedFile.getUrl();
 
-		if (changePolicy == TextDocumentSyncKind.Incremental) {
+		// Drop queued background requests on the changed document,
+		// as their results would apply to its previous version
+
+		requestScheduler.documentChanged(documentUri);
+
+		// Invalidate cached definitions from or to the changed document,
+		// and cached highlights in the changed document, only preventing
+		// in-flight results that depend on that document from being
+		// cached
+
+		definitionCache.invalidate(documentUri, (key, location) ->
+			key.documentUri.equals(documentUri) ||
+			(location != null && documentUri.equals(location.getUri())));
+
+		documentHighlightCache.invalidate(documentUri, (key, highlights) -> key.documentUri.equals(documentUri));
 
-			changeEvent = LSPUtils.documentEventToContentChangeEvent(event);
+		// Update the size of the changed document in the open
+		// document pool, closing evicted documents if any
 
+		synchronized (openDocumentPool) {
+			closePooledDocuments(
+				openDocumentPool.resize(documentUri, changedDocument.getTextLength()));
 		}
 
-		// Otherwise, if the server's sync change policy is "Full",
-		// then create a single LSP change event with the full text
-		// of the changed document
+		if (changePolicy == TextDocumentSyncKind.Incremental) {
 
-		else if (changePolicy == TextDocumentSyncKind.Full) {
+			changeBuffer.addChange(documentUri, LSPUtils.documentEventToContentChangeEvent(event));
 
-			changeEvent = new TextDocumentContentChangeEvent(changedDocument.getText());
 		}
 
-		// Will never execute
-		else { return; }
+		// Otherwise, if the server's sync change policy is "Full",
+		// then buffer a change with the full text of the changed
+		// document, only computed when the change is sent
 
-		List<TextDocumentContentChangeEvent> changeEvents = Arrays.asList(changeEvent);
+		else if (changePolicy == TextDocumentSyncKind.Full) {
 
-		// Send the notification with the computed changes and
-		// and the changed document's virtual file modification
-		// stamp as document version
+			changeBuffer.addFullChange(documentUri,
+				() -> changedDocument.getImmutableCharSequence().toString());
 
-		didChange(
-			changedFile.getUrl(),
-			(int)changedFile.getModificationStamp(),
-			changeEvents
-		);
+		}
 
 	}
 
+	/**
+	 * Returns whether or not changes to the given document are still
+	 * buffered, i.e. whether the server's view of the document is older
+	 * than its current content.
+	 *
+	 * @param documentUri The URI of the document.
+	 * @return Whether or not changes to the document are unsent.
+	 */
+	boolean hasUnsentChanges(@NotNull String documentUri) {
+		return changeBuffer.hasBufferedChanges(documentUri);
+	}
+
 	/**
 	 * @see org.eclipse.lsp4j.services.TextDocumentService#didChange(DidChangeTextDocumentParams)
 	 */
@@ -524,6 +999,8 @@ public final class AdaLSPServer {
 
 		if (!serverSyncPolicy.getWillSave()) { return; }
 
+		changeBuffer.flush(documentUri);
+
 		WillSaveTextDocumentParams params = new WillSaveTextDocumentParams();
 
 		params.setTextDocument(new TextDocumentIdentifier(documentUri));
@@ -551,7 +1028,7 @@ public final class AdaLSPServer {
 		params.setReason(TextDocumentSaveReason.Manual);
 
 		List<TextEdit> textEdits =
-			documentRequest("textDocument/willSaveWaitUntil", documentUri,
+			documentRequest("textDocument/willSaveWaitUntil", documentUri, params,
 				() -> server.getTextDocumentService().willSaveWaitUntil(params));
 
 		return textEdits == null ? EMPTY_TEXT_EDIT_LIST : textEdits;
@@ -568,6 +1045,8 @@ public final class AdaLSPServer {
 		if (saveOptions == null ||
 			!AdaFileType.isAdaFile(file)) { return; }
 
+		changeBuffer.flush(file.getUrl());
+
 		DidSaveTextDocumentParams params = new DidSaveTextDocumentParams();
 
 		params.setTextDocument(new TextDocumentIdentifier(file.getUrl()));
@@ -609,6 +1088,32 @@ public final class AdaLSPServer {
 
 		String documentUri = file.getUrl();
 
+		openDocumentPool.remove(documentUri);
+
+		sendDidClose(documentUri);
+
+	}
+
+	/**
+	 * Closes the given documents evicted from the open document pool.
+	 * Must be called while holding the pool's lock.
+	 *
+	 * @param documentUris The URIs of the documents to close.
+	 */
+	private void closePooledDocuments(@NotNull List<String> documentUris) {
+		documentUris.forEach(this::sendDidClose);
+	}
+
+	/**
+	 * Sends a `textDocument/didClose` notification for the given document.
+	 * @see org.eclipse.lsp4j.services.TextDocumentService#didClose(DidCloseTextDocumentParams)
+	 *
+	 * @param documentUri The URI of the document to close.
+	 */
+	private void sendDidClose(@NotNull String documentUri) {
+
+		changeBuffer.documentClosed(documentUri);
+
 		server.getTextDocumentService().didClose(
 			new DidCloseTextDocumentParams(new TextDocumentIdentifier(documentUri)));
 
@@ -618,15 +1123,20 @@ public final class AdaLSPServer {
 
 	/**
 	 * @see org.eclipse.lsp4j.services.TextDocumentService#completion(CompletionParams)
+	 *
+	 * Results returned by the server as plain lists of items are
+	 * considered complete. If the request cannot be made or fails,
+	 * an empty incomplete list is returned, so that it is not reused.
 	 */
 	@NotNull
-	public List<CompletionItem> completion(
+	public CompletableFuture<CompletionList> completionAsync(
 		@NotNull String   documentUri,
 		@NotNull Position position
 	) {
 
 		if (!driver.initialized() || capabilities.getCompletionProvider() == null) {
-			return EMPTY_COMPLETION_ITEM_LIST;
+			return CompletableFuture.completedFuture(
+				new CompletionList(true, EMPTY_COMPLETION_ITEM_LIST));
 		}
 
 		final CompletionParams params = new CompletionParams();
@@ -634,48 +1144,195 @@ public final class AdaLSPServer {
 		params.setTextDocument(new TextDocumentIdentifier(documentUri));
 		params.setPosition(position);
 
-		Either<List<CompletionItem>, CompletionList> completionResult =
-			documentRequest("textDocument/completion", documentUri,
-				() -> server.getTextDocumentService().completion(params));
+		return thenApply(
+			documentRequestAsync("textDocument/completion", documentUri, params,
+				() -> server.getTextDocumentService().completion(params)),
+			completionResult ->
+				completionResult == null ? new CompletionList(true, EMPTY_COMPLETION_ITEM_LIST) :
+				completionResult.isLeft()  ? new CompletionList(false, completionResult.getLeft()) :
+				completionResult.isRight() ? completionResult.getRight() :
+					new CompletionList(false, EMPTY_COMPLETION_ITEM_LIST)
+		);
 
-		if (completionResult == null) { return EMPTY_COMPLETION_ITEM_LIST; }
+	}
 
-		return
-			completionResult.isLeft()  ? completionResult.getLeft() :
-			completionResult.isRight() ? completionResult.getRight().getItems() :
-				EMPTY_COMPLETION_ITEM_LIST;
+	/**
+	 * Blocking version of `completionAsync`.
+	 * If the request fails, an empty incomplete list is returned.
+	 * @see AdaLSPServer#completionAsync(String, Position)
+	 */
+	@NotNull
+	public CompletionList completion(
+		@NotNull String   documentUri,
+		@NotNull Position position
+	) {
+
+		CompletionList list = await(completionAsync(documentUri, position));
+
+		if (list == null) { return new CompletionList(true, EMPTY_COMPLETION_ITEM_LIST); }
+
+		if (list.getItems() == null) { list.setItems(EMPTY_COMPLETION_ITEM_LIST); }
+
+		return list;
+
+	}
+
+	/**
+	 * @see org.eclipse.lsp4j.services.TextDocumentService#resolveCompletionItem(CompletionItem)
+	 *
+	 * If the server does not resolve completion items, then the given
+	 * item is complete and is returned as-is. If the server is not
+	 * initialized or does not return a resolved item, then the future
+	 * result is null, so that callers can tell that the item could not
+	 * be resolved and try again later. Failed requests complete the
+	 * future result exceptionally.
+	 */
+	@NotNull
+	public CompletableFuture<CompletionItem> resolveCompletionItemAsync(@NotNull CompletionItem item) {
+
+		if (!driver.initialized()) { return CompletableFuture.completedFuture(null); }
+
+		if (
+			capabilities.getCompletionProvider() == null ||
+			!Boolean.TRUE.equals(capabilities.getCompletionProvider().getResolveProvider())
+		) { return CompletableFuture.completedFuture(item); }
+
+		return requestAsync("completionItem/resolve",
+			() -> server.getTextDocumentService().resolveCompletionItem(item));
 
 	}
 
 	/**
 	 * @see org.eclipse.lsp4j.services.TextDocumentService#definition(TextDocumentPositionParams)
+	 *
+	 * Results are cached per document version and position, so that
+	 * repeatedly resolving the same references does not require new
+	 * requests as long as the involved documents are not changed.
 	 */
-	@Nullable
-	public Location definition(@NotNull String documentUri, @NotNull Position position) {
+	@NotNull
+	public CompletableFuture<Location> definitionAsync(
+		@NotNull String   documentUri,
+		@NotNull Position position
+	) { return definitionAsync(documentUri, position, false); }
+
+	/**
+	 * Makes a background `textDocument/definition` request in order
+	 * to cache its result, so that resolving the reference at the given
+	 * position later on does not require a round-trip to the server.
+	 * Unlike interactive definition requests, such requests are never
+	 * shared with identical requests, and are dropped if the document
+	 * changes while they are queued.
+	 * @see AdaLSPServer#definitionAsync(String, Position)
+	 */
+	@NotNull
+	public CompletableFuture<Location> prefetchDefinitionAsync(
+		@NotNull String   documentUri,
+		@NotNull Position position
+	) { return definitionAsync(documentUri, position, true); }
+
+	/**
+	 * @see AdaLSPServer#definitionAsync(String, Position)
+	 *
+	 * @param documentUri The URI of the document.
+	 * @param position The position in the document.
+	 * @param background Whether or not to make the request in the background.
+	 * @return The future definition location.
+	 */
+	@NotNull
+	private CompletableFuture<Location> definitionAsync(
+		@NotNull String   documentUri,
+		@NotNull Position position,
+		         boolean  background
+	) {
 
 		if (!driver.initialized() || !capabilities.getDefinitionProvider()) {
-			return null;
+			return CompletableFuture.completedFuture(null);
 		}
 
+		// If the result is cached for the current version
+		// of the document, then return it
+
+		VirtualFile file     = findFileByUrlString(documentUri);
+		Document    document = file == null ? null : getVirtualFileDocument(file);
+
+		PositionKey key = document == null ? null :
+			new PositionKey(documentUri, document.getModificationStamp(), position);
+
+		if (key != null) {
+
+			CacheResult<Location> cacheResult = definitionCache.get(key);
+
+			if (cacheResult.hit) { return CompletableFuture.completedFuture(cacheResult.data); }
+
+		}
+
+		// Otherwise, make the request and cache its result
+
+		long cacheGeneration = definitionCache.getGeneration();
+
 		final TextDocumentPositionParams params = new TextDocumentPositionParams(
 			new TextDocumentIdentifier(documentUri), position);
 
-		List<? extends Location> locations =
-			documentRequest("textDocument/definition", documentUri,
-				() -> server.getTextDocumentService().definition(params));
+		Supplier<CompletableFuture<List<? extends Location>>> requestSupplier =
+			() -> server.getTextDocumentService().definition(params);
+
+		CompletableFuture<List<? extends Location>> requestFuture;
+
+		if (background) {
+
+			changeBuffer.flushAll();
+
+			requestFuture = scheduledDocumentRequestAsync("textDocument/definition",
+				documentUri, RequestScheduler.Priority.BACKGROUND, requestSupplier);
+
+		} else {
+
+			requestFuture = documentRequestAsync("textDocument/definition",
+				documentUri, params, requestSupplier);
+
+		}
+
+		return thenApply(
+			requestFuture,
+			locations -> {
 
-		if (locations == null || locations.size() == 0) { return null; }
+				// If the request failed, then do not cache anything
 
-		// TODO: Decide how to handle multiple locations
-		return locations.get(0);
+				if (locations == null) { return null; }
+
+				// TODO: Decide how to handle multiple locations
+				Location location = locations.size() == 0 ? null : (Location)locations.get(0);
+
+				if (key != null) {
+					definitionCache.put(key, location, cacheGeneration,
+						documentUri, location == null ? null : location.getUri());
+				}
+
+				return location;
+
+			}
+		);
 
 	}
 
+	/**
+	 * Blocking version of `definitionAsync`.
+	 * @see AdaLSPServer#definitionAsync(String, Position)
+	 */
+	@Nullable
+	public Location definition(@NotNull String documentUri, @NotNull Position position) {
+		return await(definitionAsync(documentUri, position));
+	}
+
 	/**
 	 * @see org.eclipse.lsp4j.services.TextDocumentService#references(ReferenceParams)
+	 *
+	 * As searching references may take arbitrarily long on large
+	 * projects, the request is not subject to a timeout, and should
+	 * be awaited in a cancelable operation so that it can be canceled.
 	 */
 	@NotNull
-	public List<Location> references(
+	public CompletableFuture<List<Location>> referencesAsync(
 		@NotNull String   documentUri,
 		@NotNull Position position,
 		         boolean  includeDefinition
@@ -683,7 +1340,7 @@ public final class AdaLSPServer {
 
 		if (!driver.initialized() ||
 			!capabilities.getReferencesProvider())
-		{ return EMPTY_LOCATION_LIST; }
+		{ return CompletableFuture.completedFuture(EMPTY_LOCATION_LIST); }
 
 		final ReferenceParams params = new ReferenceParams();
 
@@ -691,83 +1348,292 @@ public final class AdaLSPServer {
 		params.setPosition(position);
 		params.setContext(new ReferenceContext(includeDefinition));
 
-		List<? extends Location> locations =
-			documentRequest("textDocument/references", documentUri,
-				() -> server.getTextDocumentService().references(params));
+		return thenApply(
+			documentRequestAsync("textDocument/references", documentUri, params,
+				() -> server.getTextDocumentService().references(params)),
+			locations -> locations == null ? EMPTY_LOCATION_LIST : locations
+				.stream()
+				.map(location -> (Location)location)
+				.collect(Collectors.toList())
+		);
+
+	}
+
+	/**
+	 * Blocking version of `referencesAsync`.
+	 * @see AdaLSPServer#referencesAsync(String, Position, boolean)
+	 */
+	@NotNull
+	public List<Location> references(
+		@NotNull String   documentUri,
+		@NotNull Position position,
+		         boolean  includeDefinition
+	) {
 
-		if (locations == null) { return EMPTY_LOCATION_LIST; }
+		List<Location> locations = await(referencesAsync(documentUri, position, includeDefinition));
 
-		return locations
-			.stream()
-			.map(location -> (Location)location)
-			.collect(Collectors.toList());
+		return locations == null ? EMPTY_LOCATION_LIST : locations;
 
 	}
 
+	/**
+	 * @see org.eclipse.lsp4j.services.TextDocumentService#documentHighlight(TextDocumentPositionParams)
+	 *
+	 * Results are cached per document version and position, so that
+	 * highlighting the same identifier again, typically as the caret
+	 * moves within it, does not require new requests as long as the
+	 * document is not changed.
+	 */
+	@NotNull
+	public CompletableFuture<List<DocumentHighlight>> documentHighlightAsync(
+		@NotNull String   documentUri,
+		@NotNull Position position
+	) {
+
+		if (!driver.initialized() ||
+			!Boolean.TRUE.equals(capabilities.getDocumentHighlightProvider()))
+		{ return CompletableFuture.completedFuture(EMPTY_DOCUMENT_HIGHLIGHT_LIST); }
+
+		// If the result is cached for the current version
+		// of the document, then return it
+
+		VirtualFile file     = findFileByUrlString(documentUri);
+		Document    document = file == null ? null : getVirtualFileDocument(file);
+
+		PositionKey key = document == null ? null :
+			new PositionKey(documentUri, document.getModificationStamp(), position);
+
+		if (key != null) {
+
+			CacheResult<List<DocumentHighlight>> cacheResult = documentHighlightCache.get(key);
+
+			if (cacheResult.hit) { return CompletableFuture.completedFuture(cacheResult.data); }
+
+		}
+
+		// Otherwise, make the request and cache its result
+
+		long cacheGeneration = documentHighlightCache.getGeneration();
+
+		final TextDocumentPositionParams params = new TextDocumentPositionParams(
+			new TextDocumentIdentifier(documentUri), position);
+
+		return thenApply(
+			documentRequestAsync("textDocument/documentHighlight", documentUri, params,
+				() -> server.getTextDocumentService().documentHighlight(params)),
+			highlights -> {
+
+				// If the request failed, then do not cache anything
+
+				if (highlights == null) { return EMPTY_DOCUMENT_HIGHLIGHT_LIST; }
+
+				List<DocumentHighlight> documentHighlights =
+					Collections.unmodifiableList(new ArrayList<>(highlights));
+
+				if (key != null) {
+					documentHighlightCache.put(key, documentHighlights, cacheGeneration, documentUri);
+				}
+
+				return documentHighlights;
+
+			}
+		);
+
+	}
+
+	/**
+	 * Blocking version of `documentHighlightAsync`.
+	 * @see AdaLSPServer#documentHighlightAsync(String, Position)
+	 */
+	@NotNull
+	public List<DocumentHighlight> documentHighlight(
+		@NotNull String   documentUri,
+		@NotNull Position position
+	) {
+
+		List<DocumentHighlight> highlights = await(documentHighlightAsync(documentUri, position));
+
+		return highlights == null ? EMPTY_DOCUMENT_HIGHLIGHT_LIST : highlights;
+
+	}
+
+	/**
+	 * Returns whether or not the server supports `textDocument/rename`
+	 * requests.
+	 *
+	 * @return Whether or not the server supports renaming.
+	 */
+	public boolean supportsRename() {
+
+		if (!driver.initialized()) { return false; }
+
+		Either<Boolean, RenameOptions> renameProvider = capabilities.getRenameProvider();
+
+		return renameProvider != null &&
+			(renameProvider.isRight() || Boolean.TRUE.equals(renameProvider.getLeft()));
+
+	}
+
+	/**
+	 * @see org.eclipse.lsp4j.services.TextDocumentService#rename(RenameParams)
+	 *
+	 * The returned future is completed with null if the server does
+	 * not support renaming or if the request fails.
+	 */
+	@NotNull
+	public CompletableFuture<WorkspaceEdit> renameAsync(
+		@NotNull String   documentUri,
+		@NotNull Position position,
+		@NotNull String   newName
+	) {
+
+		if (!supportsRename()) { return CompletableFuture.completedFuture(null); }
+
+		final RenameParams params = new RenameParams(
+			new TextDocumentIdentifier(documentUri), position, newName);
+
+		return documentRequestAsync("textDocument/rename", documentUri, params,
+			() -> server.getTextDocumentService().rename(params));
+
+	}
+
+	/**
+	 * Blocking version of `renameAsync`.
+	 * @see AdaLSPServer#renameAsync(String, Position, String)
+	 */
+	@Nullable
+	public WorkspaceEdit rename(
+		@NotNull String   documentUri,
+		@NotNull Position position,
+		@NotNull String   newName
+	) {
+		return await(renameAsync(documentUri, position, newName));
+	}
+
 	/**
 	 * @see org.eclipse.lsp4j.services.TextDocumentService#documentSymbol(DocumentSymbolParams)
 	 */
-	public List<DocumentSymbol> documentSymbol(@NotNull String documentUri) {
+	@NotNull
+	public CompletableFuture<List<DocumentSymbol>> documentSymbolAsync(@NotNull String documentUri) {
 
 		if (!driver.initialized() ||
 			!capabilities.getDocumentSymbolProvider())
-		{ return EMPTY_DOCUMENT_SYMBOL_LIST; }
+		{ return CompletableFuture.completedFuture(EMPTY_DOCUMENT_SYMBOL_LIST); }
 
 		final DocumentSymbolParams params = new DocumentSymbolParams(
 			new TextDocumentIdentifier(documentUri));
 
-		List<Either<SymbolInformation, DocumentSymbol>> symbols =
-			documentRequest("textDocument/documentSymbol", documentUri,
-				() -> server.getTextDocumentService().documentSymbol(params));
+		return thenApply(
+			documentRequestAsync("textDocument/documentSymbol", documentUri, params,
+				() -> server.getTextDocumentService().documentSymbol(params)),
+			symbols -> symbols == null ? EMPTY_DOCUMENT_SYMBOL_LIST : symbols
+				.stream()
+				.map(either -> {
 
-		if (symbols == null) { return EMPTY_DOCUMENT_SYMBOL_LIST; }
+					// If it is a `DocumentSymbol`, return it directly
 
-		return symbols
-			.stream()
-			.map(either -> {
+					if (either.isRight()) {
+						return either.getRight();
+					}
 
-				// If it is a `DocumentSymbol`, return it directly
+					// Else if it is not a `SymbolInformation` return null
 
-				if (either.isRight()) {
-					return either.getRight();
-				}
+					else if (!either.isLeft()) {
+						return null;
+					}
 
-				// Else if it is not a `SymbolInformation` return null
+					// Else, translate the `SymbolInformation` to a `DocumentSymbol`
 
-				else if (!either.isLeft()) {
-					return null;
-				}
+					SymbolInformation information = either.getLeft();
+					DocumentSymbol    symbol      = new DocumentSymbol();
+
+					Range symbolRange = information.getLocation().getRange();
+
+					symbol.setName(information.getName());
+					symbol.setKind(information.getKind());
+					symbol.setRange(symbolRange);
+					symbol.setSelectionRange(symbolRange);
+
+					return symbol;
+
+				})
+				.filter(Objects::nonNull)
+				.collect(Collectors.toList())
+		);
 
-				// Else, translate the `SymbolInformation` to a `DocumentSymbol`
+	}
+
+	/**
+	 * Blocking version of `documentSymbolAsync`.
+	 * @see AdaLSPServer#documentSymbolAsync(String)
+	 */
+	@NotNull
+	public List<DocumentSymbol> documentSymbol(@NotNull String documentUri) {
+
+		List<DocumentSymbol> symbols = await(documentSymbolAsync(documentUri));
 
-				SymbolInformation information = either.getLeft();
-				DocumentSymbol    symbol      = new DocumentSymbol();
+		return symbols == null ? EMPTY_DOCUMENT_SYMBOL_LIST : symbols;
 
-				Range symbolRange = information.getLocation().getRange();
+	}
 
-				symbol.setName(information.getName());
-				symbol.setKind(information.getKind());
-				symbol.setRange(symbolRange);
-				symbol.setSelectionRange(symbolRange);
+	/**
+	 * @see org.eclipse.lsp4j.services.TextDocumentService#foldingRange(FoldingRangeRequestParams)
+	 */
+	@NotNull
+	public CompletableFuture<List<FoldingRange>> foldingRangeAsync(@NotNull String documentUri) {
 
-				return symbol;
+		if (!driver.initialized()) {
+			return CompletableFuture.completedFuture(EMPTY_FOLDING_RANGE_LIST);
+		}
+
+		final FoldingRangeRequestParams params = new FoldingRangeRequestParams(
+			new TextDocumentIdentifier(documentUri));
 
-			})
-			.filter(Objects::nonNull)
-			.collect(Collectors.toList());
+		return thenApply(
+			documentRequestAsync("textDocument/foldingRange", documentUri, params,
+				() -> server.getTextDocumentService().foldingRange(params)),
+			ranges -> ranges == null ? EMPTY_FOLDING_RANGE_LIST : ranges
+		);
 
 	}
 
+	/**
+	 * Blocking version of `foldingRangeAsync`.
+	 * @see AdaLSPServer#foldingRangeAsync(String)
+	 */
+	@NotNull
 	public List<FoldingRange> foldingRange(@NotNull String documentUri) {
 
-		final FoldingRangeRequestParams params = new FoldingRangeRequestParams(new TextDocumentIdentifier(documentUri));
+		List<FoldingRange> ranges = await(foldingRangeAsync(documentUri));
+
+		return ranges == null ? EMPTY_FOLDING_RANGE_LIST : ranges;
+
+	}
+
+	/**
+	 * Returns a future completed with the result of applying the given
+	 * function to the result of the given request future. Canceling the
+	 * returned future cancels the request.
+	 * @see LSPUtils#handleCancellable(CompletableFuture, BiFunction)
+	 *
+	 * @param future The request future.
+	 * @param function The function to apply to the request result.
+	 * @param <T> The type of the request's response result.
+	 * @param <R> The type of the result of the returned future.
+	 * @return The derived future.
+	 */
+	@NotNull
+	private static <T, R> CompletableFuture<R> thenApply(
+		@NotNull CompletableFuture<T>             future,
+		@NotNull Function<? super T, ? extends R> function
+	) {
+		return LSPUtils.handleCancellable(future, (result, throwable) -> {
 
-		List<FoldingRange> ranges = documentRequest("textDocument/foldingRange", documentUri,
-			() -> server.getTextDocumentService().foldingRange(params));
+			if (throwable != null) { throw new CompletionException(throwable); }
 
-		if (ranges == null) { return EMPTY_FOLDING_RANGE_LIST; }
+			return function.apply(result);
 
-		return ranges;
+		});
 	}
 
 }
@@ -22,7 +22,7 @@ final class ClientCapabilities {
 
 		private Workspace() {}
 
-		static final boolean APPLY_EDIT = false;
+		static final boolean APPLY_EDIT = true;
 
 		static final class WorkspaceEdit {
 
@@ -196,7 +196,7 @@ final class ClientCapabilities {
 
 			}
 
-			static final boolean HIERARCHICAL_DOCUMENT_SYMBOL_SUPPORT = false;
+			static final boolean HIERARCHICAL_DOCUMENT_SYMBOL_SUPPORT = true;
 
 		}
 
@@ -0,0 +1,365 @@
+package com.adacore.adaintellij.lsp;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.*;
+
+import org.eclipse.lsp4j.Diagnostic;
+
+/**
+ * Thread-safe per-document store of the diagnostics published by
+ * the ALS.
+ *
+ * Every stored diagnostic is anchored to the range of its document
+ * to which it applies, typically using a range marker, so that it
+ * follows edits made to the document. When a document is edited,
+ * only the diagnostics whose ranges intersect the edited range are
+ * dropped, the others remaining valid until the server publishes
+ * new diagnostics for the document, which replace them all. This
+ * way, diagnostics do not disappear on every edit while the server
+ * analyzes the new contents of the document.
+ *
+ * Publications are stored right away, but the update listener is
+ * notified of publications received within a short window at once,
+ * so that a burst of publications results in a single highlighting
+ * update per affected document.
+ */
+public final class DiagnosticsStore {
+
+	/**
+	 * The window, in milliseconds, within which notifications of
+	 * publications are coalesced.
+	 */
+	static final int COALESCE_DELAY = 100;
+
+	/**
+	 * Anchor of a diagnostic to a range of its document.
+	 */
+	interface Anchor {
+
+		/**
+		 * Returns whether or not the anchored range still exists.
+		 *
+		 * @return Whether or not this anchor is valid.
+		 */
+		boolean isValid();
+
+		/**
+		 * Returns the current start offset of the anchored range.
+		 *
+		 * @return The start offset.
+		 */
+		int getStartOffset();
+
+		/**
+		 * Returns the current end offset of the anchored range.
+		 *
+		 * @return The end offset.
+		 */
+		int getEndOffset();
+
+		/**
+		 * Releases the resources used by this anchor, which
+		 * must no longer be used.
+		 */
+		void dispose();
+
+	}
+
+	/**
+	 * A diagnostic anchored to the range of its document to which
+	 * it applies.
+	 */
+	public static final class AnchoredDiagnostic {
+
+		/**
+		 * The published diagnostic, whose range is only valid for
+		 * the version of the document for which it was published.
+		 */
+		public final Diagnostic diagnostic;
+
+		/**
+		 * The anchor of the diagnostic.
+		 */
+		private final Anchor anchor;
+
+		/**
+		 * Constructs a new AnchoredDiagnostic given a diagnostic
+		 * and its anchor.
+		 *
+		 * @param diagnostic The diagnostic.
+		 * @param anchor The anchor of the diagnostic.
+		 */
+		AnchoredDiagnostic(@NotNull Diagnostic diagnostic, @NotNull Anchor anchor) {
+			this.diagnostic = diagnostic;
+			this.anchor     = anchor;
+		}
+
+		/**
+		 * Returns the current start offset of the diagnostic.
+		 *
+		 * @return The start offset.
+		 */
+		public int getStartOffset() { return anchor.getStartOffset(); }
+
+		/**
+		 * Returns the current end offset of the diagnostic.
+		 *
+		 * @return The end offset.
+		 */
+		public int getEndOffset() { return anchor.getEndOffset(); }
+
+		/**
+		 * Returns whether or not the diagnostic's range intersects
+		 * the given range, boundaries included.
+		 *
+		 * @param startOffset The start offset of the range.
+		 * @param endOffset The end offset of the range.
+		 * @return Whether or not the ranges intersect.
+		 */
+		boolean intersects(int startOffset, int endOffset) {
+			return anchor.getStartOffset() <= endOffset && startOffset <= anchor.getEndOffset();
+		}
+
+	}
+
+	/**
+	 * Listener notified when the diagnostics of documents are published.
+	 */
+	@FunctionalInterface
+	interface UpdateListener {
+
+		/**
+		 * Called, from a background thread, once diagnostics were
+		 * published for the given documents.
+		 *
+		 * @param documentUris The URIs of the updated documents.
+		 */
+		void diagnosticsUpdated(@NotNull Set<String> documentUris);
+
+	}
+
+	/**
+	 * The listener notified of publications.
+	 */
+	private final UpdateListener listener;
+
+	/**
+	 * The executor used to schedule notifications of publications.
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * The coalescing window, in milliseconds.
+	 */
+	private final long coalesceDelay;
+
+	/**
+	 * Document-URI -> stored-diagnostics mapping.
+	 * All accesses are synchronized on this map. Lists of stored
+	 * diagnostics are never modified once stored, but replaced.
+	 */
+	private final Map<String, List<AnchoredDiagnostic>> diagnostics = new HashMap<>();
+
+	/**
+	 * The URIs of documents for which diagnostics were published
+	 * since the listener was last notified.
+	 * All accesses are synchronized on `diagnostics`.
+	 */
+	private final Set<String> updatedUris = new HashSet<>();
+
+	/**
+	 * The scheduled notification of publications, if any.
+	 */
+	@Nullable
+	private ScheduledFuture<?> scheduledFlush;
+
+	/**
+	 * Constructs a new DiagnosticsStore given an update listener,
+	 * using the application's scheduled executor to schedule
+	 * notifications of publications.
+	 *
+	 * @param listener The listener to notify of publications.
+	 */
+	DiagnosticsStore(@NotNull UpdateListener listener) {
+		this(listener, AppExecutorUtil.getAppScheduledExecutorService(), COALESCE_DELAY);
+	}
+
+	/**
+	 * Constructs a new DiagnosticsStore given an update listener,
+	 * a scheduler and a coalescing window.
+	 *
+	 * @param listener The listener to notify of publications.
+	 * @param scheduler The executor to use to schedule notifications
+	 *                  of publications.
+	 * @param coalesceDelay The coalescing window, in milliseconds.
+	 */
+	DiagnosticsStore(
+		@NotNull UpdateListener           listener,
+		@NotNull ScheduledExecutorService scheduler,
+		         long                     coalesceDelay
+	) {
+		this.listener      = listener;
+		this.scheduler     = scheduler;
+		this.coalesceDelay = coalesceDelay;
+	}
+
+	/**
+	 * Returns the valid stored diagnostics of the given document.
+	 *
+	 * @param documentUri The URI of the document.
+	 * @return The diagnostics of the document, or null if none
+	 *         were published for it.
+	 */
+	@Nullable
+	public List<AnchoredDiagnostic> getDiagnostics(@NotNull String documentUri) {
+
+		List<AnchoredDiagnostic> documentDiagnostics;
+
+		synchronized (diagnostics) {
+			documentDiagnostics = diagnostics.get(documentUri);
+		}
+
+		if (documentDiagnostics == null) { return null; }
+
+		List<AnchoredDiagnostic> validDiagnostics = new ArrayList<>(documentDiagnostics.size());
+
+		for (AnchoredDiagnostic diagnostic : documentDiagnostics) {
+			if (diagnostic.anchor.isValid()) { validDiagnostics.add(diagnostic); }
+		}
+
+		return validDiagnostics;
+
+	}
+
+	/**
+	 * Stores the given diagnostics published for the given document,
+	 * replacing any diagnostics previously stored for it, and notifies
+	 * the update listener at the end of the current coalescing window.
+	 *
+	 * @param documentUri The URI of the document.
+	 * @param documentDiagnostics The published diagnostics.
+	 */
+	void publish(@NotNull String documentUri, @NotNull List<AnchoredDiagnostic> documentDiagnostics) {
+
+		List<AnchoredDiagnostic> replacedDiagnostics;
+
+		synchronized (diagnostics) {
+
+			replacedDiagnostics = diagnostics.put(
+				documentUri, Collections.unmodifiableList(new ArrayList<>(documentDiagnostics)));
+
+			updatedUris.add(documentUri);
+
+			if (scheduledFlush == null) {
+				scheduledFlush = scheduler.schedule(this::flush, coalesceDelay, TimeUnit.MILLISECONDS);
+			}
+
+		}
+
+		dispose(replacedDiagnostics);
+
+	}
+
+	/**
+	 * Drops the stored diagnostics of the given document whose ranges
+	 * intersect the given range, which is about to be edited. Must be
+	 * called before the edit is applied to the document.
+	 *
+	 * @param documentUri The URI of the edited document.
+	 * @param startOffset The start offset of the edited range.
+	 * @param endOffset The end offset of the edited range.
+	 */
+	void documentChanging(@NotNull String documentUri, int startOffset, int endOffset) {
+
+		List<AnchoredDiagnostic> droppedDiagnostics = new ArrayList<>();
+
+		synchronized (diagnostics) {
+
+			List<AnchoredDiagnostic> documentDiagnostics = diagnostics.get(documentUri);
+
+			if (documentDiagnostics == null) { return; }
+
+			List<AnchoredDiagnostic> keptDiagnostics = new ArrayList<>(documentDiagnostics.size());
+
+			for (AnchoredDiagnostic diagnostic : documentDiagnostics) {
+
+				if (!diagnostic.anchor.isValid() || diagnostic.intersects(startOffset, endOffset)) {
+					droppedDiagnostics.add(diagnostic);
+				} else {
+					keptDiagnostics.add(diagnostic);
+				}
+
+			}
+
+			if (droppedDiagnostics.isEmpty()) { return; }
+
+			diagnostics.put(documentUri, Collections.unmodifiableList(keptDiagnostics));
+
+		}
+
+		dispose(droppedDiagnostics);
+
+	}
+
+	/**
+	 * Removes the stored diagnostics of the given document, typically
+	 * because they may no longer apply to its contents.
+	 *
+	 * @param documentUri The URI of the document.
+	 */
+	void clear(@NotNull String documentUri) {
+
+		List<AnchoredDiagnostic> removedDiagnostics;
+
+		synchronized (diagnostics) {
+			removedDiagnostics = diagnostics.remove(documentUri);
+		}
+
+		dispose(removedDiagnostics);
+
+	}
+
+	/**
+	 * Notifies the update listener of the documents for which
+	 * diagnostics were published since it was last notified.
+	 */
+	void flush() {
+
+		Set<String> uris;
+
+		synchronized (diagnostics) {
+
+			if (scheduledFlush != null) {
+				scheduledFlush.cancel(false);
+				scheduledFlush = null;
+			}
+
+			if (updatedUris.isEmpty()) { return; }
+
+			uris = new HashSet<>(updatedUris);
+
+			updatedUris.clear();
+
+		}
+
+		listener.diagnosticsUpdated(Collections.unmodifiableSet(uris));
+
+	}
+
+	/**
+	 * Disposes the anchors of the given diagnostics.
+	 *
+	 * @param diagnosticsToDispose The diagnostics to dispose, or null.
+	 */
+	private static void dispose(@Nullable List<AnchoredDiagnostic> diagnosticsToDispose) {
+
+		if (diagnosticsToDispose == null) { return; }
+
+		diagnosticsToDispose.forEach(diagnostic -> diagnostic.anchor.dispose());
+
+	}
+
+}
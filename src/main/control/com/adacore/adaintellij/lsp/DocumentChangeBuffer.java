@@ -0,0 +1,390 @@
+package com.adacore.adaintellij.lsp;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.*;
+
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+
+/**
+ * Per-document buffer of content changes to be sent to the ALS.
+ *
+ * Consecutive changes to a document are accumulated and sent as a
+ * single `textDocument/didChange` notification, either once no new
+ * change was made to the document for a short debounce delay, or
+ * as soon as the buffer is explicitly flushed, which must be done
+ * before any request that depends on the content of documents.
+ *
+ * Every sent notification carries a new version of the document,
+ * strictly greater than the version of the previous notification
+ * (or of the `textDocument/didOpen` notification) for that same
+ * document.
+ */
+final class DocumentChangeBuffer {
+
+	/**
+	 * The delay, in milliseconds, after the last change to a document
+	 * before the buffered changes to that document are sent.
+	 */
+	static final int DEBOUNCE_DELAY = 150;
+
+	/**
+	 * Sender of `textDocument/didChange` notifications.
+	 */
+	@FunctionalInterface
+	interface ChangeSender {
+
+		/**
+		 * Sends a `textDocument/didChange` notification.
+		 *
+		 * @param documentUri The URI of the changed document.
+		 * @param version The new version of the document.
+		 * @param changeEvents The changes to the document, in order.
+		 */
+		void send(
+			@NotNull String                               documentUri,
+			         int                                  version,
+			@NotNull List<TextDocumentContentChangeEvent> changeEvents
+		);
+
+	}
+
+	/**
+	 * The buffered changes and version of a single document.
+	 */
+	private static final class DocumentChanges {
+
+		/**
+		 * The version of the document last communicated to the server.
+		 */
+		int version;
+
+		/**
+		 * The buffered incremental changes, in order.
+		 */
+		final List<TextDocumentContentChangeEvent> changeEvents = new ArrayList<>();
+
+		/**
+		 * Supplier of the full text of the document, if a full change
+		 * is buffered, in which case it supersedes all incremental
+		 * changes, or null otherwise.
+		 */
+		@Nullable
+		Supplier<String> fullTextSupplier;
+
+		/**
+		 * The scheduled flush of the buffered changes, if any.
+		 */
+		@Nullable
+		ScheduledFuture<?> scheduledFlush;
+
+		/**
+		 * Constructs a new DocumentChanges given an initial version.
+		 *
+		 * @param version The initial version of the document.
+		 */
+		DocumentChanges(int version) { this.version = version; }
+
+		/**
+		 * Returns whether or not changes are buffered.
+		 *
+		 * @return Whether or not changes are buffered.
+		 */
+		boolean isEmpty() {
+			return fullTextSupplier == null && changeEvents.isEmpty();
+		}
+
+		/**
+		 * Discards the buffered changes and cancels the scheduled
+		 * flush, if any.
+		 */
+		void clear() {
+
+			changeEvents.clear();
+
+			fullTextSupplier = null;
+
+			if (scheduledFlush != null) {
+				scheduledFlush.cancel(false);
+				scheduledFlush = null;
+			}
+
+		}
+
+	}
+
+	/**
+	 * The sender used to send buffered changes.
+	 */
+	private final ChangeSender sender;
+
+	/**
+	 * The executor used to schedule debounced flushes.
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * The debounce delay, in milliseconds.
+	 */
+	private final long debounceDelay;
+
+	/**
+	 * Document-URI -> buffered-changes mapping.
+	 * All accesses are synchronized on this map, including sending
+	 * changes, so that notifications for a given document are sent
+	 * in order of increasing version.
+	 */
+	private final Map<String, DocumentChanges> documentChanges = new HashMap<>();
+
+	/**
+	 * The number of changes buffered so far to any document, used as
+	 * a version of the contents of all documents.
+	 */
+	private long contentsVersion = 0;
+
+	/**
+	 * Constructs a new DocumentChangeBuffer given a change sender,
+	 * using the application's scheduled executor to schedule
+	 * debounced flushes.
+	 *
+	 * @param sender The sender to use to send buffered changes.
+	 */
+	DocumentChangeBuffer(@NotNull ChangeSender sender) {
+		this(sender, AppExecutorUtil.getAppScheduledExecutorService(), DEBOUNCE_DELAY);
+	}
+
+	/**
+	 * Constructs a new DocumentChangeBuffer given a change sender,
+	 * a scheduler and a debounce delay.
+	 *
+	 * @param sender The sender to use to send buffered changes.
+	 * @param scheduler The executor to use to schedule debounced flushes.
+	 * @param debounceDelay The debounce delay, in milliseconds.
+	 */
+	DocumentChangeBuffer(
+		@NotNull ChangeSender             sender,
+		@NotNull ScheduledExecutorService scheduler,
+		         long                     debounceDelay
+	) {
+		this.sender        = sender;
+		this.scheduler     = scheduler;
+		this.debounceDelay = debounceDelay;
+	}
+
+	/**
+	 * Records that the given document was opened with the given
+	 * version, discarding any buffered change to that document as
+	 * the opened content already reflects them.
+	 *
+	 * @param documentUri The URI of the opened document.
+	 * @param version The version with which the document was opened.
+	 */
+	void documentOpened(@NotNull String documentUri, int version) {
+
+		synchronized (documentChanges) {
+
+			DocumentChanges changes = documentChanges.get(documentUri);
+
+			if (changes == null) {
+				documentChanges.put(documentUri, new DocumentChanges(version));
+			} else {
+				changes.clear();
+				changes.version = version;
+			}
+
+		}
+
+	}
+
+	/**
+	 * Records that the given document was closed, discarding any
+	 * buffered change to that document.
+	 *
+	 * @param documentUri The URI of the closed document.
+	 */
+	void documentClosed(@NotNull String documentUri) {
+
+		synchronized (documentChanges) {
+
+			DocumentChanges changes = documentChanges.remove(documentUri);
+
+			if (changes != null) { changes.clear(); }
+
+		}
+
+	}
+
+	/**
+	 * Buffers the given incremental change to the given document.
+	 *
+	 * @param documentUri The URI of the changed document.
+	 * @param changeEvent The change to buffer.
+	 */
+	void addChange(@NotNull String documentUri, @NotNull TextDocumentContentChangeEvent changeEvent) {
+
+		synchronized (documentChanges) {
+
+			DocumentChanges changes = getDocumentChanges(documentUri);
+
+			contentsVersion++;
+
+			// If a full change is already buffered, then it
+			// will include this change when sent
+
+			if (changes.fullTextSupplier == null) {
+				changes.changeEvents.add(changeEvent);
+			}
+
+			scheduleFlush(documentUri, changes);
+
+		}
+
+	}
+
+	/**
+	 * Buffers a full change to the given document, superseding all
+	 * buffered changes to that document. The full text of the
+	 * document is only computed when the change is sent.
+	 *
+	 * @param documentUri The URI of the changed document.
+	 * @param fullTextSupplier Supplier of the full text of the document.
+	 */
+	void addFullChange(@NotNull String documentUri, @NotNull Supplier<String> fullTextSupplier) {
+
+		synchronized (documentChanges) {
+
+			DocumentChanges changes = getDocumentChanges(documentUri);
+
+			contentsVersion++;
+
+			changes.changeEvents.clear();
+
+			changes.fullTextSupplier = fullTextSupplier;
+
+			scheduleFlush(documentUri, changes);
+
+		}
+
+	}
+
+	/**
+	 * Returns the version of the contents of all documents, which is
+	 * incremented every time a change to any document is buffered.
+	 * Two requests made with the same contents version are therefore
+	 * made on the same contents.
+	 *
+	 * @return The version of the contents of all documents.
+	 */
+	long getContentsVersion() {
+		synchronized (documentChanges) { return contentsVersion; }
+	}
+
+	/**
+	 * Returns whether or not changes to the given document are
+	 * buffered, in which case the content of the document differs from
+	 * the content last communicated to the server.
+	 *
+	 * @param documentUri The URI of the document.
+	 * @return Whether or not changes to the document are buffered.
+	 */
+	boolean hasBufferedChanges(@NotNull String documentUri) {
+
+		synchronized (documentChanges) {
+
+			DocumentChanges changes = documentChanges.get(documentUri);
+
+			return changes != null && !changes.isEmpty();
+
+		}
+
+	}
+
+	/**
+	 * Immediately sends the buffered changes to the given document,
+	 * if any.
+	 *
+	 * @param documentUri The URI of the document to flush.
+	 */
+	void flush(@NotNull String documentUri) {
+
+		synchronized (documentChanges) {
+
+			DocumentChanges changes = documentChanges.get(documentUri);
+
+			if (changes != null) { send(documentUri, changes); }
+
+		}
+
+	}
+
+	/**
+	 * Immediately sends the buffered changes to all documents.
+	 */
+	void flushAll() {
+
+		synchronized (documentChanges) {
+			documentChanges.forEach(this::send);
+		}
+
+	}
+
+	/**
+	 * Returns the buffered changes of the given document, creating
+	 * them if necessary. Must be called while holding the lock on
+	 * the document-changes map.
+	 *
+	 * @param documentUri The URI of the document.
+	 * @return The buffered changes of the document.
+	 */
+	@NotNull
+	private DocumentChanges getDocumentChanges(@NotNull String documentUri) {
+		return documentChanges.computeIfAbsent(documentUri, uri -> new DocumentChanges(1));
+	}
+
+	/**
+	 * (Re)schedules the flush of the buffered changes of the given
+	 * document after the debounce delay. Must be called while holding
+	 * the lock on the document-changes map.
+	 *
+	 * @param documentUri The URI of the document.
+	 * @param changes The buffered changes of the document.
+	 */
+	private void scheduleFlush(@NotNull String documentUri, @NotNull DocumentChanges changes) {
+
+		if (changes.scheduledFlush != null) {
+			changes.scheduledFlush.cancel(false);
+		}
+
+		changes.scheduledFlush = scheduler.schedule(
+			() -> flush(documentUri), debounceDelay, TimeUnit.MILLISECONDS);
+
+	}
+
+	/**
+	 * Sends the buffered changes of the given document, if any, with
+	 * a new version of the document, then clears them. Must be called
+	 * while holding the lock on the document-changes map.
+	 *
+	 * @param documentUri The URI of the document.
+	 * @param changes The buffered changes of the document.
+	 */
+	private void send(@NotNull String documentUri, @NotNull DocumentChanges changes) {
+
+		if (changes.isEmpty()) { return; }
+
+		List<TextDocumentContentChangeEvent> changeEvents =
+			changes.fullTextSupplier == null ?
+				new ArrayList<>(changes.changeEvents) :
+				Collections.singletonList(
+					new TextDocumentContentChangeEvent(changes.fullTextSupplier.get()));
+
+		changes.clear();
+
+		sender.send(documentUri, ++changes.version, changeEvents);
+
+	}
+
+}
@@ -0,0 +1,485 @@
+package com.adacore.adaintellij.lsp;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.*;
+
+import com.google.gson.GsonBuilder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Thread-safe metrics of an LSP session with the Ada Language
+ * Server (ALS): per-method request counts, outcomes and latencies,
+ * requests in flight, notifications exchanged in both directions
+ * and the number of bytes written to and read from the server.
+ *
+ * Latencies are measured from the moment a request is made until
+ * its response is received, so they include the time the request
+ * spends queued in the server. Comparing them with the time the
+ * IDE spends in an operation helps finding out whether slowness
+ * originates in the plugin or in the server.
+ */
+public final class LSPMetrics {
+
+	/**
+	 * Metrics of the requests of a single LSP method.
+	 */
+	private static final class MethodMetrics {
+
+		/**
+		 * The number of requests made, and the numbers of those
+		 * requests that succeeded, failed, timed out or were canceled.
+		 */
+		final AtomicLong requestCount      = new AtomicLong();
+		final AtomicLong successCount      = new AtomicLong();
+		final AtomicLong failureCount      = new AtomicLong();
+		final AtomicLong timeoutCount      = new AtomicLong();
+		final AtomicLong cancellationCount = new AtomicLong();
+
+		/**
+		 * The number of requests in flight.
+		 */
+		final AtomicInteger inFlightCount = new AtomicInteger();
+
+		/**
+		 * The latencies of successful requests.
+		 */
+		final LatencyHistogram latencies = new LatencyHistogram();
+
+	}
+
+	/**
+	 * Point-in-time copy of the metrics of the requests of a single
+	 * LSP method.
+	 */
+	public static final class MethodSnapshot {
+
+		/**
+		 * The LSP method.
+		 */
+		public final String method;
+
+		/**
+		 * The number of requests made, and the numbers of those
+		 * requests that succeeded, failed, timed out or were canceled.
+		 */
+		public final long requests;
+		public final long successes;
+		public final long failures;
+		public final long timeouts;
+		public final long cancellations;
+
+		/**
+		 * The number of requests in flight.
+		 */
+		public final int inFlight;
+
+		/**
+		 * Latency percentiles of successful requests, in milliseconds.
+		 */
+		public final long p50;
+		public final long p95;
+		public final long p99;
+		public final long max;
+
+		/**
+		 * Constructs a new MethodSnapshot given an LSP method and its metrics.
+		 *
+		 * @param method The LSP method.
+		 * @param metrics The metrics of the method's requests.
+		 */
+		MethodSnapshot(@NotNull String method, @NotNull MethodMetrics metrics) {
+			this.method        = method;
+			this.requests      = metrics.requestCount.get();
+			this.successes     = metrics.successCount.get();
+			this.failures      = metrics.failureCount.get();
+			this.timeouts      = metrics.timeoutCount.get();
+			this.cancellations = metrics.cancellationCount.get();
+			this.inFlight      = metrics.inFlightCount.get();
+			this.p50           = metrics.latencies.getValueAtPercentile(50);
+			this.p95           = metrics.latencies.getValueAtPercentile(95);
+			this.p99           = metrics.latencies.getValueAtPercentile(99);
+			this.max           = metrics.latencies.getValueAtPercentile(100);
+		}
+
+	}
+
+	/**
+	 * Point-in-time copy of all metrics of an LSP session.
+	 */
+	public static final class Snapshot {
+
+		/**
+		 * The time at which the metrics started being recorded, and the
+		 * time at which this snapshot was taken, in milliseconds since
+		 * the epoch.
+		 */
+		public final long startTime;
+		public final long snapshotTime;
+
+		/**
+		 * The number of requests in flight, and the highest number of
+		 * requests that were in flight at once.
+		 */
+		public final int inFlight;
+		public final int peakInFlight;
+
+		/**
+		 * The numbers of bytes written to and read from the server.
+		 */
+		public final long bytesSent;
+		public final long bytesReceived;
+
+		/**
+		 * Request metrics, sorted by method.
+		 */
+		public final List<MethodSnapshot> requests;
+
+		/**
+		 * LSP-method -> count mappings of notifications sent to the
+		 * server, and of notifications and requests received from it.
+		 */
+		public final SortedMap<String, Long> notificationsSent;
+		public final SortedMap<String, Long> notificationsReceived;
+		public final SortedMap<String, Long> requestsReceived;
+
+		/**
+		 * Constructs a new Snapshot of the given metrics.
+		 *
+		 * @param metrics The metrics to copy.
+		 */
+		Snapshot(@NotNull LSPMetrics metrics) {
+
+			this.startTime     = metrics.startTime;
+			this.snapshotTime  = System.currentTimeMillis();
+			this.inFlight      = metrics.inFlightCount.get();
+			this.peakInFlight  = metrics.peakInFlightCount.get();
+			this.bytesSent     = metrics.bytesSent.get();
+			this.bytesReceived = metrics.bytesReceived.get();
+
+			List<MethodSnapshot> requests = new ArrayList<>();
+
+			new TreeMap<>(metrics.methodMetrics).forEach((method, methodMetrics) ->
+				requests.add(new MethodSnapshot(method, methodMetrics)));
+
+			this.requests              = Collections.unmodifiableList(requests);
+			this.notificationsSent     = copyCounts(metrics.notificationsSent);
+			this.notificationsReceived = copyCounts(metrics.notificationsReceived);
+			this.requestsReceived      = copyCounts(metrics.requestsReceived);
+
+		}
+
+		/**
+		 * Returns a sorted copy of the given counts.
+		 *
+		 * @param counts The counts to copy.
+		 * @return The copied counts.
+		 */
+		@NotNull
+		private static SortedMap<String, Long> copyCounts(@NotNull Map<String, AtomicLong> counts) {
+
+			SortedMap<String, Long> copy = new TreeMap<>();
+
+			counts.forEach((method, count) -> copy.put(method, count.get()));
+
+			return Collections.unmodifiableSortedMap(copy);
+
+		}
+
+	}
+
+	/**
+	 * The time at which the metrics started being recorded,
+	 * in milliseconds since the epoch.
+	 */
+	private volatile long startTime = System.currentTimeMillis();
+
+	/**
+	 * LSP-method -> request-metrics mapping.
+	 */
+	private final Map<String, MethodMetrics> methodMetrics = new ConcurrentHashMap<>();
+
+	/**
+	 * LSP-method -> count mappings of notifications sent to the server,
+	 * and of notifications and requests received from it.
+	 */
+	private final Map<String, AtomicLong> notificationsSent     = new ConcurrentHashMap<>();
+	private final Map<String, AtomicLong> notificationsReceived = new ConcurrentHashMap<>();
+	private final Map<String, AtomicLong> requestsReceived      = new ConcurrentHashMap<>();
+
+	/**
+	 * The number of requests in flight, and the highest number of
+	 * requests that were in flight at once.
+	 */
+	private final AtomicInteger inFlightCount     = new AtomicInteger();
+	private final AtomicInteger peakInFlightCount = new AtomicInteger();
+
+	/**
+	 * The numbers of bytes written to and read from the server.
+	 */
+	private final AtomicLong bytesSent     = new AtomicLong();
+	private final AtomicLong bytesReceived = new AtomicLong();
+
+	/**
+	 * Records that a request of the given method was made.
+	 * Every call to this method must eventually be followed by
+	 * exactly one call to one of the `requestSucceeded`,
+	 * `requestFailed`, `requestTimedOut` or `requestCanceled`
+	 * methods for the same method.
+	 *
+	 * @param method The LSP method of the request.
+	 */
+	public void requestStarted(@NotNull String method) {
+
+		MethodMetrics metrics = getMethodMetrics(method);
+
+		metrics.requestCount.incrementAndGet();
+		metrics.inFlightCount.incrementAndGet();
+
+		peakInFlightCount.accumulateAndGet(inFlightCount.incrementAndGet(), Math::max);
+
+	}
+
+	/**
+	 * Records that a request of the given method succeeded.
+	 *
+	 * @param method The LSP method of the request.
+	 * @param latency The latency of the request, in milliseconds.
+	 */
+	public void requestSucceeded(@NotNull String method, long latency) {
+
+		MethodMetrics metrics = requestCompleted(method);
+
+		metrics.successCount.incrementAndGet();
+		metrics.latencies.recordValue(latency);
+
+	}
+
+	/**
+	 * Records that a request of the given method failed.
+	 *
+	 * @param method The LSP method of the request.
+	 */
+	public void requestFailed(@NotNull String method) {
+		requestCompleted(method).failureCount.incrementAndGet();
+	}
+
+	/**
+	 * Records that a request of the given method timed out.
+	 *
+	 * @param method The LSP method of the request.
+	 */
+	public void requestTimedOut(@NotNull String method) {
+		requestCompleted(method).timeoutCount.incrementAndGet();
+	}
+
+	/**
+	 * Records that a request of the given method was canceled
+	 * before completing, for a reason other than a timeout.
+	 *
+	 * @param method The LSP method of the request.
+	 */
+	public void requestCanceled(@NotNull String method) {
+		requestCompleted(method).cancellationCount.incrementAndGet();
+	}
+
+	/**
+	 * Records that a notification of the given method was sent
+	 * to the server.
+	 *
+	 * @param method The LSP method of the notification.
+	 */
+	public void notificationSent(@NotNull String method) {
+		increment(notificationsSent, method);
+	}
+
+	/**
+	 * Records that a notification of the given method was received
+	 * from the server.
+	 *
+	 * @param method The LSP method of the notification.
+	 */
+	public void notificationReceived(@NotNull String method) {
+		increment(notificationsReceived, method);
+	}
+
+	/**
+	 * Records that a request of the given method was received
+	 * from the server.
+	 *
+	 * @param method The LSP method of the request.
+	 */
+	public void requestReceived(@NotNull String method) {
+		increment(requestsReceived, method);
+	}
+
+	/**
+	 * Returns an output stream writing to the given stream, and
+	 * recording the number of bytes written as bytes sent.
+	 *
+	 * @param stream The stream to the server.
+	 * @return The counting stream.
+	 */
+	@NotNull
+	public OutputStream countingOutputStream(@NotNull OutputStream stream) {
+
+		return new FilterOutputStream(stream) {
+
+			/**
+			 * @see java.io.FilterOutputStream#write(int)
+			 */
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				bytesSent.incrementAndGet();
+			}
+
+			/**
+			 * @see java.io.FilterOutputStream#write(byte[], int, int)
+			 */
+			@Override
+			public void write(@NotNull byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				bytesSent.addAndGet(len);
+			}
+
+		};
+
+	}
+
+	/**
+	 * Returns an input stream reading from the given stream, and
+	 * recording the number of bytes read as bytes received.
+	 *
+	 * @param stream The stream from the server.
+	 * @return The counting stream.
+	 */
+	@NotNull
+	public InputStream countingInputStream(@NotNull InputStream stream) {
+
+		return new FilterInputStream(stream) {
+
+			/**
+			 * @see java.io.FilterInputStream#read()
+			 */
+			@Override
+			public int read() throws IOException {
+
+				int b = in.read();
+
+				if (b >= 0) { bytesReceived.incrementAndGet(); }
+
+				return b;
+
+			}
+
+			/**
+			 * @see java.io.FilterInputStream#read(byte[], int, int)
+			 */
+			@Override
+			public int read(@NotNull byte[] b, int off, int len) throws IOException {
+
+				int count = in.read(b, off, len);
+
+				if (count > 0) { bytesReceived.addAndGet(count); }
+
+				return count;
+
+			}
+
+		};
+
+	}
+
+	/**
+	 * Returns a point-in-time copy of these metrics.
+	 *
+	 * @return The snapshot of these metrics.
+	 */
+	@NotNull
+	public Snapshot getSnapshot() { return new Snapshot(this); }
+
+	/**
+	 * Returns a point-in-time copy of these metrics as a JSON string.
+	 *
+	 * @return The JSON representation of these metrics.
+	 */
+	@NotNull
+	public String toJson() {
+		return new GsonBuilder().setPrettyPrinting().create().toJson(getSnapshot());
+	}
+
+	/**
+	 * Resets all metrics, except for requests in flight which
+	 * are still counted when they complete.
+	 */
+	public void reset() {
+
+		startTime = System.currentTimeMillis();
+
+		methodMetrics.values().removeIf(metrics -> metrics.inFlightCount.get() == 0);
+
+		methodMetrics.replaceAll((method, metrics) -> {
+
+			MethodMetrics resetMetrics = new MethodMetrics();
+
+			resetMetrics.inFlightCount.set(metrics.inFlightCount.get());
+
+			return resetMetrics;
+
+		});
+
+		notificationsSent.clear();
+		notificationsReceived.clear();
+		requestsReceived.clear();
+
+		peakInFlightCount.set(inFlightCount.get());
+
+		bytesSent.set(0);
+		bytesReceived.set(0);
+
+	}
+
+	/**
+	 * Returns the request metrics of the given method, creating
+	 * them if necessary.
+	 *
+	 * @param method The LSP method.
+	 * @return The method's request metrics.
+	 */
+	@NotNull
+	private MethodMetrics getMethodMetrics(@NotNull String method) {
+		return methodMetrics.computeIfAbsent(method, key -> new MethodMetrics());
+	}
+
+	/**
+	 * Records that a request of the given method is no longer in
+	 * flight, and returns the request metrics of that method.
+	 *
+	 * @param method The LSP method of the request.
+	 * @return The method's request metrics.
+	 */
+	@NotNull
+	private MethodMetrics requestCompleted(@NotNull String method) {
+
+		MethodMetrics metrics = getMethodMetrics(method);
+
+		metrics.inFlightCount.decrementAndGet();
+		inFlightCount.decrementAndGet();
+
+		return metrics;
+
+	}
+
+	/**
+	 * Increments the count of the given method in the given counts.
+	 *
+	 * @param counts The counts to update.
+	 * @param method The LSP method whose count to increment.
+	 */
+	private static void increment(@NotNull Map<String, AtomicLong> counts, @NotNull String method) {
+		counts.computeIfAbsent(method, key -> new AtomicLong()).incrementAndGet();
+	}
+
+}
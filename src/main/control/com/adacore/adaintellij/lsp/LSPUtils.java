@@ -1,11 +1,13 @@
 package com.adacore.adaintellij.lsp;
 
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+
 import com.adacore.adaintellij.editor.AdaDocumentEvent;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.notification.NotificationType;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.event.DocumentEvent;
-import com.intellij.openapi.editor.impl.DocumentImpl;
 import org.jetbrains.annotations.*;
 
 import org.eclipse.lsp4j.*;
@@ -149,15 +151,8 @@ public final class LSPUtils {
 		TextDocumentContentChangeEvent changeEvent =
 			new TextDocumentContentChangeEvent();
 
-		int offset    = event.getOffset();
-		int oldLength = event.getOldLength();
-		Document copyOfOldDoc = new DocumentImpl(adaDocEvent.getPreviousContent());
-
-		changeEvent.setRange(new Range(
-			offsetToPosition(copyOfOldDoc, offset),
-			offsetToPosition(copyOfOldDoc, offset + oldLength)
-		));
-		changeEvent.setRangeLength(oldLength);
+		changeEvent.setRange(adaDocEvent.getRange());
+		changeEvent.setRangeLength(event.getOldLength());
 		changeEvent.setText(event.getNewFragment().toString());
 
 		return changeEvent;
@@ -198,4 +193,66 @@ public final class LSPUtils {
 
 	}
 
+	/**
+	 * Returns a future completed with the result of applying the given
+	 * handler to the result or failure of the given future, similarly
+	 * to `CompletableFuture#handle`, except that canceling the returned
+	 * future also cancels the given future. This allows to derive
+	 * futures from LSP request futures while still being able to
+	 * cancel the underlying requests.
+	 *
+	 * If the handler throws a `CompletionException`, then the returned
+	 * future is completed exceptionally with its cause.
+	 *
+	 * @param future The future to handle.
+	 * @param handler The handler to apply to the result or failure of the future.
+	 * @param <T> The type of the result of the given future.
+	 * @param <R> The type of the result of the returned future.
+	 * @return The derived future.
+	 */
+	@NotNull
+	public static <T, R> CompletableFuture<R> handleCancellable(
+		@NotNull CompletableFuture<T>                          future,
+		@NotNull BiFunction<? super T, Throwable, ? extends R> handler
+	) {
+
+		CompletableFuture<R> derivedFuture = new CompletableFuture<R>() {
+
+			/**
+			 * @see java.util.concurrent.CompletableFuture#cancel(boolean)
+			 */
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+
+				future.cancel(mayInterruptIfRunning);
+
+				return super.cancel(mayInterruptIfRunning);
+
+			}
+
+		};
+
+		future.whenComplete((result, throwable) -> {
+
+			try {
+
+				derivedFuture.complete(handler.apply(result, throwable));
+
+			} catch (CompletionException exception) {
+
+				derivedFuture.completeExceptionally(
+					exception.getCause() == null ? exception : exception.getCause());
+
+			} catch (Throwable handlerThrowable) {
+
+				derivedFuture.completeExceptionally(handlerThrowable);
+
+			}
+
+		});
+
+		return derivedFuture;
+
+	}
+
 }
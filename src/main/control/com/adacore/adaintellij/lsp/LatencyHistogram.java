@@ -0,0 +1,175 @@
+package com.adacore.adaintellij.lsp;
+
+import java.util.concurrent.atomic.*;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Thread-safe histogram of latencies, in milliseconds, in the style
+ * of an HDR histogram: values are counted in buckets whose width grows
+ * with the magnitude of the values, so that every recorded value is
+ * represented with a bounded relative error while the memory footprint
+ * stays constant.
+ *
+ * Values below `SUB_BUCKET_COUNT` are counted exactly. Larger values
+ * are counted in buckets of relative width at most `1 / HALF_SUB_BUCKET_COUNT`
+ * (about 6%). Values larger than `MAX_VALUE` are counted as `MAX_VALUE`.
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * The number of bits used to index sub-buckets.
+	 */
+	private static final int SUB_BUCKET_BITS = 5;
+
+	/**
+	 * The number of values counted exactly, and the number of
+	 * sub-buckets in the first bucket.
+	 */
+	static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * The number of sub-buckets in every other bucket.
+	 */
+	static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+
+	/**
+	 * The largest value that can be recorded, in milliseconds
+	 * (a little over 4 hours).
+	 */
+	static final long MAX_VALUE = (1L << 24) - 1;
+
+	/**
+	 * The counts of the buckets of this histogram.
+	 */
+	private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+
+	/**
+	 * The total number of recorded values.
+	 */
+	private final AtomicLong totalCount = new AtomicLong();
+
+	/**
+	 * Records the given value.
+	 *
+	 * @param value The value to record, in milliseconds.
+	 */
+	public void recordValue(long value) {
+
+		counts.incrementAndGet(indexOf(Math.max(0, Math.min(value, MAX_VALUE))));
+
+		totalCount.incrementAndGet();
+
+	}
+
+	/**
+	 * Returns the total number of recorded values.
+	 *
+	 * @return The total number of recorded values.
+	 */
+	public long getTotalCount() { return totalCount.get(); }
+
+	/**
+	 * Returns the value below or at which the given percentage of
+	 * recorded values fall. Since values are counted in buckets, the
+	 * returned value is the largest value of the bucket containing
+	 * the requested percentile, i.e. it is never lower than the exact
+	 * percentile. Returns 0 if no value was recorded.
+	 *
+	 * @param percentile The percentile to compute, between 0 and 100.
+	 * @return The value at the given percentile, in milliseconds.
+	 */
+	public long getValueAtPercentile(double percentile) {
+
+		long total = totalCount.get();
+
+		if (total == 0) { return 0; }
+
+		// Compute the number of values below or at the percentile
+
+		long targetCount = Math.max(1,
+			(long)Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * total));
+
+		// Find the bucket containing the target count
+
+		long count = 0;
+
+		for (int i = 0 ; i < counts.length() ; i++) {
+
+			count += counts.get(i);
+
+			if (count >= targetCount) { return highestValueAt(i); }
+
+		}
+
+		return MAX_VALUE;
+
+	}
+
+	/**
+	 * Adds the counts of the given histogram to this histogram.
+	 *
+	 * @param other The histogram whose counts to add.
+	 */
+	public void add(@NotNull LatencyHistogram other) {
+
+		long addedCount = 0;
+
+		for (int i = 0 ; i < counts.length() ; i++) {
+
+			long count = other.counts.get(i);
+
+			if (count > 0) {
+				counts.addAndGet(i, count);
+				addedCount += count;
+			}
+
+		}
+
+		totalCount.addAndGet(addedCount);
+
+	}
+
+	/**
+	 * Returns the index of the bucket counting the given value.
+	 *
+	 * @param value The value, between 0 and `MAX_VALUE`.
+	 * @return The index of the corresponding bucket.
+	 */
+	static int indexOf(long value) {
+
+		// Compute by how many bits the value must be shifted
+		// for it to fit in `SUB_BUCKET_BITS` bits
+
+		int mostSignificantBit = 63 - Long.numberOfLeadingZeros(value | (SUB_BUCKET_COUNT - 1));
+		int shift              = mostSignificantBit - (SUB_BUCKET_BITS - 1);
+
+		int subBucket = (int)(value >>> shift);
+
+		// Values in the first bucket are counted exactly, while
+		// values in the following buckets only use their upper
+		// half of sub-buckets
+
+		return shift == 0 ? subBucket :
+			SUB_BUCKET_COUNT + (shift - 1) * HALF_SUB_BUCKET_COUNT + (subBucket - HALF_SUB_BUCKET_COUNT);
+
+	}
+
+	/**
+	 * Returns the largest value counted in the bucket at the given index.
+	 *
+	 * @param index The index of the bucket.
+	 * @return The largest value of the bucket.
+	 */
+	static long highestValueAt(int index) {
+
+		if (index < SUB_BUCKET_COUNT) { return index; }
+
+		int shift     = (index - SUB_BUCKET_COUNT) / HALF_SUB_BUCKET_COUNT + 1;
+		int subBucket = (index - SUB_BUCKET_COUNT) % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+
+		return Math.min(((long)(subBucket + 1) << shift) - 1, MAX_VALUE);
+
+	}
+
+}
@@ -0,0 +1,305 @@
+package com.adacore.adaintellij.lsp;
+
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Bounded pool of documents that are open in the server's perspective
+ * without being open in an editor, i.e. documents that were opened in
+ * order to make requests on them.
+ *
+ * Instead of closing such documents after every request, which would
+ * make the server re-analyze them on every subsequent request, they are
+ * kept open until the pool exceeds its maximum number of documents or
+ * its maximum total size, at which point the least recently used
+ * documents are evicted and must be closed by the caller.
+ *
+ * Documents in use by requests in flight are never evicted, which may
+ * cause the pool to temporarily exceed its limits.
+ *
+ * The pool holds a strong reference to each of its documents. Documents
+ * without unsaved changes are otherwise only weakly held by the IDE, and
+ * a document that is collected no longer reports changes, e.g. those
+ * made to its file by a VCS update, which would leave the server with
+ * stale contents for a document it considers open.
+ *
+ * @param <D> The type of the documents held by the pool.
+ */
+final class OpenDocumentPool<D> {
+
+	/**
+	 * Default limits of the pool.
+	 */
+	static final int  DEFAULT_MAX_DOCUMENTS = 32;
+	static final long DEFAULT_MAX_SIZE      = 4L * 1024 * 1024;
+
+	/**
+	 * A document in the pool.
+	 */
+	private static final class PooledDocument<D> {
+
+		/**
+		 * The document, or null if it could not be loaded.
+		 */
+		@Nullable
+		final D document;
+
+		/**
+		 * The size of the document, in characters.
+		 */
+		long size;
+
+		/**
+		 * The number of requests in flight using the document.
+		 */
+		int useCount = 0;
+
+		/**
+		 * Constructs a new PooledDocument given the document
+		 * and its size.
+		 *
+		 * @param document The document, or null.
+		 * @param size The size of the document.
+		 */
+		PooledDocument(@Nullable D document, long size) {
+			this.document = document;
+			this.size     = size;
+		}
+
+	}
+
+	/**
+	 * The maximum number of documents in the pool.
+	 */
+	private final int maxDocuments;
+
+	/**
+	 * The maximum total size of documents in the pool, in characters.
+	 */
+	private final long maxSize;
+
+	/**
+	 * The documents in the pool, mapped by URI in access order.
+	 */
+	private final LinkedHashMap<String, PooledDocument<D>> documents =
+		new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The total size of documents in the pool.
+	 */
+	private long totalSize = 0;
+
+	/**
+	 * Constructs a new OpenDocumentPool with default limits.
+	 */
+	OpenDocumentPool() { this(DEFAULT_MAX_DOCUMENTS, DEFAULT_MAX_SIZE); }
+
+	/**
+	 * Constructs a new OpenDocumentPool given its limits.
+	 *
+	 * @param maxDocuments The maximum number of documents in the pool.
+	 * @param maxSize The maximum total size of documents in the pool.
+	 */
+	OpenDocumentPool(int maxDocuments, long maxSize) {
+		this.maxDocuments = maxDocuments;
+		this.maxSize      = maxSize;
+	}
+
+	/**
+	 * Returns whether or not the given document is in the pool.
+	 *
+	 * @param documentUri The URI of the document.
+	 * @return Whether or not the document is in the pool.
+	 */
+	synchronized boolean contains(@NotNull String documentUri) {
+		return documents.containsKey(documentUri);
+	}
+
+	/**
+	 * Returns the document held by the pool for the given URI, or null
+	 * if the URI is not in the pool or its document could not be loaded.
+	 *
+	 * @param documentUri The URI of the document.
+	 * @return The pooled document, or null.
+	 */
+	@Nullable
+	synchronized D getDocument(@NotNull String documentUri) {
+
+		PooledDocument<D> document = documents.get(documentUri);
+
+		return document == null ? null : document.document;
+
+	}
+
+	/**
+	 * Marks the given document as used by a request, adding it to the
+	 * pool with the given size if it is not in the pool already. The
+	 * document must be released once the request is complete.
+	 * @see OpenDocumentPool#release(String)
+	 *
+	 * @param documentUri The URI of the document.
+	 * @param document The document, kept referenced while it is in the
+	 *                 pool, used if it is added.
+	 * @param size The size of the document, used if it is added.
+	 * @return The URIs of the documents evicted from the pool, which
+	 *         must be closed.
+	 */
+	@NotNull
+	synchronized List<String> acquire(@NotNull String documentUri, @Nullable D document, long size) {
+
+		PooledDocument<D> pooledDocument = documents.get(documentUri);
+
+		if (pooledDocument == null) {
+
+			pooledDocument = new PooledDocument<>(document, size);
+
+			documents.put(documentUri, pooledDocument);
+
+			totalSize += size;
+
+		}
+
+		pooledDocument.useCount++;
+
+		return evict();
+
+	}
+
+	/**
+	 * Marks the given document as no longer used by a request.
+	 *
+	 * @param documentUri The URI of the document.
+	 * @return The URIs of the documents evicted from the pool, which
+	 *         must be closed.
+	 */
+	@NotNull
+	synchronized List<String> release(@NotNull String documentUri) {
+
+		PooledDocument<D> document = documents.get(documentUri);
+
+		if (document != null && document.useCount > 0) { document.useCount--; }
+
+		return evict();
+
+	}
+
+	/**
+	 * Updates the size of the given document, if it is in the pool.
+	 *
+	 * @param documentUri The URI of the document.
+	 * @param size The new size of the document.
+	 * @return The URIs of the documents evicted from the pool, which
+	 *         must be closed.
+	 */
+	@NotNull
+	synchronized List<String> resize(@NotNull String documentUri, long size) {
+
+		// Get the document without affecting the access order,
+		// as a change to a document is not a use of the pool
+
+		PooledDocument<D> document = null;
+
+		for (Map.Entry<String, PooledDocument<D>> entry : documents.entrySet()) {
+			if (entry.getKey().equals(documentUri)) {
+				document = entry.getValue();
+				break;
+			}
+		}
+
+		if (document == null) { return Collections.emptyList(); }
+
+		totalSize += size - document.size;
+
+		document.size = size;
+
+		return evict();
+
+	}
+
+	/**
+	 * Removes the given document from the pool without it being
+	 * evicted, typically because it was opened in an editor.
+	 *
+	 * @param documentUri The URI of the document.
+	 * @return Whether or not the document was in the pool.
+	 */
+	synchronized boolean remove(@NotNull String documentUri) {
+
+		PooledDocument<D> document = documents.remove(documentUri);
+
+		if (document == null) { return false; }
+
+		totalSize -= document.size;
+
+		return true;
+
+	}
+
+	/**
+	 * Removes all documents from the pool.
+	 *
+	 * @return The URIs of the removed documents, which must be closed.
+	 */
+	@NotNull
+	synchronized List<String> clear() {
+
+		List<String> removedUris = new ArrayList<>(documents.keySet());
+
+		documents.clear();
+
+		totalSize = 0;
+
+		return removedUris;
+
+	}
+
+	/**
+	 * Returns the number of documents in the pool.
+	 *
+	 * @return The number of documents.
+	 */
+	synchronized int size() { return documents.size(); }
+
+	/**
+	 * Returns the total size of documents in the pool.
+	 *
+	 * @return The total size of documents.
+	 */
+	synchronized long totalSize() { return totalSize; }
+
+	/**
+	 * Evicts least recently used documents that are not in use,
+	 * until the pool is within its limits.
+	 *
+	 * @return The URIs of the evicted documents.
+	 */
+	@NotNull
+	private List<String> evict() {
+
+		List<String> evictedUris = new ArrayList<>();
+
+		Iterator<Map.Entry<String, PooledDocument<D>>> iterator = documents.entrySet().iterator();
+
+		while (
+			(documents.size() > maxDocuments || totalSize > maxSize) &&
+			iterator.hasNext()
+		) {
+
+			Map.Entry<String, PooledDocument<D>> entry = iterator.next();
+
+			if (entry.getValue().useCount > 0) { continue; }
+
+			iterator.remove();
+
+			totalSize -= entry.getValue().size;
+
+			evictedUris.add(entry.getKey());
+
+		}
+
+		return evictedUris;
+
+	}
+
+}
@@ -0,0 +1,290 @@
+package com.adacore.adaintellij.lsp;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Single-flight multiplexer of LSP requests.
+ *
+ * Requests are identified by their method, their parameters and the
+ * version of the contents on which they are made. While a request is
+ * in flight, identical requests share its result instead of making a
+ * new round-trip to the server.
+ *
+ * Every caller gets its own future, which may be canceled without
+ * affecting the other callers. The shared request is only canceled
+ * once all of its callers canceled their futures.
+ */
+final class RequestMultiplexer {
+
+	/**
+	 * Identity of a request.
+	 */
+	private static final class RequestKey {
+
+		/**
+		 * The method of the request.
+		 */
+		final String method;
+
+		/**
+		 * The parameters of the request.
+		 */
+		final Object params;
+
+		/**
+		 * The version of the contents on which the request is made.
+		 */
+		final long version;
+
+		/**
+		 * Constructs a new RequestKey given a method, parameters and
+		 * a contents version.
+		 *
+		 * @param method The method of the request.
+		 * @param params The parameters of the request.
+		 * @param version The version of the contents.
+		 */
+		RequestKey(@NotNull String method, @NotNull Object params, long version) {
+			this.method  = method;
+			this.params  = params;
+			this.version = version;
+		}
+
+		/**
+		 * @see java.lang.Object#equals(Object)
+		 */
+		@Override
+		public boolean equals(Object object) {
+
+			if (this == object) { return true; }
+
+			if (!(object instanceof RequestKey)) { return false; }
+
+			RequestKey key = (RequestKey)object;
+
+			return version == key.version &&
+				method.equals(key.method) &&
+				params.equals(key.params);
+
+		}
+
+		/**
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() { return Objects.hash(method, params, version); }
+
+	}
+
+	/**
+	 * An in-flight request shared by one or more callers.
+	 *
+	 * @param <T> The type of the request's response result.
+	 */
+	private static final class SharedRequest<T> {
+
+		/**
+		 * The future result of the request, completed once the
+		 * request future is completed.
+		 */
+		final CompletableFuture<T> result = new CompletableFuture<>();
+
+		/**
+		 * The future of the actual request, or null if the request
+		 * was not made yet.
+		 */
+		@Nullable
+		CompletableFuture<T> requestFuture;
+
+		/**
+		 * The number of callers that did not cancel their future.
+		 */
+		int subscribers = 0;
+
+	}
+
+	/**
+	 * Request-key -> in-flight-request mapping.
+	 */
+	private final Map<RequestKey, SharedRequest<?>> inFlightRequests = new HashMap<>();
+
+	/**
+	 * Returns the future result of the request identified by the given
+	 * method, parameters and contents version. If an identical request
+	 * is in flight, then its result is shared, otherwise the request is
+	 * made using the given supplier.
+	 *
+	 * @param method The method of the request.
+	 * @param params The parameters of the request.
+	 * @param version The version of the contents on which the request is made.
+	 * @param requestSupplier A supplier representing the request to be made.
+	 * @param <T> The type of the request's response result.
+	 * @return The future result of the request, specific to the caller.
+	 */
+	@NotNull
+	<T> CompletableFuture<T> request(
+		@NotNull String                          method,
+		@NotNull Object                          params,
+		         long                            version,
+		@NotNull Supplier<CompletableFuture<T>> requestSupplier
+	) {
+
+		RequestKey       key = new RequestKey(method, params, version);
+		SharedRequest<T> sharedRequest;
+		boolean          newRequest = false;
+
+		// Get the identical in-flight request, or register
+		// a new one, and subscribe to it
+
+		synchronized (inFlightRequests) {
+
+			@SuppressWarnings("unchecked")
+			SharedRequest<T> inFlightRequest = (SharedRequest<T>)inFlightRequests.get(key);
+
+			if (inFlightRequest == null) {
+				inFlightRequest = new SharedRequest<>();
+				inFlightRequests.put(key, inFlightRequest);
+				newRequest = true;
+			}
+
+			inFlightRequest.subscribers++;
+
+			sharedRequest = inFlightRequest;
+
+		}
+
+		// Create the caller-specific future before making the request,
+		// so that a request completing immediately is handled properly
+
+		final SharedRequest<T> request = sharedRequest;
+
+		CompletableFuture<T> callerFuture = new CompletableFuture<T>() {
+
+			/**
+			 * @see java.util.concurrent.CompletableFuture#cancel(boolean)
+			 */
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+
+				boolean canceled = super.cancel(mayInterruptIfRunning);
+
+				if (canceled) { unsubscribe(key, request); }
+
+				return canceled;
+
+			}
+
+		};
+
+		request.result.whenComplete((result, throwable) -> {
+			if (throwable == null) { callerFuture.complete(result); }
+			else { callerFuture.completeExceptionally(throwable); }
+		});
+
+		// If the request is new, then make it
+
+		if (newRequest) { makeRequest(key, request, requestSupplier); }
+
+		return callerFuture;
+
+	}
+
+	/**
+	 * Returns the number of requests currently in flight.
+	 *
+	 * @return The number of in-flight requests.
+	 */
+	int inFlightCount() {
+		synchronized (inFlightRequests) { return inFlightRequests.size(); }
+	}
+
+	/**
+	 * Makes the given shared request using the given supplier.
+	 *
+	 * @param key The key of the request.
+	 * @param request The shared request to make.
+	 * @param requestSupplier A supplier representing the request to be made.
+	 * @param <T> The type of the request's response result.
+	 */
+	private <T> void makeRequest(
+		@NotNull RequestKey                      key,
+		@NotNull SharedRequest<T>                request,
+		@NotNull Supplier<CompletableFuture<T>> requestSupplier
+	) {
+
+		CompletableFuture<T> requestFuture;
+
+		try {
+			requestFuture = requestSupplier.get();
+		} catch (Throwable throwable) {
+			remove(key, request);
+			request.result.completeExceptionally(throwable);
+			return;
+		}
+
+		// Store the request future, unless all callers already
+		// canceled their futures, in which case cancel it
+
+		boolean canceled;
+
+		synchronized (inFlightRequests) {
+			canceled = request.subscribers == 0;
+			request.requestFuture = requestFuture;
+		}
+
+		if (canceled) { requestFuture.cancel(true); }
+
+		// Complete the shared result, and stop sharing the request
+		// once it is complete
+
+		requestFuture.whenComplete((result, throwable) -> {
+
+			remove(key, request);
+
+			if (throwable == null) { request.result.complete(result); }
+			else { request.result.completeExceptionally(throwable); }
+
+		});
+
+	}
+
+	/**
+	 * Unsubscribes a caller from the given shared request, canceling
+	 * the request if it has no subscribers left.
+	 *
+	 * @param key The key of the request.
+	 * @param request The shared request.
+	 */
+	private void unsubscribe(@NotNull RequestKey key, @NotNull SharedRequest<?> request) {
+
+		CompletableFuture<?> requestFuture = null;
+
+		synchronized (inFlightRequests) {
+
+			if (--request.subscribers > 0) { return; }
+
+			inFlightRequests.remove(key, request);
+
+			requestFuture = request.requestFuture;
+
+		}
+
+		if (requestFuture != null) { requestFuture.cancel(true); }
+
+	}
+
+	/**
+	 * Stops sharing the given request.
+	 *
+	 * @param key The key of the request.
+	 * @param request The shared request.
+	 */
+	private void remove(@NotNull RequestKey key, @NotNull SharedRequest<?> request) {
+		synchronized (inFlightRequests) { inFlightRequests.remove(key, request); }
+	}
+
+}
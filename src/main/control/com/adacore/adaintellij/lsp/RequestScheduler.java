@@ -0,0 +1,337 @@
+package com.adacore.adaintellij.lsp;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.*;
+
+/**
+ * Priority-aware scheduler of LSP requests.
+ *
+ * At most a bounded number of scheduled requests are in flight at any
+ * time, other requests being queued until a request completes. Queued
+ * interactive requests, i.e. requests resulting from user actions and
+ * awaited by the user, are always made before queued background
+ * requests, which are made in arrival order.
+ *
+ * Queued background requests made on a document are dropped, i.e.
+ * their futures are canceled, when the document changes, as their
+ * results would apply to an outdated version of the document.
+ *
+ * Requests dequeued once a request completes are made on the
+ * scheduler's executor, and not on the thread completing the request,
+ * which is typically the thread handling server messages.
+ */
+final class RequestScheduler {
+
+	/**
+	 * Default maximum number of scheduled requests in flight.
+	 */
+	static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+	/**
+	 * Priorities of requests.
+	 */
+	enum Priority {
+
+		/**
+		 * Requests awaited by the user, such as completion or navigation.
+		 */
+		INTERACTIVE,
+
+		/**
+		 * Requests refreshing information in the background, such as
+		 * folding ranges or document symbols.
+		 */
+		BACKGROUND
+
+	}
+
+	/**
+	 * A queued request.
+	 *
+	 * @param <T> The type of the request's response result.
+	 */
+	private static final class QueuedRequest<T> {
+
+		/**
+		 * The URI of the document on which the request is made.
+		 */
+		final String documentUri;
+
+		/**
+		 * A supplier representing the request to be made.
+		 */
+		final Supplier<CompletableFuture<T>> requestSupplier;
+
+		/**
+		 * The future result of the request, returned to the caller.
+		 */
+		final CompletableFuture<T> result = new CompletableFuture<>();
+
+		/**
+		 * Constructs a new QueuedRequest given a document URI and
+		 * a request supplier.
+		 *
+		 * @param documentUri The URI of the document.
+		 * @param requestSupplier A supplier representing the request.
+		 */
+		QueuedRequest(
+			@NotNull String                          documentUri,
+			@NotNull Supplier<CompletableFuture<T>> requestSupplier
+		) {
+			this.documentUri     = documentUri;
+			this.requestSupplier = requestSupplier;
+		}
+
+	}
+
+	/**
+	 * The maximum number of scheduled requests in flight.
+	 */
+	private final int maxInFlight;
+
+	/**
+	 * The executor on which requests dequeued once a request completes
+	 * are made.
+	 */
+	private final Executor executor;
+
+	/**
+	 * Queues of requests waiting to be made, by priority.
+	 * All accesses to the queues and to the number of requests in
+	 * flight are synchronized on this scheduler.
+	 */
+	private final Deque<QueuedRequest<?>> interactiveQueue = new ArrayDeque<>();
+	private final Deque<QueuedRequest<?>> backgroundQueue  = new ArrayDeque<>();
+
+	/**
+	 * The number of scheduled requests in flight.
+	 */
+	private int inFlight = 0;
+
+	/**
+	 * Constructs a new RequestScheduler with the default maximum
+	 * number of requests in flight, making dequeued requests on the
+	 * application's executor.
+	 */
+	RequestScheduler() { this(DEFAULT_MAX_IN_FLIGHT, AppExecutorUtil.getAppExecutorService()); }
+
+	/**
+	 * Constructs a new RequestScheduler given a maximum number of
+	 * requests in flight and an executor.
+	 *
+	 * @param maxInFlight The maximum number of requests in flight.
+	 * @param executor The executor on which to make dequeued requests.
+	 */
+	RequestScheduler(int maxInFlight, @NotNull Executor executor) {
+
+		if (maxInFlight <= 0) {
+			throw new IllegalArgumentException("Maximum number of requests in flight must be positive");
+		}
+
+		this.maxInFlight = maxInFlight;
+		this.executor    = executor;
+
+	}
+
+	/**
+	 * Schedules the given request with the given priority, making it
+	 * right away if the maximum number of requests in flight is not
+	 * reached, or queuing it otherwise.
+	 * Canceling the returned future removes the request from the queue
+	 * if it is queued, or cancels the request if it is in flight.
+	 *
+	 * @param priority The priority of the request.
+	 * @param documentUri The URI of the document on which the request is made.
+	 * @param requestSupplier A supplier representing the request to be made.
+	 * @param <T> The type of the request's response result.
+	 * @return The future result of the request.
+	 */
+	@NotNull
+	<T> CompletableFuture<T> schedule(
+		@NotNull Priority                        priority,
+		@NotNull String                          documentUri,
+		@NotNull Supplier<CompletableFuture<T>> requestSupplier
+	) {
+
+		QueuedRequest<T> request = new QueuedRequest<>(documentUri, requestSupplier);
+
+		// Remove the request from its queue if it is canceled
+		// before being made
+
+		request.result.whenComplete((result, throwable) -> {
+			if (request.result.isCancelled()) { dequeue(request); }
+		});
+
+		synchronized (this) {
+
+			if (priority == Priority.INTERACTIVE) {
+				interactiveQueue.addLast(request);
+			} else {
+				backgroundQueue.addLast(request);
+			}
+
+		}
+
+		makeNextRequests();
+
+		return request.result;
+
+	}
+
+	/**
+	 * Drops the queued background requests made on the given document,
+	 * typically because the document changed.
+	 *
+	 * @param documentUri The URI of the changed document.
+	 */
+	void documentChanged(@NotNull String documentUri) {
+
+		List<QueuedRequest<?>> droppedRequests = new ArrayList<>();
+
+		synchronized (this) {
+
+			Iterator<QueuedRequest<?>> iterator = backgroundQueue.iterator();
+
+			while (iterator.hasNext()) {
+
+				QueuedRequest<?> request = iterator.next();
+
+				if (!request.documentUri.equals(documentUri)) { continue; }
+
+				iterator.remove();
+
+				droppedRequests.add(request);
+
+			}
+
+		}
+
+		// Cancel the dropped requests outside of the lock, as
+		// cancellation runs dependent actions
+
+		droppedRequests.forEach(request -> request.result.cancel(false));
+
+	}
+
+	/**
+	 * Returns the number of scheduled requests in flight.
+	 *
+	 * @return The number of requests in flight.
+	 */
+	synchronized int inFlightCount() { return inFlight; }
+
+	/**
+	 * Returns the number of queued requests.
+	 *
+	 * @return The number of queued requests.
+	 */
+	synchronized int queuedCount() { return interactiveQueue.size() + backgroundQueue.size(); }
+
+	/**
+	 * Removes the given request from its queue, if it is queued.
+	 *
+	 * @param request The request to remove.
+	 */
+	private synchronized void dequeue(@NotNull QueuedRequest<?> request) {
+		if (!interactiveQueue.remove(request)) { backgroundQueue.remove(request); }
+	}
+
+	/**
+	 * Makes queued requests, by priority, as long as the maximum number
+	 * of requests in flight is not reached.
+	 */
+	private void makeNextRequests() {
+
+		while (true) {
+
+			QueuedRequest<?> request;
+
+			synchronized (this) {
+
+				if (inFlight >= maxInFlight) { return; }
+
+				request = interactiveQueue.pollFirst();
+
+				if (request == null) { request = backgroundQueue.pollFirst(); }
+
+				if (request == null) { return; }
+
+				inFlight++;
+
+			}
+
+			makeRequest(request);
+
+		}
+
+	}
+
+	/**
+	 * Makes the given dequeued request, propagating its result to the
+	 * future returned to the caller, and making the next queued requests
+	 * once it is complete.
+	 *
+	 * @param request The request to make.
+	 * @param <T> The type of the request's response result.
+	 */
+	private <T> void makeRequest(@NotNull QueuedRequest<T> request) {
+
+		// If the request was canceled in the meantime, then
+		// do not make it
+
+		if (request.result.isDone()) {
+			requestCompleted();
+			return;
+		}
+
+		CompletableFuture<T> requestFuture;
+
+		try {
+
+			requestFuture = request.requestSupplier.get();
+
+		} catch (RuntimeException exception) {
+
+			request.result.completeExceptionally(exception);
+
+			requestCompleted();
+
+			return;
+
+		}
+
+		// Propagate the result of the request, and cancel the request
+		// if the caller's future is canceled
+
+		requestFuture.whenComplete((result, throwable) -> {
+
+			if (throwable == null) { request.result.complete(result); }
+			else { request.result.completeExceptionally(throwable); }
+
+			requestCompleted();
+
+		});
+
+		request.result.whenComplete((result, throwable) -> {
+			if (request.result.isCancelled()) { requestFuture.cancel(true); }
+		});
+
+	}
+
+	/**
+	 * Frees the slot of a completed request and makes the next
+	 * queued requests on the executor.
+	 */
+	private void requestCompleted() {
+
+		synchronized (this) { inFlight--; }
+
+		executor.execute(this::makeNextRequests);
+
+	}
+
+}
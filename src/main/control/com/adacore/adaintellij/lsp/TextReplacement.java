@@ -0,0 +1,109 @@
+package com.adacore.adaintellij.lsp;
+
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Replacement of a range of a document's text with a new text,
+ * expressed in offsets of the document before any replacement.
+ *
+ * Replacements of a same document are applied bottom-up, i.e. from
+ * the end of the document to its start, so that applying one of them
+ * does not shift the offsets of those that remain to be applied.
+ */
+final class TextReplacement {
+
+	/**
+	 * Comparator ordering replacements bottom-up, i.e. by decreasing
+	 * start offset, then by decreasing end offset. Replacements with
+	 * the same range keep their relative order reversed, so that
+	 * insertions at a same offset end up in the order in which
+	 * they were given.
+	 */
+	private static final Comparator<Map.Entry<Integer, TextReplacement>> BOTTOM_UP_ORDER =
+		Comparator.<Map.Entry<Integer, TextReplacement>>comparingInt(entry -> entry.getValue().startOffset)
+			.thenComparingInt(entry -> entry.getValue().endOffset)
+			.thenComparingInt(Map.Entry::getKey)
+			.reversed();
+
+	/**
+	 * The offset at which the replaced range starts.
+	 */
+	final int startOffset;
+
+	/**
+	 * The offset at which the replaced range ends.
+	 */
+	final int endOffset;
+
+	/**
+	 * The text replacing the range.
+	 */
+	final String text;
+
+	/**
+	 * Constructs a new TextReplacement given a range and a text.
+	 *
+	 * @param startOffset The offset at which the replaced range starts.
+	 * @param endOffset The offset at which the replaced range ends.
+	 * @param text The text replacing the range.
+	 */
+	TextReplacement(int startOffset, int endOffset, @NotNull String text) {
+
+		if (startOffset < 0 || endOffset < startOffset) {
+			throw new IllegalArgumentException("Invalid replaced range: " + startOffset + ", " + endOffset);
+		}
+
+		this.startOffset = startOffset;
+		this.endOffset   = endOffset;
+		this.text        = text;
+
+	}
+
+	/**
+	 * Returns the given replacements of a same document in the order
+	 * in which they should be applied, i.e. bottom-up, or null if some
+	 * of the replacements overlap, in which case they cannot be applied
+	 * together. The given list is not modified.
+	 *
+	 * @param replacements The replacements to order.
+	 * @return The ordered replacements, or null if some of them overlap.
+	 */
+	@Nullable
+	static List<TextReplacement> bottomUp(@NotNull List<TextReplacement> replacements) {
+
+		// Sort the replacements, keeping track of their original
+		// index so that the sort is deterministic
+
+		List<Map.Entry<Integer, TextReplacement>> entries = new ArrayList<>(replacements.size());
+
+		for (int i = 0 ; i < replacements.size() ; i++) {
+			entries.add(new AbstractMap.SimpleImmutableEntry<>(i, replacements.get(i)));
+		}
+
+		entries.sort(BOTTOM_UP_ORDER);
+
+		// Check that every replacement ends before the start of the
+		// replacement applied right before it
+
+		List<TextReplacement> ordered  = new ArrayList<>(entries.size());
+		TextReplacement       previous = null;
+
+		for (Map.Entry<Integer, TextReplacement> entry : entries) {
+
+			TextReplacement replacement = entry.getValue();
+
+			if (previous != null && replacement.endOffset > previous.startOffset) { return null; }
+
+			ordered.add(replacement);
+
+			previous = replacement;
+
+		}
+
+		return ordered;
+
+	}
+
+}
@@ -1,24 +1,84 @@
 package com.adacore.adaintellij.lsp;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
 
 /**
  * Provider of request timeouts for the various LSP methods.
+ *
+ * The latency of requests is tracked per method, and once enough
+ * requests of a method were made, the timeout of that method is
+ * derived from its observed latency distribution. Until then, a
+ * statically configured timeout is used. In both cases, timeouts
+ * are kept within bounds that can be configured in the settings.
  */
 public final class Timeouts {
 
+	/**
+	 * Class-wide logger for the Timeouts class.
+	 */
+	private static final Logger LOGGER = Logger.getInstance(Timeouts.class);
+
 	/**
 	 * Default request timeout.
 	 */
 	public static final int DEFAULT_METHOD_TIMEOUT = 4_000;
 
+	/**
+	 * Default bounds of request timeouts.
+	 */
+	public static final int DEFAULT_MINIMUM_TIMEOUT = 1_000;
+	public static final int DEFAULT_MAXIMUM_TIMEOUT = 30_000;
+
+	/**
+	 * Keys of the application-level properties storing the
+	 * bounds of request timeouts.
+	 */
+	private static final String MINIMUM_TIMEOUT_PROPERTY =
+		"com.adacore.adaintellij.lsp.Timeouts@minimumTimeout";
+	private static final String MAXIMUM_TIMEOUT_PROPERTY =
+		"com.adacore.adaintellij.lsp.Timeouts@maximumTimeout";
+
+	/**
+	 * The number of latencies that must be recorded for a method
+	 * before its timeout is derived from them.
+	 */
+	static final int MINIMUM_SAMPLE_COUNT = 20;
+
+	/**
+	 * The number of latencies after which a new latency window is
+	 * started. Timeouts are derived from the current and previous
+	 * windows, so that they follow changes in server performance
+	 * (e.g. once the server is warm).
+	 */
+	private static final int WINDOW_SAMPLE_COUNT = 512;
+
+	/**
+	 * The latency percentile from which timeouts are derived, and the
+	 * factor applied to it to leave a margin for slower requests.
+	 */
+	private static final double TIMEOUT_PERCENTILE = 99;
+	private static final int    TIMEOUT_FACTOR     = 2;
+
+	/**
+	 * The relative change of a derived timeout from which it is logged.
+	 */
+	private static final double LOGGED_TIMEOUT_CHANGE = 0.1;
+
 	/**
 	 * LSP-method -> timeout mapping.
 	 */
 	private static final Map<String, Integer> METHOD_TIMEOUTS;
 
+	/**
+	 * LSP-method -> observed-latencies mapping.
+	 */
+	private static final Map<String, MethodLatencies> METHOD_LATENCIES = new ConcurrentHashMap<>();
+
 	static {
 
 		// Populate the LSP-method -> timeout mapping
@@ -27,27 +87,268 @@ public final class Timeouts {
 
 		methodTimeouts.put("textDocument/completion", 8_000);
 		methodTimeouts.put("textDocument/definition", 4_000);
-		methodTimeouts.put("textDocument/references", 8_000);
 
 		METHOD_TIMEOUTS = Collections.unmodifiableMap(methodTimeouts);
 
 	}
 
+	/**
+	 * Latency statistics of an LSP method.
+	 */
+	public static final class MethodStatistics {
+
+		/**
+		 * The LSP method.
+		 */
+		public final String method;
+
+		/**
+		 * The number of latencies from which statistics are computed.
+		 */
+		public final long sampleCount;
+
+		/**
+		 * Latency percentiles, in milliseconds.
+		 */
+		public final long p50;
+		public final long p95;
+		public final long p99;
+
+		/**
+		 * The current timeout of the method, in milliseconds.
+		 */
+		public final int timeout;
+
+		/**
+		 * Constructs a new MethodStatistics given all its fields.
+		 *
+		 * @param method The LSP method.
+		 * @param sampleCount The number of latencies.
+		 * @param p50 The 50th latency percentile.
+		 * @param p95 The 95th latency percentile.
+		 * @param p99 The 99th latency percentile.
+		 * @param timeout The current timeout of the method.
+		 */
+		MethodStatistics(
+			@NotNull String method,
+			         long   sampleCount,
+			         long   p50,
+			         long   p95,
+			         long   p99,
+			         int    timeout
+		) {
+			this.method      = method;
+			this.sampleCount = sampleCount;
+			this.p50         = p50;
+			this.p95         = p95;
+			this.p99         = p99;
+			this.timeout     = timeout;
+		}
+
+	}
+
+	/**
+	 * Observed latencies of an LSP method.
+	 */
+	private static final class MethodLatencies {
+
+		/**
+		 * The LSP method.
+		 */
+		final String method;
+
+		/**
+		 * The latency histograms of the current and previous windows.
+		 */
+		LatencyHistogram currentWindow  = new LatencyHistogram();
+		LatencyHistogram previousWindow = new LatencyHistogram();
+
+		/**
+		 * The timeout derived from observed latencies, or 0 if not
+		 * enough latencies were observed yet.
+		 */
+		volatile int derivedTimeout = 0;
+
+		/**
+		 * The last derived timeout that was logged.
+		 */
+		int loggedTimeout = 0;
+
+		/**
+		 * Constructs a new MethodLatencies given an LSP method.
+		 *
+		 * @param method The LSP method.
+		 */
+		MethodLatencies(@NotNull String method) { this.method = method; }
+
+		/**
+		 * Returns a histogram of the latencies of both windows.
+		 *
+		 * @return The histogram of observed latencies.
+		 */
+		@NotNull
+		synchronized LatencyHistogram getHistogram() {
+
+			LatencyHistogram histogram = new LatencyHistogram();
+
+			histogram.add(previousWindow);
+			histogram.add(currentWindow);
+
+			return histogram;
+
+		}
+
+		/**
+		 * Records the given latency and updates the derived timeout.
+		 *
+		 * @param latency The latency to record, in milliseconds.
+		 */
+		synchronized void record(long latency) {
+
+			// Start a new window if the current one is full
+
+			if (currentWindow.getTotalCount() >= WINDOW_SAMPLE_COUNT) {
+				previousWindow = currentWindow;
+				currentWindow  = new LatencyHistogram();
+			}
+
+			currentWindow.recordValue(latency);
+
+			// Derive the timeout if enough latencies were observed
+
+			LatencyHistogram histogram = getHistogram();
+
+			if (histogram.getTotalCount() < MINIMUM_SAMPLE_COUNT) { return; }
+
+			derivedTimeout = (int)Math.max(1, Math.min(Integer.MAX_VALUE,
+				histogram.getValueAtPercentile(TIMEOUT_PERCENTILE) * TIMEOUT_FACTOR));
+
+			// Log the derived timeout if it changed significantly
+
+			if (Math.abs(derivedTimeout - loggedTimeout) > loggedTimeout * LOGGED_TIMEOUT_CHANGE) {
+
+				loggedTimeout = derivedTimeout;
+
+				LOGGER.info(String.format(
+					"Timeout of '%s' derived as %d ms (bounded to %d ms) " +
+						"from %d latencies: p50 = %d ms, p95 = %d ms, p99 = %d ms",
+					method, derivedTimeout, getMethodTimeout(method), histogram.getTotalCount(),
+					histogram.getValueAtPercentile(50),
+					histogram.getValueAtPercentile(95),
+					histogram.getValueAtPercentile(99)
+				));
+
+			}
+
+		}
+
+	}
+
 	/**
 	 * Private default constructor to prevent instantiation.
 	 */
 	private Timeouts() {}
 
 	/**
-	 * Returns the timeout configured for the given LSP method, or
-	 * the default timeout if no specific timeout is set for that
-	 * method.
+	 * Returns the timeout of the given LSP method, derived from its
+	 * observed latencies if enough of them were recorded, or else the
+	 * timeout configured for that method, or the default timeout if no
+	 * specific timeout is set for that method. The returned timeout is
+	 * always within the configured bounds.
 	 *
 	 * @param method The LSP method for which to get the timeout.
-	 * @return The LSP method's configured timeout.
+	 * @return The LSP method's timeout.
 	 */
 	public static int getMethodTimeout(@NotNull String method) {
-		return METHOD_TIMEOUTS.getOrDefault(method, DEFAULT_METHOD_TIMEOUT);
+
+		MethodLatencies latencies = METHOD_LATENCIES.get(method);
+
+		int timeout = latencies == null ? 0 : latencies.derivedTimeout;
+
+		if (timeout == 0) {
+			timeout = METHOD_TIMEOUTS.getOrDefault(method, DEFAULT_METHOD_TIMEOUT);
+		}
+
+		return Math.max(getMinimumTimeout(), Math.min(timeout, getMaximumTimeout()));
+
+	}
+
+	/**
+	 * Records the latency of a request of the given LSP method.
+	 * For requests that timed out, the timeout should be recorded,
+	 * which lets timeouts grow as long as requests keep timing out.
+	 *
+	 * @param method The LSP method of the request.
+	 * @param latency The latency of the request, in milliseconds.
+	 */
+	public static void recordLatency(@NotNull String method, long latency) {
+		METHOD_LATENCIES.computeIfAbsent(method, MethodLatencies::new).record(latency);
+	}
+
+	/**
+	 * Returns the latency statistics and current timeouts of all
+	 * LSP methods for which latencies were recorded, sorted by method.
+	 *
+	 * @return The statistics of all methods.
+	 */
+	@NotNull
+	public static List<MethodStatistics> getMethodStatistics() {
+
+		List<MethodStatistics> statistics = new ArrayList<>();
+
+		new TreeMap<>(METHOD_LATENCIES).forEach((method, latencies) -> {
+
+			LatencyHistogram histogram = latencies.getHistogram();
+
+			statistics.add(new MethodStatistics(
+				method,
+				histogram.getTotalCount(),
+				histogram.getValueAtPercentile(50),
+				histogram.getValueAtPercentile(95),
+				histogram.getValueAtPercentile(99),
+				getMethodTimeout(method)
+			));
+
+		});
+
+		return statistics;
+
+	}
+
+	/**
+	 * Returns the configured lower bound of request timeouts.
+	 *
+	 * @return The minimum timeout, in milliseconds.
+	 */
+	public static int getMinimumTimeout() {
+		return PropertiesComponent.getInstance().getInt(MINIMUM_TIMEOUT_PROPERTY, DEFAULT_MINIMUM_TIMEOUT);
+	}
+
+	/**
+	 * Sets the lower bound of request timeouts.
+	 *
+	 * @param timeout The minimum timeout, in milliseconds.
+	 */
+	public static void setMinimumTimeout(int timeout) {
+		PropertiesComponent.getInstance().setValue(MINIMUM_TIMEOUT_PROPERTY, timeout, DEFAULT_MINIMUM_TIMEOUT);
+	}
+
+	/**
+	 * Returns the configured upper bound of request timeouts.
+	 *
+	 * @return The maximum timeout, in milliseconds.
+	 */
+	public static int getMaximumTimeout() {
+		return PropertiesComponent.getInstance().getInt(MAXIMUM_TIMEOUT_PROPERTY, DEFAULT_MAXIMUM_TIMEOUT);
+	}
+
+	/**
+	 * Sets the upper bound of request timeouts.
+	 *
+	 * @param timeout The maximum timeout, in milliseconds.
+	 */
+	public static void setMaximumTimeout(int timeout) {
+		PropertiesComponent.getInstance().setValue(MAXIMUM_TIMEOUT_PROPERTY, timeout, DEFAULT_MAXIMUM_TIMEOUT);
 	}
 
 }
@@ -0,0 +1,228 @@
+package com.adacore.adaintellij.lsp;
+
+import java.util.*;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import org.jetbrains.annotations.*;
+
+import org.eclipse.lsp4j.*;
+import org.eclipse.lsp4j.jsonrpc.messages.Either;
+
+import static com.adacore.adaintellij.Utils.*;
+
+/**
+ * Applier of LSP workspace edits, such as those resulting from
+ * a `textDocument/rename` request or a `workspace/applyEdit`
+ * request from the server.
+ *
+ * The text edits of a workspace edit are grouped per document and
+ * applied bottom-up, after which each modified document is committed
+ * exactly once, so that the PSI tree of a file is rebuilt once per
+ * workspace edit instead of once per text edit.
+ *
+ * Workspace edits are applied transactionally: if any of the edited
+ * documents cannot be found or modified, or if any of the edits is
+ * invalid, then no document is modified at all.
+ */
+public final class WorkspaceEditApplier {
+
+	/**
+	 * Private default constructor to prevent instantiation.
+	 */
+	private WorkspaceEditApplier() {}
+
+	/**
+	 * Applies the given workspace edit in a new undoable command with
+	 * the given name.
+	 * Must be called from the event dispatch thread.
+	 *
+	 * @param project The project in which to apply the edit.
+	 * @param workspaceEdit The workspace edit to apply.
+	 * @param commandName The name of the command.
+	 * @return Whether or not the edit was applied.
+	 */
+	public static boolean applyInCommand(
+		@NotNull Project       project,
+		@NotNull WorkspaceEdit workspaceEdit,
+		@NotNull String        commandName
+	) {
+		return WriteCommandAction.writeCommandAction(project)
+			.withName(commandName)
+			.withGlobalUndo()
+			.compute(() -> apply(project, workspaceEdit));
+	}
+
+	/**
+	 * Applies the given workspace edit.
+	 * Must be called from the event dispatch thread, within a write
+	 * action that is part of a command.
+	 *
+	 * @param project The project in which to apply the edit.
+	 * @param workspaceEdit The workspace edit to apply.
+	 * @return Whether or not the edit was applied.
+	 */
+	public static boolean apply(@NotNull Project project, @NotNull WorkspaceEdit workspaceEdit) {
+
+		// Group the text edits per document
+
+		Map<String, List<TextEdit>> documentEdits = groupTextEdits(workspaceEdit);
+
+		if (documentEdits == null) { return false; }
+
+		// Get the documents and compute their replacements before
+		// modifying any of them, so that nothing is modified if some
+		// document cannot be edited
+
+		Map<Document, List<TextReplacement>> documentReplacements = new LinkedHashMap<>();
+
+		for (Map.Entry<String, List<TextEdit>> entry : documentEdits.entrySet()) {
+
+			VirtualFile file     = findFileByUrlString(entry.getKey());
+			Document    document = file == null ? null : getVirtualFileDocument(file);
+
+			if (document == null || !document.isWritable()) { return false; }
+
+			List<TextReplacement> replacements = toReplacements(document, entry.getValue());
+
+			if (replacements == null) { return false; }
+
+			documentReplacements.put(document, replacements);
+
+		}
+
+		// Apply the replacements of each document bottom-up, and
+		// commit each document once all of its replacements are
+		// applied
+
+		PsiDocumentManager psiDocumentManager = PsiDocumentManager.getInstance(project);
+
+		documentReplacements.forEach((document, replacements) -> {
+
+			psiDocumentManager.doPostponedOperationsAndUnblockDocument(document);
+
+			replacements.forEach(replacement -> document.replaceString(
+				replacement.startOffset, replacement.endOffset, replacement.text));
+
+			psiDocumentManager.commitDocument(document);
+
+		});
+
+		return true;
+
+	}
+
+	/**
+	 * Returns the text edits of the given workspace edit grouped by
+	 * document URI, or null if the workspace edit contains resource
+	 * operations, which are not supported.
+	 *
+	 * @param workspaceEdit The workspace edit.
+	 * @return The text edits per document URI, or null.
+	 */
+	@Nullable
+	private static Map<String, List<TextEdit>> groupTextEdits(@NotNull WorkspaceEdit workspaceEdit) {
+
+		Map<String, List<TextEdit>> documentEdits = new LinkedHashMap<>();
+
+		// Servers send either document changes or changes, the
+		// former being preferred when both are given
+
+		List<Either<TextDocumentEdit, ResourceOperation>> documentChanges =
+			workspaceEdit.getDocumentChanges();
+
+		if (documentChanges != null) {
+
+			for (Either<TextDocumentEdit, ResourceOperation> documentChange : documentChanges) {
+
+				if (documentChange.isRight()) { return null; }
+
+				TextDocumentEdit textDocumentEdit = documentChange.getLeft();
+
+				documentEdits.computeIfAbsent(textDocumentEdit.getTextDocument().getUri(),
+					uri -> new ArrayList<>()).addAll(textDocumentEdit.getEdits());
+
+			}
+
+			return documentEdits;
+
+		}
+
+		Map<String, List<TextEdit>> changes = workspaceEdit.getChanges();
+
+		if (changes != null) {
+			changes.forEach((uri, edits) ->
+				documentEdits.computeIfAbsent(uri, key -> new ArrayList<>()).addAll(edits));
+		}
+
+		return documentEdits;
+
+	}
+
+	/**
+	 * Returns the replacements corresponding to the given text edits
+	 * of the given document, ordered bottom-up, or null if some of the
+	 * edits are out of the document's bounds or overlap.
+	 *
+	 * @param document The edited document.
+	 * @param textEdits The text edits of the document.
+	 * @return The ordered replacements, or null.
+	 */
+	@Nullable
+	private static List<TextReplacement> toReplacements(
+		@NotNull Document       document,
+		@NotNull List<TextEdit> textEdits
+	) {
+
+		List<TextReplacement> replacements = new ArrayList<>(textEdits.size());
+
+		for (TextEdit textEdit : textEdits) {
+
+			Range range = textEdit.getRange();
+
+			int startOffset = editPositionToOffset(document, range.getStart());
+			int endOffset   = editPositionToOffset(document, range.getEnd());
+
+			if (startOffset < 0 || endOffset < startOffset) { return null; }
+
+			String newText = textEdit.getNewText();
+
+			replacements.add(new TextReplacement(startOffset, endOffset, newText == null ? "" : newText));
+
+		}
+
+		return TextReplacement.bottomUp(replacements);
+
+	}
+
+	/**
+	 * Returns the offset corresponding to the given position of a text
+	 * edit in the given document, or -1 if the position is out of the
+	 * document's bounds. As specified by the LSP, a character beyond
+	 * the end of its line stands for the end of the line, and the
+	 * start of the line following the last line stands for the end
+	 * of the document.
+	 *
+	 * @param document The edited document.
+	 * @param position The position to translate.
+	 * @return The corresponding offset, or -1.
+	 */
+	private static int editPositionToOffset(@NotNull Document document, @NotNull Position position) {
+
+		int line      = position.getLine();
+		int character = position.getCharacter();
+
+		if (line < 0 || character < 0) { return -1; }
+
+		if (line >= document.getLineCount()) {
+			return line == document.getLineCount() && character == 0 ? document.getTextLength() : -1;
+		}
+
+		return Math.min(document.getLineStartOffset(line) + character, document.getLineEndOffset(line));
+
+	}
+
+}
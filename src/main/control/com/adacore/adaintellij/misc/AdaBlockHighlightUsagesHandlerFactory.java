@@ -0,0 +1,81 @@
+package com.adacore.adaintellij.misc;
+
+import java.util.*;
+
+import com.intellij.codeInsight.highlighting.*;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.psi.*;
+import com.intellij.util.Consumer;
+import org.jetbrains.annotations.*;
+
+import com.adacore.adaintellij.analysis.lexical.AdaBlockIndex;
+import com.adacore.adaintellij.analysis.syntactic.AdaPsiFile;
+
+/**
+ * Highlight-usages handler factory matching Ada block keywords.
+ * When the caret is on a block keyword (e.g. `if` or `end if`), all
+ * keywords of the corresponding block construct are highlighted.
+ *
+ * @see AdaBlockIndex
+ */
+public final class AdaBlockHighlightUsagesHandlerFactory extends HighlightUsagesHandlerFactoryBase {
+
+	/**
+	 * @see com.intellij.codeInsight.highlighting.HighlightUsagesHandlerFactoryBase#createHighlightUsagesHandler(Editor, PsiFile, PsiElement)
+	 */
+	@Nullable
+	@Override
+	public HighlightUsagesHandlerBase createHighlightUsagesHandler(
+		@NotNull Editor     editor,
+		@NotNull PsiFile    file,
+		@NotNull PsiElement target
+	) {
+
+		if (!(file instanceof AdaPsiFile)) { return null; }
+
+		// Get the block token at the caret, if any
+
+		AdaBlockIndex index = AdaBlockIndex.forDocument(editor.getDocument());
+
+		int token = index.findBlockTokenAt(editor.getCaretModel().getOffset());
+
+		if (token == -1) { return null; }
+
+		// Return a handler highlighting all tokens of the
+		// corresponding block construct
+
+		int[] constructTokens = index.getConstructTokens(token);
+
+		return new HighlightUsagesHandlerBase<PsiElement>(editor, file) {
+
+			/**
+			 * @see com.intellij.codeInsight.highlighting.HighlightUsagesHandlerBase#getTargets()
+			 */
+			@Override
+			public List<PsiElement> getTargets() {
+				return Collections.singletonList(target);
+			}
+
+			/**
+			 * @see com.intellij.codeInsight.highlighting.HighlightUsagesHandlerBase#selectTargets(List, Consumer)
+			 */
+			@Override
+			protected void selectTargets(List<PsiElement> targets, Consumer<List<PsiElement>> selectionConsumer) {
+				selectionConsumer.consume(targets);
+			}
+
+			/**
+			 * @see com.intellij.codeInsight.highlighting.HighlightUsagesHandlerBase#computeUsages(List)
+			 */
+			@Override
+			public void computeUsages(List<PsiElement> targets) {
+				for (int constructToken : constructTokens) {
+					myReadUsages.add(index.getTokenRange(constructToken));
+				}
+			}
+
+		};
+
+	}
+
+}
@@ -1,8 +1,11 @@
 package com.adacore.adaintellij.misc;
 
+import com.adacore.adaintellij.Utils;
+import com.adacore.adaintellij.analysis.lexical.AdaBlockIndex;
 import com.adacore.adaintellij.analysis.lexical.AdaTokenTypes;
 import com.intellij.lang.BracePair;
 import com.intellij.lang.PairedBraceMatcher;
+import com.intellij.openapi.editor.Document;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.tree.IElementType;
 import org.jetbrains.annotations.NotNull;
@@ -30,8 +33,34 @@ public class AdaBraceMatcher implements PairedBraceMatcher {
         return true;
     }
 
+    /**
+     * Returns the start of the block keyword introducing the construct
+     * containing the given opening parenthesis, e.g. the `if` keyword
+     * for a parenthesis in an `if` condition, as long as that keyword
+     * is on the same line as the parenthesis. Otherwise, returns the
+     * offset of the parenthesis itself.
+     *
+     * @see AdaBlockIndex
+     */
     @Override
     public int getCodeConstructStart(PsiFile file, int openingBraceOffset) {
-        return 0;
+
+        Document document = file == null ? null : Utils.getPsiFileDocument(file);
+
+        if (document == null || openingBraceOffset > document.getTextLength()) {
+            return openingBraceOffset;
+        }
+
+        AdaBlockIndex index = AdaBlockIndex.forDocument(document);
+
+        int block = index.findEnclosingBlock(openingBraceOffset);
+
+        if (block == -1) { return openingBraceOffset; }
+
+        int blockStart = index.getTokenRange(block).getStartOffset();
+
+        return document.getLineNumber(blockStart) == document.getLineNumber(openingBraceOffset) ?
+            blockStart : openingBraceOffset;
+
     }
 }
@@ -0,0 +1,49 @@
+package com.adacore.adaintellij.misc;
+
+import com.intellij.codeInsight.editorActions.CodeBlockProvider;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.Nullable;
+
+import com.adacore.adaintellij.analysis.lexical.AdaBlockIndex;
+
+/**
+ * Ada code block provider, used by the "Move Caret to Code Block
+ * Start/End" editor actions to navigate between Ada blocks.
+ *
+ * @see AdaBlockIndex
+ */
+public final class AdaCodeBlockProvider implements CodeBlockProvider {
+
+	/**
+	 * @see com.intellij.codeInsight.editorActions.CodeBlockProvider#getCodeBlockRange(Editor, PsiFile)
+	 *
+	 * Returns the range of the innermost Ada block enclosing the caret.
+	 * If the caret is already at the start of that block, returns the
+	 * range of the block enclosing it instead, so that repeatedly
+	 * moving to block starts walks up the block hierarchy.
+	 */
+	@Nullable
+	@Override
+	public TextRange getCodeBlockRange(Editor editor, PsiFile psiFile) {
+
+		AdaBlockIndex index  = AdaBlockIndex.forDocument(editor.getDocument());
+		int           offset = editor.getCaretModel().getOffset();
+
+		// Get the innermost block enclosing the caret
+
+		TextRange range = index.findEnclosingBlockRange(offset);
+
+		// If the caret is at the start of that block, then
+		// get the block enclosing it instead
+
+		if (range != null && range.getStartOffset() == offset) {
+			range = offset == 0 ? null : index.findEnclosingBlockRange(offset - 1);
+		}
+
+		return range;
+
+	}
+
+}
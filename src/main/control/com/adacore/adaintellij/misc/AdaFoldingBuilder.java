@@ -1,46 +1,428 @@
 package com.adacore.adaintellij.misc;
 
+import com.adacore.adaintellij.Utils;
+import com.adacore.adaintellij.analysis.lexical.AdaBlockIndex;
+import com.adacore.adaintellij.analysis.lexical.AdaContextClauses;
 import com.adacore.adaintellij.lsp.AdaLSPDriver;
-import com.adacore.adaintellij.lsp.AdaLSPServer;
+import com.adacore.adaintellij.misc.cache.CacheKey;
+import com.adacore.adaintellij.misc.cache.Cacher;
+import com.intellij.codeInsight.folding.CodeFoldingManager;
 import com.intellij.lang.ASTNode;
 import com.intellij.lang.folding.FoldingBuilderEx;
 import com.intellij.lang.folding.FoldingDescriptor;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.*;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
-import com.intellij.util.ui.update.MergingUpdateQueue;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.eclipse.lsp4j.FoldingRange;
+import org.eclipse.lsp4j.FoldingRangeKind;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.*;
 
+/**
+ * Folding builder for Ada files.
+ *
+ * Folding ranges are requested from the ALS in the background for
+ * the current version of the document. Once they arrive, a folding
+ * update is scheduled for the editors of the document, and the next
+ * pass only uses the ALS ranges, along with the local comment and
+ * context clause regions starting on lines where the ALS reports no
+ * range.
+ *
+ * Until then, fold regions are computed locally from the token stream
+ * as a fallback: consecutive comment lines, the context clauses at the
+ * start of the file and the blocks and compound statements of the
+ * document's block index (see `AdaBlockIndex`).
+ *
+ * Passes never wait for the ALS: they use its ranges only if they are
+ * already available, and otherwise return the local regions right away.
+ */
 public class AdaFoldingBuilder extends FoldingBuilderEx implements DumbAware {
 
+    /**
+     * Class-wide logger for the AdaFoldingBuilder class.
+     */
+    private static final Logger LOGGER = Logger.getInstance(AdaFoldingBuilder.class);
+
+    /**
+     * Cache key for `textDocument/foldingRange` requests, cached on
+     * the document for which they were made.
+     */
+    private static final CacheKey<FoldingRangesRequest>
+        FOLDING_RANGES_REQUEST_CACHE_KEY = CacheKey.getNewKey();
+
+    /**
+     * A `textDocument/foldingRange` request made for a specific
+     * version of a document.
+     */
+    private static final class FoldingRangesRequest {
+
+        /**
+         * The document version for which the request was made.
+         */
+        final long version;
+
+        /**
+         * The future result of the request.
+         */
+        final CompletableFuture<List<FoldingRange>> future = new CompletableFuture<>();
+
+        /**
+         * Whether or not the request was taken by the callback waiting
+         * for the ALS to be ready. Guarded by the document's lock.
+         */
+        boolean started = false;
+
+        /**
+         * Constructs a new FoldingRangesRequest given a document version.
+         *
+         * @param version The version of the requested document.
+         */
+        FoldingRangesRequest(long version) { this.version = version; }
+
+    }
+
+    /**
+     * @see com.intellij.lang.folding.FoldingBuilderEx#buildFoldRegions(PsiElement, Document, boolean)
+     */
     @NotNull
     @Override
     public FoldingDescriptor[] buildFoldRegions(@NotNull PsiElement root, @NotNull Document document, boolean quick) {
 
-        Project project = root.getProject();
         PsiFile psiFile = root.getContainingFile();
 
-        List<FoldingRange> foldingRanges = AdaLSPDriver.getServer(project)
-            .foldingRange(
-                psiFile.getVirtualFile().getUrl()
-            );
+        // Get the ALS folding ranges of the current version of the
+        // document if they are available, and request them in the
+        // background if they were not requested yet
+
+        FoldingRangesRequest request = psiFile == null ?
+            null : getFoldingRangesRequest(psiFile, document);
+
+        List<FoldingRange> foldingRanges = request == null ? null : getFoldingRanges(request);
+
+        // Compute local comment and context clause regions
+
+        List<FoldingDescriptor> descriptors = buildCommentAndContextClauseDescriptors(root, document);
+
+        // If the ALS ranges are not available, then fall back to
+        // local regions for constructs
+
+        if (foldingRanges == null) {
+
+            descriptors.addAll(buildConstructDescriptors(root, document));
+
+            return descriptors.toArray(new FoldingDescriptor[0]);
+
+        }
+
+        // Otherwise, use the ALS ranges, along with the local regions
+        // starting on lines where the ALS reports no range
+
+        List<FoldingDescriptor> alsDescriptors =
+            buildFoldingDescriptorsFromFoldingRanges(foldingRanges, document, root);
+
+        Set<Integer> alsStartLines = new HashSet<>();
+
+        for (FoldingDescriptor descriptor : alsDescriptors) {
+            alsStartLines.add(document.getLineNumber(descriptor.getRange().getStartOffset()));
+        }
+
+        for (FoldingDescriptor descriptor : descriptors) {
+            if (!alsStartLines.contains(document.getLineNumber(descriptor.getRange().getStartOffset()))) {
+                alsDescriptors.add(descriptor);
+            }
+        }
+
+        return alsDescriptors.toArray(new FoldingDescriptor[0]);
+
+    }
+
+    /**
+     * Returns the result of the given folding ranges request if it is
+     * available, or null otherwise. Never blocks.
+     *
+     * @param request The request of which to get the result.
+     * @return The folding ranges, or null.
+     */
+    @Nullable
+    private static List<FoldingRange> getFoldingRanges(@NotNull FoldingRangesRequest request) {
+        return request.future.isDone() && !request.future.isCompletedExceptionally() ?
+            request.future.getNow(null) : null;
+    }
+
+    /**
+     * Returns the ALS folding ranges request for the current version
+     * of the given document, or null if the document has no file. If
+     * no request was made for this version yet, or if it failed, then
+     * a new one is made in the background, as soon as the ALS is
+     * ready, and a folding update is scheduled once its result arrives.
+     *
+     * At most one callback waiting for the ALS is pending per document:
+     * new requests made while one is pending are left to that callback,
+     * which makes the latest request of the document once it runs.
+     *
+     * @param psiFile The PSI file of the document.
+     * @param document The document for which to get folding ranges.
+     * @return The folding ranges request, or null.
+     */
+    @Nullable
+    private static FoldingRangesRequest getFoldingRangesRequest(@NotNull PsiFile psiFile, @NotNull Document document) {
+
+        Project     project     = psiFile.getProject();
+        VirtualFile virtualFile = Utils.getPsiFileVirtualFile(psiFile);
+
+        if (virtualFile == null) { return null; }
+
+        FoldingRangesRequest request;
+
+        synchronized (document) {
+
+            long version = document.getModificationStamp();
+
+            request = Cacher.getCachedData(document, FOLDING_RANGES_REQUEST_CACHE_KEY).data;
+
+            // If a request was already made for this version,
+            // then return it
+
+            if (
+                request != null &&
+                request.version == version &&
+                !request.future.isCompletedExceptionally()
+            ) {
+                return request;
+            }
+
+            // Otherwise, make a new request, canceling the request
+            // made for a previous version as its result would be
+            // discarded anyway
+
+            FoldingRangesRequest previousRequest = request;
+
+            request = new FoldingRangesRequest(version);
+
+            Cacher.cacheData(document, FOLDING_RANGES_REQUEST_CACHE_KEY, request);
+
+            if (previousRequest != null) { previousRequest.future.cancel(true); }
+
+            // If a callback is already waiting for the ALS, then
+            // leave the new request to it
+
+            if (previousRequest != null && !previousRequest.started) { return request; }
+
+        }
+
+        final FoldingRangesRequest currentRequest = request;
+        final String               documentUri    = virtualFile.getUrl();
+
+        // Make the latest request of the document from a background
+        // thread once the ALS is ready, without waiting for its result
+
+        AdaLSPDriver.whenReady(project).thenAcceptAsync(lspServer -> {
+
+            FoldingRangesRequest newRequest;
+
+            synchronized (document) {
+
+                newRequest = Cacher.getCachedData(document, FOLDING_RANGES_REQUEST_CACHE_KEY).data;
+
+                if (newRequest == null) { return; }
 
-        List<FoldingDescriptor> descriptors = this.buildFoldingDescriptorsFromFoldingRanges(
-            foldingRanges,
-            document,
-            root
-        );
+                newRequest.started = true;
+
+                if (newRequest.future.isDone()) { return; }
+
+            }
+
+            if (lspServer == null) {
+                newRequest.future.complete(null);
+                return;
+            }
+
+            lspServer.foldingRangeAsync(documentUri).whenComplete((foldingRanges, throwable) -> {
+
+                // Requests dropped because the document changed
+                // in the meantime are not failures
+
+                if (throwable != null) {
+                    if (!(throwable instanceof CancellationException)) {
+                        LOGGER.warn("Failed to get folding ranges of " + documentUri, throwable);
+                    }
+                    newRequest.future.completeExceptionally(throwable);
+                    return;
+                }
+
+                newRequest.future.complete(foldingRanges);
+
+                // Schedule a folding update of the editors showing
+                // the document if it was not modified in the meantime
+
+                ApplicationManager.getApplication().invokeLater(() -> {
+
+                    if (project.isDisposed() || document.getModificationStamp() != newRequest.version) {
+                        return;
+                    }
+
+                    CodeFoldingManager foldingManager = CodeFoldingManager.getInstance(project);
+
+                    for (Editor editor : EditorFactory.getInstance().getEditors(document, project)) {
+                        foldingManager.scheduleAsyncFoldingUpdate(editor);
+                    }
+
+                });
+
+            });
+
+        }, AppExecutorUtil.getAppExecutorService());
+
+        return currentRequest;
 
-        return descriptors.toArray(
-            new FoldingDescriptor[descriptors.size()]
-        );
+    }
+
+    /**
+     * Builds fold regions from the text of the given document for
+     * consecutive comment lines and the context clauses at the start
+     * of the document.
+     *
+     * @param root The root element of the file.
+     * @param document The document for which to build regions.
+     * @return The built folding descriptors.
+     */
+    private static List<FoldingDescriptor> buildCommentAndContextClauseDescriptors(
+        @NotNull PsiElement root,
+        @NotNull Document document
+    ) {
+        List<FoldingDescriptor> descriptors = new ArrayList<>();
+
+        CharSequence text = document.getImmutableCharSequence();
+
+        // Comment blocks: a line whose first non-whitespace
+        // characters are a comment prefix is a comment line,
+        // since no other token can span multiple lines
+
+        int commentBlockStartLine = -1;
+
+        for (int line = 0 ; line <= document.getLineCount() ; line++) {
+
+            boolean commentLine = line < document.getLineCount() && isCommentLine(document, text, line);
+
+            if (commentLine && commentBlockStartLine == -1) {
+                commentBlockStartLine = line;
+            } else if (!commentLine && commentBlockStartLine != -1) {
+                addLineFold(descriptors, root, document, commentBlockStartLine, line - 1, false);
+                commentBlockStartLine = -1;
+            }
+
+        }
+
+        // Context clauses, folded by default like imports
+
+        TextRange contextClausesRange = AdaContextClauses.findContextClausesRange(text);
+
+        if (contextClausesRange != null) {
+            addLineFold(descriptors, root, document,
+                document.getLineNumber(contextClausesRange.getStartOffset()),
+                document.getLineNumber(contextClausesRange.getEndOffset()), true);
+        }
+
+        return descriptors;
+    }
+
+    /**
+     * Builds fold regions from the block index of the given document
+     * for blocks and compound statements spanning multiple lines.
+     * @see AdaBlockIndex#getBlockRanges()
+     *
+     * @param root The root element of the file.
+     * @param document The document for which to build regions.
+     * @return The built folding descriptors.
+     */
+    private static List<FoldingDescriptor> buildConstructDescriptors(
+        @NotNull PsiElement root,
+        @NotNull Document document
+    ) {
+        List<FoldingDescriptor> descriptors = new ArrayList<>();
+
+        for (TextRange constructRange : AdaBlockIndex.forDocument(document).getBlockRanges()) {
+            addLineFold(descriptors, root, document,
+                document.getLineNumber(constructRange.getStartOffset()),
+                document.getLineNumber(constructRange.getEndOffset()), false);
+        }
+
+        return descriptors;
+    }
+
+    /**
+     * Returns whether or not the given line of the given document
+     * only contains a comment.
+     *
+     * @param document The document containing the line.
+     * @param text The text of the document.
+     * @param line The line to check.
+     * @return Whether or not the line is a comment line.
+     */
+    private static boolean isCommentLine(@NotNull Document document, @NotNull CharSequence text, int line) {
+
+        int offset    = document.getLineStartOffset(line);
+        int endOffset = document.getLineEndOffset(line);
+
+        while (offset < endOffset && Character.isWhitespace(text.charAt(offset))) { offset++; }
+
+        return offset + 1 < endOffset &&
+            text.charAt(offset) == '-' && text.charAt(offset + 1) == '-';
+
+    }
+
+    /**
+     * Adds a fold region spanning the given lines to the given list,
+     * if it spans more than one line. The placeholder of the region is
+     * the text of its first line.
+     *
+     * @param descriptors The list to which to add the region.
+     * @param root The root element of the file.
+     * @param document The document containing the lines.
+     * @param startLine The first line of the region.
+     * @param endLine The last line of the region.
+     * @param collapsedByDefault Whether or not the region is collapsed by default.
+     */
+    private static void addLineFold(
+        @NotNull List<FoldingDescriptor> descriptors,
+        @NotNull PsiElement root,
+        @NotNull Document document,
+        int startLine,
+        int endLine,
+        boolean collapsedByDefault
+    ) {
+        if (startLine >= endLine) {
+            return;
+        }
+
+        int foldStartOffset = document.getLineStartOffset(startLine);
+        int foldEndOffset = document.getLineEndOffset(endLine);
+
+        if (foldStartOffset >= foldEndOffset) {
+            return;
+        }
+
+        descriptors.add(new FoldingDescriptor(
+            root.getNode(),
+            new TextRange(foldStartOffset, foldEndOffset),
+            null,
+            document.getText(new TextRange(
+                foldStartOffset,
+                document.getLineEndOffset(startLine)
+            )) + " ...",
+            collapsedByDefault,
+            Collections.emptySet()
+        ));
     }
 
     private List<FoldingDescriptor> buildFoldingDescriptorsFromFoldingRanges(
@@ -51,39 +433,22 @@ public class AdaFoldingBuilder extends FoldingBuilderEx implements DumbAware {
         List<FoldingDescriptor> descriptors = new ArrayList<>();
 
         for(FoldingRange foldingRange :  foldingRanges) {
-            int foldStartOffset;
-            int foldEndOffset;
 
-            if (foldingRange.getStartLine() == foldingRange.getEndLine()) {
+            if (
+                foldingRange.getStartLine() >= document.getLineCount() ||
+                foldingRange.getEndLine() >= document.getLineCount()
+            ) {
                 continue;
             }
 
-            try {
-                foldStartOffset = document.getLineStartOffset(foldingRange.getStartLine());
-                foldEndOffset = document.getLineEndOffset(foldingRange.getEndLine());
-            } catch (IndexOutOfBoundsException e) {
-                continue;
-            }
-
-            if (foldStartOffset < foldEndOffset) {
-
-                Set<Object> dependencies = new HashSet<>();
-
-                descriptors.add(new FoldingDescriptor(
-                        root.getNode(),
-                        new TextRange(
-                                foldStartOffset,
-                                foldEndOffset
-                        ),
-                        null,
-                        document.getText(new TextRange(
-                                foldStartOffset,
-                                document.getLineEndOffset(foldingRange.getStartLine())
-                        )) + " ...",
-                        foldingRange.getKind().equals("imports"),
-                        dependencies
-                ));
-            }
+            addLineFold(
+                descriptors,
+                root,
+                document,
+                foldingRange.getStartLine(),
+                foldingRange.getEndLine(),
+                FoldingRangeKind.Imports.equals(foldingRange.getKind())
+            );
         }
 
         return descriptors;
@@ -0,0 +1,198 @@
+package com.adacore.adaintellij.misc.cache;
+
+import java.util.*;
+import java.util.function.BiPredicate;
+
+import org.jetbrains.annotations.*;
+
+/**
+ * Thread-safe, bounded key-value cache evicting its least recently
+ * used entries once its capacity is reached. Null values can be
+ * cached, query results distinguishing cached null values from
+ * cache misses.
+ *
+ * Every invalidation of entries increments the generation of the
+ * cache, which allows to avoid caching values computed before an
+ * invalidation that should have applied to them. Invalidations can be
+ * scoped, e.g. to a document, in which case they only prevent caching
+ * values computed before them that depend on the same scope, so that
+ * invalidations in unrelated scopes do not reject unrelated values.
+ * @see LRUCache#put(Object, Object, long, Object...)
+ *
+ * @param <K> The type of keys in the cache.
+ * @param <V> The type of values in the cache.
+ */
+public final class LRUCache<K, V> {
+
+	/**
+	 * The maximum number of entries in this cache.
+	 */
+	private final int capacity;
+
+	/**
+	 * The entries of this cache, in access order.
+	 */
+	private final LinkedHashMap<K, V> entries;
+
+	/**
+	 * The generation of this cache, incremented on every invalidation.
+	 */
+	private long generation = 0;
+
+	/**
+	 * The generation of the last unscoped invalidation of this cache.
+	 */
+	private long unscopedGeneration = 0;
+
+	/**
+	 * Scope -> generation mapping, recording the generation of the
+	 * last invalidation of every invalidated scope.
+	 */
+	private final Map<Object, Long> scopeGenerations = new HashMap<>();
+
+	/**
+	 * Constructs a new LRUCache given a capacity.
+	 *
+	 * @param capacity The maximum number of entries in the cache.
+	 */
+	public LRUCache(int capacity) {
+
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+
+		this.capacity = capacity;
+
+		this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+
+			/**
+			 * @see java.util.LinkedHashMap#removeEldestEntry(Map.Entry)
+			 */
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return size() > LRUCache.this.capacity;
+			}
+
+		};
+
+	}
+
+	/**
+	 * Returns the value cached for the given key, if any.
+	 *
+	 * @param key The key to look up.
+	 * @return The result of the cache query.
+	 */
+	@NotNull
+	public synchronized CacheResult<V> get(@NotNull K key) {
+
+		V value = entries.get(key);
+
+		return value != null || entries.containsKey(key) ?
+			new CacheResult<>(value) : new CacheResult<>();
+
+	}
+
+	/**
+	 * Caches the given value for the given key.
+	 *
+	 * @param key The key of the value.
+	 * @param value The value to cache.
+	 */
+	public synchronized void put(@NotNull K key, @Nullable V value) {
+		entries.put(key, value);
+	}
+
+	/**
+	 * Caches the given value for the given key, only if neither this
+	 * whole cache nor any of the given scopes on which the value depends
+	 * were invalidated since the given generation, typically the
+	 * generation at the time the computation of the value started.
+	 *
+	 * @param key The key of the value.
+	 * @param value The value to cache.
+	 * @param generation The generation at which the value is valid.
+	 * @param scopes The scopes on which the value depends, null scopes
+	 *               being ignored.
+	 * @return Whether or not the value was cached.
+	 */
+	public synchronized boolean put(@NotNull K key, @Nullable V value, long generation, Object... scopes) {
+
+		if (generation < unscopedGeneration) { return false; }
+
+		for (Object scope : scopes) {
+
+			Long scopeGeneration = scope == null ? null : scopeGenerations.get(scope);
+
+			if (scopeGeneration != null && generation < scopeGeneration) { return false; }
+
+		}
+
+		entries.put(key, value);
+
+		return true;
+
+	}
+
+	/**
+	 * Returns the current generation of this cache.
+	 *
+	 * @return The generation of this cache.
+	 */
+	public synchronized long getGeneration() { return generation; }
+
+	/**
+	 * Removes all entries matching the given predicate, preventing all
+	 * values computed before this invalidation from being cached.
+	 *
+	 * @param predicate The predicate selecting entries to remove.
+	 */
+	public synchronized void invalidate(@NotNull BiPredicate<? super K, ? super V> predicate) {
+
+		unscopedGeneration = ++generation;
+
+		entries.entrySet().removeIf(entry -> predicate.test(entry.getKey(), entry.getValue()));
+
+	}
+
+	/**
+	 * Removes all entries matching the given predicate, preventing the
+	 * values computed before this invalidation that depend on the given
+	 * scope from being cached.
+	 *
+	 * @param scope The invalidated scope.
+	 * @param predicate The predicate selecting entries to remove.
+	 */
+	public synchronized void invalidate(
+		@NotNull Object                              scope,
+		@NotNull BiPredicate<? super K, ? super V> predicate
+	) {
+
+		scopeGenerations.put(scope, ++generation);
+
+		entries.entrySet().removeIf(entry -> predicate.test(entry.getKey(), entry.getValue()));
+
+	}
+
+	/**
+	 * Removes all entries, preventing all values computed before this
+	 * invalidation from being cached.
+	 */
+	public synchronized void clear() {
+
+		unscopedGeneration = ++generation;
+
+		scopeGenerations.clear();
+
+		entries.clear();
+
+	}
+
+	/**
+	 * Returns the number of entries in this cache.
+	 *
+	 * @return The number of entries.
+	 */
+	public synchronized int size() { return entries.size(); }
+
+}
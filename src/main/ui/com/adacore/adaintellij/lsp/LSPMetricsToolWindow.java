@@ -0,0 +1,230 @@
+package com.adacore.adaintellij.lsp;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.fileChooser.*;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import org.jetbrains.annotations.*;
+
+import com.adacore.adaintellij.AdaIntelliJUI;
+import com.adacore.adaintellij.UIUtils;
+
+/**
+ * Tool window displaying the metrics of the LSP session with the
+ * Ada Language Server (ALS), refreshed at regular intervals while
+ * the tool window is showing.
+ */
+public final class LSPMetricsToolWindow extends AdaIntelliJUI implements Disposable {
+
+	/**
+	 * The interval duration, in milliseconds, between refreshes
+	 * of the displayed metrics.
+	 */
+	private static final int REFRESH_INTERVAL = 1_000;
+
+	/**
+	 * Column names of the request metrics table.
+	 */
+	private static final String[] REQUEST_COLUMN_NAMES = {
+		"Method", "Requests", "In flight", "Failed", "Timed out",
+		"Canceled", "p50 (ms)", "p95 (ms)", "p99 (ms)", "Max (ms)"
+	};
+
+	/**
+	 * Root UI component.
+	 */
+	private JPanel rootPanel;
+
+	/**
+	 * Child UI components.
+	 */
+	private JLabel      summaryLabel;
+	private JScrollPane requestsScrollPane;
+	private JTable      requestsTable;
+	private JTextArea   notificationsArea;
+	private JButton     resetButton;
+	private JButton     exportButton;
+
+	/**
+	 * The project to which this tool window belongs.
+	 */
+	private Project project;
+
+	/**
+	 * The model of the request metrics table.
+	 */
+	private DefaultTableModel requestsTableModel =
+		new DefaultTableModel(REQUEST_COLUMN_NAMES, 0) {
+
+			/**
+			 * @see javax.swing.table.DefaultTableModel#isCellEditable(int, int)
+			 */
+			@Override
+			public boolean isCellEditable(int row, int column) { return false; }
+
+		};
+
+	/**
+	 * Timer refreshing the displayed metrics.
+	 */
+	private Timer refreshTimer;
+
+	/**
+	 * Constructs a new LSPMetricsToolWindow given a project.
+	 *
+	 * @param project The project to which this tool window belongs.
+	 */
+	LSPMetricsToolWindow(@NotNull Project project) {
+
+		super(null);
+
+		this.project = project;
+
+		// Set up the UI
+
+		requestsTable.setModel(requestsTableModel);
+
+		UIUtils.adjustScrollSpeed(requestsScrollPane);
+
+		// Add button listeners
+
+		resetButton.addActionListener(actionEvent -> {
+			AdaLSPDriver.getMetrics(project).reset();
+			refresh();
+		});
+
+		exportButton.addActionListener(actionEvent -> exportMetrics());
+
+		// Refresh the displayed metrics for the first time,
+		// then at regular intervals while they are showing
+
+		refresh();
+
+		refreshTimer = new Timer(REFRESH_INTERVAL, actionEvent -> {
+			if (rootPanel.isShowing()) { refresh(); }
+		});
+
+		refreshTimer.start();
+
+	}
+
+	/**
+	 * @see com.adacore.adaintellij.AdaIntelliJUI#getUIRoot()
+	 */
+	@NotNull
+	@Override
+	public JComponent getUIRoot() { return rootPanel; }
+
+	/**
+	 * @see com.intellij.openapi.Disposable#dispose()
+	 */
+	@Override
+	public void dispose() { refreshTimer.stop(); }
+
+	/**
+	 * Refreshes the displayed metrics from the current metrics
+	 * of the project's LSP session.
+	 */
+	private void refresh() {
+
+		LSPMetrics.Snapshot snapshot = AdaLSPDriver.getMetrics(project).getSnapshot();
+
+		// Update the summary
+
+		summaryLabel.setText(String.format(
+			"Since %s: %d requests in flight (peak %d), %s sent, %s received",
+			new SimpleDateFormat("HH:mm:ss").format(new Date(snapshot.startTime)),
+			snapshot.inFlight, snapshot.peakInFlight,
+			StringUtil.formatFileSize(snapshot.bytesSent),
+			StringUtil.formatFileSize(snapshot.bytesReceived)
+		));
+
+		// Update the request metrics table
+
+		requestsTableModel.setRowCount(0);
+
+		for (LSPMetrics.MethodSnapshot method : snapshot.requests) {
+			requestsTableModel.addRow(new Object[] {
+				method.method, method.requests, method.inFlight, method.failures,
+				method.timeouts, method.cancellations, method.p50, method.p95,
+				method.p99, method.max
+			});
+		}
+
+		// Update the notification counts
+
+		StringBuilder builder = new StringBuilder();
+
+		appendCounts(builder, "Notifications sent", snapshot.notificationsSent);
+		appendCounts(builder, "Notifications received", snapshot.notificationsReceived);
+		appendCounts(builder, "Requests received", snapshot.requestsReceived);
+
+		notificationsArea.setText(builder.toString().trim());
+
+	}
+
+	/**
+	 * Appends the given titled per-method counts to the given builder.
+	 *
+	 * @param builder The builder to which to append the counts.
+	 * @param title The title of the counts.
+	 * @param counts The LSP-method -> count mapping to append.
+	 */
+	private static void appendCounts(
+		@NotNull StringBuilder     builder,
+		@NotNull String            title,
+		@NotNull Map<String, Long> counts
+	) {
+
+		builder.append(title).append(":\n");
+
+		if (counts.isEmpty()) { builder.append("  none\n"); }
+
+		counts.forEach((method, count) ->
+			builder.append("  ").append(method).append(": ").append(count).append('\n'));
+
+	}
+
+	/**
+	 * Lets the user choose a file and exports the current metrics
+	 * of the project's LSP session to that file as JSON.
+	 */
+	private void exportMetrics() {
+
+		// Let the user choose the file to export to
+
+		VirtualFileWrapper fileWrapper = FileChooserFactory.getInstance().createSaveFileDialog(
+			new FileSaverDescriptor("Export ALS Metrics", "Export ALS metrics as JSON", "json"),
+			project
+		).save(null, "als-metrics.json");
+
+		if (fileWrapper == null) { return; }
+
+		// Write the metrics to the file
+
+		try {
+
+			Files.write(fileWrapper.getFile().toPath(),
+				AdaLSPDriver.getMetrics(project).toJson().getBytes(StandardCharsets.UTF_8));
+
+		} catch (IOException exception) {
+
+			Messages.showErrorDialog(project,
+				"Could not export ALS metrics: " + exception.getMessage(), "Export Failed");
+
+		}
+
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.adacore.adaintellij.lsp;
+
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentManager;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tool window factory for the LSP metrics tool window.
+ */
+public final class LSPMetricsToolWindowFactory implements ToolWindowFactory, DumbAware {
+
+	/**
+	 * Creates content for an LSP metrics tool window and
+	 * attaches it to the given tool window.
+	 *
+	 * @param project The project to which the given tool window belongs.
+	 * @param toolWindow The tool window to set up.
+	 */
+	@Override
+	public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+
+		ContentManager contentManager = toolWindow.getContentManager();
+
+		LSPMetricsToolWindow metricsToolWindow = new LSPMetricsToolWindow(project);
+
+		Content content = contentManager.getFactory().createContent(
+			metricsToolWindow.getUIRoot(), null, false);
+
+		Disposer.register(content, metricsToolWindow);
+
+		contentManager.addContent(content);
+
+	}
+
+}
@@ -2,12 +2,13 @@ package com.adacore.adaintellij.settings;
 
 import javax.swing.*;
 
+import com.intellij.openapi.options.ConfigurationException;
 import com.intellij.openapi.ui.TextBrowseFolderListener;
 import com.intellij.openapi.ui.TextFieldWithBrowseButton;
-import org.jetbrains.annotations.Nls;
-import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.*;
 
 import com.adacore.adaintellij.build.GPRbuildManager;
+import com.adacore.adaintellij.lsp.Timeouts;
 import com.adacore.adaintellij.UIUtils;
 
 /**
@@ -24,11 +25,16 @@ public final class AdaGlobalSettings implements ValidatableConfigurable {
 	 * Child UI components.
 	 */
 	private TextFieldWithBrowseButton gprbuildPathField;
+	private JTextField                minimumTimeoutField;
+	private JTextField                maximumTimeoutField;
+	private JTextArea                 timeoutStatisticsArea;
 
 	/**
 	 * Last set values.
 	 */
 	private String lastSetGprbuildPath;
+	private String lastSetMinimumTimeout;
+	private String lastSetMaximumTimeout;
 
 	/**
 	 * @see com.intellij.openapi.options.Configurable#getDisplayName()
@@ -60,7 +66,26 @@ public final class AdaGlobalSettings implements ValidatableConfigurable {
 	 */
 	@Override
 	public boolean isModified() {
-		return !gprbuildPathField.getText().equals(lastSetGprbuildPath);
+		return !gprbuildPathField.getText().equals(lastSetGprbuildPath) ||
+			!minimumTimeoutField.getText().trim().equals(lastSetMinimumTimeout) ||
+			!maximumTimeoutField.getText().trim().equals(lastSetMaximumTimeout);
+	}
+
+	/**
+	 * @see com.adacore.adaintellij.settings.ValidatableConfigurable#validateConfigurable()
+	 */
+	@Override
+	public void validateConfigurable() throws ConfigurationException {
+
+		int minimumTimeout = parseTimeout(minimumTimeoutField.getText(), "minimum");
+		int maximumTimeout = parseTimeout(maximumTimeoutField.getText(), "maximum");
+
+		if (minimumTimeout > maximumTimeout) {
+			throw new ConfigurationException(
+				"The minimum request timeout must not be greater " +
+					"than the maximum request timeout.");
+		}
+
 	}
 
 	/**
@@ -74,6 +99,18 @@ public final class AdaGlobalSettings implements ValidatableConfigurable {
 		GPRbuildManager.setGprBuildPath(path);
 		lastSetGprbuildPath = path;
 
+		// The timeouts were validated, so they can be parsed safely
+
+		String minimumTimeout = minimumTimeoutField.getText().trim();
+		String maximumTimeout = maximumTimeoutField.getText().trim();
+
+		Timeouts.setMinimumTimeout(Integer.parseInt(minimumTimeout));
+		Timeouts.setMaximumTimeout(Integer.parseInt(maximumTimeout));
+		lastSetMinimumTimeout = minimumTimeout;
+		lastSetMaximumTimeout = maximumTimeout;
+
+		timeoutStatisticsArea.setText(getTimeoutStatisticsText());
+
 	}
 
 	/**
@@ -87,6 +124,70 @@ public final class AdaGlobalSettings implements ValidatableConfigurable {
 		gprbuildPathField.setText(gprbuildPath);
 		lastSetGprbuildPath = gprbuildPath;
 
+		String minimumTimeout = String.valueOf(Timeouts.getMinimumTimeout());
+		String maximumTimeout = String.valueOf(Timeouts.getMaximumTimeout());
+
+		minimumTimeoutField.setText(minimumTimeout);
+		maximumTimeoutField.setText(maximumTimeout);
+		lastSetMinimumTimeout = minimumTimeout;
+		lastSetMaximumTimeout = maximumTimeout;
+
+		timeoutStatisticsArea.setText(getTimeoutStatisticsText());
+
+	}
+
+	/**
+	 * Parses the given request timeout entered in the settings.
+	 *
+	 * @param text The entered timeout.
+	 * @param bound The name of the bound the timeout represents,
+	 *              used in the error message.
+	 * @return The parsed timeout, in milliseconds.
+	 * @throws ConfigurationException If the entered timeout is not
+	 *                                a positive integer.
+	 */
+	private static int parseTimeout(@NotNull String text, @NotNull String bound) throws ConfigurationException {
+
+		int timeout;
+
+		try {
+			timeout = Integer.parseInt(text.trim());
+		} catch (NumberFormatException exception) {
+			timeout = 0;
+		}
+
+		if (timeout <= 0) {
+			throw new ConfigurationException(
+				"The " + bound + " request timeout must be " +
+					"a positive number of milliseconds.");
+		}
+
+		return timeout;
+
+	}
+
+	/**
+	 * Returns a textual summary of the latencies observed for LSP
+	 * methods and of the request timeouts derived from them.
+	 *
+	 * @return The summary of observed latencies and timeouts.
+	 */
+	@NotNull
+	private static String getTimeoutStatisticsText() {
+
+		StringBuilder builder = new StringBuilder();
+
+		for (Timeouts.MethodStatistics statistics : Timeouts.getMethodStatistics()) {
+			builder.append(String.format(
+				"%s: %d requests, p50 = %d ms, p95 = %d ms, p99 = %d ms, timeout = %d ms%n",
+				statistics.method, statistics.sampleCount,
+				statistics.p50, statistics.p95, statistics.p99, statistics.timeout
+			));
+		}
+
+		return builder.length() == 0 ?
+			"No request latencies observed yet." : builder.toString().trim();
+
 	}
 
 }
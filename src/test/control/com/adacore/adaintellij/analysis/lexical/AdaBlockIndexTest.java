@@ -0,0 +1,309 @@
+package com.adacore.adaintellij.analysis.lexical;
+
+import java.util.*;
+
+import com.intellij.openapi.util.TextRange;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit test class for the AdaBlockIndex class.
+ */
+final class AdaBlockIndexTest {
+
+	/**
+	 * Asserts that the block token starting with the first occurrence
+	 * of the given opening text in the given text is paired with the
+	 * block token starting with the first occurrence of the given
+	 * closing text after it.
+	 *
+	 * @param index The index to test.
+	 * @param text The indexed text.
+	 * @param openingText The text at which the opening token starts.
+	 * @param closingText The text at which the closing token starts.
+	 */
+	private static void assertPaired(
+		AdaBlockIndex index,
+		String        text,
+		String        openingText,
+		String        closingText
+	) {
+
+		int openingOffset = text.indexOf(openingText);
+		int closingOffset = text.indexOf(closingText, openingOffset + 1);
+
+		int opening = index.findBlockTokenAt(openingOffset);
+		int closing = index.findBlockTokenAt(closingOffset);
+
+		assertNotEquals(-1, opening, "No block token at \"" + openingText + "\"");
+		assertNotEquals(-1, closing, "No block token at \"" + closingText + "\"");
+
+		assertEquals(closing, index.getPartner(opening));
+		assertEquals(opening, index.getPartner(closing));
+
+	}
+
+	/**
+	 * Asserts that the given indexes have the same enclosing blocks
+	 * at every offset of a text of the given length.
+	 *
+	 * @param expected The expected index.
+	 * @param actual The actual index.
+	 * @param textLength The length of the indexed text.
+	 */
+	private static void assertSameBlocks(AdaBlockIndex expected, AdaBlockIndex actual, int textLength) {
+
+		assertEquals(expected.size(), actual.size());
+
+		for (int offset = 0 ; offset <= textLength ; offset++) {
+			assertEquals(
+				expected.findEnclosingBlockRange(offset),
+				actual.findEnclosingBlockRange(offset),
+				"Different enclosing blocks at offset " + offset
+			);
+		}
+
+	}
+
+	@Test
+	void if_statement_paired_with_end_if() {
+
+		String text =
+			"if A then\n" +
+			"   B;\n" +
+			"end if;\n";
+
+		AdaBlockIndex index = AdaBlockIndex.build(text);
+
+		assertPaired(index, text, "if A", "end if");
+
+		assertEquals(new TextRange(0, text.indexOf("end if") + 6),
+			index.findEnclosingBlockRange(text.indexOf("B;")));
+
+	}
+
+	@Test
+	void nested_blocks_paired_correctly() {
+
+		String text =
+			"begin\n" +
+			"   for I in 1 .. 10 loop\n" +
+			"      case I is\n" +
+			"         when others => null;\n" +
+			"      end case;\n" +
+			"   end loop;\n" +
+			"end;\n";
+
+		AdaBlockIndex index = AdaBlockIndex.build(text);
+
+		assertPaired(index, text, "begin", "end;");
+		assertPaired(index, text, "loop", "end loop");
+		assertPaired(index, text, "case", "end case");
+
+	}
+
+	@Test
+	void if_and_case_expressions_ignored() {
+
+		String text =
+			"if A then\n" +
+			"   X := (if B then 1 else 2);\n" +
+			"   Y := (case C is when others => 3);\n" +
+			"end if;\n";
+
+		AdaBlockIndex index = AdaBlockIndex.build(text);
+
+		assertEquals(-1, index.findBlockTokenAt(text.indexOf("if B")));
+		assertEquals(-1, index.findBlockTokenAt(text.indexOf("case C")));
+
+		assertPaired(index, text, "if A", "end if");
+
+	}
+
+	@Test
+	void declare_block_tokens_paired_correctly() {
+
+		String text =
+			"declare\n" +
+			"   X : Integer;\n" +
+			"begin\n" +
+			"   null;\n" +
+			"end;\n";
+
+		AdaBlockIndex index = AdaBlockIndex.build(text);
+
+		assertPaired(index, text, "begin", "end;");
+
+		int declare = index.findBlockTokenAt(0);
+		int end     = index.findBlockTokenAt(text.indexOf("end;"));
+
+		assertArrayEquals(
+			new int[] { declare, index.getPartner(end), end },
+			index.getConstructTokens(end)
+		);
+
+		assertEquals(new TextRange(0, text.indexOf("end;") + 3),
+			index.findEnclosingBlockRange(text.indexOf("X :")));
+
+	}
+
+	@Test
+	void plain_end_of_declaration_does_not_close_block() {
+
+		String text =
+			"package body P is\n" +
+			"   procedure Q is\n" +
+			"   begin\n" +
+			"      null;\n" +
+			"   end Q;\n" +
+			"end P;\n";
+
+		AdaBlockIndex index = AdaBlockIndex.build(text);
+
+		assertPaired(index, text, "begin", "end Q");
+
+		assertEquals(-1, index.findBlockTokenAt(text.indexOf("end P")));
+
+	}
+
+	@Test
+	void null_record_ignored() {
+
+		String text =
+			"type T is null record;\n" +
+			"type R is record\n" +
+			"   X : Integer;\n" +
+			"end record;\n";
+
+		AdaBlockIndex index = AdaBlockIndex.build(text);
+
+		assertEquals(-1, index.findBlockTokenAt(text.indexOf("record;")));
+
+		assertPaired(index, text, "record\n", "end record");
+
+	}
+
+	@Test
+	void unbalanced_blocks_left_unpaired() {
+
+		String text =
+			"begin\n" +
+			"   if A then\n" +
+			"      null;\n" +
+			"end;\n";
+
+		AdaBlockIndex index = AdaBlockIndex.build(text);
+
+		assertEquals(-1, index.findBlockTokenAt(text.indexOf("if A")));
+
+		assertPaired(index, text, "begin", "end;");
+
+	}
+
+	@Test
+	void block_ranges_span_closed_constructs() {
+
+		String text =
+			"procedure P is\n" +
+			"begin\n" +
+			"   declare\n" +
+			"      X : Integer := (if A then 1 else 2);\n" +
+			"   begin\n" +
+			"      loop\n" +
+			"         null;\n" +
+			"      end loop;\n" +
+			"   end;\n" +
+			"   declare\n" +
+			"   begin\n";
+
+		AdaBlockIndex index = AdaBlockIndex.build(text);
+
+		int declareEnd = text.indexOf("end;");
+
+		assertEquals(Arrays.asList(
+			new TextRange(text.indexOf("declare"), declareEnd + 3),
+			new TextRange(text.indexOf("loop"), text.indexOf("end loop") + 8)
+		), index.getBlockRanges());
+
+	}
+
+	@Test
+	void incremental_update_same_as_rebuild() {
+
+		String oldText =
+			"begin\n" +
+			"   loop\n" +
+			"      null;\n" +
+			"   end loop;\n" +
+			"end;\n";
+
+		String insertedText = "if A then\n      B;\n   end if;\n   ";
+
+		int offset = oldText.indexOf("loop");
+
+		String newText =
+			oldText.substring(0, offset) + insertedText + oldText.substring(offset);
+
+		AdaBlockIndex updatedIndex = AdaBlockIndex.build(oldText)
+			.update(newText, offset, 0, insertedText.length());
+
+		assertSameBlocks(AdaBlockIndex.build(newText), updatedIndex, newText.length());
+
+		// Remove the inserted text again
+
+		AdaBlockIndex revertedIndex = updatedIndex
+			.update(oldText, offset, insertedText.length(), 0);
+
+		assertSameBlocks(AdaBlockIndex.build(oldText), revertedIndex, oldText.length());
+
+	}
+
+	@Test
+	void incremental_update_of_closing_keyword_same_as_rebuild() {
+
+		String oldText =
+			"if A then\n" +
+			"   null;\n" +
+			"end loop;\n";
+
+		int offset = oldText.indexOf("loop;");
+
+		String newText =
+			oldText.substring(0, offset) + "if" + oldText.substring(offset + 4);
+
+		AdaBlockIndex updatedIndex = AdaBlockIndex.build(oldText)
+			.update(newText, offset, 4, 2);
+
+		assertSameBlocks(AdaBlockIndex.build(newText), updatedIndex, newText.length());
+
+		assertPaired(updatedIndex, newText, "if A", "end if");
+
+	}
+
+	@Test
+	void update_from_texts_same_as_rebuild() {
+
+		String oldText =
+			"begin\n" +
+			"   if A then\n" +
+			"      null;\n" +
+			"   end if;\n" +
+			"end;\n";
+
+		String newText =
+			"begin\n" +
+			"   loop\n" +
+			"      null;\n" +
+			"   end loop;\n" +
+			"end;\n";
+
+		AdaBlockIndex updatedIndex = AdaBlockIndex.build(oldText).update(oldText, newText);
+
+		assertSameBlocks(AdaBlockIndex.build(newText), updatedIndex, newText.length());
+
+		assertPaired(updatedIndex, newText, "loop", "end loop");
+
+	}
+
+}
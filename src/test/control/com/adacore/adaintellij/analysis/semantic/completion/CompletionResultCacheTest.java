@@ -0,0 +1,133 @@
+package com.adacore.adaintellij.analysis.semantic.completion;
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit test class for the CompletionResultCache class.
+ */
+final class CompletionResultCacheTest {
+
+	/**
+	 * URI of the document used in tests.
+	 */
+	private static final String URI = "file:///main.adb";
+
+	/**
+	 * Elements cached in tests.
+	 */
+	private static final List<String> ELEMENTS = Arrays.asList("Put_Line", "Put");
+
+	/**
+	 * Text of the document at the time of the cached request, in
+	 * which the prefix `Pu` is completed.
+	 */
+	private static final String TEXT = "begin\n   Pu\nend;";
+
+	/**
+	 * Start offset of the completed identifier in the test text.
+	 */
+	private static final int START_OFFSET = TEXT.indexOf("Pu");
+
+	/**
+	 * Returns the test text with the given text inserted at the given
+	 * offset.
+	 *
+	 * @param offset The offset at which to insert.
+	 * @param insertedText The text to insert.
+	 * @return The resulting text.
+	 */
+	private static String insert(int offset, String insertedText) {
+		return TEXT.substring(0, offset) + insertedText + TEXT.substring(offset);
+	}
+
+	@Test
+	void same_version_and_prefix_is_hit() {
+
+		CompletionResultCache<String> cache = new CompletionResultCache<>();
+
+		cache.put(URI, START_OFFSET, 1, TEXT, "Pu", false, ELEMENTS);
+
+		assertSame(ELEMENTS, cache.get(URI, START_OFFSET, 1, TEXT, "Pu"));
+		assertNull(cache.get(URI, START_OFFSET, 1, TEXT, "P"));
+		assertNull(cache.get(URI, START_OFFSET + 1, 1, TEXT, "Pu"));
+		assertNull(cache.get("file:///other.adb", START_OFFSET, 1, TEXT, "Pu"));
+
+	}
+
+	@Test
+	void complete_result_refined_by_typed_characters() {
+
+		CompletionResultCache<String> cache = new CompletionResultCache<>();
+
+		cache.put(URI, START_OFFSET, 1, TEXT, "Pu", true, ELEMENTS);
+
+		int prefixEnd = START_OFFSET + 2;
+
+		assertSame(ELEMENTS, cache.get(URI, START_OFFSET, 2, insert(prefixEnd, "t"), "Put"));
+		assertSame(ELEMENTS, cache.get(URI, START_OFFSET, 3, insert(prefixEnd, "t_L"), "Put_L"));
+
+	}
+
+	@Test
+	void complete_result_not_reused_after_other_changes() {
+
+		CompletionResultCache<String> cache = new CompletionResultCache<>();
+
+		cache.put(URI, START_OFFSET, 1, TEXT, "Pu", true, ELEMENTS);
+
+		int prefixEnd = START_OFFSET + 2;
+
+		// Character deleted from the prefix
+
+		assertNull(cache.get(URI, START_OFFSET, 2,
+			TEXT.substring(0, prefixEnd - 1) + TEXT.substring(prefixEnd), "P"));
+
+		// Prefix replaced
+
+		assertNull(cache.get(URI, START_OFFSET, 2,
+			TEXT.substring(0, START_OFFSET) + "Get" + TEXT.substring(prefixEnd), "Get"));
+
+		// Other text inserted in the document
+
+		assertNull(cache.get(URI, START_OFFSET, 2, insert(prefixEnd, "t") + "  ", "Put"));
+
+		// Net-zero edit elsewhere along with the prefix extension,
+		// i.e. a character typed at the end of the prefix and
+		// another one deleted further in the document
+
+		String extendedText = insert(prefixEnd, "t");
+		int    endOffset    = extendedText.indexOf("end");
+
+		assertNull(cache.get(URI, START_OFFSET, 3,
+			extendedText.substring(0, endOffset) + extendedText.substring(endOffset + 1), "Put"));
+
+	}
+
+	@Test
+	void incomplete_result_not_refined() {
+
+		CompletionResultCache<String> cache = new CompletionResultCache<>();
+
+		cache.put(URI, START_OFFSET, 1, TEXT, "Pu", false, ELEMENTS);
+
+		assertNull(cache.get(URI, START_OFFSET, 2, insert(START_OFFSET + 2, "t"), "Put"));
+
+	}
+
+	@Test
+	void clear_removes_result() {
+
+		CompletionResultCache<String> cache = new CompletionResultCache<>();
+
+		cache.put(URI, START_OFFSET, 1, TEXT, "Pu", true, ELEMENTS);
+		cache.clear();
+
+		assertNull(cache.get(URI, START_OFFSET, 1, TEXT, "Pu"));
+
+	}
+
+}
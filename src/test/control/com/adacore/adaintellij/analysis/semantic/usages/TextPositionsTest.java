@@ -0,0 +1,52 @@
+package com.adacore.adaintellij.analysis.semantic.usages;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit test class for the TextPositions class.
+ */
+final class TextPositionsTest {
+
+	/**
+	 * The text used in tests.
+	 */
+	private static final String TEXT = "procedure P is\n   X : Integer;\n\nbegin";
+
+	/**
+	 * The positions of the test text.
+	 */
+	private final TextPositions positions = new TextPositions(TEXT);
+
+	@Test
+	void lines_are_counted_from_line_feeds() {
+		assertEquals(4, positions.getLineCount());
+		assertEquals(1, new TextPositions("").getLineCount());
+		assertEquals(2, new TextPositions("end;\n").getLineCount());
+	}
+
+	@Test
+	void positions_are_translated_to_offsets() {
+		assertEquals(0, positions.positionToOffset(0, 0));
+		assertEquals(TEXT.indexOf('X'), positions.positionToOffset(1, 3));
+		assertEquals(TEXT.indexOf("\n\n") + 1, positions.positionToOffset(2, 0));
+		assertEquals(TEXT.indexOf("begin"), positions.positionToOffset(3, 0));
+	}
+
+	@Test
+	void line_ends_are_valid_positions() {
+		assertEquals(TEXT.indexOf('\n'), positions.positionToOffset(0, 14));
+		assertEquals(TEXT.length(), positions.positionToOffset(3, 5));
+	}
+
+	@Test
+	void positions_out_of_bounds_are_rejected() {
+		assertEquals(-1, positions.positionToOffset(0, 15));
+		assertEquals(-1, positions.positionToOffset(2, 1));
+		assertEquals(-1, positions.positionToOffset(4, 0));
+		assertEquals(-1, positions.positionToOffset(-1, 0));
+		assertEquals(-1, positions.positionToOffset(0, -1));
+	}
+
+}
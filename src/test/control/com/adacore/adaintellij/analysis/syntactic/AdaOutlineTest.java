@@ -0,0 +1,183 @@
+package com.adacore.adaintellij.analysis.syntactic;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+import org.junit.jupiter.api.Test;
+
+import org.eclipse.lsp4j.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static com.adacore.adaintellij.analysis.syntactic.AdaPsiElement.AdaElementType;
+
+/**
+ * JUnit test class for the AdaOutline class.
+ */
+final class AdaOutlineTest {
+
+	/**
+	 * The number of characters per line in the positions of test
+	 * symbols, used to translate positions to offsets.
+	 */
+	private static final int LINE_LENGTH = 100;
+
+	/**
+	 * Function translating positions of test symbols to offsets.
+	 */
+	private static final ToIntFunction<Position> OFFSET_OF =
+		position -> position.getLine() * LINE_LENGTH + position.getCharacter();
+
+	/**
+	 * Returns a document symbol declared on the given lines, whose
+	 * identifier starts at the fourth character of its first line.
+	 *
+	 * @param name The name of the symbol.
+	 * @param kind The kind of the symbol.
+	 * @param startLine The first line of the declaration.
+	 * @param endLine The last line of the declaration.
+	 * @param children The nested symbols.
+	 * @return The document symbol.
+	 */
+	private static DocumentSymbol symbol(
+		String            name,
+		SymbolKind        kind,
+		int               startLine,
+		int               endLine,
+		DocumentSymbol... children
+	) {
+		return new DocumentSymbol(
+			name,
+			kind,
+			new Range(new Position(startLine, 0), new Position(endLine, 4)),
+			new Range(new Position(startLine, 4), new Position(startLine, 4 + name.length())),
+			null,
+			Arrays.asList(children)
+		);
+	}
+
+	/**
+	 * Returns the symbols of a package declaring two functions,
+	 * shifted by the given number of lines.
+	 *
+	 * @param shift The number of lines by which to shift the package.
+	 * @param secondName The name of the second function.
+	 * @return The document symbols.
+	 */
+	private static List<DocumentSymbol> packageSymbols(int shift, String secondName) {
+		return Collections.singletonList(
+			symbol("P", SymbolKind.Package, shift, shift + 6,
+				symbol("F", SymbolKind.Function, shift + 1, shift + 2),
+				symbol(secondName, SymbolKind.Function, shift + 4, shift + 5))
+		);
+	}
+
+	@Test
+	void hierarchical_outline_built_with_relative_offsets() {
+
+		// The namespace has no corresponding element type, so
+		// its variable is moved up to the package
+
+		List<DocumentSymbol> symbols = Collections.singletonList(
+			symbol("P", SymbolKind.Package, 2, 9,
+				symbol("G", SymbolKind.Function, 6, 8),
+				symbol("N", SymbolKind.Namespace, 3, 5,
+					symbol("V", SymbolKind.Variable, 4, 4)))
+		);
+
+		AdaOutline outline = AdaOutline.build(1, symbols, OFFSET_OF, AdaOutline.EMPTY);
+
+		assertEquals(1, outline.getVersion());
+		assertEquals(3, outline.size());
+
+		assertEquals(1, outline.getRoots().length);
+		assertArrayEquals(new int[] { 2 * LINE_LENGTH + 4 }, outline.getRootOffsets());
+
+		AdaOutline.Node packageNode = outline.getRoots()[0];
+
+		assertEquals("P", packageNode.getName());
+		assertEquals(AdaElementType.PACKAGE_SPEC_IDENTIFIER, packageNode.getElementType());
+		assertEquals(7 * LINE_LENGTH, packageNode.getLength());
+
+		// Children are sorted by offset, relative to the package
+
+		AdaOutline.Node[] children = packageNode.getChildren();
+
+		assertEquals(2, children.length);
+		assertEquals("V", children[0].getName());
+		assertEquals(AdaElementType.VARIABLE_IDENTIFIER, children[0].getElementType());
+		assertEquals("G", children[1].getName());
+		assertEquals(AdaElementType.FUNCTION_IDENTIFIER, children[1].getElementType());
+
+		assertArrayEquals(new int[] { 2 * LINE_LENGTH, 4 * LINE_LENGTH }, packageNode.getChildOffsets());
+
+	}
+
+	@Test
+	void unchanged_outline_reused_across_versions() {
+
+		AdaOutline first  = AdaOutline.build(1, packageSymbols(0, "G"), OFFSET_OF, AdaOutline.EMPTY);
+		AdaOutline second = AdaOutline.build(2, packageSymbols(0, "G"), OFFSET_OF, first);
+
+		assertEquals(2, second.getVersion());
+		assertSame(first.getRoots()[0], second.getRoots()[0]);
+
+	}
+
+	@Test
+	void renamed_sibling_only_replaces_its_ancestors() {
+
+		AdaOutline first  = AdaOutline.build(1, packageSymbols(0, "G"), OFFSET_OF, AdaOutline.EMPTY);
+		AdaOutline second = AdaOutline.build(2, packageSymbols(0, "H"), OFFSET_OF, first);
+
+		AdaOutline.Node firstPackage  = first.getRoots()[0];
+		AdaOutline.Node secondPackage = second.getRoots()[0];
+
+		assertNotSame(firstPackage, secondPackage);
+		assertSame(firstPackage.getChildren()[0], secondPackage.getChildren()[0]);
+		assertNotSame(firstPackage.getChildren()[1], secondPackage.getChildren()[1]);
+		assertEquals("H", secondPackage.getChildren()[1].getName());
+
+	}
+
+	@Test
+	void upstream_insertion_keeps_nodes_and_shifts_root_offsets() {
+
+		AdaOutline first  = AdaOutline.build(1, packageSymbols(0, "G"), OFFSET_OF, AdaOutline.EMPTY);
+		AdaOutline second = AdaOutline.build(2, packageSymbols(3, "G"), OFFSET_OF, first);
+
+		// The package node and its children are reused as their
+		// relative offsets did not change
+
+		assertSame(first.getRoots()[0], second.getRoots()[0]);
+		assertArrayEquals(new int[] { 3 * LINE_LENGTH + 4 }, second.getRootOffsets());
+
+	}
+
+	@Test
+	void insertion_inside_parent_shifts_child_offsets() {
+
+		AdaOutline first = AdaOutline.build(1, packageSymbols(0, "G"), OFFSET_OF, AdaOutline.EMPTY);
+
+		// Insert two lines between the two functions of the package
+
+		List<DocumentSymbol> symbols = Collections.singletonList(
+			symbol("P", SymbolKind.Package, 0, 8,
+				symbol("F", SymbolKind.Function, 1, 2),
+				symbol("G", SymbolKind.Function, 6, 7))
+		);
+
+		AdaOutline second = AdaOutline.build(2, symbols, OFFSET_OF, first);
+
+		AdaOutline.Node firstPackage  = first.getRoots()[0];
+		AdaOutline.Node secondPackage = second.getRoots()[0];
+
+		assertNotSame(firstPackage, secondPackage);
+		assertSame(firstPackage.getChildren()[0], secondPackage.getChildren()[0]);
+		assertSame(firstPackage.getChildren()[1], secondPackage.getChildren()[1]);
+
+		assertArrayEquals(new int[] { LINE_LENGTH, 4 * LINE_LENGTH }, firstPackage.getChildOffsets());
+		assertArrayEquals(new int[] { LINE_LENGTH, 6 * LINE_LENGTH }, secondPackage.getChildOffsets());
+
+	}
+
+}
@@ -0,0 +1,220 @@
+package com.adacore.adaintellij.lsp;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+
+import org.eclipse.lsp4j.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit test class for the DiagnosticsStore class.
+ */
+final class DiagnosticsStoreTest {
+
+	/**
+	 * URIs of the documents used in tests.
+	 */
+	private static final String FIRST_URI  = "file:///first.adb";
+	private static final String SECOND_URI = "file:///second.adb";
+
+	/**
+	 * The sets of updated documents notified by the tested store.
+	 */
+	private final BlockingQueue<Set<String>> updates = new LinkedBlockingQueue<>();
+
+	/**
+	 * The scheduler used by the tested store.
+	 */
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+	@AfterEach
+	void shutdown_scheduler() { scheduler.shutdownNow(); }
+
+	/**
+	 * Returns a new store recording updates, with the given
+	 * coalescing window.
+	 *
+	 * @param coalesceDelay The coalescing window in milliseconds.
+	 * @return The new store.
+	 */
+	private DiagnosticsStore newStore(long coalesceDelay) {
+		return new DiagnosticsStore(updates::add, scheduler, coalesceDelay);
+	}
+
+	/**
+	 * Anchor of fixed offsets, recording whether it was disposed.
+	 */
+	private static final class FakeAnchor implements DiagnosticsStore.Anchor {
+
+		/**
+		 * The anchored offsets.
+		 */
+		private final int startOffset;
+		private final int endOffset;
+
+		/**
+		 * Whether or not the anchor was disposed.
+		 */
+		boolean disposed = false;
+
+		/**
+		 * Constructs a new FakeAnchor given its offsets.
+		 *
+		 * @param startOffset The start offset.
+		 * @param endOffset The end offset.
+		 */
+		FakeAnchor(int startOffset, int endOffset) {
+			this.startOffset = startOffset;
+			this.endOffset   = endOffset;
+		}
+
+		@Override
+		public boolean isValid() { return !disposed; }
+
+		@Override
+		public int getStartOffset() { return startOffset; }
+
+		@Override
+		public int getEndOffset() { return endOffset; }
+
+		@Override
+		public void dispose() { disposed = true; }
+
+	}
+
+	/**
+	 * Returns a diagnostic with the given message anchored
+	 * to the given anchor.
+	 *
+	 * @param message The message of the diagnostic.
+	 * @param anchor The anchor of the diagnostic.
+	 * @return The new anchored diagnostic.
+	 */
+	private static DiagnosticsStore.AnchoredDiagnostic diagnostic(String message, FakeAnchor anchor) {
+		Position position = new Position(0, 0);
+		return new DiagnosticsStore.AnchoredDiagnostic(
+			new Diagnostic(new Range(position, position), message), anchor);
+	}
+
+	/**
+	 * Returns the messages of the given diagnostics.
+	 *
+	 * @param diagnostics The diagnostics.
+	 * @return The messages of the diagnostics.
+	 */
+	private static List<String> messages(List<DiagnosticsStore.AnchoredDiagnostic> diagnostics) {
+
+		List<String> messages = new ArrayList<>();
+
+		for (DiagnosticsStore.AnchoredDiagnostic diagnostic : diagnostics) {
+			messages.add(diagnostic.diagnostic.getMessage());
+		}
+
+		return messages;
+
+	}
+
+	@Test
+	void publication_replaces_previous_one() {
+
+		DiagnosticsStore store  = newStore(60_000);
+		FakeAnchor       anchor = new FakeAnchor(0, 5);
+
+		store.publish(FIRST_URI, Collections.singletonList(diagnostic("a", anchor)));
+		store.publish(FIRST_URI, Collections.singletonList(diagnostic("b", new FakeAnchor(0, 5))));
+
+		assertTrue(anchor.disposed);
+		assertEquals(Collections.singletonList("b"), messages(store.getDiagnostics(FIRST_URI)));
+
+	}
+
+	@Test
+	void notifications_coalesced_until_flush() {
+
+		DiagnosticsStore store = newStore(60_000);
+
+		store.publish(FIRST_URI, Collections.singletonList(diagnostic("a", new FakeAnchor(0, 1))));
+		store.publish(FIRST_URI, Collections.singletonList(diagnostic("b", new FakeAnchor(0, 1))));
+		store.publish(SECOND_URI, Collections.singletonList(diagnostic("c", new FakeAnchor(0, 1))));
+
+		assertEquals(Collections.singletonList("b"), messages(store.getDiagnostics(FIRST_URI)));
+		assertTrue(updates.isEmpty());
+
+		store.flush();
+
+		assertEquals(1, updates.size());
+		assertEquals(new HashSet<>(Arrays.asList(FIRST_URI, SECOND_URI)), updates.poll());
+
+	}
+
+	@Test
+	void notification_sent_after_window() throws InterruptedException {
+
+		DiagnosticsStore store = newStore(10);
+
+		store.publish(FIRST_URI, Collections.singletonList(diagnostic("a", new FakeAnchor(0, 1))));
+
+		assertEquals(Collections.singleton(FIRST_URI), updates.poll(5, TimeUnit.SECONDS));
+
+	}
+
+	@Test
+	void edit_drops_only_intersecting_diagnostics() {
+
+		DiagnosticsStore store = newStore(60_000);
+
+		FakeAnchor before      = new FakeAnchor(0, 4);
+		FakeAnchor touching    = new FakeAnchor(6, 10);
+		FakeAnchor overlapping = new FakeAnchor(12, 20);
+		FakeAnchor after       = new FakeAnchor(30, 35);
+
+		store.publish(FIRST_URI, Arrays.asList(
+			diagnostic("before", before),
+			diagnostic("touching", touching),
+			diagnostic("overlapping", overlapping),
+			diagnostic("after", after)
+		));
+
+		store.documentChanging(FIRST_URI, 10, 15);
+
+		assertEquals(Arrays.asList("before", "after"), messages(store.getDiagnostics(FIRST_URI)));
+		assertFalse(before.disposed);
+		assertTrue(touching.disposed);
+		assertTrue(overlapping.disposed);
+		assertFalse(after.disposed);
+
+	}
+
+	@Test
+	void invalid_diagnostics_not_returned() {
+
+		DiagnosticsStore store  = newStore(60_000);
+		FakeAnchor       anchor = new FakeAnchor(0, 1);
+
+		store.publish(FIRST_URI, Arrays.asList(
+			diagnostic("a", anchor), diagnostic("b", new FakeAnchor(2, 3))));
+
+		anchor.dispose();
+
+		assertEquals(Collections.singletonList("b"), messages(store.getDiagnostics(FIRST_URI)));
+
+	}
+
+	@Test
+	void clear_removes_diagnostics() {
+
+		DiagnosticsStore store  = newStore(60_000);
+		FakeAnchor       anchor = new FakeAnchor(0, 1);
+
+		store.publish(FIRST_URI, Collections.singletonList(diagnostic("a", anchor)));
+		store.clear(FIRST_URI);
+
+		assertNull(store.getDiagnostics(FIRST_URI));
+		assertTrue(anchor.disposed);
+
+	}
+
+}
@@ -0,0 +1,206 @@
+package com.adacore.adaintellij.lsp;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+
+import org.eclipse.lsp4j.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit test class for the DocumentChangeBuffer class.
+ */
+final class DocumentChangeBufferTest {
+
+	/**
+	 * URI of the document used in tests.
+	 */
+	private static final String DOCUMENT_URI = "file:///test.adb";
+
+	/**
+	 * A `textDocument/didChange` notification recorded by the test sender.
+	 */
+	private static final class SentChange {
+
+		final String                               documentUri;
+		final int                                  version;
+		final List<TextDocumentContentChangeEvent> changeEvents;
+
+		SentChange(String documentUri, int version, List<TextDocumentContentChangeEvent> changeEvents) {
+			this.documentUri  = documentUri;
+			this.version      = version;
+			this.changeEvents = changeEvents;
+		}
+
+	}
+
+	/**
+	 * The notifications sent by the tested buffer.
+	 */
+	private final List<SentChange> sentChanges = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The scheduler used by the tested buffer.
+	 */
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+	@AfterEach
+	void shutdown_scheduler() { scheduler.shutdownNow(); }
+
+	/**
+	 * Returns a new buffer recording sent notifications, with the
+	 * given debounce delay.
+	 *
+	 * @param debounceDelay The debounce delay in milliseconds.
+	 * @return The new buffer.
+	 */
+	private DocumentChangeBuffer newBuffer(long debounceDelay) {
+		return new DocumentChangeBuffer(
+			(uri, version, events) -> sentChanges.add(new SentChange(uri, version, events)),
+			scheduler,
+			debounceDelay
+		);
+	}
+
+	/**
+	 * Returns a new incremental change event inserting the given
+	 * text at the given column of the first line.
+	 *
+	 * @param column The column at which to insert.
+	 * @param text The inserted text.
+	 * @return The new change event.
+	 */
+	private static TextDocumentContentChangeEvent insertion(int column, String text) {
+		Position position = new Position(0, column);
+		return new TextDocumentContentChangeEvent(new Range(position, position), 0, text);
+	}
+
+	@Test
+	void consecutive_changes_sent_as_one_notification() {
+
+		DocumentChangeBuffer buffer = newBuffer(60_000);
+
+		buffer.documentOpened(DOCUMENT_URI, 1);
+
+		buffer.addChange(DOCUMENT_URI, insertion(0, "a"));
+		buffer.addChange(DOCUMENT_URI, insertion(1, "b"));
+		buffer.addChange(DOCUMENT_URI, insertion(2, "c"));
+
+		assertTrue(sentChanges.isEmpty());
+
+		buffer.flush(DOCUMENT_URI);
+
+		assertEquals(1, sentChanges.size());
+
+		SentChange sentChange = sentChanges.get(0);
+
+		assertEquals(DOCUMENT_URI, sentChange.documentUri);
+		assertEquals(2, sentChange.version);
+		assertEquals(
+			Arrays.asList(insertion(0, "a"), insertion(1, "b"), insertion(2, "c")),
+			sentChange.changeEvents
+		);
+
+	}
+
+	@Test
+	void versions_strictly_increasing() {
+
+		DocumentChangeBuffer buffer = newBuffer(60_000);
+
+		buffer.documentOpened(DOCUMENT_URI, 1);
+
+		for (int i = 0 ; i < 3 ; i++) {
+			buffer.addChange(DOCUMENT_URI, insertion(i, "x"));
+			buffer.flushAll();
+		}
+
+		// Flushing without buffered changes sends nothing
+
+		buffer.flush(DOCUMENT_URI);
+
+		assertEquals(3, sentChanges.size());
+
+		for (int i = 0 ; i < 3 ; i++) {
+			assertEquals(i + 2, sentChanges.get(i).version);
+		}
+
+	}
+
+	@Test
+	void full_change_supersedes_buffered_changes() {
+
+		DocumentChangeBuffer buffer = newBuffer(60_000);
+
+		buffer.addChange(DOCUMENT_URI, insertion(0, "a"));
+		buffer.addFullChange(DOCUMENT_URI, () -> "full text");
+		buffer.addChange(DOCUMENT_URI, insertion(1, "b"));
+
+		buffer.flush(DOCUMENT_URI);
+
+		assertEquals(1, sentChanges.size());
+		assertEquals(
+			Collections.singletonList(new TextDocumentContentChangeEvent("full text")),
+			sentChanges.get(0).changeEvents
+		);
+
+	}
+
+	@Test
+	void buffered_changes_reported_until_sent() {
+
+		DocumentChangeBuffer buffer = newBuffer(60_000);
+
+		buffer.documentOpened(DOCUMENT_URI, 1);
+
+		assertFalse(buffer.hasBufferedChanges(DOCUMENT_URI));
+
+		buffer.addChange(DOCUMENT_URI, insertion(0, "a"));
+
+		assertTrue(buffer.hasBufferedChanges(DOCUMENT_URI));
+		assertFalse(buffer.hasBufferedChanges("file:///other.adb"));
+
+		buffer.flush(DOCUMENT_URI);
+
+		assertFalse(buffer.hasBufferedChanges(DOCUMENT_URI));
+
+	}
+
+	@Test
+	void reopened_document_discards_buffered_changes() {
+
+		DocumentChangeBuffer buffer = newBuffer(60_000);
+
+		buffer.documentOpened(DOCUMENT_URI, 1);
+		buffer.addChange(DOCUMENT_URI, insertion(0, "a"));
+		buffer.documentClosed(DOCUMENT_URI);
+		buffer.documentOpened(DOCUMENT_URI, 1);
+
+		buffer.flushAll();
+
+		assertTrue(sentChanges.isEmpty());
+
+	}
+
+	@Test
+	void changes_sent_after_debounce_delay() throws InterruptedException {
+
+		DocumentChangeBuffer buffer = newBuffer(20);
+
+		buffer.addChange(DOCUMENT_URI, insertion(0, "a"));
+		buffer.addChange(DOCUMENT_URI, insertion(1, "b"));
+
+		long deadline = System.currentTimeMillis() + 5_000;
+
+		while (sentChanges.isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertEquals(1, sentChanges.size());
+		assertEquals(2, sentChanges.get(0).changeEvents.size());
+
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.adacore.adaintellij.lsp;
+
+import java.io.*;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit test class for the LSPMetrics class.
+ */
+final class LSPMetricsTest {
+
+	@Test
+	void request_outcomes_counted_per_method() {
+
+		LSPMetrics metrics = new LSPMetrics();
+
+		for (int i = 0 ; i < 4 ; i++) { metrics.requestStarted("textDocument/definition"); }
+
+		metrics.requestStarted("textDocument/completion");
+
+		metrics.requestSucceeded("textDocument/definition", 12);
+		metrics.requestFailed("textDocument/definition");
+		metrics.requestTimedOut("textDocument/definition");
+
+		LSPMetrics.Snapshot snapshot = metrics.getSnapshot();
+
+		assertEquals(2, snapshot.inFlight);
+		assertEquals(5, snapshot.peakInFlight);
+		assertEquals(2, snapshot.requests.size());
+
+		LSPMetrics.MethodSnapshot completion = snapshot.requests.get(0);
+		LSPMetrics.MethodSnapshot definition = snapshot.requests.get(1);
+
+		assertEquals("textDocument/completion", completion.method);
+		assertEquals(1, completion.inFlight);
+
+		assertEquals("textDocument/definition", definition.method);
+		assertEquals(4, definition.requests);
+		assertEquals(1, definition.successes);
+		assertEquals(1, definition.failures);
+		assertEquals(1, definition.timeouts);
+		assertEquals(0, definition.cancellations);
+		assertEquals(1, definition.inFlight);
+		assertEquals(12, definition.p50);
+
+	}
+
+	@Test
+	void stream_bytes_counted() throws IOException {
+
+		LSPMetrics metrics = new LSPMetrics();
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		try (OutputStream stream = metrics.countingOutputStream(output)) {
+			stream.write(new byte[10]);
+			stream.write(1);
+		}
+
+		try (InputStream stream = metrics.countingInputStream(new ByteArrayInputStream(new byte[7]))) {
+			while (stream.read(new byte[3]) > 0) {}
+			assertEquals(-1, stream.read());
+		}
+
+		LSPMetrics.Snapshot snapshot = metrics.getSnapshot();
+
+		assertEquals(11, output.size());
+		assertEquals(11, snapshot.bytesSent);
+		assertEquals(7, snapshot.bytesReceived);
+
+	}
+
+	@Test
+	void reset_keeps_requests_in_flight() {
+
+		LSPMetrics metrics = new LSPMetrics();
+
+		metrics.requestStarted("textDocument/hover");
+		metrics.requestStarted("textDocument/references");
+		metrics.requestSucceeded("textDocument/references", 5);
+		metrics.notificationSent("textDocument/didChange");
+
+		metrics.reset();
+
+		LSPMetrics.Snapshot snapshot = metrics.getSnapshot();
+
+		assertEquals(1, snapshot.inFlight);
+		assertEquals(1, snapshot.requests.size());
+		assertEquals(1, snapshot.requests.get(0).inFlight);
+		assertEquals(0, snapshot.requests.get(0).requests);
+		assertTrue(snapshot.notificationsSent.isEmpty());
+
+		metrics.requestCanceled("textDocument/hover");
+
+		assertEquals(0, metrics.getSnapshot().inFlight);
+
+	}
+
+	@Test
+	void json_export_contains_metrics() {
+
+		LSPMetrics metrics = new LSPMetrics();
+
+		metrics.requestStarted("textDocument/definition");
+		metrics.requestSucceeded("textDocument/definition", 3);
+		metrics.notificationReceived("textDocument/publishDiagnostics");
+
+		String json = metrics.toJson();
+
+		assertTrue(json.contains("\"textDocument/definition\""));
+		assertTrue(json.contains("\"textDocument/publishDiagnostics\": 1"));
+		assertTrue(json.contains("\"bytesSent\": 0"));
+
+	}
+
+}
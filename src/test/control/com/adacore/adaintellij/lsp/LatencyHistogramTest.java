@@ -0,0 +1,113 @@
+package com.adacore.adaintellij.lsp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit test class for the LatencyHistogram class.
+ */
+final class LatencyHistogramTest {
+
+	@Test
+	void small_values_counted_exactly() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		for (int value = 1 ; value <= 10 ; value++) {
+			histogram.recordValue(value);
+		}
+
+		assertEquals(10, histogram.getTotalCount());
+		assertEquals(5, histogram.getValueAtPercentile(50));
+		assertEquals(10, histogram.getValueAtPercentile(100));
+		assertEquals(1, histogram.getValueAtPercentile(0));
+
+	}
+
+	@Test
+	void large_values_within_relative_error() {
+
+		for (long value = 1 ; value <= LatencyHistogram.MAX_VALUE ; value = value * 3 + 7) {
+
+			LatencyHistogram histogram = new LatencyHistogram();
+
+			histogram.recordValue(value);
+
+			long recorded = histogram.getValueAtPercentile(50);
+
+			assertTrue(recorded >= value, "Value " + value + " recorded as " + recorded);
+			assertTrue(
+				recorded - value <= value / LatencyHistogram.HALF_SUB_BUCKET_COUNT,
+				"Value " + value + " recorded as " + recorded
+			);
+
+		}
+
+	}
+
+	@Test
+	void bucket_indexes_contiguous() {
+
+		int previousIndex = 0;
+
+		for (long value = 0 ; value < 1 << 16 ; value++) {
+
+			int index = LatencyHistogram.indexOf(value);
+
+			assertTrue(index == previousIndex || index == previousIndex + 1,
+				"Index jumps at value " + value);
+			assertTrue(value <= LatencyHistogram.highestValueAt(index),
+				"Value " + value + " above its bucket");
+
+			previousIndex = index;
+
+		}
+
+	}
+
+	@Test
+	void percentiles_of_skewed_distribution() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		for (int i = 0 ; i < 990 ; i++) { histogram.recordValue(100); }
+		for (int i = 0 ; i < 10 ; i++)  { histogram.recordValue(5_000); }
+
+		assertTrue(histogram.getValueAtPercentile(50) < 110);
+		assertTrue(histogram.getValueAtPercentile(99) < 110);
+		assertTrue(histogram.getValueAtPercentile(99.9) >= 5_000);
+
+	}
+
+	@Test
+	void out_of_range_values_clamped() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		histogram.recordValue(-5);
+		histogram.recordValue(Long.MAX_VALUE);
+
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		assertEquals(LatencyHistogram.MAX_VALUE, histogram.getValueAtPercentile(100));
+
+	}
+
+	@Test
+	void added_histogram_counts_merged() {
+
+		LatencyHistogram first  = new LatencyHistogram();
+		LatencyHistogram second = new LatencyHistogram();
+
+		first.recordValue(10);
+		second.recordValue(20);
+		second.recordValue(30);
+
+		first.add(second);
+
+		assertEquals(3, first.getTotalCount());
+		assertEquals(20, first.getValueAtPercentile(50));
+
+	}
+
+}
@@ -0,0 +1,126 @@
+package com.adacore.adaintellij.lsp;
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit test class for the OpenDocumentPool class.
+ */
+final class OpenDocumentPoolTest {
+
+	@Test
+	void least_recently_used_document_evicted_beyond_count() {
+
+		OpenDocumentPool<Object> pool = new OpenDocumentPool<>(2, 1_000);
+
+		assertTrue(pool.acquire("a", null, 10).isEmpty());
+		assertTrue(pool.release("a").isEmpty());
+		assertTrue(pool.acquire("b", null, 10).isEmpty());
+		assertTrue(pool.release("b").isEmpty());
+
+		// Use "a" again so that "b" becomes the least recently used
+
+		pool.acquire("a", null, 10);
+		pool.release("a");
+
+		assertEquals(Collections.singletonList("b"), pool.acquire("c", null, 10));
+		assertTrue(pool.contains("a"));
+		assertFalse(pool.contains("b"));
+		assertTrue(pool.contains("c"));
+
+	}
+
+	@Test
+	void documents_evicted_beyond_total_size() {
+
+		OpenDocumentPool<Object> pool = new OpenDocumentPool<>(10, 100);
+
+		pool.acquire("a", null, 40);
+		pool.release("a");
+		pool.acquire("b", null, 40);
+		pool.release("b");
+
+		assertEquals(Collections.singletonList("a"), pool.acquire("c", null, 40));
+		assertEquals(80, pool.totalSize());
+
+	}
+
+	@Test
+	void documents_in_use_not_evicted() {
+
+		OpenDocumentPool<Object> pool = new OpenDocumentPool<>(1, 1_000);
+
+		pool.acquire("a", null, 10);
+
+		assertTrue(pool.acquire("b", null, 10).isEmpty());
+		assertEquals(2, pool.size());
+
+		// Releasing "a" brings the pool back within its limits
+
+		assertEquals(Collections.singletonList("a"), pool.release("a"));
+		assertEquals(1, pool.size());
+
+	}
+
+	@Test
+	void resized_document_may_cause_eviction() {
+
+		OpenDocumentPool<Object> pool = new OpenDocumentPool<>(10, 100);
+
+		pool.acquire("a", null, 30);
+		pool.release("a");
+		pool.acquire("b", null, 30);
+		pool.release("b");
+
+		assertTrue(pool.resize("unknown", 500).isEmpty());
+		assertEquals(Collections.singletonList("a"), pool.resize("b", 90));
+		assertEquals(90, pool.totalSize());
+
+	}
+
+	@Test
+	void removed_document_not_evicted() {
+
+		OpenDocumentPool<Object> pool = new OpenDocumentPool<>(1, 1_000);
+
+		pool.acquire("a", null, 10);
+		pool.release("a");
+
+		assertTrue(pool.remove("a"));
+		assertFalse(pool.remove("a"));
+		assertTrue(pool.acquire("b", null, 10).isEmpty());
+		assertEquals(10, pool.totalSize());
+
+	}
+
+	@Test
+	void pooled_documents_kept_referenced_until_evicted() {
+
+		OpenDocumentPool<Object> pool = new OpenDocumentPool<>(1, 1_000);
+
+		Object documentA = new Object();
+		Object documentB = new Object();
+
+		pool.acquire("a", documentA, 10);
+
+		// Acquiring a pooled document again keeps its document
+
+		pool.acquire("a", new Object(), 10);
+		pool.release("a");
+		pool.release("a");
+
+		assertSame(documentA, pool.getDocument("a"));
+
+		assertEquals(Collections.singletonList("a"), pool.acquire("b", documentB, 10));
+		assertNull(pool.getDocument("a"));
+		assertSame(documentB, pool.getDocument("b"));
+
+		assertTrue(pool.remove("b"));
+		assertNull(pool.getDocument("b"));
+
+	}
+
+}
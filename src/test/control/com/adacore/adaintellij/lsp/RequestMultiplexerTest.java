@@ -0,0 +1,135 @@
+package com.adacore.adaintellij.lsp;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit test class for the RequestMultiplexer class.
+ */
+final class RequestMultiplexerTest {
+
+	/**
+	 * The multiplexer to test.
+	 */
+	private final RequestMultiplexer multiplexer = new RequestMultiplexer();
+
+	/**
+	 * The number of requests actually made.
+	 */
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	/**
+	 * Makes a request through the tested multiplexer, returning the
+	 * given request future if the request is actually made.
+	 *
+	 * @param params The parameters of the request.
+	 * @param version The contents version of the request.
+	 * @param requestFuture The future to return if the request is made.
+	 * @return The caller-specific future result of the request.
+	 */
+	private CompletableFuture<String> request(
+		Object                    params,
+		long                      version,
+		CompletableFuture<String> requestFuture
+	) {
+		return multiplexer.request("textDocument/definition", params, version, () -> {
+			requestCount.incrementAndGet();
+			return requestFuture;
+		});
+	}
+
+	@Test
+	void identical_in_flight_requests_shared() throws Exception {
+
+		CompletableFuture<String> requestFuture = new CompletableFuture<>();
+
+		CompletableFuture<String> first  = request("params", 1, requestFuture);
+		CompletableFuture<String> second = request("params", 1, new CompletableFuture<>());
+
+		assertEquals(1, requestCount.get());
+
+		requestFuture.complete("result");
+
+		assertEquals("result", first.get());
+		assertEquals("result", second.get());
+		assertEquals(0, multiplexer.inFlightCount());
+
+	}
+
+	@Test
+	void different_params_or_versions_not_shared() {
+
+		request("params", 1, new CompletableFuture<>());
+		request("other params", 1, new CompletableFuture<>());
+		request("params", 2, new CompletableFuture<>());
+
+		assertEquals(3, requestCount.get());
+
+	}
+
+	@Test
+	void completed_requests_not_shared() {
+
+		request("params", 1, CompletableFuture.completedFuture("result"));
+		request("params", 1, CompletableFuture.completedFuture("result"));
+
+		assertEquals(2, requestCount.get());
+
+	}
+
+	@Test
+	void request_canceled_only_when_all_callers_cancel() throws Exception {
+
+		CompletableFuture<String> requestFuture = new CompletableFuture<>();
+
+		CompletableFuture<String> first  = request("params", 1, requestFuture);
+		CompletableFuture<String> second = request("params", 1, new CompletableFuture<>());
+
+		first.cancel(true);
+
+		assertFalse(requestFuture.isCancelled());
+
+		second.cancel(true);
+
+		assertTrue(requestFuture.isCancelled());
+		assertEquals(0, multiplexer.inFlightCount());
+
+	}
+
+	@Test
+	void canceled_caller_does_not_affect_others() throws Exception {
+
+		CompletableFuture<String> requestFuture = new CompletableFuture<>();
+
+		CompletableFuture<String> first  = request("params", 1, requestFuture);
+		CompletableFuture<String> second = request("params", 1, new CompletableFuture<>());
+
+		first.cancel(true);
+
+		requestFuture.complete("result");
+
+		assertTrue(first.isCancelled());
+		assertEquals("result", second.get());
+
+	}
+
+	@Test
+	void failures_propagated_to_all_callers() {
+
+		CompletableFuture<String> requestFuture = new CompletableFuture<>();
+
+		CompletableFuture<String> first  = request("params", 1, requestFuture);
+		CompletableFuture<String> second = request("params", 1, new CompletableFuture<>());
+
+		requestFuture.completeExceptionally(new IllegalStateException());
+
+		assertThrows(ExecutionException.class, first::get);
+		assertThrows(ExecutionException.class, second::get);
+
+	}
+
+}
@@ -0,0 +1,168 @@
+package com.adacore.adaintellij.lsp;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit test class for the RequestScheduler class.
+ */
+final class RequestSchedulerTest {
+
+	/**
+	 * URI of the document used in tests.
+	 */
+	private static final String URI = "file:///main.adb";
+
+	/**
+	 * The tasks submitted to the executor of the tested scheduler,
+	 * run by the test.
+	 */
+	private final Queue<Runnable> executorTasks = new ArrayDeque<>();
+
+	/**
+	 * The scheduler to test, with one request in flight at most.
+	 */
+	private final RequestScheduler scheduler = new RequestScheduler(1, executorTasks::add);
+
+	/**
+	 * The names of the requests actually made, in order.
+	 */
+	private final List<String> madeRequests = new ArrayList<>();
+
+	/**
+	 * Runs the tasks submitted to the executor of the tested scheduler.
+	 */
+	private void runExecutorTasks() {
+		while (!executorTasks.isEmpty()) { executorTasks.poll().run(); }
+	}
+
+	/**
+	 * Schedules a request through the tested scheduler, returning the
+	 * given request future when the request is actually made.
+	 *
+	 * @param name The name of the request.
+	 * @param priority The priority of the request.
+	 * @param requestFuture The future to return when the request is made.
+	 * @return The future result of the request.
+	 */
+	private CompletableFuture<String> schedule(
+		String                    name,
+		RequestScheduler.Priority priority,
+		CompletableFuture<String> requestFuture
+	) {
+		return scheduler.schedule(priority, URI, () -> {
+			madeRequests.add(name);
+			return requestFuture;
+		});
+	}
+
+	@Test
+	void requests_in_flight_bounded() throws Exception {
+
+		CompletableFuture<String> firstRequest = new CompletableFuture<>();
+
+		CompletableFuture<String> first  = schedule("first", RequestScheduler.Priority.BACKGROUND, firstRequest);
+		CompletableFuture<String> second = schedule("second", RequestScheduler.Priority.BACKGROUND,
+			CompletableFuture.completedFuture("second result"));
+
+		assertEquals(Collections.singletonList("first"), madeRequests);
+		assertEquals(1, scheduler.queuedCount());
+
+		firstRequest.complete("first result");
+
+		// The queued request is not made on the completing thread
+
+		assertEquals(Collections.singletonList("first"), madeRequests);
+
+		runExecutorTasks();
+
+		assertEquals("first result", first.get());
+		assertEquals("second result", second.get());
+		assertEquals(Arrays.asList("first", "second"), madeRequests);
+		assertEquals(0, scheduler.inFlightCount());
+
+	}
+
+	@Test
+	void interactive_requests_overtake_background_requests() {
+
+		CompletableFuture<String> firstRequest = new CompletableFuture<>();
+
+		schedule("first", RequestScheduler.Priority.BACKGROUND, firstRequest);
+		schedule("background", RequestScheduler.Priority.BACKGROUND, new CompletableFuture<>());
+		schedule("interactive", RequestScheduler.Priority.INTERACTIVE, new CompletableFuture<>());
+
+		firstRequest.complete("result");
+
+		runExecutorTasks();
+
+		assertEquals(Arrays.asList("first", "interactive"), madeRequests);
+
+	}
+
+	@Test
+	void background_requests_dropped_on_document_change() {
+
+		CompletableFuture<String> firstRequest = new CompletableFuture<>();
+
+		schedule("first", RequestScheduler.Priority.BACKGROUND, firstRequest);
+
+		CompletableFuture<String> background =
+			schedule("background", RequestScheduler.Priority.BACKGROUND, new CompletableFuture<>());
+		CompletableFuture<String> interactive =
+			schedule("interactive", RequestScheduler.Priority.INTERACTIVE, new CompletableFuture<>());
+
+		scheduler.documentChanged(URI);
+
+		assertTrue(background.isCancelled());
+		assertFalse(interactive.isDone());
+		assertFalse(firstRequest.isDone());
+
+		firstRequest.complete("result");
+
+		runExecutorTasks();
+
+		assertEquals(Arrays.asList("first", "interactive"), madeRequests);
+
+	}
+
+	@Test
+	void canceled_queued_request_not_made() {
+
+		CompletableFuture<String> firstRequest = new CompletableFuture<>();
+
+		schedule("first", RequestScheduler.Priority.INTERACTIVE, firstRequest);
+
+		CompletableFuture<String> second =
+			schedule("second", RequestScheduler.Priority.INTERACTIVE, new CompletableFuture<>());
+
+		second.cancel(true);
+
+		assertEquals(0, scheduler.queuedCount());
+
+		firstRequest.complete("result");
+
+		runExecutorTasks();
+
+		assertEquals(Collections.singletonList("first"), madeRequests);
+		assertEquals(0, scheduler.inFlightCount());
+
+	}
+
+	@Test
+	void canceling_in_flight_request_cancels_it() {
+
+		CompletableFuture<String> requestFuture = new CompletableFuture<>();
+
+		schedule("first", RequestScheduler.Priority.INTERACTIVE, requestFuture).cancel(true);
+
+		assertTrue(requestFuture.isCancelled());
+		assertEquals(0, scheduler.inFlightCount());
+
+	}
+
+}
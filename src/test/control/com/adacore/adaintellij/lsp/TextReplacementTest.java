@@ -0,0 +1,95 @@
+package com.adacore.adaintellij.lsp;
+
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit test class for the TextReplacement class.
+ */
+final class TextReplacementTest {
+
+	/**
+	 * Applies the given replacements to the given text, in the order
+	 * returned by `TextReplacement#bottomUp`.
+	 *
+	 * @param text The text to which to apply the replacements.
+	 * @param replacements The replacements to apply.
+	 * @return The resulting text.
+	 */
+	private static String apply(String text, TextReplacement... replacements) {
+
+		List<TextReplacement> ordered = TextReplacement.bottomUp(Arrays.asList(replacements));
+
+		assertNotNull(ordered);
+
+		StringBuilder builder = new StringBuilder(text);
+
+		ordered.forEach(replacement ->
+			builder.replace(replacement.startOffset, replacement.endOffset, replacement.text));
+
+		return builder.toString();
+
+	}
+
+	@Test
+	void replacements_are_applied_at_their_original_offsets_regardless_of_their_order() {
+
+		String text = "X : Integer := X + X;";
+
+		assertEquals("Count : Integer := Count + Count;", apply(text,
+			new TextReplacement(15, 16, "Count"),
+			new TextReplacement(0, 1, "Count"),
+			new TextReplacement(19, 20, "Count")
+		));
+
+	}
+
+	@Test
+	void replacements_are_ordered_from_the_end_of_the_document() {
+
+		List<TextReplacement> ordered = TextReplacement.bottomUp(Arrays.asList(
+			new TextReplacement(0, 1, "a"),
+			new TextReplacement(10, 12, "b"),
+			new TextReplacement(5, 5, "c")
+		));
+
+		assertNotNull(ordered);
+		assertEquals(Arrays.asList(10, 5, 0),
+			Arrays.asList(ordered.get(0).startOffset, ordered.get(1).startOffset, ordered.get(2).startOffset));
+
+	}
+
+	@Test
+	void insertions_at_a_same_offset_keep_their_given_order() {
+		assertEquals("with A; with B; procedure P;", apply("procedure P;",
+			new TextReplacement(0, 0, "with A; "),
+			new TextReplacement(0, 0, "with B; ")
+		));
+	}
+
+	@Test
+	void adjacent_replacements_do_not_overlap() {
+		assertEquals("BA", apply("ab",
+			new TextReplacement(0, 1, "B"),
+			new TextReplacement(1, 2, "A")
+		));
+	}
+
+	@Test
+	void overlapping_replacements_are_rejected() {
+		assertNull(TextReplacement.bottomUp(Arrays.asList(
+			new TextReplacement(0, 5, "a"),
+			new TextReplacement(3, 8, "b")
+		)));
+	}
+
+	@Test
+	void invalid_ranges_are_rejected() {
+		assertThrows(IllegalArgumentException.class, () -> new TextReplacement(5, 3, ""));
+		assertThrows(IllegalArgumentException.class, () -> new TextReplacement(-1, 3, ""));
+	}
+
+}
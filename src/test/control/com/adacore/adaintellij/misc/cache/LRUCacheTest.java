@@ -0,0 +1,107 @@
+package com.adacore.adaintellij.misc.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit test class for the LRUCache class.
+ */
+final class LRUCacheTest {
+
+	@Test
+	void cached_null_value_is_hit() {
+
+		LRUCache<String, String> cache = new LRUCache<>(4);
+
+		assertFalse(cache.get("key").hit);
+
+		cache.put("key", null);
+
+		CacheResult<String> result = cache.get("key");
+
+		assertTrue(result.hit);
+		assertNull(result.data);
+
+	}
+
+	@Test
+	void least_recently_used_entry_evicted() {
+
+		LRUCache<String, Integer> cache = new LRUCache<>(2);
+
+		cache.put("a", 1);
+		cache.put("b", 2);
+
+		// Access "a" so that "b" becomes the least recently used
+
+		cache.get("a");
+
+		cache.put("c", 3);
+
+		assertEquals(2, cache.size());
+		assertTrue(cache.get("a").hit);
+		assertFalse(cache.get("b").hit);
+		assertTrue(cache.get("c").hit);
+
+	}
+
+	@Test
+	void invalidate_removes_matching_entries_only() {
+
+		LRUCache<String, Integer> cache = new LRUCache<>(8);
+
+		cache.put("a", 1);
+		cache.put("b", 2);
+		cache.put("c", 3);
+
+		cache.invalidate((key, value) -> value % 2 == 1);
+
+		assertFalse(cache.get("a").hit);
+		assertEquals(2, (int)cache.get("b").data);
+		assertFalse(cache.get("c").hit);
+
+	}
+
+	@Test
+	void put_skipped_after_invalidation() {
+
+		LRUCache<String, Integer> cache = new LRUCache<>(8);
+
+		long generation = cache.getGeneration();
+
+		cache.invalidate((key, value) -> false);
+
+		assertFalse(cache.put("a", 1, generation));
+		assertFalse(cache.get("a").hit);
+
+		assertTrue(cache.put("a", 1, cache.getGeneration()));
+		assertTrue(cache.get("a").hit);
+
+	}
+
+	@Test
+	void put_skipped_after_invalidation_of_its_scope_only() {
+
+		LRUCache<String, Integer> cache = new LRUCache<>(8);
+
+		long generation = cache.getGeneration();
+
+		cache.invalidate("file:///a.adb", (key, value) -> false);
+
+		assertFalse(cache.put("a", 1, generation, "file:///a.adb"));
+		assertFalse(cache.put("a", 1, generation, "file:///b.adb", "file:///a.adb"));
+		assertTrue(cache.put("b", 2, generation, "file:///b.adb", null));
+		assertTrue(cache.put("a", 1, cache.getGeneration(), "file:///a.adb"));
+
+		// Clearing the cache rejects values of all scopes
+
+		generation = cache.getGeneration();
+
+		cache.clear();
+
+		assertFalse(cache.put("b", 2, generation, "file:///b.adb"));
+
+	}
+
+}